@@ -0,0 +1,151 @@
+package org.buldakov.benchmarks;
+
+import org.buldakov.model.cache.CacheStorage;
+import org.buldakov.model.cache.CacheStorageBuilder;
+import org.buldakov.model.cache.enums.DeleteStrategyType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Общая часть бенчмарков кэш-хранилища.
+ * <p>
+ * Перед измерением хранилище заполняется до вместимости. Ключи выбираются из пространства
+ * вдвое больше вместимости по заранее сгенерированной последовательности, поэтому
+ * генерация ключей не попадает в измерение.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public abstract class AbstractCacheBenchmark {
+
+    /**
+     * Отношение количества различных ключей к вместимости хранилища.
+     */
+    private static final int KEY_SPACE_RATIO = 2;
+
+    /**
+     * Длина последовательности обращений. Степень двойки.
+     */
+    private static final int SEQUENCE_LENGTH = 1 << 20;
+
+    private static final Integer VALUE = 1;
+
+    @Param({"LFU", "MFU", "LRU", "W_TINY_LFU", "CLOCK", "ARC"})
+    public DeleteStrategyType strategy;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int capacity;
+
+    @Param({"ZIPFIAN", "UNIFORM"})
+    public KeyDistribution distribution;
+
+    @Param({"false", "true"})
+    public boolean l2;
+
+    private CacheStorage storage;
+
+    private String[] keys;
+
+    private int[] sequence;
+
+    private Path l2Directory;
+
+    /**
+     * Позиция потока в последовательности обращений.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int position = ThreadLocalRandom.current().nextInt(SEQUENCE_LENGTH);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.keys = new String[this.capacity * KEY_SPACE_RATIO];
+        for (int i = 0; i < this.keys.length; i++) {
+            this.keys[i] = "key" + i;
+        }
+        this.sequence = this.distribution.generate(this.keys.length, SEQUENCE_LENGTH, 42);
+
+        CacheStorageBuilder builder = new CacheStorageBuilder()
+                .setCapacity(this.capacity)
+                .setCacheStrategy(this.strategy);
+        if (this.l2) {
+            this.l2Directory = Files.createTempDirectory("ardecs-bench");
+            builder.enableL2Cache().setL2Directory(this.l2Directory);
+        }
+        if (this.isConcurrent()) {
+            builder.enableConcurrency();
+        }
+        this.storage = builder.build();
+        for (int i = 0; i < this.capacity; i++) {
+            this.storage.addData(this.keys[i], VALUE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.storage.close();
+        if (this.l2Directory != null) {
+            try (Stream<Path> files = Files.walk(this.l2Directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Чтение с добавлением при промахе (read-through).
+     */
+    @Benchmark
+    public Object getData(Cursor cursor) throws Exception {
+        String key = this.nextKey(cursor);
+        Object value = this.storage.getData(key);
+        if (value == null) {
+            this.storage.addData(key, VALUE);
+        }
+        return value;
+    }
+
+    /**
+     * Запись с вытеснением по стратегии.
+     */
+    @Benchmark
+    public void addData(Cursor cursor) throws Exception {
+        this.storage.addData(this.nextKey(cursor), VALUE);
+    }
+
+    /**
+     * @return True - если хранилище должно работать в конкурентном режиме.
+     */
+    protected abstract boolean isConcurrent();
+
+    private String nextKey(Cursor cursor) {
+        int position = cursor.position;
+        cursor.position = (position + 1) & (SEQUENCE_LENGTH - 1);
+        return this.keys[this.sequence[position]];
+    }
+}
@@ -0,0 +1,176 @@
+package org.buldakov.benchmarks;
+
+import org.buldakov.model.cache.CacheStorage;
+import org.buldakov.model.cache.CacheStorageBuilder;
+import org.buldakov.model.cache.enums.DeleteStrategyType;
+import org.buldakov.model.cache.enums.L2TieringMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Бенчмарк пакетных операций {@code getAll()} и {@code addAll()} в сравнении
+ * с вызовом {@code getData()} и {@code addData()} для каждого ключа пачки.
+ * Измеряется время обработки одной пачки в однопоточном и конкурентном режиме хранилища.
+ * <p>
+ * С L2 cache хранилище работает в режиме {@link L2TieringMode#SPILL_ON_EVICT},
+ * поэтому промахи по L1 читаются из L2 cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Threads(1)
+public class BatchCacheBenchmark {
+
+    private static final int CAPACITY = 100_000;
+
+    private static final int KEY_SPACE_RATIO = 2;
+
+    /**
+     * Количество заранее сгенерированных пачек. Степень двойки.
+     */
+    private static final int BATCH_COUNT = 1 << 12;
+
+    private static final Integer VALUE = 1;
+
+    @Param({"LFU", "LRU", "W_TINY_LFU", "CLOCK", "ARC"})
+    public DeleteStrategyType strategy;
+
+    @Param({"50", "500"})
+    public int batchSize;
+
+    @Param({"false", "true"})
+    public boolean l2;
+
+    @Param({"false", "true"})
+    public boolean concurrent;
+
+    private CacheStorage storage;
+
+    private List<String>[] keyBatches;
+
+    private Map<String, Object>[] dataBatches;
+
+    private int position;
+
+    private Path l2Directory;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        String[] keys = new String[CAPACITY * KEY_SPACE_RATIO];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "key" + i;
+        }
+        int[] sequence = KeyDistribution.ZIPFIAN.generate(keys.length, BATCH_COUNT * this.batchSize, 42);
+        this.keyBatches = new List[BATCH_COUNT];
+        this.dataBatches = new Map[BATCH_COUNT];
+        for (int i = 0; i < BATCH_COUNT; i++) {
+            String[] batch = new String[this.batchSize];
+            Map<String, Object> data = new LinkedHashMap<>();
+            for (int j = 0; j < this.batchSize; j++) {
+                batch[j] = keys[sequence[i * this.batchSize + j]];
+                data.put(batch[j], VALUE);
+            }
+            this.keyBatches[i] = Arrays.asList(batch);
+            this.dataBatches[i] = data;
+        }
+
+        CacheStorageBuilder builder = new CacheStorageBuilder()
+                .setCapacity(CAPACITY)
+                .setCacheStrategy(this.strategy);
+        if (this.l2) {
+            this.l2Directory = Files.createTempDirectory("ardecs-bench");
+            builder.enableL2Cache()
+                    .setL2Directory(this.l2Directory)
+                    .setL2TieringMode(L2TieringMode.SPILL_ON_EVICT);
+        }
+        if (this.concurrent) {
+            builder.enableConcurrency();
+        }
+        this.storage = builder.build();
+        for (String key : keys) {
+            this.storage.addData(key, VALUE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.storage.close();
+        if (this.l2Directory != null) {
+            try (Stream<Path> files = Files.walk(this.l2Directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> getDataLoop() throws Exception {
+        List<String> keys = this.nextKeys();
+        Map<String, Object> result = new HashMap<>((int) (keys.size() / 0.75f) + 1);
+        for (String key : keys) {
+            Object value = this.storage.getData(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Map<String, Object> getAll() throws Exception {
+        return this.storage.getAll(this.nextKeys());
+    }
+
+    @Benchmark
+    public void addDataLoop() throws Exception {
+        for (Map.Entry<String, Object> entry : this.nextData().entrySet()) {
+            this.storage.addData(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void addAll() throws Exception {
+        this.storage.addAll(this.nextData());
+    }
+
+    private List<String> nextKeys() {
+        List<String> batch = this.keyBatches[this.position];
+        this.position = (this.position + 1) & (BATCH_COUNT - 1);
+        return batch;
+    }
+
+    private Map<String, Object> nextData() {
+        Map<String, Object> batch = this.dataBatches[this.position];
+        this.position = (this.position + 1) & (BATCH_COUNT - 1);
+        return batch;
+    }
+}
@@ -0,0 +1,15 @@
+package org.buldakov.benchmarks;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Бенчмарк кэш-хранилища в однопоточном режиме.
+ */
+@Threads(1)
+public class CacheBenchmark extends AbstractCacheBenchmark {
+
+    @Override
+    protected boolean isConcurrent() {
+        return false;
+    }
+}
@@ -0,0 +1,16 @@
+package org.buldakov.benchmarks;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Бенчмарк кэш-хранилища в конкурентном режиме (см. {@code CacheStorageBuilder#enableConcurrency()}).
+ * Число потоков можно изменить параметром JMH {@code -t}.
+ */
+@Threads(4)
+public class ConcurrentCacheBenchmark extends AbstractCacheBenchmark {
+
+    @Override
+    protected boolean isConcurrent() {
+        return true;
+    }
+}
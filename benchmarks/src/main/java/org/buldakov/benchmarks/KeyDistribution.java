@@ -0,0 +1,50 @@
+package org.buldakov.benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * Распределение ключей, к которым обращается бенчмарк.
+ */
+public enum KeyDistribution {
+
+    /**
+     * Все ключи запрашиваются равновероятно.
+     */
+    UNIFORM {
+        @Override
+        int[] generate(int keySpace, int length, long seed) {
+            SplittableRandom random = new SplittableRandom(seed);
+            int[] sequence = new int[length];
+            for (int i = 0; i < length; i++) {
+                sequence[i] = random.nextInt(keySpace);
+            }
+            return sequence;
+        }
+    },
+
+    /**
+     * Распределение Ципфа: небольшая доля ключей получает большую часть обращений.
+     */
+    ZIPFIAN {
+        @Override
+        int[] generate(int keySpace, int length, long seed) {
+            SplittableRandom random = new SplittableRandom(seed);
+            ZipfianGenerator generator = new ZipfianGenerator(keySpace, ZipfianGenerator.DEFAULT_SKEW);
+            int[] sequence = new int[length];
+            for (int i = 0; i < length; i++) {
+                sequence[i] = generator.next(random);
+            }
+            return sequence;
+        }
+    };
+
+    /**
+     * Метод генерации последовательности индексов ключей.
+     *
+     * @param keySpace Количество различных ключей.
+     * @param length   Длина последовательности.
+     * @param seed     Зерно генератора.
+     * @return Последовательность индексов ключей.
+     */
+    abstract int[] generate(int keySpace, int length, long seed);
+}
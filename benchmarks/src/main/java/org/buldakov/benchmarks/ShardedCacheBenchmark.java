@@ -0,0 +1,121 @@
+package org.buldakov.benchmarks;
+
+import org.buldakov.model.cache.CacheStorageBuilder;
+import org.buldakov.model.cache.ShardedCacheStorage;
+import org.buldakov.model.cache.enums.DeleteStrategyType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк секционированного кэш-хранилища в конкурентном режиме.
+ * Одна секция соответствует обычному хранилищу с одной блокировкой вытеснения,
+ * поэтому пропускная способность при {@code shards=1} - точка отсчёта.
+ * Число потоков можно изменить параметром JMH {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Threads(4)
+public class ShardedCacheBenchmark {
+
+    private static final int CAPACITY = 100_000;
+
+    private static final int KEY_SPACE_RATIO = 2;
+
+    /**
+     * Длина последовательности обращений. Степень двойки.
+     */
+    private static final int SEQUENCE_LENGTH = 1 << 20;
+
+    private static final Integer VALUE = 1;
+
+    @Param({"LFU", "LRU", "W_TINY_LFU", "CLOCK", "ARC"})
+    public DeleteStrategyType strategy;
+
+    @Param({"1", "4", "16"})
+    public int shards;
+
+    private ShardedCacheStorage storage;
+
+    private String[] keys;
+
+    private int[] sequence;
+
+    /**
+     * Позиция потока в последовательности обращений.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int position = ThreadLocalRandom.current().nextInt(SEQUENCE_LENGTH);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.keys = new String[CAPACITY * KEY_SPACE_RATIO];
+        for (int i = 0; i < this.keys.length; i++) {
+            this.keys[i] = "key" + i;
+        }
+        this.sequence = KeyDistribution.ZIPFIAN.generate(this.keys.length, SEQUENCE_LENGTH, 42);
+        this.storage = new CacheStorageBuilder()
+                .setCapacity(CAPACITY)
+                .setCacheStrategy(this.strategy)
+                .setShardCount(this.shards)
+                .enableConcurrency()
+                .buildSharded();
+        for (int i = 0; i < CAPACITY; i++) {
+            this.storage.addData(this.keys[i], VALUE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.storage.close();
+    }
+
+    /**
+     * Чтение с добавлением при промахе (read-through).
+     */
+    @Benchmark
+    public Object getData(Cursor cursor) throws Exception {
+        String key = this.nextKey(cursor);
+        Object value = this.storage.getData(key);
+        if (value == null) {
+            this.storage.addData(key, VALUE);
+        }
+        return value;
+    }
+
+    /**
+     * Запись с вытеснением по стратегии.
+     */
+    @Benchmark
+    public void addData(Cursor cursor) throws Exception {
+        this.storage.addData(this.nextKey(cursor), VALUE);
+    }
+
+    private String nextKey(Cursor cursor) {
+        int position = cursor.position;
+        cursor.position = (position + 1) & (SEQUENCE_LENGTH - 1);
+        return this.keys[this.sequence[position]];
+    }
+}
@@ -0,0 +1,56 @@
+package org.buldakov.benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * Генератор индексов по распределению Ципфа (алгоритм Gray et al., "Quickly Generating
+ * Billion-Record Synthetic Databases", используемый в YCSB).
+ * Индекс 0 - самый популярный.
+ */
+class ZipfianGenerator {
+
+    /**
+     * Параметр асимметрии распределения, принятый в YCSB.
+     */
+    static final double DEFAULT_SKEW = 0.99;
+
+    private final int items;
+
+    private final double theta;
+
+    private final double alpha;
+
+    private final double zetaN;
+
+    private final double eta;
+
+    ZipfianGenerator(int items, double theta) {
+        this.items = items;
+        this.theta = theta;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zetaN = zeta(items, theta);
+        double zeta2 = zeta(2, theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / this.zetaN);
+    }
+
+    int next(SplittableRandom random) {
+        double u = random.nextDouble();
+        double uz = u * this.zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, this.theta)) {
+            return 1;
+        }
+        int index = (int) (this.items * Math.pow(this.eta * u - this.eta + 1, this.alpha));
+        return Math.min(index, this.items - 1);
+    }
+
+    private static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
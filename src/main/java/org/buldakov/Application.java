@@ -3,6 +3,7 @@ package org.buldakov;
 import org.buldakov.model.cache.CacheStorage;
 import org.buldakov.model.cache.CacheStorageBuilder;
 import org.buldakov.model.cache.enums.DeleteStrategyType;
+import org.buldakov.model.cache.event.LoggingCacheEventListener;
 
 import java.io.IOException;
 import java.util.Locale;
@@ -38,11 +39,13 @@ public class Application {
      * Метод для демонстрации работы кэш-хранилища.
      */
     private static void cacheTest(DeleteStrategyType deleteStrategy) throws IOException, ClassNotFoundException {
+        LoggingCacheEventListener eventLog = new LoggingCacheEventListener();
         CacheStorageBuilder builder = new CacheStorageBuilder();
         CacheStorage storage = builder
                 .setCapacity(2)
                 .setCacheStrategy(deleteStrategy)
                 .enableL2Cache()
+                .setEventListener(eventLog)
                 .build();
 
         System.out.printf("=== Стратегия %s ===%n", deleteStrategy);
@@ -66,6 +69,10 @@ public class Application {
         // Добавляем тестовый элемент
         storage.addData("Cache4", 1);
 
+        // Дожидаемся записи L2 кэша на диск и вывода журнала
+        storage.close();
+        eventLog.close();
+
         System.out.printf("=== Стратегия %s ===", deleteStrategy);
 
         /* Согласно стратегии LFU, будут удалены элементы с наименьшим использованием на момент добавления
@@ -0,0 +1,19 @@
+package org.buldakov.model.cache;
+
+/**
+ * Функция загрузки значения при промахе по кэшу
+ * (см. {@link CacheStorage#get(String, CacheLoader)}, {@link CacheStorage#getAsync(String, CacheLoader)}).
+ * Например, запрос к базе данных или внешнему сервису.
+ */
+@FunctionalInterface
+public interface CacheLoader {
+
+    /**
+     * Метод загрузки значения.
+     *
+     * @param cacheKey Ключ кэша.
+     * @return Значение кэша или null, если значения нет. null в хранилище не добавляется.
+     * @throws Exception В случае неудачной загрузки.
+     */
+    Object load(String cacheKey) throws Exception;
+}
@@ -0,0 +1,18 @@
+package org.buldakov.model.cache;
+
+/**
+ * Исключение, с которым завершается загрузка значения, если {@link CacheLoader} бросил проверяемое исключение.
+ * Исходное исключение доступно через {@link #getCause()}.
+ */
+public class CacheLoaderException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param cacheKey Ключ кэша.
+     * @param cause    Исключение загрузчика.
+     */
+    public CacheLoaderException(String cacheKey, Throwable cause) {
+        super("Не удалось загрузить элемент " + cacheKey, cause);
+    }
+}
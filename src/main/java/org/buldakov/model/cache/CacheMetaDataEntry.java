@@ -3,7 +3,7 @@ package org.buldakov.model.cache;
 /**
  * Класс-контейнер мета-данных кэш-элемента.
  * @param <PriorityType> Тип приоритета, исходя из которого
- *                      кэш-элементы будут сравниваться в {@link java.util.PriorityQueue приоритетной очереди}.
+ *                      кэш-элементы будут сравниваться в {@link IndexedPriorityQueue приоритетной очереди}.
  */
 public class CacheMetaDataEntry<PriorityType extends Comparable<PriorityType>>
         implements Comparable<CacheMetaDataEntry<PriorityType>> {
@@ -18,6 +18,12 @@ public class CacheMetaDataEntry<PriorityType extends Comparable<PriorityType>>
      */
     private PriorityType priority;
 
+    /**
+     * Позиция в куче {@link IndexedPriorityQueue индексированной очереди}.
+     * -1 - если элемент не находится в очереди.
+     */
+    private int heapIndex = -1;
+
     public CacheMetaDataEntry(String key, PriorityType priority) {
         this.key = key;
         this.priority = priority;
@@ -50,6 +56,14 @@ public class CacheMetaDataEntry<PriorityType extends Comparable<PriorityType>>
         this.priority = priority;
     }
 
+    int getHeapIndex() {
+        return heapIndex;
+    }
+
+    void setHeapIndex(int heapIndex) {
+        this.heapIndex = heapIndex;
+    }
+
     @Override
     public String toString() {
         return this.key;
@@ -1,63 +1,421 @@
 package org.buldakov.model.cache;
 
+import org.buldakov.model.cache.codec.ValueCodec;
+import org.buldakov.model.cache.concurrent.ReadBuffer;
+import org.buldakov.model.cache.enums.DeleteStrategyType;
+import org.buldakov.model.cache.enums.L2WarmUpMode;
+import org.buldakov.model.cache.event.CacheEventListener;
+import org.buldakov.model.cache.expiry.TimingWheel;
+import org.buldakov.model.cache.filesystem.L2CacheEntry;
+import org.buldakov.model.cache.offheap.OffHeapStorage;
+import org.buldakov.model.cache.stats.CacheStats;
+import org.buldakov.model.cache.stats.StatsCounter;
 import org.buldakov.model.cache.strategy.AbstractCacheStrategy;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Главный класс кэш-хранилища.
  * Использует {@link HashMap} для быстрого доступа к данным типа "ключ-значение".
+ * <p>
+ * В конкурентном режиме (см. {@link CacheStorageBuilder#enableConcurrency()}) L1 кэш хранится
+ * в {@link ConcurrentHashMap}, чтение выполняется без глобальной блокировки, а обращения
+ * к кэш-элементам копятся в {@link ReadBuffer буфере} и применяются к стратегии пакетно.
+ * <p>
+ * L1 кэш может храниться вне кучи (см. {@link CacheStorageBuilder#enableOffHeapStorage(long)}),
+ * тогда вместо {@link HashMap} используется {@link OffHeapStorage}.
+ * <p>
+ * О попаданиях, промахах, добавлениях и вытеснениях хранилище сообщает {@link CacheEventListener слушателю}
+ * (см. {@link CacheStorageBuilder#setEventListener(CacheEventListener)}).
+ * Если включен сбор статистики (см. {@link CacheStorageBuilder#enableStats()}), хранилище ведёт
+ * счётчики и гистограммы длительности операций, доступные через {@link #stats()}.
+ * <p>
+ * Кэш-элементы могут иметь срок жизни (см. {@link #addData(String, Object, Duration)},
+ * {@link CacheStorageBuilder#setExpireAfterWrite(Duration)}, {@link CacheStorageBuilder#setExpireAfterAccess(Duration)}).
+ * Сроки ведёт {@link TimingWheel колесо времени}, которое продвигается при обращениях к хранилищу
+ * или планировщиком. Истёкший кэш-элемент удаляется из L1 кэша, очереди стратегии и L2 кэша.
+ * <p>
+ * Пакетные операции {@link #getAll(Collection)} и {@link #addAll(Map)} применяют изменения
+ * к стратегии за один захват блокировки, а чтение и запись L2 кэша выполняют одной пачкой.
+ * <p>
+ * При промахе значение может загружаться {@link CacheLoader загрузчиком} (см. {@link #get(String, CacheLoader)}).
+ * Одновременные промахи по одному ключу ожидают одну загрузку.
+ * <p>
+ * При создании хранилища из L2 кэша строится только индекс ключей, а L1 кэш наполняется
+ * {@link L2WarmUp прогревом} - по умолчанию в фоновом потоке (см. {@link L2WarmUpMode}).
+ * <p>
+ * Если включены снимки (см. {@link CacheStorageBuilder#enableSnapshots(Path)}), хранилище сохраняет
+ * L1 кэш вместе с приоритетами стратегии в {@link L1Snapshot снимок} и восстанавливается из него при создании.
  */
-public class CacheStorage {
-
-    /**
-     * Разделитель ключа и значения в паре данных из L2 кэша.
-     */
-    private static final String KEY_VALUE_SEPARATOR = ":";
+public class CacheStorage implements Closeable {
 
     /**
      * L1 кэш-хранилище типа "ключ-значение".
      * Использует {@link String} в качестве ключа для
      * достижения наибольшей производительности.
      */
-    private final HashMap<String, Object> keyValueStorage;
+    private final Map<String, Object> keyValueStorage;
 
     /**
-     * Вместимость L1 кэша.
+     * L1 кэш-хранилище вне кучи или null, если L1 кэш хранится в куче.
+     * Ссылается на тот же объект, что и {@link #keyValueStorage}.
+     */
+    private final OffHeapStorage offHeapStorage;
+
+    /**
+     * Вместимость L1 кэша в кэш-элементах. Не используется, если задана {@link #weigher функция веса}.
      */
     private final int capacity;
 
+    /**
+     * Функция веса кэш-элементов или null, если вместимость ограничена количеством кэш-элементов.
+     */
+    private final Weigher weigher;
+
+    /**
+     * Ограничение суммарного веса кэш-элементов L1 кэша.
+     */
+    private final long maximumWeight;
+
+    /**
+     * Веса кэш-элементов L1 кэша или null, если функция веса не задана.
+     * Изменяется под блокировкой вытеснения.
+     */
+    private final Map<String, Integer> weights;
+
+    /**
+     * Суммарный вес кэш-элементов L1 кэша.
+     */
+    private volatile long totalWeight;
+
     /**
      * Стратегия, которую использует кэш-хранилище.
      */
     private final AbstractCacheStrategy<?> cacheStrategy;
 
+    /**
+     * Переключатель "работает ли хранилище в конкурентном режиме".
+     */
+    private final boolean isConcurrent;
+
+    /**
+     * Блокировка вытеснения. В конкурентном режиме защищает стратегию и изменение L1 кэша.
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * Буфер обращений к кэш-элементам. Используется только в конкурентном режиме.
+     */
+    private final ReadBuffer readBuffer;
+
+    /**
+     * Слушатель событий кэш-хранилища.
+     */
+    private final CacheEventListener eventListener;
+
+    /**
+     * Накопитель статистики или null, если сбор статистики отключен.
+     */
+    private final StatsCounter stats;
+
+    /**
+     * Переключатель "хранилище - секция секционированного хранилища".
+     * Секция не снимает общий MBean статистики с регистрации при закрытии.
+     */
+    private final boolean isShard;
+
+    /**
+     * Переключатель "включен ли L2 кэш".
+     */
+    private final boolean isL2CacheEnabled;
+
+    /**
+     * Колесо времени со сроками жизни кэш-элементов.
+     * При включенном L2 кэше срок сохраняется и за кэш-элементами, вытесненными из L1.
+     */
+    private final TimingWheel expiry;
+
+    /**
+     * Время жизни кэш-элемента после записи по умолчанию в наносекундах. 0 - не ограничено.
+     */
+    private final long expireAfterWriteNanos;
+
+    /**
+     * Время жизни кэш-элемента без обращений в наносекундах. 0 - не ограничено.
+     */
+    private final long expireAfterAccessNanos;
+
+    /**
+     * Периодическая задача удаления истёкших кэш-элементов или null, если планировщик не задан.
+     */
+    private final ScheduledFuture<?> cleanUpTask;
+
+    /**
+     * Выполняющиеся загрузки значений по ключу. Все промахи по ключу, пока его значение загружается,
+     * ожидают одну загрузку.
+     */
+    private final Map<String, CompletableFuture<Object>> inFlightLoads = new ConcurrentHashMap<>();
+
+    /**
+     * Потоки, в которых сейчас выполняется загрузчик, по ключу кэша.
+     * Нужны, чтобы загрузчик, обратившийся за своим же ключом, не ждал сам себя.
+     */
+    private final Map<String, Thread> loaderThreads = new ConcurrentHashMap<>();
+
+    /**
+     * Исполнитель асинхронной загрузки значений.
+     */
+    private final Executor loaderExecutor;
+
+    /**
+     * Прогрев L1 кэша из L2 кэша или null, если он не нужен.
+     */
+    private final L2WarmUp warmUp;
+
+    /**
+     * Тип стратегии. Записывается в снимок L1 кэша.
+     */
+    private final DeleteStrategyType cacheStrategyType;
+
+    /**
+     * Кодек значений кэша.
+     */
+    private final ValueCodec<?> valueCodec;
+
+    /**
+     * Путь к файлу снимка L1 кэша или null, если снимки отключены.
+     */
+    private final Path snapshotPath;
+
+    /**
+     * Блокировка записи снимка L1 кэша.
+     */
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+
+    /**
+     * Периодическая задача записи снимка L1 кэша или null, если планировщик не задан.
+     */
+    private final ScheduledFuture<?> snapshotTask;
+
     /**
      * Конструктор создания кэш-хранилища из {@link CacheStorageBuilder билдера}.
-     * При создании заносит в свой {@link HashMap} данные из L2 кэш-файла.
+     * Восстанавливает L1 кэш из снимка, при включенном L2 кэше строит его индекс
+     * и запускает прогрев L1 кэша оставшимися кэш-элементами.
      *
      * @param builder Билдер кэш-хранилища.
      * @throws IOException В случае неудачной активации L2 кэша.
      */
     CacheStorage(CacheStorageBuilder builder) throws IOException {
-        this.keyValueStorage = builder.getKeyValueStorage();
+        this.isConcurrent = builder.isConcurrencyEnabled();
+        if (builder.isOffHeapEnabled()) {
+            this.offHeapStorage = new OffHeapStorage(builder.getOffHeapMaxMemory(), builder.getL2CacheSettings().getValueCodec());
+            this.offHeapStorage.putAll(builder.getKeyValueStorage());
+            this.keyValueStorage = this.offHeapStorage;
+        } else {
+            this.offHeapStorage = null;
+            this.keyValueStorage = this.isConcurrent
+                    ? new ConcurrentHashMap<>(builder.getKeyValueStorage())
+                    : builder.getKeyValueStorage();
+        }
+        this.readBuffer = this.isConcurrent ? new ReadBuffer() : null;
+        this.eventListener = builder.getEventListener();
+        this.stats = builder.getStatsCounter();
+        this.isShard = builder.isShard();
         this.capacity = builder.getCapacity();
-        this.cacheStrategy = builder.getCacheStrategy();
-        if (builder.isL2CacheEnabled()) {
-            String[] l2cacheData = this.cacheStrategy.enableL2Cache();
-            if (l2cacheData.length != 0) {
-                Arrays.stream(l2cacheData).forEach((data) -> {
-                    if (data.length() > 0) {
-                        if (this.keyValueStorage.size() != this.capacity) {
-                            String[] dataSplit = data.split(KEY_VALUE_SEPARATOR);
-                            this.keyValueStorage.put(dataSplit[0], dataSplit[1]);
-                        }
-                    }
-                });
+        this.weigher = builder.getWeigher();
+        this.maximumWeight = builder.getMaximumWeight();
+        this.weights = this.weigher == null ? null : new HashMap<>();
+        this.cacheStrategy = builder.createCacheStrategy();
+        this.cacheStrategyType = builder.getCacheStrategyType();
+        this.valueCodec = builder.getL2CacheSettings().getValueCodec();
+        this.snapshotPath = builder.getSnapshotPath();
+        this.isL2CacheEnabled = builder.isL2CacheEnabled();
+        this.expiry = new TimingWheel(this.isConcurrent);
+        this.loaderExecutor = builder.getLoaderExecutor();
+        this.expireAfterWriteNanos = builder.getExpireAfterWrite() == null ? 0 : builder.getExpireAfterWrite().toNanos();
+        this.expireAfterAccessNanos = builder.getExpireAfterAccess() == null ? 0 : builder.getExpireAfterAccess().toNanos();
+        L2WarmUpMode warmUpMode = builder.getL2CacheSettings().getWarmUpMode();
+        Map<String, Long> l2Keys;
+        try {
+            l2Keys = this.isL2CacheEnabled
+                    ? this.cacheStrategy.enableL2Cache(builder.getL2CacheSettings())
+                    : Collections.emptyMap();
+            if (this.snapshotPath != null) {
+                this.restoreSnapshot(l2Keys);
+            }
+        } catch (IOException | RuntimeException exception) {
+            // Стратегия уже могла захватить грубые часы и запустить фонового писателя L2 кэша
+            try {
+                this.cacheStrategy.close();
+            } catch (IOException closeException) {
+                exception.addSuppressed(closeException);
+            }
+            throw exception;
+        }
+        int warmUpLimit = this.weigher == null ? this.capacity - this.keyValueStorage.size() : Integer.MAX_VALUE;
+        if (l2Keys.isEmpty() || warmUpMode == L2WarmUpMode.NONE || warmUpLimit <= 0) {
+            this.warmUp = null;
+        } else {
+            this.warmUp = new L2WarmUp(this, this.cacheStrategy, l2Keys, warmUpLimit, this.weigher, this.maximumWeight,
+                    this.eventListener, this.isConcurrent || warmUpMode == L2WarmUpMode.SYNC);
+        }
+        ScheduledExecutorService scheduler = builder.getExpiryScheduler();
+        if (scheduler == null) {
+            this.cleanUpTask = null;
+        } else {
+            long period = builder.getExpiryCleanUpPeriod().toNanos();
+            this.cleanUpTask = scheduler.scheduleAtFixedRate(this::cleanUp, period, period, TimeUnit.NANOSECONDS);
+        }
+        ScheduledExecutorService snapshotScheduler = builder.getSnapshotScheduler();
+        if (snapshotScheduler == null || this.snapshotPath == null) {
+            this.snapshotTask = null;
+        } else {
+            long period = builder.getSnapshotPeriod().toNanos();
+            this.snapshotTask = snapshotScheduler.scheduleAtFixedRate(this::scheduledCheckpoint, period, period, TimeUnit.NANOSECONDS);
+        }
+        if (this.warmUp != null) {
+            if (warmUpMode == L2WarmUpMode.SYNC) {
+                this.warmUp.run();
+            } else {
+                this.warmUp.start();
+            }
+        }
+    }
+
+    /**
+     * Метод восстановления L1 кэша и очереди стратегии из снимка.
+     * Очередь стратегии строится одним проходом (см. {@link AbstractCacheStrategy#restoreEntries}).
+     * Если снимок не помещается в L1 кэш, восстанавливаются самые ценные для стратегии кэш-элементы
+     * (см. {@link AbstractCacheStrategy#toWarmUpRank(long)}). Кэш-элементы с истёкшим сроком жизни пропускаются.
+     * Прочитанный снимок удаляется, чтобы после аварийного завершения не восстановиться из него повторно.
+     *
+     * @param l2Keys Ключи L2 кэша для прогрева. Восстановленные ключи из них исключаются.
+     * @throws IOException В случае неудачного чтения снимка.
+     */
+    private void restoreSnapshot(Map<String, Long> l2Keys) throws IOException {
+        L1Snapshot snapshot = L1Snapshot.read(this.snapshotPath, this.cacheStrategyType.name(), this.valueCodec, this.eventListener);
+        L1Snapshot.delete(this.snapshotPath);
+        if (snapshot == null) {
+            return;
+        }
+        int count = snapshot.size();
+        IntStream order = IntStream.range(0, count);
+        if (this.weigher != null || this.keyValueStorage.size() + count > this.capacity) {
+            long[] priorities = snapshot.priorities();
+            order = order.boxed()
+                    .sorted((i, j) -> Long.compare(this.cacheStrategy.toWarmUpRank(priorities[j]),
+                            this.cacheStrategy.toWarmUpRank(priorities[i])))
+                    .mapToInt(Integer::intValue);
+        }
+        long now = System.currentTimeMillis();
+        boolean[] restored = new boolean[count];
+        for (int i : order.toArray()) {
+            String cacheKey = snapshot.keys()[i];
+            Object value = snapshot.value(i);
+            long expirationTime = snapshot.expirationTime(i);
+            if (expirationTime != 0 && expirationTime <= now || this.keyValueStorage.containsKey(cacheKey)) {
+                continue;
+            }
+            if (this.weigher == null) {
+                if (this.keyValueStorage.size() >= this.capacity) break;
+            } else if (!this.fitsWeight(cacheKey, value)) {
+                continue;
+            }
+            if (this.offHeapStorage == null) {
+                this.keyValueStorage.put(cacheKey, value);
+            } else if (!this.offHeapStorage.tryPut(cacheKey, value)) {
+                this.releaseWeight(cacheKey);
+                break;
+            }
+            this.scheduleExpiry(cacheKey, expirationTime == 0 ? 0 : TimeUnit.MILLISECONDS.toNanos(expirationTime - now));
+            if (this.isL2CacheEnabled) l2Keys.remove(cacheKey);
+            restored[i] = true;
+        }
+        snapshot.retain(restored);
+        this.cacheStrategy.restoreEntries(snapshot.keys(), snapshot.priorities(), snapshot.segments(), snapshot.size());
+        this.cacheStrategy.restoreState(snapshot.state());
+        this.eventListener.onSnapshotRestore(snapshot.size(), count);
+    }
+
+    /**
+     * Метод записи снимка L1 кэша.
+     * Мета-данные стратегии снимаются под блокировкой вытеснения одним проходом, а значения кодируются
+     * и пишутся в файл уже без неё, поэтому хранилище остаётся доступным во время записи.
+     * Кэш-элементы, удалённые за время записи, в снимок не попадают.
+     * Прежний снимок заменяется атомарно.
+     *
+     * @return Количество кэш-элементов в снимке.
+     * @throws IOException           В случае неудачной записи снимка.
+     * @throws IllegalStateException Если снимки не включены.
+     */
+    public int checkpoint() throws IOException {
+        if (this.snapshotPath == null) {
+            throw new IllegalStateException("Снимки L1 кэша не включены");
+        }
+        this.snapshotLock.lock();
+        try {
+            L1Snapshot snapshot;
+            this.evictionLock.lock();
+            try {
+                snapshot = this.captureSnapshot();
+            } finally {
+                this.evictionLock.unlock();
+            }
+            return snapshot.write(this.snapshotPath, this.cacheStrategyType.name(), this.valueCodec, this.keyValueStorage::get,
+                    this.eventListener);
+        } finally {
+            this.snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Метод снятия мета-данных кэш-элементов со стратегии.
+     * Вызывается под блокировкой вытеснения.
+     *
+     * @return Снимок без значений.
+     */
+    private L1Snapshot captureSnapshot() {
+        long now = System.currentTimeMillis();
+        L1Snapshot snapshot = new L1Snapshot(this.cacheStrategy.size(), this.cacheStrategy.saveState());
+        this.cacheStrategy.forEachEntry((cacheKey, storedPriority, segment) -> {
+            if (this.expiry.isExpired(cacheKey)) {
+                return;
             }
-            System.out.println("L2 to L1 fetch: L1 хранилище пополнено, состояние: " + this.keyValueStorage);
+            long remaining = this.expiry.remainingWriteNanos(cacheKey);
+            snapshot.add(cacheKey, storedPriority, segment,
+                    remaining == 0 ? 0 : now + Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+        });
+        return snapshot;
+    }
+
+    /**
+     * Метод записи снимка L1 кэша планировщиком.
+     * Ошибка записи передаётся слушателю событий, следующая запись выполняется по расписанию.
+     */
+    private void scheduledCheckpoint() {
+        try {
+            this.checkpoint();
+        } catch (IOException | RuntimeException exception) {
+            this.eventListener.onSnapshotError(exception);
         }
     }
 
@@ -70,40 +428,973 @@ public class CacheStorage {
      * @param value    Значение кэша.
      */
     public void addData(String cacheKey, Object value) {
-        if (this.keyValueStorage.size() == capacity) {
-            System.out.println("Cache log: попытка добавить элемент " + cacheKey + ". Хранилище переполнено: " + this.keyValueStorage);
-            String cacheKeyToDelete = this.cacheStrategy.removeEntry().getKey();
-            this.keyValueStorage.remove(cacheKeyToDelete);
-            System.out.println("Cache log: элемент " + cacheKeyToDelete + " удален. Хранилище: " + this.keyValueStorage);
+        this.addData(cacheKey, value, 0L);
+    }
+
+    /**
+     * Метод добавления данных в хранилище с ограниченным временем жизни.
+     * По истечении времени кэш-элемент удаляется из L1 и L2 кэша.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param value    Значение кэша.
+     * @param ttl      Время жизни кэш-элемента после записи.
+     */
+    public void addData(String cacheKey, Object value, Duration ttl) {
+        if (ttl.isZero() || ttl.isNegative()) {
+            throw new IllegalArgumentException("Время жизни должно быть положительным");
+        }
+        this.addData(cacheKey, value, ttl.toNanos());
+    }
+
+    /**
+     * Метод пакетного добавления данных в хранилище.
+     * Место под всю пачку освобождается одним проходом вытеснения, изменения стратегии применяются
+     * за один захват блокировки, а кэш-элементы, записываемые при этом в L2 кэш, передаются
+     * фоновому писателю одной пачкой. Если задана функция веса, веса всех кэш-элементов
+     * проверяются до изменения хранилища.
+     *
+     * @param data Ключи и значения кэша.
+     */
+    public void addAll(Map<String, ?> data) {
+        if (data.isEmpty()) {
+            return;
+        }
+        this.drainWarmUp();
+        this.expireEntries();
+        int[] entryWeights = this.weighAll(data);
+        if (this.isConcurrent) {
+            this.evictionLock.lock();
+            try {
+                this.drainReadBuffer();
+                this.putAll(data, entryWeights);
+            } finally {
+                this.evictionLock.unlock();
+            }
+        } else {
+            this.putAll(data, entryWeights);
+        }
+    }
+
+    /**
+     * Метод добавления данных в хранилище с учётом статистики.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param value    Значение кэша.
+     * @param ttlNanos Время жизни в наносекундах или 0 - время жизни по умолчанию.
+     */
+    private void addData(String cacheKey, Object value, long ttlNanos) {
+        this.drainWarmUp();
+        this.expireEntries();
+        if (this.stats == null) {
+            this.addData(cacheKey, value, null, ttlNanos);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            this.addData(cacheKey, value, null, ttlNanos);
+        } finally {
+            this.stats.recordAdd(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Метод добавления данных в хранилище с учётом блокировки вытеснения.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param value    Значение кэша.
+     * @param l2Entry  Запись L2 кэша, из которой поднимается кэш-элемент, или null.
+     * @param ttlNanos Время жизни в наносекундах или 0 - время жизни по умолчанию.
+     */
+    private void addData(String cacheKey, Object value, L2CacheEntry l2Entry, long ttlNanos) {
+        if (this.isConcurrent) {
+            this.evictionLock.lock();
+            try {
+                this.drainReadBuffer();
+                this.putData(cacheKey, value, l2Entry, ttlNanos);
+            } finally {
+                this.evictionLock.unlock();
+            }
+        } else {
+            this.putData(cacheKey, value, l2Entry, ttlNanos);
+        }
+    }
+
+    /**
+     * Метод добавления данных в L1 кэш с вытеснением по стратегии.
+     * Вытесненный кэш-элемент передаётся стратегии для записи в L2 кэш
+     * (см. {@link AbstractCacheStrategy#spillToL2(CacheMetaDataEntry, Object)}).
+     * В конкурентном режиме вызывается под блокировкой вытеснения.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param value    Значение кэша.
+     * @param l2Entry  Запись L2 кэша, из которой поднимается кэш-элемент, или null.
+     *                 Приоритет кэш-элемента восстанавливается из неё, срок жизни сохраняется.
+     * @param ttlNanos Время жизни в наносекундах или 0 - время жизни по умолчанию.
+     */
+    private void putData(String cacheKey, Object value, L2CacheEntry l2Entry, long ttlNanos) {
+        int weight = this.weigher == null ? 0 : this.weigh(cacheKey, value);
+        this.putData(cacheKey, value, weight, l2Entry, ttlNanos);
+    }
+
+    /**
+     * Метод добавления данных в L1 кэш с заранее вычисленным весом.
+     * Перезапись ключа, который уже есть в L1 кэше, не вытесняет другие кэш-элементы по вместимости.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param value    Значение кэша.
+     * @param weight   Вес кэш-элемента или 0, если функция веса не задана.
+     * @param l2Entry  Запись L2 кэша, из которой поднимается кэш-элемент, или null.
+     * @param ttlNanos Время жизни в наносекундах или 0 - время жизни по умолчанию.
+     */
+    private void putData(String cacheKey, Object value, int weight, L2CacheEntry l2Entry, long ttlNanos) {
+        if (this.weigher == null) {
+            if (this.keyValueStorage.size() >= this.capacity && !this.keyValueStorage.containsKey(cacheKey)) {
+                this.evictEntry();
+            }
+        } else {
+            this.evictToFit(cacheKey, weight);
+        }
+        this.storeValue(cacheKey, value);
+        if (l2Entry == null) this.cacheStrategy.invalidateL2(cacheKey);
+        if (this.warmUp != null) this.warmUp.markModified(cacheKey);
+        if (this.weights != null) {
+            Integer previousWeight = this.weights.put(cacheKey, weight);
+            this.totalWeight += weight - (previousWeight == null ? 0 : previousWeight);
         }
-        this.keyValueStorage.put(cacheKey, value);
         if (!this.cacheStrategy.contains(cacheKey)) {
-            this.cacheStrategy.addPriorityEntry(cacheKey);
+            if (l2Entry == null) {
+                this.cacheStrategy.addPriorityEntry(cacheKey);
+            } else {
+                this.cacheStrategy.addPriorityEntry(cacheKey, l2Entry.priority());
+            }
+        }
+        if (l2Entry == null || !this.expiry.contains(cacheKey)) {
+            this.scheduleExpiry(cacheKey, ttlNanos);
+        }
+        this.eventListener.onPut(cacheKey);
+        if (this.stats != null) this.stats.recordPut();
+    }
+
+    /**
+     * Метод добавления пачки данных в L1 кэш.
+     * В конкурентном режиме вызывается под блокировкой вытеснения.
+     *
+     * @param data         Ключи и значения кэша.
+     * @param entryWeights Веса кэш-элементов в порядке обхода пачки или null, если функция веса не задана.
+     */
+    private void putAll(Map<String, ?> data, int[] entryWeights) {
+        this.cacheStrategy.beginL2Batch();
+        try {
+            this.evictForBatch(data, entryWeights);
+            int i = 0;
+            for (Map.Entry<String, ?> entry : data.entrySet()) {
+                int weight = entryWeights == null ? 0 : entryWeights[i++];
+                this.putData(entry.getKey(), entry.getValue(), weight, null, 0);
+            }
+        } finally {
+            this.cacheStrategy.endL2Batch();
+        }
+    }
+
+    /**
+     * Метод вычисления весов пачки кэш-элементов.
+     *
+     * @param data Ключи и значения кэша.
+     * @return Веса кэш-элементов в порядке обхода пачки или null, если функция веса не задана.
+     */
+    private int[] weighAll(Map<String, ?> data) {
+        if (this.weigher == null) {
+            return null;
+        }
+        int[] entryWeights = new int[data.size()];
+        int i = 0;
+        for (Map.Entry<String, ?> entry : data.entrySet()) {
+            entryWeights[i++] = this.weigh(entry.getKey(), entry.getValue());
+        }
+        return entryWeights;
+    }
+
+    /**
+     * Метод вытеснения кэш-элементов под всю пачку одним проходом.
+     * Если пачка больше вместимости или её ключи сами оказались вытеснены,
+     * недостающее место освобождается при добавлении кэш-элементов (см. {@link #putData}).
+     *
+     * @param data         Ключи и значения кэша.
+     * @param entryWeights Веса кэш-элементов в порядке обхода пачки или null, если функция веса не задана.
+     */
+    private void evictForBatch(Map<String, ?> data, int[] entryWeights) {
+        if (this.weigher == null) {
+            int added = 0;
+            for (String cacheKey : data.keySet()) {
+                if (!this.keyValueStorage.containsKey(cacheKey)) added++;
+            }
+            int excess = this.keyValueStorage.size() + added - this.capacity;
+            for (; excess > 0 && this.cacheStrategy.size() > 0; excess--) {
+                this.evictEntry();
+            }
+        } else {
+            long incoming = 0;
+            int i = 0;
+            for (String cacheKey : data.keySet()) {
+                incoming += entryWeights[i++] - this.weights.getOrDefault(cacheKey, 0);
+            }
+            while (this.totalWeight + incoming > this.maximumWeight && this.cacheStrategy.size() > 0) {
+                this.evictEntry();
+            }
+        }
+    }
+
+    /**
+     * Метод вытеснения кэш-элементов согласно стратегии, пока новый кэш-элемент не поместится
+     * в ограничение суммарного веса. Прежний вес заменяемого кэш-элемента не учитывается.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param weight   Вес нового кэш-элемента.
+     */
+    private void evictToFit(String cacheKey, int weight) {
+        while (this.totalWeight - this.weights.getOrDefault(cacheKey, 0) + weight > this.maximumWeight
+                && this.cacheStrategy.size() > 0) {
+            this.evictEntry();
+        }
+    }
+
+    /**
+     * Метод проверки, помещается ли кэш-элемент в оставшийся вес, с его учётом при успехе.
+     * Используется при заполнении L1 кэша из L2.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param value    Значение кэша.
+     * @return True - если кэш-элемент помещается.
+     */
+    private boolean fitsWeight(String cacheKey, Object value) {
+        int weight = this.weigh(cacheKey, value);
+        if (this.totalWeight + weight > this.maximumWeight) {
+            return false;
+        }
+        this.weights.put(cacheKey, weight);
+        this.totalWeight += weight;
+        return true;
+    }
+
+    private int weigh(String cacheKey, Object value) {
+        int weight = this.weigher.weigh(cacheKey, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Вес элемента " + cacheKey + " отрицательный");
+        }
+        if (weight > this.maximumWeight) {
+            throw new IllegalArgumentException("Вес элемента " + cacheKey + " превышает максимальный вес хранилища");
+        }
+        return weight;
+    }
+
+    /**
+     * Метод снятия веса удалённого из L1 кэша кэш-элемента.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    private void releaseWeight(String cacheKey) {
+        if (this.weights != null) {
+            Integer weight = this.weights.remove(cacheKey);
+            if (weight != null) this.totalWeight -= weight;
+        }
+    }
+
+    /**
+     * Метод вытеснения кэш-элемента согласно стратегии.
+     * Вытесненный кэш-элемент передаётся стратегии для записи в L2 кэш.
+     */
+    private void evictEntry() {
+        CacheMetaDataEntry<?> evicted = this.cacheStrategy.removeEntry();
+        Object evictedValue = this.offHeapStorage == null
+                ? this.keyValueStorage.remove(evicted.getKey())
+                : this.removeOffHeap(evicted.getKey());
+        boolean spilled = evictedValue != null && this.cacheStrategy.spillToL2(evicted, evictedValue);
+        this.eventListener.onEvict(evicted.getKey(), spilled);
+        if (this.stats != null) this.stats.recordEviction();
+        if (!this.isL2CacheEnabled) this.expiry.remove(evicted.getKey());
+        this.releaseWeight(evicted.getKey());
+    }
+
+    /**
+     * Метод установки срока жизни кэш-элемента.
+     * Если ни время жизни, ни время жизни без обращений не заданы, прежний срок снимается.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param ttlNanos Время жизни в наносекундах или 0 - время жизни по умолчанию.
+     */
+    private void scheduleExpiry(String cacheKey, long ttlNanos) {
+        long ttl = ttlNanos > 0 ? ttlNanos : this.expireAfterWriteNanos;
+        if (ttl > 0 || this.expireAfterAccessNanos > 0) {
+            this.expiry.schedule(cacheKey, ttl, this.expireAfterAccessNanos);
+        } else {
+            this.expiry.remove(cacheKey);
+        }
+    }
+
+    /**
+     * Метод продвижения колеса времени при обращении к хранилищу.
+     * Колесо продвигается не чаще раза в тик. В конкурентном режиме - только если блокировка свободна.
+     */
+    private void expireEntries() {
+        if (this.expiry.isEmpty() || !this.expiry.isAdvanceDue()) {
+            return;
+        }
+        if (!this.isConcurrent) {
+            this.expiry.advance(this::expireEntry);
+        } else if (this.evictionLock.tryLock()) {
+            try {
+                this.expiry.advance(this::expireEntry);
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Метод удаления истёкших кэш-элементов.
+     * Вызывается планировщиком (см. {@link CacheStorageBuilder#setExpiryScheduler(ScheduledExecutorService, Duration)})
+     * или вручную, если к хранилищу долго не обращаются.
+     */
+    public void cleanUp() {
+        this.evictionLock.lock();
+        try {
+            if (!this.expiry.isEmpty()) {
+                this.expiry.advance(this::expireEntry);
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Метод удаления кэш-элемента, срок которого истёк, но колесо времени до него ещё не дошло.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    private void expireKey(String cacheKey) {
+        this.evictionLock.lock();
+        try {
+            if (this.expiry.isExpired(cacheKey)) {
+                this.expiry.remove(cacheKey);
+                this.expireEntry(cacheKey);
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Метод удаления истёкшего кэш-элемента из L1 кэша, очереди стратегии и L2 кэша.
+     * В конкурентном режиме вызывается под блокировкой вытеснения.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    private void expireEntry(String cacheKey) {
+        if (this.warmUp != null) this.warmUp.markModified(cacheKey);
+        this.keyValueStorage.remove(cacheKey);
+        this.releaseWeight(cacheKey);
+        this.cacheStrategy.removeEntryByKey(cacheKey);
+        this.cacheStrategy.removeFromL2(cacheKey);
+        this.eventListener.onExpire(cacheKey);
+        if (this.stats != null) this.stats.recordExpiration();
+    }
+
+    /**
+     * Метод удаления кэш-элемента из off-heap L1 кэша.
+     * Значение декодируется, только если его нужно записать в L2 кэш.
+     *
+     * @param cacheKey Ключ кэша.
+     * @return Значение кэша или null, если оно не нужно.
+     */
+    private Object removeOffHeap(String cacheKey) {
+        Object value = this.cacheStrategy.isSpillOnEvict() ? this.offHeapStorage.get(cacheKey) : null;
+        this.offHeapStorage.remove(cacheKey);
+        return value;
+    }
+
+    /**
+     * Метод записи значения в L1 кэш.
+     * Если off-heap L1 кэшу не хватает памяти, кэш-элементы вытесняются согласно стратегии.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param value    Значение кэша.
+     */
+    private void storeValue(String cacheKey, Object value) {
+        if (this.offHeapStorage == null) {
+            this.keyValueStorage.put(cacheKey, value);
+            return;
+        }
+        while (!this.offHeapStorage.tryPut(cacheKey, value)) {
+            if (this.cacheStrategy.size() == 0) {
+                throw new IllegalStateException("Элемент " + cacheKey + " не помещается в off-heap хранилище");
+            }
+            this.evictEntry();
         }
-        System.out.println("Cache log: добавлен новый элемент " + cacheKey + ". Хранилище: " + this.keyValueStorage);
     }
 
     /**
      * Метод получения данных из кэш хранилища.
      * Увеличивает приоритет в приоритетной очереди кэша, так как элемент был использован.
+     * При промахе по L1 кэшу элемент читается из L2 кэша (если он там есть)
+     * и поднимается в L1 через стратегию с сохранённым в L2 приоритетом.
      *
      * @param cacheKey Ключ кэша.
-     * @return Данные по ключу кэша.
+     * @return Данные по ключу кэша или null, если их нет ни в L1, ни в L2 кэше.
      * @throws IOException            Exception.
      * @throws ClassNotFoundException Exception.
      */
     public Object getData(String cacheKey) throws IOException, ClassNotFoundException {
-        System.out.println("Cache log: используется элемент " + cacheKey);
+        if (this.stats == null) {
+            return this.readData(cacheKey);
+        }
+        long start = System.nanoTime();
+        try {
+            return this.readData(cacheKey);
+        } finally {
+            this.stats.recordGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Метод получения данных с загрузкой при промахе.
+     * Если значения нет ни в L1, ни в L2 кэше, оно загружается загрузчиком и добавляется в хранилище.
+     * Одновременные промахи по одному ключу ожидают одну загрузку и получают её результат.
+     * Если загрузка завершилась исключением, оно передаётся всем ожидающим, а хранилище не изменяется,
+     * поэтому следующий промах загрузит значение заново.
+     * Загрузчик выполняется в вызывающем потоке и не должен запрашивать загрузку своего же ключа.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param loader   Загрузчик значения.
+     * @return Данные по ключу кэша или null, если загрузчик их не нашёл.
+     * @throws IOException            Exception.
+     * @throws ClassNotFoundException Exception.
+     * @throws CacheLoaderException   Если загрузчик бросил проверяемое исключение.
+     * @throws IllegalStateException  Если загрузчик ключа запросил загрузку этого же ключа.
+     */
+    public Object get(String cacheKey, CacheLoader loader) throws IOException, ClassNotFoundException {
+        Object cacheValue = this.getData(cacheKey);
+        if (cacheValue != null) {
+            return cacheValue;
+        }
+        CompletableFuture<Object> load = this.startLoad(cacheKey, loader, false, Runnable::run);
+        try {
+            return load.join();
+        } catch (CompletionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException ioException) throw ioException;
+            if (cause instanceof ClassNotFoundException classNotFoundException) throw classNotFoundException;
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            if (cause instanceof Error error) throw error;
+            throw exception;
+        }
+    }
+
+    /**
+     * Метод асинхронного получения данных с загрузкой при промахе.
+     * Кэш-элемент, находящийся в L1 кэше, возвращается сразу. Иначе чтение L2 кэша и загрузка
+     * выполняются на {@link CacheStorageBuilder#setLoaderExecutor(java.util.concurrent.Executor) исполнителе}.
+     * Одновременные промахи по одному ключу, в том числе из {@link #get(String, CacheLoader)},
+     * ожидают одну загрузку. Требует конкурентного режима.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param loader   Загрузчик значения.
+     * @return Результат: данные по ключу кэша или null, если загрузчик их не нашёл.
+     * Если загрузчик бросил проверяемое исключение, результат завершается {@link CacheLoaderException}.
+     */
+    public CompletableFuture<Object> getAsync(String cacheKey, CacheLoader loader) {
+        if (!this.isConcurrent) {
+            throw new IllegalStateException("Асинхронная загрузка требует конкурентного режима");
+        }
+        if (this.keyValueStorage.containsKey(cacheKey)) {
+            try {
+                Object cacheValue = this.getData(cacheKey);
+                if (cacheValue != null) {
+                    return CompletableFuture.completedFuture(cacheValue);
+                }
+            } catch (IOException | ClassNotFoundException exception) {
+                return CompletableFuture.failedFuture(exception);
+            }
+        }
+        return this.startLoad(cacheKey, loader, true, this.loaderExecutor).copy();
+    }
+
+    /**
+     * Метод запуска загрузки значения или присоединения к уже выполняющейся загрузке того же ключа.
+     *
+     * @param cacheKey    Ключ кэша.
+     * @param loader      Загрузчик значения.
+     * @param readStorage True - если перед загрузкой нужно прочитать L1 и L2 кэш.
+     * @param executor    Исполнитель загрузки.
+     * @return Общий результат загрузки.
+     * @throws IllegalStateException Если загрузку ключа запросил его же загрузчик: ожидание своей загрузки
+     *                               никогда бы не завершилось.
+     */
+    private CompletableFuture<Object> startLoad(String cacheKey, CacheLoader loader, boolean readStorage, Executor executor) {
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = this.inFlightLoads.putIfAbsent(cacheKey, load);
+        if (inFlight != null) {
+            if (this.loaderThreads.get(cacheKey) == Thread.currentThread()) {
+                throw new IllegalStateException("Рекурсивная загрузка элемента " + cacheKey);
+            }
+            return inFlight;
+        }
+        try {
+            executor.execute(() -> this.load(cacheKey, loader, readStorage, load));
+        } catch (RuntimeException exception) {
+            this.inFlightLoads.remove(cacheKey, load);
+            load.completeExceptionally(exception);
+        }
+        return load;
+    }
+
+    /**
+     * Метод загрузки значения с добавлением в хранилище.
+     * Значение добавляется до завершения загрузки, поэтому после неё промаха по ключу не будет.
+     *
+     * @param cacheKey    Ключ кэша.
+     * @param loader      Загрузчик значения.
+     * @param readStorage True - если перед загрузкой нужно прочитать L1 и L2 кэш.
+     * @param load        Общий результат загрузки.
+     */
+    private void load(String cacheKey, CacheLoader loader, boolean readStorage, CompletableFuture<Object> load) {
+        try {
+            // Значение могло быть добавлено загрузкой, завершившейся между промахом и её запуском
+            Object cacheValue = readStorage ? this.getData(cacheKey) : this.keyValueStorage.get(cacheKey);
+            if (cacheValue == null || !readStorage && this.expiry.isExpired(cacheKey)) {
+                this.loaderThreads.put(cacheKey, Thread.currentThread());
+                try {
+                    cacheValue = loader.load(cacheKey);
+                } catch (RuntimeException exception) {
+                    throw exception;
+                } catch (Exception exception) {
+                    throw new CacheLoaderException(cacheKey, exception);
+                } finally {
+                    this.loaderThreads.remove(cacheKey);
+                }
+                if (cacheValue != null) {
+                    this.addData(cacheKey, cacheValue);
+                }
+            }
+            this.inFlightLoads.remove(cacheKey, load);
+            load.complete(cacheValue);
+        } catch (Throwable exception) {
+            this.inFlightLoads.remove(cacheKey, load);
+            load.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * Метод чтения данных из L1 кэша, а при промахе - из L2 кэша.
+     *
+     * @param cacheKey Ключ кэша.
+     * @return Данные по ключу кэша или null, если их нет ни в L1, ни в L2 кэше.
+     * @throws IOException            Exception.
+     * @throws ClassNotFoundException Exception.
+     */
+    private Object readData(String cacheKey) throws IOException, ClassNotFoundException {
+        this.drainWarmUp();
+        this.expireEntries();
         Object cacheValue = this.keyValueStorage.get(cacheKey);
-        this.cacheStrategy.increaseCachePriority(cacheKey, cacheValue);
+        if (cacheValue != null && !this.expiry.touch(cacheKey, this.expireAfterAccessNanos)) {
+            this.expireKey(cacheKey);
+            cacheValue = null;
+        }
+        if (cacheValue != null) {
+            this.eventListener.onHit(cacheKey);
+            if (this.stats != null) this.stats.recordHit();
+        } else {
+            this.eventListener.onMiss(cacheKey);
+            if (this.stats != null) this.stats.recordMiss();
+            L2CacheEntry l2Entry = this.readFromL2(cacheKey);
+            if (l2Entry == null) {
+                return null;
+            }
+            if (this.expiry.isExpired(cacheKey)) {
+                this.expireKey(cacheKey);
+                return null;
+            }
+            cacheValue = l2Entry.value();
+            this.eventListener.onL2Load(cacheKey);
+            this.addData(cacheKey, cacheValue, l2Entry, 0);
+        }
+        if (this.isConcurrent) {
+            this.recordAccess(cacheKey);
+        } else {
+            this.cacheStrategy.increaseCachePriority(cacheKey, cacheValue);
+        }
         return cacheValue;
     }
 
     /**
-     * Метод отчистки L1 кэш-хранилища.
+     * Метод пакетного получения данных из кэш хранилища.
+     * Промахи по L1 кэшу читаются из L2 кэша одной пачкой. Подъём кэш-элементов из L2
+     * и увеличение приоритетов всех найденных кэш-элементов выполняются за один захват блокировки,
+     * а записи в L2 кэш по политике допуска передаются фоновому писателю одной пачкой.
+     * Повторяющиеся ключи учитываются один раз.
+     *
+     * @param cacheKeys Ключи кэша.
+     * @return Ключи и данные, найденные в L1 или L2 кэше. Отсутствующие ключи не включаются.
+     * @throws IOException            Exception.
+     * @throws ClassNotFoundException Exception.
+     */
+    public Map<String, Object> getAll(Collection<String> cacheKeys) throws IOException, ClassNotFoundException {
+        this.drainWarmUp();
+        this.expireEntries();
+        Map<String, Object> result = new HashMap<>((int) (cacheKeys.size() / 0.75f) + 1);
+        Set<String> misses = new LinkedHashSet<>();
+        for (String cacheKey : cacheKeys) {
+            if (result.containsKey(cacheKey) || misses.contains(cacheKey)) {
+                continue;
+            }
+            Object cacheValue = this.keyValueStorage.get(cacheKey);
+            if (cacheValue != null && !this.expiry.touch(cacheKey, this.expireAfterAccessNanos)) {
+                this.expireKey(cacheKey);
+                cacheValue = null;
+            }
+            if (cacheValue != null) {
+                result.put(cacheKey, cacheValue);
+                this.eventListener.onHit(cacheKey);
+                if (this.stats != null) this.stats.recordHit();
+            } else {
+                misses.add(cacheKey);
+                this.eventListener.onMiss(cacheKey);
+                if (this.stats != null) this.stats.recordMiss();
+            }
+        }
+        Map<String, L2CacheEntry> loaded = misses.isEmpty() ? Collections.emptyMap() : this.readAllFromL2(misses);
+        loaded.keySet().removeIf(cacheKey -> {
+            if (!this.expiry.isExpired(cacheKey)) {
+                return false;
+            }
+            this.expireKey(cacheKey);
+            return true;
+        });
+        if (this.isConcurrent) {
+            this.evictionLock.lock();
+            try {
+                this.drainReadBuffer();
+                this.applyReads(result, loaded);
+            } finally {
+                this.evictionLock.unlock();
+            }
+        } else {
+            this.applyReads(result, loaded);
+        }
+        return result;
+    }
+
+    /**
+     * Метод применения пакетного чтения к стратегии: подъём кэш-элементов из L2 кэша
+     * и увеличение приоритетов всех найденных кэш-элементов.
+     * В конкурентном режиме вызывается под блокировкой вытеснения.
+     *
+     * @param result Найденные в L1 кэше ключи и данные. Дополняется поднятыми из L2 кэш-элементами.
+     * @param loaded Ключи и записи, прочитанные из L2 кэша. Кэш-элемент, добавленный в L1 кэш
+     *               после чтения, не заменяется.
+     * @throws IOException            Exception.
+     * @throws ClassNotFoundException Exception.
+     */
+    private void applyReads(Map<String, Object> result, Map<String, L2CacheEntry> loaded)
+            throws IOException, ClassNotFoundException {
+        this.cacheStrategy.beginL2Batch();
+        try {
+            for (Map.Entry<String, L2CacheEntry> entry : loaded.entrySet()) {
+                Object cacheValue = this.keyValueStorage.get(entry.getKey());
+                if (cacheValue == null) {
+                    cacheValue = entry.getValue().value();
+                    this.eventListener.onL2Load(entry.getKey());
+                    this.putData(entry.getKey(), cacheValue, entry.getValue(), 0);
+                }
+                result.put(entry.getKey(), cacheValue);
+            }
+            for (Map.Entry<String, Object> entry : result.entrySet()) {
+                this.cacheStrategy.increaseCachePriority(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            this.cacheStrategy.endL2Batch();
+        }
+    }
+
+    /**
+     * Метод чтения нескольких кэш-элементов из L2 кэша одной пачкой с учётом статистики.
+     *
+     * @param cacheKeys Ключи кэша.
+     * @return Ключи и записи, найденные в L2 кэше.
+     * @throws IOException В случае неудачного чтения кэш-файла.
+     */
+    private Map<String, L2CacheEntry> readAllFromL2(Collection<String> cacheKeys) throws IOException {
+        if (this.stats == null) {
+            return this.cacheStrategy.readAllFromL2(cacheKeys);
+        }
+        long start = System.nanoTime();
+        Map<String, L2CacheEntry> loaded = this.cacheStrategy.readAllFromL2(cacheKeys);
+        this.stats.recordL2Reads(cacheKeys.size(), loaded.size(), System.nanoTime() - start);
+        return loaded;
+    }
+
+    /**
+     * Метод чтения кэш-элемента из L2 кэша с учётом статистики.
+     *
+     * @param cacheKey Ключ кэша.
+     * @return Запись кэша или null, если L2 кэш отключен или не содержит ключ.
+     * @throws IOException В случае неудачного чтения кэш-файла.
+     */
+    private L2CacheEntry readFromL2(String cacheKey) throws IOException {
+        if (this.stats == null) {
+            return this.cacheStrategy.readFromL2(cacheKey);
+        }
+        long start = System.nanoTime();
+        L2CacheEntry l2Entry = this.cacheStrategy.readFromL2(cacheKey);
+        this.stats.recordL2Read(l2Entry != null, System.nanoTime() - start);
+        return l2Entry;
+    }
+
+    /**
+     * Метод получения снимка статистики кэш-хранилища.
+     *
+     * @return Снимок статистики или {@link CacheStats#EMPTY}, если сбор статистики отключен.
+     */
+    public CacheStats stats() {
+        return this.stats == null ? CacheStats.EMPTY : this.stats.snapshot();
+    }
+
+    /**
+     * Метод удаления данных из кэш-хранилища.
+     * Удаляет кэш-элемент из L1 кэша, приоритетной очереди и L2 кэша.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    public void removeData(String cacheKey) {
+        this.evictionLock.lock();
+        try {
+            this.keyValueStorage.remove(cacheKey);
+            this.cacheStrategy.removeEntryByKey(cacheKey);
+            this.cacheStrategy.removeFromL2(cacheKey);
+            this.expiry.remove(cacheKey);
+            this.releaseWeight(cacheKey);
+            if (this.warmUp != null) this.warmUp.markModified(cacheKey);
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Метод отчистки L1 и L2 кэша.
+     */
+    public void clearAll() {
+        this.evictionLock.lock();
+        try {
+            this.clear();
+            this.cacheStrategy.clearL2();
+            this.expiry.clear();
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Метод отчистки L1 кэш-хранилища. Прерывает прогрев L1 кэша.
      */
     public void clear() {
-        this.keyValueStorage.clear();
-        this.cacheStrategy.clear();
+        this.evictionLock.lock();
+        try {
+            if (this.warmUp != null) this.warmUp.cancel();
+            if (this.isConcurrent) this.readBuffer.clear();
+            this.keyValueStorage.clear();
+            this.cacheStrategy.clear();
+            if (!this.isL2CacheEnabled) this.expiry.clear();
+            if (this.weights != null) {
+                this.weights.clear();
+                this.totalWeight = 0;
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Метод закрытия кэш-хранилища.
+     * Записывает снимок L1 кэша, если снимки включены, дожидается записи всех отложенных данных
+     * в L2 кэш и сбрасывает кэш-файл на диск.
+     *
+     * @throws IOException В случае неудачной записи снимка или закрытия L2 кэша.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.cleanUpTask != null) this.cleanUpTask.cancel(false);
+        if (this.snapshotTask != null) this.snapshotTask.cancel(false);
+        if (this.warmUp != null) this.warmUp.close();
+        try {
+            if (this.snapshotPath != null) this.checkpoint();
+        } finally {
+            this.evictionLock.lock();
+            try {
+                this.cacheStrategy.close();
+            } finally {
+                this.evictionLock.unlock();
+                if (this.stats != null && !this.isShard) this.stats.unregister();
+            }
+        }
+    }
+
+    /**
+     * Метод получения хода прогрева L1 кэша из L2 кэша.
+     *
+     * @return Ход прогрева или {@link L2WarmUpProgress#COMPLETED}, если прогрев не нужен.
+     */
+    public L2WarmUpProgress getWarmUpProgress() {
+        return this.warmUp == null ? L2WarmUpProgress.COMPLETED : this.warmUp.progress();
+    }
+
+    /**
+     * Метод ожидания завершения прогрева L1 кэша из L2 кэша.
+     * В однопоточном режиме прочитанные прогревом кэш-элементы поднимаются в L1 кэш этим методом.
+     *
+     * @param timeout Наибольшее время ожидания.
+     * @return True - если прогрев завершён.
+     * @throws InterruptedException Если поток был прерван во время ожидания.
+     */
+    public boolean awaitWarmUp(Duration timeout) throws InterruptedException {
+        if (this.warmUp == null) {
+            return true;
+        }
+        if (!this.warmUp.awaitRead(timeout)) {
+            return false;
+        }
+        this.drainWarmUp();
+        return !this.warmUp.isActive();
+    }
+
+    /**
+     * Метод подъёма пачки, прочитанной прогревом, в L1 кэш под блокировкой вытеснения.
+     * Вызывается потоком прогрева.
+     *
+     * @param batch Ключи и записи, прочитанные из L2 кэша.
+     * @return False - если в L1 кэше не осталось места и прогрев нужно завершить.
+     */
+    boolean applyWarmUp(Map<String, L2CacheEntry> batch) {
+        this.evictionLock.lock();
+        try {
+            return this.putWarmUp(batch);
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Метод подъёма пачек, прочитанных прогревом, в L1 кэш в однопоточном режиме.
+     * Вызывается в начале операций хранилища.
+     */
+    private void drainWarmUp() {
+        if (this.warmUp == null || this.isConcurrent || !this.warmUp.isActive()) {
+            return;
+        }
+        Map<String, L2CacheEntry> batch;
+        while ((batch = this.warmUp.poll()) != null) {
+            if (!this.putWarmUp(batch)) {
+                this.warmUp.cancel();
+                break;
+            }
+        }
+        this.warmUp.finishIfDrained();
+    }
+
+    /**
+     * Метод подъёма пачки, прочитанной прогревом, в L1 кэш.
+     * Кэш-элемент поднимается, только если для него есть свободное место: прогрев ничего не вытесняет.
+     * Ключи, которые уже есть в L1 кэше или изменены после начала прогрева, пропускаются.
+     * В конкурентном режиме вызывается под блокировкой вытеснения.
+     *
+     * @param batch Ключи и записи, прочитанные из L2 кэша.
+     * @return False - если в L1 кэше не осталось места.
+     */
+    private boolean putWarmUp(Map<String, L2CacheEntry> batch) {
+        int added = 0;
+        boolean hasRoom = true;
+        for (Map.Entry<String, L2CacheEntry> entry : batch.entrySet()) {
+            String cacheKey = entry.getKey();
+            Object value = entry.getValue().value();
+            if (this.keyValueStorage.containsKey(cacheKey) || this.warmUp.isModified(cacheKey)) {
+                continue;
+            }
+            if (this.weigher == null) {
+                if (this.keyValueStorage.size() >= this.capacity) {
+                    hasRoom = false;
+                    break;
+                }
+            } else if (!this.fitsWeight(cacheKey, value)) {
+                continue;
+            }
+            if (this.offHeapStorage == null) {
+                this.keyValueStorage.put(cacheKey, value);
+            } else if (!this.offHeapStorage.tryPut(cacheKey, value)) {
+                this.releaseWeight(cacheKey);
+                hasRoom = false;
+                break;
+            }
+            this.cacheStrategy.addPriorityEntry(cacheKey, entry.getValue().priority());
+            this.scheduleExpiry(cacheKey, 0);
+            this.eventListener.onL2Load(cacheKey);
+            added++;
+        }
+        this.warmUp.recordLoaded(added);
+        return hasRoom;
+    }
+
+    /**
+     * @return Суммарный вес кэш-элементов L1 кэша или 0, если функция веса не задана.
+     */
+    public long getTotalWeight() {
+        return this.totalWeight;
+    }
+
+    public boolean isConcurrent() {
+        return this.isConcurrent;
+    }
+
+    /**
+     * Метод записи обращения к кэш-элементу в конкурентном режиме.
+     * Если буфер накопил достаточно обращений - применяет их, когда блокировка свободна.
+     * Если буфер переполнен - дожидается блокировки.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    private void recordAccess(String cacheKey) {
+        int pending = this.readBuffer.record(cacheKey);
+        if (pending >= ReadBuffer.MAX_PENDING) {
+            this.evictionLock.lock();
+        } else if (pending < ReadBuffer.DRAIN_THRESHOLD || !this.evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            this.drainReadBuffer();
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Метод применения накопленных обращений к стратегии.
+     * Вызывается под блокировкой вытеснения, в том числе при добавлении данных, поэтому
+     * проверяемые исключения стратегии передаются непроверяемыми.
+     *
+     * @throws UncheckedIOException  Если стратегия не смогла записать кэш-элемент в L2 кэш.
+     * @throws IllegalStateException Если стратегия бросила {@link ClassNotFoundException}.
+     */
+    private void drainReadBuffer() {
+        String cacheKey;
+        while ((cacheKey = this.readBuffer.poll()) != null) {
+            Object cacheValue = this.keyValueStorage.get(cacheKey);
+            if (cacheValue == null) {
+                continue;
+            }
+            try {
+                this.cacheStrategy.increaseCachePriority(cacheKey, cacheValue);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            } catch (ClassNotFoundException exception) {
+                throw new IllegalStateException("Не удалось применить обращение к элементу " + cacheKey, exception);
+            }
+        }
     }
 }
@@ -1,13 +1,32 @@
 package org.buldakov.model.cache;
 
+import org.buldakov.model.cache.admission.L2AdmissionPolicy;
+import org.buldakov.model.cache.codec.ValueCodec;
 import org.buldakov.model.cache.enums.DeleteStrategyType;
+import org.buldakov.model.cache.enums.L2BackpressurePolicy;
+import org.buldakov.model.cache.enums.L2Compression;
+import org.buldakov.model.cache.enums.L2FlushPolicy;
+import org.buldakov.model.cache.enums.L2TieringMode;
+import org.buldakov.model.cache.enums.L2WarmUpMode;
+import org.buldakov.model.cache.event.CacheEventListener;
+import org.buldakov.model.cache.filesystem.L2CacheSettings;
+import org.buldakov.model.cache.filesystem.L2CompressionDictionary;
+import org.buldakov.model.cache.stats.StatsCounter;
 import org.buldakov.model.cache.strategy.AbstractCacheStrategy;
+import org.buldakov.model.cache.strategy.ArcCacheStrategy;
+import org.buldakov.model.cache.strategy.ClockCacheStrategy;
 import org.buldakov.model.cache.strategy.IntegerPriorityCacheStrategy;
 import org.buldakov.model.cache.strategy.LruCacheStrategy;
 import org.buldakov.model.cache.strategy.MfuCacheStrategy;
+import org.buldakov.model.cache.strategy.WTinyLfuCacheStrategy;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Билдер для {@link CacheStorage}.
@@ -26,19 +45,111 @@ public class CacheStorageBuilder {
     private int capacity;
 
     /**
-     * Стратегия вытеснения кэш-элементов.
+     * Стратегия вытеснения кэш-элементов. Создаётся при построении хранилища
+     * под итоговую вместимость (см. {@link #createCacheStrategy()}).
      */
-    private AbstractCacheStrategy<?> cacheStrategy;
+    private DeleteStrategyType cacheStrategyType;
 
     /**
      * Переключатель "включен ли L2 кэш".
      */
     private boolean isL2CacheEnabled;
 
+    /**
+     * Переключатель "включен ли конкурентный режим".
+     */
+    private boolean isConcurrencyEnabled;
+
+    /**
+     * Переключатель "хранится ли L1 кэш вне кучи".
+     */
+    private boolean isOffHeapEnabled;
+
+    /**
+     * Ограничение прямой памяти L1 кэша вне кучи в байтах.
+     */
+    private long offHeapMaxMemory;
+
+    /**
+     * Настройки L2 кэша.
+     */
+    private L2CacheSettings l2CacheSettings = new L2CacheSettings();
+
+    /**
+     * Слушатель событий кэш-хранилища.
+     */
+    private CacheEventListener eventListener = CacheEventListener.NO_OP;
+
+    /**
+     * Накопитель статистики или null, если сбор статистики отключен.
+     */
+    private StatsCounter statsCounter;
+
+    /**
+     * Переключатель "билдер секции секционированного хранилища".
+     * MBean статистики секций общий, его регистрацией владеет {@link ShardedCacheStorage}.
+     */
+    private boolean isShard;
+
+    /**
+     * Время жизни кэш-элемента после записи по умолчанию или null, если оно не ограничено.
+     */
+    private Duration expireAfterWrite;
+
+    /**
+     * Время жизни кэш-элемента без обращений или null, если оно не ограничено.
+     */
+    private Duration expireAfterAccess;
+
+    /**
+     * Планировщик удаления истёкших кэш-элементов или null.
+     */
+    private ScheduledExecutorService expiryScheduler;
+
+    /**
+     * Период удаления истёкших кэш-элементов планировщиком.
+     */
+    private Duration expiryCleanUpPeriod;
+
+    /**
+     * Функция веса кэш-элементов или null, если вместимость ограничена количеством кэш-элементов.
+     */
+    private Weigher weigher;
+
+    /**
+     * Ограничение суммарного веса кэш-элементов.
+     */
+    private long maximumWeight;
+
+    /**
+     * Исполнитель асинхронной загрузки значений.
+     */
+    private Executor loaderExecutor = ForkJoinPool.commonPool();
+
+    /**
+     * Количество секций {@link ShardedCacheStorage секционированного хранилища}.
+     */
+    private int shardCount = 1;
+
+    /**
+     * Путь к файлу снимка L1 кэша или null, если снимки отключены.
+     */
+    private Path snapshotPath;
+
+    /**
+     * Планировщик записи снимков L1 кэша или null.
+     */
+    private ScheduledExecutorService snapshotScheduler;
+
+    /**
+     * Период записи снимков L1 кэша планировщиком.
+     */
+    private Duration snapshotPeriod;
+
     public CacheStorageBuilder() {
         this.keyValueStorage = new HashMap<>();
         this.capacity = 16;
-        this.cacheStrategy = new IntegerPriorityCacheStrategy(this.capacity);
+        this.cacheStrategyType = DeleteStrategyType.LFU;
     }
 
     public CacheStorageBuilder setKeyValueStorage(
@@ -53,11 +164,23 @@ public class CacheStorageBuilder {
     }
 
     public CacheStorageBuilder setCacheStrategy(DeleteStrategyType deleteStrategyType) {
-        switch (deleteStrategyType) {
-            case LFU -> this.cacheStrategy = new IntegerPriorityCacheStrategy(this.capacity);
-            case MFU -> this.cacheStrategy = new MfuCacheStrategy(this.capacity);
-            case LRU -> this.cacheStrategy = new LruCacheStrategy(this.capacity);
+        this.cacheStrategyType = deleteStrategyType;
+        return this;
+    }
+
+    /**
+     * Метод установки количества секций для {@link #buildSharded()}.
+     * Ключи распределяются по секциям по хэшу. Вместимость, ограничения веса, off-heap памяти
+     * и размера L2 кэша делятся между секциями поровну.
+     *
+     * @param shardCount Количество секций.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setShardCount(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Количество секций должно быть положительным");
         }
+        this.shardCount = shardCount;
         return this;
     }
 
@@ -66,6 +189,341 @@ public class CacheStorageBuilder {
         return this;
     }
 
+    /**
+     * Метод установки директории L2 кэша.
+     *
+     * @param directory Директория L2 кэша.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2Directory(Path directory) {
+        this.l2CacheSettings.setDirectory(directory);
+        return this;
+    }
+
+    /**
+     * Метод установки ограничения общего размера L2 кэша.
+     * При его превышении самые старые записи L2 кэша отбрасываются.
+     *
+     * @param maxSize     Ограничение размера в байтах.
+     * @param segmentSize Размер одного сегмента в байтах.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2MaxSize(long maxSize, long segmentSize) {
+        this.l2CacheSettings.setMaxSize(maxSize).setSegmentSize(segmentSize);
+        return this;
+    }
+
+    /**
+     * Метод установки порога уплотнения L2 кэша.
+     *
+     * @param compactionThreshold Доля устаревших записей в закрытых сегментах, при которой они уплотняются.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2CompactionThreshold(double compactionThreshold) {
+        this.l2CacheSettings.setCompactionThreshold(compactionThreshold);
+        return this;
+    }
+
+    /**
+     * Метод установки вместимости очереди отложенной записи в L2 кэш.
+     *
+     * @param writeQueueCapacity Вместимость очереди.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2WriteQueueCapacity(int writeQueueCapacity) {
+        this.l2CacheSettings.setWriteQueueCapacity(writeQueueCapacity);
+        return this;
+    }
+
+    /**
+     * Метод установки максимального количества записей в одной пачке записи в L2 кэш.
+     *
+     * @param writeBatchSize Размер пачки.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2WriteBatchSize(int writeBatchSize) {
+        this.l2CacheSettings.setWriteBatchSize(writeBatchSize);
+        return this;
+    }
+
+    /**
+     * Метод установки политики сброса L2 кэш-файла на диск.
+     *
+     * @param flushPolicy   Политика сброса.
+     * @param flushInterval Интервал сброса (используется политикой {@link L2FlushPolicy#TIMED}).
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2FlushPolicy(L2FlushPolicy flushPolicy, Duration flushInterval) {
+        this.l2CacheSettings.setFlushPolicy(flushPolicy).setFlushInterval(flushInterval);
+        return this;
+    }
+
+    /**
+     * Метод установки политики поведения при переполнении очереди записи в L2 кэш.
+     *
+     * @param backpressurePolicy Политика.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2BackpressurePolicy(L2BackpressurePolicy backpressurePolicy) {
+        this.l2CacheSettings.setBackpressurePolicy(backpressurePolicy);
+        return this;
+    }
+
+    /**
+     * Метод установки режима наполнения L2 кэша.
+     *
+     * @param tieringMode Режим наполнения.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2TieringMode(L2TieringMode tieringMode) {
+        this.l2CacheSettings.setTieringMode(tieringMode);
+        return this;
+    }
+
+    /**
+     * Метод установки режима прогрева L1 кэша из L2 кэша при создании хранилища.
+     * По умолчанию - {@link L2WarmUpMode#BACKGROUND}.
+     *
+     * @param warmUpMode Режим прогрева.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2WarmUpMode(L2WarmUpMode warmUpMode) {
+        this.l2CacheSettings.setWarmUpMode(warmUpMode);
+        return this;
+    }
+
+    /**
+     * Метод установки политики допуска кэш-элементов в L2 кэш.
+     * Используется в режиме {@link L2TieringMode#ADMISSION}, по умолчанию -
+     * {@link org.buldakov.model.cache.admission.AverageAdmissionPolicy}.
+     *
+     * @param admissionPolicy Политика допуска.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2AdmissionPolicy(L2AdmissionPolicy admissionPolicy) {
+        this.l2CacheSettings.setAdmissionPolicy(admissionPolicy);
+        return this;
+    }
+
+    /**
+     * Метод установки режима сжатия записей L2 кэша. По умолчанию - {@link L2Compression#NONE}.
+     *
+     * @param compression Режим сжатия.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2Compression(L2Compression compression) {
+        this.l2CacheSettings.setCompression(compression);
+        return this;
+    }
+
+    /**
+     * Метод установки режима сжатия записей L2 кэша с предустановленным словарём.
+     * Словарь можно обучить по образцам значений через {@link L2CompressionDictionary}.
+     *
+     * @param compression Режим сжатия.
+     * @param dictionary  Словарь или null.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2Compression(L2Compression compression, byte[] dictionary) {
+        this.l2CacheSettings.setCompression(compression).setCompressionDictionary(dictionary);
+        return this;
+    }
+
+    /**
+     * Метод установки размера блока записей L2 кэша, которые сжимаются вместе.
+     * Больший блок сжимается лучше, но чтение одного ключа распаковывает весь его блок.
+     *
+     * @param blockSize Размер блока до сжатия в байтах.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setL2CompressionBlockSize(int blockSize) {
+        this.l2CacheSettings.setCompressionBlockSize(blockSize);
+        return this;
+    }
+
+    /**
+     * Метод установки кодека, которым значения кэша записываются в L2 кэш и off-heap L1 кэш.
+     * По умолчанию используется {@link org.buldakov.model.cache.codec.BinaryCodec}.
+     *
+     * @param valueCodec Кодек значений.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setValueCodec(ValueCodec<?> valueCodec) {
+        this.l2CacheSettings.setValueCodec(valueCodec);
+        return this;
+    }
+
+    /**
+     * Метод включения конкурентного режима.
+     * Позволяет безопасно использовать хранилище из нескольких потоков без внешней блокировки.
+     *
+     * @return Билдер.
+     */
+    public CacheStorageBuilder enableConcurrency() {
+        this.isConcurrencyEnabled = true;
+        return this;
+    }
+
+    /**
+     * Метод включения хранения L1 кэша вне кучи.
+     * Значения кодируются {@link #setValueCodec(ValueCodec) кодеком} в прямую память,
+     * что позволяет хранить гигабайты данных без роста кучи и пауз сборщика мусора.
+     * Если элементу не хватает памяти, кэш-элементы вытесняются согласно стратегии.
+     *
+     * @param maxMemory Ограничение прямой памяти в байтах.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder enableOffHeapStorage(long maxMemory) {
+        if (maxMemory <= 0) {
+            throw new IllegalArgumentException("Ограничение off-heap памяти должно быть положительным");
+        }
+        this.isOffHeapEnabled = true;
+        this.offHeapMaxMemory = maxMemory;
+        return this;
+    }
+
+    /**
+     * Метод установки слушателя событий кэш-хранилища и L2 кэша.
+     * По умолчанию события игнорируются. Для журналирования можно использовать
+     * {@link org.buldakov.model.cache.event.LoggingCacheEventListener}.
+     *
+     * @param eventListener Слушатель событий.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setEventListener(CacheEventListener eventListener) {
+        this.eventListener = eventListener;
+        this.l2CacheSettings.setEventListener(eventListener);
+        return this;
+    }
+
+    /**
+     * Метод включения сбора статистики: счётчиков попаданий, промахов, вытеснений,
+     * обращений к L2 кэшу и гистограмм длительности операций.
+     * Статистика доступна через {@link CacheStorage#stats()}.
+     *
+     * @return Билдер.
+     */
+    public CacheStorageBuilder enableStats() {
+        if (this.statsCounter == null) {
+            this.statsCounter = new StatsCounter();
+            this.l2CacheSettings.setStatsCounter(this.statsCounter);
+        }
+        return this;
+    }
+
+    /**
+     * Метод включения сбора статистики с публикацией через JMX.
+     * MBean регистрируется под именем {@code org.buldakov.ardecs:type=CacheStats,name=<name>}
+     * и снимается с регистрации при закрытии хранилища.
+     *
+     * @param mbeanName Имя кэш-хранилища в JMX.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder enableStats(String mbeanName) {
+        this.enableStats();
+        this.statsCounter.register(mbeanName);
+        return this;
+    }
+
+    /**
+     * Метод установки времени жизни кэш-элементов после записи по умолчанию.
+     * Для отдельного кэш-элемента его можно задать в {@link CacheStorage#addData(String, Object, Duration)}.
+     *
+     * @param expireAfterWrite Время жизни.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setExpireAfterWrite(Duration expireAfterWrite) {
+        this.expireAfterWrite = requirePositive(expireAfterWrite);
+        return this;
+    }
+
+    /**
+     * Метод установки времени жизни кэш-элементов без обращений.
+     * Каждое обращение к кэш-элементу продлевает его срок, но не дальше времени жизни после записи.
+     *
+     * @param expireAfterAccess Время жизни без обращений.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setExpireAfterAccess(Duration expireAfterAccess) {
+        this.expireAfterAccess = requirePositive(expireAfterAccess);
+        return this;
+    }
+
+    /**
+     * Метод установки планировщика удаления истёкших кэш-элементов.
+     * Без планировщика истёкшие кэш-элементы удаляются при обращениях к хранилищу.
+     * Требует {@link #enableConcurrency() конкурентного режима}.
+     *
+     * @param scheduler Планировщик.
+     * @param period    Период удаления.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setExpiryScheduler(ScheduledExecutorService scheduler, Duration period) {
+        this.expiryScheduler = scheduler;
+        this.expiryCleanUpPeriod = requirePositive(period);
+        return this;
+    }
+
+    /**
+     * Метод ограничения вместимости L1 кэша суммарным весом кэш-элементов вместо их количества.
+     * При добавлении кэш-элемента вытесняется столько кэш-элементов, сколько нужно, чтобы он поместился.
+     * {@link #setCapacity(int) Вместимость} в этом режиме служит оценкой количества кэш-элементов
+     * для начальных размеров структур стратегии.
+     *
+     * @param maximumWeight Ограничение суммарного веса.
+     * @param weigher       Функция веса кэш-элемента.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setMaximumWeight(long maximumWeight, Weigher weigher) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Максимальный вес должен быть положительным");
+        }
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        return this;
+    }
+
+    /**
+     * Метод установки исполнителя, на котором выполняется загрузка значений
+     * в {@link CacheStorage#getAsync(String, CacheLoader)}. По умолчанию - {@link ForkJoinPool#commonPool()}.
+     *
+     * @param loaderExecutor Исполнитель.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setLoaderExecutor(Executor loaderExecutor) {
+        this.loaderExecutor = loaderExecutor;
+        return this;
+    }
+
+    /**
+     * Метод включения снимков L1 кэша.
+     * Снимок содержит кэш-элементы L1 кэша вместе с их приоритетами в стратегии и записывается
+     * при закрытии хранилища, методом {@link CacheStorage#checkpoint()} или {@link #setSnapshotScheduler планировщиком}.
+     * При создании хранилища L1 кэш и очередь стратегии восстанавливаются из снимка.
+     * Значения кодируются {@link #setValueCodec(ValueCodec) кодеком значений}.
+     *
+     * @param snapshotPath Путь к файлу снимка.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder enableSnapshots(Path snapshotPath) {
+        this.snapshotPath = snapshotPath;
+        return this;
+    }
+
+    /**
+     * Метод установки планировщика периодической записи снимков L1 кэша.
+     * Требует {@link #enableConcurrency() конкурентного режима}.
+     *
+     * @param scheduler Планировщик.
+     * @param period    Период записи снимков.
+     * @return Билдер.
+     */
+    public CacheStorageBuilder setSnapshotScheduler(ScheduledExecutorService scheduler, Duration period) {
+        this.snapshotScheduler = scheduler;
+        this.snapshotPeriod = requirePositive(period);
+        return this;
+    }
+
     public HashMap<String, Object> getKeyValueStorage() {
         return this.keyValueStorage;
     }
@@ -74,15 +532,206 @@ public class CacheStorageBuilder {
         return this.capacity;
     }
 
-    public AbstractCacheStrategy<?> getCacheStrategy() {
-        return this.cacheStrategy;
+    public DeleteStrategyType getCacheStrategyType() {
+        return this.cacheStrategyType;
+    }
+
+    public int getShardCount() {
+        return this.shardCount;
     }
 
+    /**
+     * Метод построения кэш-хранилища.
+     *
+     * @return Кэш-хранилище.
+     * @throws IOException           В случае неудачной активации L2 кэша.
+     * @throws IllegalStateException Если настройки несовместимы.
+     */
     public CacheStorage build() throws IOException {
+        this.validate();
         return new CacheStorage(this);
     }
 
+    /**
+     * Метод построения секционированного хранилища из {@link #setShardCount(int) заданного количества секций}.
+     *
+     * @return Секционированное хранилище.
+     * @throws IOException           В случае неудачной активации L2 кэша одной из секций.
+     * @throws IllegalStateException Если настройки несовместимы.
+     */
+    public ShardedCacheStorage buildSharded() throws IOException {
+        this.validate();
+        return new ShardedCacheStorage(this);
+    }
+
+    /**
+     * Метод проверки совместимости настроек. Выполняется до создания хранилища,
+     * поэтому при ошибке не остаётся запущенных потоков и открытых файлов.
+     *
+     * @throws IllegalStateException Если настройки несовместимы.
+     */
+    private void validate() {
+        if (this.expiryScheduler != null && !this.isConcurrencyEnabled) {
+            throw new IllegalStateException("Планировщик удаления истёкших элементов требует конкурентного режима");
+        }
+        if (this.snapshotScheduler != null && this.snapshotPath != null && !this.isConcurrencyEnabled) {
+            throw new IllegalStateException("Планировщик снимков L1 кэша требует конкурентного режима");
+        }
+    }
+
+    /**
+     * Метод построения хранилища с ключами типа long.
+     * Требует стратегии {@link DeleteStrategyType#CLOCK}, ограничения см. {@link LongKeyCacheStorage}.
+     *
+     * @param <V> Тип значений кэша.
+     * @return Хранилище с ключами типа long.
+     */
+    public <V> LongKeyCacheStorage<V> buildLongKeyed() {
+        return new LongKeyCacheStorage<>(this);
+    }
+
+    /**
+     * Метод создания стратегии вытеснения под вместимость билдера.
+     *
+     * @return Стратегия.
+     */
+    AbstractCacheStrategy<?> createCacheStrategy() {
+        return switch (this.cacheStrategyType) {
+            case LFU -> new IntegerPriorityCacheStrategy(this.capacity);
+            case MFU -> new MfuCacheStrategy(this.capacity);
+            case LRU -> new LruCacheStrategy(this.capacity);
+            case W_TINY_LFU -> new WTinyLfuCacheStrategy(this.capacity);
+            case CLOCK -> new ClockCacheStrategy(this.capacity);
+            case ARC -> new ArcCacheStrategy(this.capacity);
+        };
+    }
+
+    /**
+     * Метод создания билдера одной секции секционированного хранилища.
+     * Вместимость, ограничения веса и off-heap памяти делятся между секциями с округлением вверх,
+     * настройки L2 кэша - см. {@link L2CacheSettings#forShard(int, int)}.
+     * Слушатель событий, накопитель статистики, планировщики и исполнитель загрузки общие;
+     * MBean статистики секция не снимает с регистрации - это делает секционированное хранилище.
+     * снимок L1 кэша у каждой секции свой - файл с суффиксом {@code .shard-<номер>}.
+     *
+     * @param index Номер секции.
+     * @return Билдер секции.
+     */
+    CacheStorageBuilder forShard(int index) {
+        CacheStorageBuilder shard = new CacheStorageBuilder();
+        shard.keyValueStorage = new HashMap<>();
+        this.keyValueStorage.forEach((key, value) -> {
+            if (ShardedCacheStorage.shardOf(key, this.shardCount) == index) shard.keyValueStorage.put(key, value);
+        });
+        shard.capacity = ceilDiv(this.capacity, this.shardCount);
+        shard.cacheStrategyType = this.cacheStrategyType;
+        shard.isL2CacheEnabled = this.isL2CacheEnabled;
+        shard.isConcurrencyEnabled = this.isConcurrencyEnabled;
+        shard.isOffHeapEnabled = this.isOffHeapEnabled;
+        shard.offHeapMaxMemory = ceilDiv(this.offHeapMaxMemory, this.shardCount);
+        shard.l2CacheSettings = this.l2CacheSettings.forShard(index, this.shardCount);
+        shard.eventListener = this.eventListener;
+        shard.statsCounter = this.statsCounter;
+        shard.isShard = true;
+        shard.expireAfterWrite = this.expireAfterWrite;
+        shard.expireAfterAccess = this.expireAfterAccess;
+        shard.expiryScheduler = this.expiryScheduler;
+        shard.expiryCleanUpPeriod = this.expiryCleanUpPeriod;
+        shard.weigher = this.weigher;
+        shard.maximumWeight = ceilDiv(this.maximumWeight, this.shardCount);
+        shard.loaderExecutor = this.loaderExecutor;
+        shard.snapshotPath = this.snapshotPath == null
+                ? null
+                : this.snapshotPath.resolveSibling(this.snapshotPath.getFileName() + ".shard-" + index);
+        shard.snapshotScheduler = this.snapshotScheduler;
+        shard.snapshotPeriod = this.snapshotPeriod;
+        return shard;
+    }
+
     public boolean isL2CacheEnabled() {
         return isL2CacheEnabled;
     }
+
+    public boolean isConcurrencyEnabled() {
+        return isConcurrencyEnabled;
+    }
+
+    public boolean isOffHeapEnabled() {
+        return isOffHeapEnabled;
+    }
+
+    public long getOffHeapMaxMemory() {
+        return offHeapMaxMemory;
+    }
+
+    public CacheEventListener getEventListener() {
+        return eventListener;
+    }
+
+    public StatsCounter getStatsCounter() {
+        return statsCounter;
+    }
+
+    boolean isShard() {
+        return isShard;
+    }
+
+    public Weigher getWeigher() {
+        return weigher;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public Executor getLoaderExecutor() {
+        return loaderExecutor;
+    }
+
+    public Duration getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    public Duration getExpireAfterAccess() {
+        return expireAfterAccess;
+    }
+
+    public ScheduledExecutorService getExpiryScheduler() {
+        return expiryScheduler;
+    }
+
+    public Duration getExpiryCleanUpPeriod() {
+        return expiryCleanUpPeriod;
+    }
+
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    public ScheduledExecutorService getSnapshotScheduler() {
+        return snapshotScheduler;
+    }
+
+    public Duration getSnapshotPeriod() {
+        return snapshotPeriod;
+    }
+
+    public L2CacheSettings getL2CacheSettings() {
+        return l2CacheSettings;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (int) ceilDiv((long) value, divisor);
+    }
+
+    private static long ceilDiv(long value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private static Duration requirePositive(Duration duration) {
+        if (duration.isZero() || duration.isNegative()) {
+            throw new IllegalArgumentException("Длительность должна быть положительной");
+        }
+        return duration;
+    }
 }
@@ -0,0 +1,161 @@
+package org.buldakov.model.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Count-min sketch частоты обращений к ключам кэша с 4-битными счётчиками.
+ * <p>
+ * Каждый элемент массива {@code long} хранит 16 счётчиков. Ключ отображается на четыре
+ * счётчика (по одному на каждую "строку" sketch'а), оценка частоты - минимум из них,
+ * поэтому она может быть только завышена. Счётчики насыщаются на 15.
+ * <p>
+ * После {@code 10 * maximumSize} увеличений все счётчики делятся пополам (старение),
+ * поэтому sketch помнит историю обращений и к уже вытесненным ключам,
+ * но постепенно забывает устаревшую популярность.
+ */
+public class FrequencySketch {
+
+    /**
+     * Соли хэш-функций строк sketch'а.
+     */
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    /**
+     * Маска, обнуляющая старший бит каждого счётчика после сдвига при старении.
+     */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /**
+     * Максимальное значение счётчика.
+     */
+    private static final int MAX_FREQUENCY = 15;
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    /**
+     * Количество увеличений, после которого выполняется старение.
+     */
+    private final int sampleSize;
+
+    /**
+     * Количество увеличений с момента последнего старения.
+     */
+    private int additions;
+
+    /**
+     * @param maximumSize Ожидаемое максимальное количество кэш-элементов.
+     */
+    public FrequencySketch(int maximumSize) {
+        int size = Integer.highestOneBit(Math.max(Math.min(maximumSize, 1 << 30) - 1, 1) << 1);
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        this.sampleSize = (int) Math.min(10L * Math.max(maximumSize, 1), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Метод оценки частоты обращений к ключу.
+     *
+     * @param cacheKey Ключ кэша.
+     * @return Оценка частоты от 0 до 15.
+     */
+    public int frequency(String cacheKey) {
+        int hash = spread(cacheKey.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int shift = (start + i) << 2;
+            int counter = (int) ((this.table[this.indexOf(hash, i)] >>> shift) & 0xF);
+            frequency = Math.min(frequency, counter);
+        }
+        return frequency;
+    }
+
+    /**
+     * Метод учёта обращения к ключу.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    public void increment(String cacheKey) {
+        int hash = spread(cacheKey.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            added |= this.incrementAt(this.indexOf(hash, i), start + i);
+        }
+        if (added && ++this.additions == this.sampleSize) {
+            this.reset();
+        }
+    }
+
+    /**
+     * Метод отчистки sketch'а.
+     */
+    public void clear() {
+        Arrays.fill(this.table, 0);
+        this.additions = 0;
+    }
+
+    /**
+     * Метод сохранения состояния sketch'а: счётчиков и количества увеличений с последнего старения.
+     *
+     * @return Состояние sketch'а.
+     */
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + this.table.length * Long.BYTES).putInt(this.additions);
+        buffer.asLongBuffer().put(this.table);
+        return buffer.array();
+    }
+
+    /**
+     * Метод восстановления состояния sketch'а, сохранённого {@link #toByteArray()}.
+     *
+     * @param state Состояние sketch'а.
+     * @return False - если состояние сохранено sketch'ем другого размера и не восстановлено.
+     */
+    public boolean restore(byte[] state) {
+        if (state.length != Integer.BYTES + this.table.length * Long.BYTES) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(state);
+        this.additions = Math.min(buffer.getInt(), this.sampleSize - 1);
+        buffer.asLongBuffer().get(this.table);
+        return true;
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int shift = counter << 2;
+        long mask = 0xFL << shift;
+        if ((this.table[index] & mask) != mask) {
+            this.table[index] += 1L << shift;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Метод старения: делит все счётчики пополам.
+     */
+    private void reset() {
+        for (int i = 0; i < this.table.length; i++) {
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        this.additions >>>= 1;
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & this.tableMask;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
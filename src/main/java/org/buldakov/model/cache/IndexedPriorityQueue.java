@@ -0,0 +1,294 @@
+package org.buldakov.model.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Индексированная приоритетная очередь мета-данных кэш-элементов.
+ * <p>
+ * Двоичная куча, в которой каждый {@link CacheMetaDataEntry} помнит свою позицию,
+ * а {@link HashMap} сопоставляет ключу кэша его контейнер мета-данных.
+ * За счёт этого поиск по ключу выполняется за O(1), а удаление по ключу,
+ * изменение приоритета и извлечение головы очереди - за O(log n).
+ *
+ * @param <PriorityType> Тип приоритета кэш-элементов.
+ */
+public class IndexedPriorityQueue<PriorityType extends Comparable<PriorityType>> {
+
+    /**
+     * Начальный размер массива кучи.
+     */
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * Индекс ключа кэша в куче.
+     */
+    private final HashMap<String, CacheMetaDataEntry<PriorityType>> index;
+
+    /**
+     * {@link Comparator Компаратор}, определяющий голову очереди.
+     */
+    private final Comparator<CacheMetaDataEntry<PriorityType>> comparator;
+
+    /**
+     * Массив-куча.
+     */
+    private CacheMetaDataEntry<PriorityType>[] heap;
+
+    /**
+     * Количество элементов в куче.
+     */
+    private int size;
+
+    public IndexedPriorityQueue(int initialCapacity) {
+        this(initialCapacity, Comparator.naturalOrder());
+    }
+
+    public IndexedPriorityQueue(int initialCapacity, Comparator<CacheMetaDataEntry<PriorityType>> comparator) {
+        int heapCapacity = Math.max(initialCapacity, DEFAULT_INITIAL_CAPACITY);
+        this.index = new HashMap<>(heapCapacity * 4 / 3 + 1);
+        this.comparator = comparator;
+        this.heap = newHeap(heapCapacity);
+    }
+
+    /**
+     * Метод создания массива-кучи. Массив параметризованного типа создать нельзя,
+     * поэтому создаётся массив с подстановочным типом и приводится.
+     *
+     * @param capacity Размер массива.
+     * @return Массив-куча.
+     */
+    @SuppressWarnings("unchecked")
+    private static <P extends Comparable<P>> CacheMetaDataEntry<P>[] newHeap(int capacity) {
+        return (CacheMetaDataEntry<P>[]) new CacheMetaDataEntry<?>[capacity];
+    }
+
+    /**
+     * Метод добавления контейнера мета-данных в очередь.
+     * Если элемент с таким ключом уже есть в очереди - ничего не делает.
+     *
+     * @param entry Entry с мета-данными кэша.
+     * @return True - если элемент был добавлен.
+     */
+    public boolean add(CacheMetaDataEntry<PriorityType> entry) {
+        if (this.index.putIfAbsent(entry.getKey(), entry) != null) {
+            return false;
+        }
+        if (this.size == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, this.size * 2);
+        }
+        this.heap[this.size] = entry;
+        entry.setHeapIndex(this.size);
+        this.size++;
+        this.siftUp(entry.getHeapIndex());
+        return true;
+    }
+
+    /**
+     * Метод добавления нескольких контейнеров мета-данных в очередь.
+     * В пустую очередь элементы добавляются за O(n): массив-куча заполняется целиком
+     * и упорядочивается одним проходом снизу вверх. Элементы с уже имеющимися в очереди ключами пропускаются.
+     *
+     * @param entries Entry с мета-данными кэша.
+     * @return Количество добавленных элементов.
+     */
+    public int addAll(Collection<CacheMetaDataEntry<PriorityType>> entries) {
+        if (this.size > 0) {
+            int added = 0;
+            for (CacheMetaDataEntry<PriorityType> entry : entries) {
+                if (this.add(entry)) added++;
+            }
+            return added;
+        }
+        if (entries.size() > this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, entries.size());
+        }
+        for (CacheMetaDataEntry<PriorityType> entry : entries) {
+            if (this.index.putIfAbsent(entry.getKey(), entry) == null) {
+                this.heap[this.size] = entry;
+                entry.setHeapIndex(this.size);
+                this.size++;
+            }
+        }
+        for (int i = (this.size >>> 1) - 1; i >= 0; i--) {
+            this.siftDown(i);
+        }
+        return this.size;
+    }
+
+    /**
+     * Метод получения головы очереди без её удаления.
+     *
+     * @return Entry с мета-данными кэша или null, если очередь пуста.
+     */
+    public CacheMetaDataEntry<PriorityType> peek() {
+        return this.size == 0 ? null : this.heap[0];
+    }
+
+    /**
+     * Метод удаления головы очереди.
+     *
+     * @return Entry с мета-данными кэша.
+     * @throws NoSuchElementException Если очередь пуста.
+     */
+    public CacheMetaDataEntry<PriorityType> remove() {
+        if (this.size == 0) {
+            throw new NoSuchElementException();
+        }
+        CacheMetaDataEntry<PriorityType> head = this.heap[0];
+        this.removeAt(0);
+        return head;
+    }
+
+    /**
+     * Метод удаления элемента очереди по ключу кэша.
+     *
+     * @param cacheKey Ключ кэша.
+     * @return Entry с мета-данными кэша или null, если ключа нет в очереди.
+     */
+    public CacheMetaDataEntry<PriorityType> remove(String cacheKey) {
+        CacheMetaDataEntry<PriorityType> entry = this.index.get(cacheKey);
+        if (entry != null) {
+            this.removeAt(entry.getHeapIndex());
+        }
+        return entry;
+    }
+
+    /**
+     * Метод получения контейнера мета-данных по ключу кэша.
+     *
+     * @param cacheKey Ключ кэша.
+     * @return Entry с мета-данными кэша или null, если ключа нет в очереди.
+     */
+    public CacheMetaDataEntry<PriorityType> get(String cacheKey) {
+        return this.index.get(cacheKey);
+    }
+
+    /**
+     * Метод изменения приоритета элемента очереди с восстановлением свойства кучи.
+     *
+     * @param entry    Entry с мета-данными кэша, находящийся в очереди.
+     * @param priority Новый приоритет.
+     */
+    public void updatePriority(CacheMetaDataEntry<PriorityType> entry, PriorityType priority) {
+        entry.setPriority(priority);
+        int heapIndex = entry.getHeapIndex();
+        this.siftUp(heapIndex);
+        if (this.heap[heapIndex] == entry) {
+            this.siftDown(heapIndex);
+        }
+    }
+
+    public boolean contains(String cacheKey) {
+        return this.index.containsKey(cacheKey);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Метод обхода элементов очереди в порядке кучи.
+     *
+     * @param action Действие над каждым элементом.
+     */
+    public void forEach(Consumer<CacheMetaDataEntry<PriorityType>> action) {
+        for (int i = 0; i < this.size; i++) {
+            action.accept(this.heap[i]);
+        }
+    }
+
+    /**
+     * Метод получения потока элементов очереди в порядке кучи.
+     *
+     * @return {@link Stream Поток} контейнеров мета-данных.
+     */
+    public Stream<CacheMetaDataEntry<PriorityType>> stream() {
+        return Arrays.stream(this.heap, 0, this.size);
+    }
+
+    public void clear() {
+        Arrays.fill(this.heap, 0, this.size, null);
+        this.index.clear();
+        this.size = 0;
+    }
+
+    /**
+     * Метод удаления элемента кучи по его позиции.
+     *
+     * @param heapIndex Позиция элемента в куче.
+     */
+    private void removeAt(int heapIndex) {
+        CacheMetaDataEntry<PriorityType> removed = this.heap[heapIndex];
+        this.index.remove(removed.getKey());
+        removed.setHeapIndex(-1);
+        int last = --this.size;
+        if (heapIndex != last) {
+            CacheMetaDataEntry<PriorityType> moved = this.heap[last];
+            this.heap[heapIndex] = moved;
+            moved.setHeapIndex(heapIndex);
+            this.heap[last] = null;
+            this.siftUp(heapIndex);
+            if (this.heap[heapIndex] == moved) {
+                this.siftDown(heapIndex);
+            }
+        } else {
+            this.heap[last] = null;
+        }
+    }
+
+    private void siftUp(int heapIndex) {
+        CacheMetaDataEntry<PriorityType> entry = this.heap[heapIndex];
+        while (heapIndex > 0) {
+            int parentIndex = (heapIndex - 1) >>> 1;
+            CacheMetaDataEntry<PriorityType> parent = this.heap[parentIndex];
+            if (this.comparator.compare(entry, parent) >= 0) {
+                break;
+            }
+            this.heap[heapIndex] = parent;
+            parent.setHeapIndex(heapIndex);
+            heapIndex = parentIndex;
+        }
+        this.heap[heapIndex] = entry;
+        entry.setHeapIndex(heapIndex);
+    }
+
+    private void siftDown(int heapIndex) {
+        CacheMetaDataEntry<PriorityType> entry = this.heap[heapIndex];
+        int half = this.size >>> 1;
+        while (heapIndex < half) {
+            int childIndex = (heapIndex << 1) + 1;
+            CacheMetaDataEntry<PriorityType> child = this.heap[childIndex];
+            int rightIndex = childIndex + 1;
+            if (rightIndex < this.size && this.comparator.compare(this.heap[rightIndex], child) < 0) {
+                childIndex = rightIndex;
+                child = this.heap[childIndex];
+            }
+            if (this.comparator.compare(entry, child) <= 0) {
+                break;
+            }
+            this.heap[heapIndex] = child;
+            child.setHeapIndex(heapIndex);
+            heapIndex = childIndex;
+        }
+        this.heap[heapIndex] = entry;
+        entry.setHeapIndex(heapIndex);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        this.forEach((entry) -> joiner.add(entry.toString()));
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,485 @@
+package org.buldakov.model.cache;
+
+import org.buldakov.model.cache.codec.StringCodec;
+import org.buldakov.model.cache.codec.ValueCodec;
+import org.buldakov.model.cache.event.CacheEventListener;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Снимок L1 кэша: кэш-элементы вместе с их мета-данными в стратегии.
+ * <p>
+ * Файл снимка имеет вид
+ * <pre>
+ * | магическое число (int) | версия формата (int) | время создания (long) | длина имени стратегии (int) | имя стратегии (UTF-8) |
+ * | длина состояния стратегии (int) | состояние стратегии |
+ * | длина ключа (int) | длина значения (int) | приоритет (long) | сегмент (byte) | срок жизни (long) | ключ (UTF-8) | значение | ...
+ * | -1 (int) | CRC32 (int) |
+ * </pre>
+ * Срок жизни - момент истечения времени жизни после записи в миллисекундах эпохи или 0, если оно не ограничено.
+ * Записи идут в порядке обхода стратегии (см. {@link org.buldakov.model.cache.strategy.AbstractCacheStrategy#forEachEntry}).
+ * Снимок сначала пишется во временный файл, а затем атомарно занимает своё место.
+ * Снимок другой стратегии, повреждённый или с неверной контрольной суммой не используется.
+ */
+final class L1Snapshot {
+
+    /**
+     * Магическое число файла снимка ("ARDS").
+     */
+    private static final int MAGIC = 0x41524453;
+
+    /**
+     * Версия формата файла снимка.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Размер служебной части записи (без ключа и значения) в байтах.
+     */
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES * 2 + Byte.BYTES;
+
+    /**
+     * Длина ключа, обозначающая конец записей.
+     */
+    private static final int END_OF_RECORDS = -1;
+
+    /**
+     * Начальный размер буфера чтения и записи.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Расширение временного файла снимка.
+     */
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    private String[] keys;
+
+    private long[] priorities;
+
+    private byte[] segments;
+
+    private long[] expirationTimes;
+
+    /**
+     * Значения кэш-элементов. Заполняются только при чтении снимка.
+     */
+    private Object[] values;
+
+    private int size;
+
+    /**
+     * Состояние стратегии (см. {@link org.buldakov.model.cache.strategy.AbstractCacheStrategy#saveState()}).
+     */
+    private final byte[] state;
+
+    /**
+     * @param expectedSize Ожидаемое количество кэш-элементов.
+     * @param state        Состояние стратегии.
+     */
+    L1Snapshot(int expectedSize, byte[] state) {
+        int capacity = Math.max(expectedSize, 16);
+        this.keys = new String[capacity];
+        this.priorities = new long[capacity];
+        this.segments = new byte[capacity];
+        this.expirationTimes = new long[capacity];
+        this.state = state;
+    }
+
+    /**
+     * Метод добавления мета-данных кэш-элемента в снимок.
+     *
+     * @param cacheKey       Ключ кэша.
+     * @param storedPriority Приоритет в виде, в котором он хранится в L2 кэше.
+     * @param segment        Номер сегмента стратегии.
+     * @param expirationTime Момент истечения времени жизни в миллисекундах эпохи или 0.
+     */
+    void add(String cacheKey, long storedPriority, int segment, long expirationTime) {
+        if (this.size == this.keys.length) {
+            int capacity = this.size * 2;
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.priorities = Arrays.copyOf(this.priorities, capacity);
+            this.segments = Arrays.copyOf(this.segments, capacity);
+            this.expirationTimes = Arrays.copyOf(this.expirationTimes, capacity);
+            if (this.values != null) this.values = Arrays.copyOf(this.values, capacity);
+        }
+        this.keys[this.size] = cacheKey;
+        this.priorities[this.size] = storedPriority;
+        this.segments[this.size] = (byte) segment;
+        this.expirationTimes[this.size] = expirationTime;
+        this.size++;
+    }
+
+    /**
+     * Метод записи снимка в файл. Значения кэш-элементов запрашиваются при записи,
+     * кэш-элементы, которых уже нет, пропускаются.
+     *
+     * @param path         Путь к файлу снимка.
+     * @param strategyName Имя стратегии.
+     * @param codec        Кодек значений кэша.
+     * @param valueSource  Источник значений кэш-элементов.
+     * @param listener     Слушатель, получающий событие о кэш-элементах, не записанных кодеком.
+     * @return Количество записанных кэш-элементов.
+     * @throws IOException В случае неудачной записи.
+     */
+    @SuppressWarnings("unchecked")
+    int write(Path path, String strategyName, ValueCodec<?> codec, Function<String, Object> valueSource,
+              CacheEventListener listener) throws IOException {
+        ValueCodec<Object> valueCodec = (ValueCodec<Object>) codec;
+        Path temporary = temporaryPathOf(path);
+        Files.createDirectories(temporary.toAbsolutePath().getParent());
+        int written = 0;
+        int skipped;
+        String firstError;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output output = new Output(channel);
+            byte[] name = strategyName.getBytes(StandardCharsets.UTF_8);
+            output.ensure(Integer.BYTES * 3 + Long.BYTES + name.length)
+                    .putInt(MAGIC).putInt(FORMAT_VERSION).putLong(System.currentTimeMillis())
+                    .putInt(name.length).put(name);
+            output.ensure(Integer.BYTES + this.state.length).putInt(this.state.length).put(this.state);
+            for (int i = 0; i < this.size; i++) {
+                Object value = valueSource.apply(this.keys[i]);
+                if (value != null && output.putRecord(this.keys[i], value, this.priorities[i], this.segments[i],
+                        this.expirationTimes[i], valueCodec)) {
+                    written++;
+                }
+            }
+            output.ensure(Integer.BYTES).putInt(END_OF_RECORDS);
+            output.finish();
+            channel.force(false);
+            skipped = output.skipped;
+            firstError = output.firstError;
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (skipped > 0) {
+            listener.onSnapshotRecordError(path, skipped, firstError);
+        }
+        return written;
+    }
+
+    /**
+     * Метод чтения снимка из файла.
+     *
+     * @param path         Путь к файлу снимка.
+     * @param strategyName Имя стратегии хранилища.
+     * @param codec        Кодек значений кэша.
+     * @param listener     Слушатель, получающий событие об отказе от снимка.
+     * @return Снимок или null, если файла нет, он повреждён или снят с хранилища с другой стратегией.
+     * @throws IOException В случае неудачного чтения.
+     */
+    static L1Snapshot read(Path path, String strategyName, ValueCodec<?> codec, CacheEventListener listener) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Input input = new Input(channel);
+            ByteBuffer buffer = input.require(Integer.BYTES * 3 + Long.BYTES);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                listener.onSnapshotRejected(path, "неподдерживаемый формат");
+                return null;
+            }
+            buffer.getLong();
+            int nameLength = buffer.getInt();
+            String name = StringCodec.getUtf8(input.require(nameLength), nameLength);
+            if (!name.equals(strategyName)) {
+                listener.onSnapshotRejected(path, "снят со стратегией " + name);
+                return null;
+            }
+            int stateLength = input.require(Integer.BYTES).getInt();
+            byte[] state = new byte[stateLength];
+            input.require(stateLength).get(state);
+            L1Snapshot snapshot = new L1Snapshot(16, state);
+            snapshot.values = new Object[snapshot.keys.length];
+            while (true) {
+                buffer = input.require(Integer.BYTES);
+                int keyLength = buffer.getInt();
+                if (keyLength == END_OF_RECORDS) {
+                    break;
+                }
+                buffer = input.require(RECORD_HEADER_SIZE - Integer.BYTES + keyLength);
+                int valueLength = buffer.getInt();
+                long priority = buffer.getLong();
+                byte segment = buffer.get();
+                long expirationTime = buffer.getLong();
+                String cacheKey = StringCodec.getUtf8(buffer, keyLength);
+                ByteBuffer value = input.require(valueLength);
+                Object cacheValue = codec.deserialize(value.slice(value.position(), valueLength));
+                value.position(value.position() + valueLength);
+                snapshot.add(cacheKey, priority, segment, expirationTime);
+                snapshot.values[snapshot.size - 1] = cacheValue;
+            }
+            if (!input.verifyChecksum()) {
+                listener.onSnapshotRejected(path, "снимок повреждён");
+                return null;
+            }
+            return snapshot;
+        } catch (CorruptSnapshotException | RuntimeException exception) {
+            listener.onSnapshotRejected(path, "снимок не прочитан: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Метод удаления файла снимка.
+     *
+     * @param path Путь к файлу снимка.
+     * @throws IOException В случае неудачного удаления.
+     */
+    static void delete(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(temporaryPathOf(path));
+    }
+
+    /**
+     * Метод оставления в снимке только отмеченных кэш-элементов с сохранением их порядка.
+     *
+     * @param retained Отметки кэш-элементов, которые остаются в снимке.
+     */
+    void retain(boolean[] retained) {
+        int count = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (!retained[i]) {
+                continue;
+            }
+            this.keys[count] = this.keys[i];
+            this.priorities[count] = this.priorities[i];
+            this.segments[count] = this.segments[i];
+            this.expirationTimes[count] = this.expirationTimes[i];
+            if (this.values != null) this.values[count] = this.values[i];
+            count++;
+        }
+        Arrays.fill(this.keys, count, this.size, null);
+        if (this.values != null) Arrays.fill(this.values, count, this.size, null);
+        this.size = count;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    String[] keys() {
+        return this.keys;
+    }
+
+    long[] priorities() {
+        return this.priorities;
+    }
+
+    byte[] segments() {
+        return this.segments;
+    }
+
+    long expirationTime(int index) {
+        return this.expirationTimes[index];
+    }
+
+    Object value(int index) {
+        return this.values[index];
+    }
+
+    byte[] state() {
+        return this.state;
+    }
+
+    private static Path temporaryPathOf(Path path) {
+        return path.resolveSibling(path.getFileName() + TEMPORARY_EXTENSION);
+    }
+
+    /**
+     * Буферизованная запись файла снимка с подсчётом контрольной суммы.
+     */
+    private static final class Output {
+
+        private final FileChannel channel;
+
+        private final CRC32 checksum = new CRC32();
+
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * Количество кэш-элементов, пропущенных из-за ошибки кодека.
+         */
+        private int skipped;
+
+        /**
+         * Описание первой ошибки кодека.
+         */
+        private String firstError;
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Метод получения буфера, в котором есть место под заданное количество байт.
+         *
+         * @param length Количество байт.
+         * @return Буфер записи.
+         * @throws IOException В случае неудачной записи.
+         */
+        private ByteBuffer ensure(int length) throws IOException {
+            if (this.buffer.remaining() < length) {
+                this.flush();
+                if (this.buffer.capacity() < length) {
+                    this.buffer = ByteBuffer.allocate(length);
+                }
+            }
+            return this.buffer;
+        }
+
+        /**
+         * Метод записи кэш-элемента. Значение, которое кодек не поддерживает, пропускается и учитывается
+         * в количестве пропущенных кэш-элементов.
+         *
+         * @return False - если кэш-элемент пропущен.
+         * @throws IOException В случае неудачной записи.
+         */
+        private boolean putRecord(String cacheKey, Object value, long priority, byte segment, long expirationTime,
+                                  ValueCodec<Object> codec) throws IOException {
+            while (true) {
+                if (this.buffer.remaining() < RECORD_HEADER_SIZE) {
+                    this.flush();
+                }
+                int recordStart = this.buffer.position();
+                try {
+                    this.buffer.position(recordStart + RECORD_HEADER_SIZE);
+                    StringCodec.putUtf8(cacheKey, this.buffer);
+                    int keyLength = this.buffer.position() - recordStart - RECORD_HEADER_SIZE;
+                    codec.serialize(value, this.buffer);
+                    int valueLength = this.buffer.position() - recordStart - RECORD_HEADER_SIZE - keyLength;
+                    this.buffer.putInt(recordStart, keyLength)
+                            .putInt(recordStart + Integer.BYTES, valueLength)
+                            .putLong(recordStart + Integer.BYTES * 2, priority)
+                            .put(recordStart + Integer.BYTES * 2 + Long.BYTES, segment)
+                            .putLong(recordStart + Integer.BYTES * 2 + Long.BYTES + Byte.BYTES, expirationTime);
+                    return true;
+                } catch (BufferOverflowException exception) {
+                    this.buffer.position(recordStart);
+                    if (recordStart > 0) {
+                        this.flush();
+                    } else {
+                        this.buffer = ByteBuffer.allocate(this.buffer.capacity() * 2);
+                    }
+                } catch (RuntimeException exception) {
+                    this.buffer.position(recordStart);
+                    if (this.skipped++ == 0) {
+                        this.firstError = "элемент " + cacheKey + ": " + exception.getMessage();
+                    }
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Метод завершения записи: сбрасывает буфер и дописывает контрольную сумму.
+         *
+         * @throws IOException В случае неудачной записи.
+         */
+        private void finish() throws IOException {
+            this.flush();
+            this.buffer.putInt((int) this.checksum.getValue()).flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+        }
+
+        private void flush() throws IOException {
+            this.buffer.flip();
+            this.checksum.update(this.buffer.duplicate());
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+    }
+
+    /**
+     * Буферизованное чтение файла снимка с подсчётом контрольной суммы прочитанных байт.
+     */
+    private static final class Input {
+
+        private final FileChannel channel;
+
+        private final CRC32 checksum = new CRC32();
+
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+
+        /**
+         * Позиция буфера, до которой байты учтены контрольной суммой.
+         */
+        private int checked;
+
+        private Input(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Метод получения буфера, в котором прочитано не меньше заданного количества байт.
+         *
+         * @param length Количество байт.
+         * @return Буфер чтения.
+         * @throws IOException              В случае неудачного чтения.
+         * @throws CorruptSnapshotException Если файл закончился раньше или длина некорректна.
+         */
+        private ByteBuffer require(int length) throws IOException, CorruptSnapshotException {
+            if (length < 0) {
+                throw new CorruptSnapshotException("некорректная длина " + length);
+            }
+            if (this.buffer.remaining() >= length) {
+                return this.buffer;
+            }
+            this.checksum.update(this.buffer.slice(this.checked, this.buffer.position() - this.checked));
+            this.checked = 0;
+            if (this.buffer.capacity() < length) {
+                this.buffer = ByteBuffer.allocate(length).put(this.buffer);
+            } else {
+                this.buffer.compact();
+            }
+            while (this.buffer.position() < length) {
+                if (this.channel.read(this.buffer) < 0) {
+                    throw new CorruptSnapshotException("файл снимка обрезан");
+                }
+            }
+            return this.buffer.flip();
+        }
+
+        /**
+         * Метод проверки контрольной суммы, записанной после прочитанных байт.
+         *
+         * @return True - если контрольная сумма совпадает.
+         * @throws IOException              В случае неудачного чтения.
+         * @throws CorruptSnapshotException Если файл закончился раньше.
+         */
+        private boolean verifyChecksum() throws IOException, CorruptSnapshotException {
+            this.checksum.update(this.buffer.slice(this.checked, this.buffer.position() - this.checked));
+            this.checked = this.buffer.position();
+            int expected = (int) this.checksum.getValue();
+            return this.require(Integer.BYTES).getInt() == expected;
+        }
+    }
+
+    /**
+     * Исключение, обозначающее повреждённый файл снимка.
+     */
+    private static final class CorruptSnapshotException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private CorruptSnapshotException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package org.buldakov.model.cache;
+
+import org.buldakov.model.cache.event.CacheEventListener;
+import org.buldakov.model.cache.filesystem.L2CacheEntry;
+import org.buldakov.model.cache.strategy.AbstractCacheStrategy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Прогрев L1 кэша из L2 кэша.
+ * <p>
+ * Для прогрева отбираются ключи L2 кэша в порядке убывания ценности их сохранённых приоритетов
+ * для стратегии (см. {@link AbstractCacheStrategy#toWarmUpRank(long)}) - столько, сколько помещается в L1 кэш.
+ * Значения читаются пачками (см. {@link AbstractCacheStrategy#readAllFromL2(Collection)}) в потоке прогрева.
+ * Прочитанную пачку поднимает в L1 кэш хранилище: в конкурентном режиме - сам поток прогрева под блокировкой
+ * вытеснения, в однопоточном - поток, обратившийся к хранилищу, в начале операции.
+ * <p>
+ * Прогрев ничего не вытесняет и пропускает ключи, которые были добавлены, удалены или истекли после его начала,
+ * поэтому не может заменить более свежее значение прочитанным из L2 кэша.
+ */
+final class L2WarmUp implements Runnable {
+
+    /**
+     * Количество ключей, читаемых из L2 кэша одной пачкой.
+     */
+    static final int BATCH_SIZE = 256;
+
+    private final CacheStorage storage;
+
+    private final AbstractCacheStrategy<?> strategy;
+
+    /**
+     * Ключи L2 кэша и их сохранённые приоритеты. Освобождаются после отбора ключей для прогрева.
+     */
+    private Map<String, Long> priorities;
+
+    /**
+     * Наибольшее количество ключей для прогрева.
+     */
+    private final int limit;
+
+    /**
+     * Функция веса кэш-элементов или null, если вместимость ограничена количеством кэш-элементов.
+     */
+    private final Weigher weigher;
+
+    private final long maximumWeight;
+
+    private final CacheEventListener eventListener;
+
+    /**
+     * Переключатель "поднимает ли пачки сам поток прогрева".
+     */
+    private final boolean appliesBatches;
+
+    /**
+     * Прочитанные пачки, ожидающие подъёма потоком, обратившимся к хранилищу.
+     */
+    private final Queue<Map<String, L2CacheEntry>> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Ключи, изменённые после начала прогрева.
+     */
+    private final Set<String> modified = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Завершение чтения L2 кэша.
+     */
+    private final CompletableFuture<Void> readCompletion = new CompletableFuture<>();
+
+    private Thread thread;
+
+    private volatile boolean active = true;
+
+    private volatile boolean cancelled;
+
+    private volatile int total;
+
+    private volatile int loaded;
+
+    /**
+     * @param storage        Прогреваемое хранилище.
+     * @param strategy       Стратегия хранилища.
+     * @param priorities     Ключи L2 кэша и их сохранённые приоритеты.
+     * @param limit          Наибольшее количество ключей для прогрева.
+     * @param weigher        Функция веса кэш-элементов или null.
+     * @param maximumWeight  Ограничение суммарного веса кэш-элементов L1 кэша.
+     * @param eventListener  Слушатель событий хранилища.
+     * @param appliesBatches True - если пачки поднимает сам поток прогрева.
+     */
+    L2WarmUp(CacheStorage storage, AbstractCacheStrategy<?> strategy, Map<String, Long> priorities, int limit,
+             Weigher weigher, long maximumWeight, CacheEventListener eventListener, boolean appliesBatches) {
+        this.storage = storage;
+        this.strategy = strategy;
+        this.priorities = priorities;
+        this.limit = limit;
+        this.weigher = weigher;
+        this.maximumWeight = maximumWeight;
+        this.eventListener = eventListener;
+        this.appliesBatches = appliesBatches;
+    }
+
+    /**
+     * Метод запуска прогрева в отдельном потоке.
+     */
+    void start() {
+        this.thread = new Thread(this, "ardecs-l2-warm-up");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            List<String> candidates = this.selectCandidates();
+            this.total = candidates.size();
+            long weight = 0;
+            for (int from = 0; from < candidates.size() && !this.cancelled; from += BATCH_SIZE) {
+                List<String> keys = candidates.subList(from, Math.min(from + BATCH_SIZE, candidates.size()));
+                Map<String, L2CacheEntry> batch = this.strategy.readAllFromL2(keys);
+                boolean budgetExhausted = false;
+                if (this.weigher != null) {
+                    Iterator<Map.Entry<String, L2CacheEntry>> iterator = batch.entrySet().iterator();
+                    while (iterator.hasNext()) {
+                        Map.Entry<String, L2CacheEntry> entry = iterator.next();
+                        if (budgetExhausted) {
+                            iterator.remove();
+                            continue;
+                        }
+                        weight += Math.max(0, this.weigher.weigh(entry.getKey(), entry.getValue().value()));
+                        budgetExhausted = weight >= this.maximumWeight;
+                    }
+                }
+                if (this.appliesBatches) {
+                    if (!this.storage.applyWarmUp(batch)) break;
+                } else {
+                    this.pending.add(batch);
+                }
+                if (budgetExhausted) break;
+            }
+        } catch (IOException | RuntimeException exception) {
+            this.eventListener.onL2WarmUpError(exception);
+        } finally {
+            if (this.appliesBatches) this.finish();
+            this.readCompletion.complete(null);
+        }
+    }
+
+    /**
+     * Метод отбора ключей для прогрева.
+     *
+     * @return Ключи в порядке убывания ценности для стратегии.
+     */
+    private List<String> selectCandidates() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(this.priorities.entrySet());
+        this.priorities = null;
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Long> entry) -> this.strategy.toWarmUpRank(entry.getValue()))
+                .reversed());
+        int count = Math.min(entries.size(), this.limit);
+        List<String> candidates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            candidates.add(entries.get(i).getKey());
+        }
+        return candidates;
+    }
+
+    /**
+     * Метод получения очередной прочитанной пачки для подъёма потоком, обратившимся к хранилищу.
+     *
+     * @return Пачка или null, если прочитанных пачек нет.
+     */
+    Map<String, L2CacheEntry> poll() {
+        return this.pending.poll();
+    }
+
+    /**
+     * Метод завершения прогрева, если чтение закончено и все прочитанные пачки подняты.
+     */
+    void finishIfDrained() {
+        if (this.readCompletion.isDone() && this.pending.isEmpty()) {
+            this.finish();
+        }
+    }
+
+    private synchronized void finish() {
+        if (!this.active) {
+            return;
+        }
+        this.active = false;
+        this.modified.clear();
+    }
+
+    /**
+     * Метод учёта поднятых в L1 кэш кэш-элементов.
+     * Вызывается хранилищем, пачки поднимаются по одной.
+     *
+     * @param count Количество поднятых кэш-элементов.
+     */
+    void recordLoaded(int count) {
+        this.loaded += count;
+        this.eventListener.onL2WarmUp(this.loaded, this.total);
+    }
+
+    /**
+     * Метод учёта изменения ключа хранилищем: прогрев его больше не поднимает.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    void markModified(String cacheKey) {
+        if (this.active) {
+            this.modified.add(cacheKey);
+        }
+    }
+
+    boolean isModified(String cacheKey) {
+        return this.modified.contains(cacheKey);
+    }
+
+    boolean isActive() {
+        return this.active;
+    }
+
+    /**
+     * Метод прерывания прогрева. Непрочитанные и неподнятые пачки отбрасываются.
+     */
+    void cancel() {
+        this.cancelled = true;
+        this.pending.clear();
+        if (this.readCompletion.isDone()) {
+            this.finish();
+        }
+    }
+
+    /**
+     * Метод прерывания прогрева с ожиданием завершения потока прогрева.
+     */
+    void close() {
+        this.cancel();
+        if (this.thread == null) {
+            return;
+        }
+        try {
+            this.thread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Метод ожидания завершения чтения L2 кэша.
+     *
+     * @param timeout Наибольшее время ожидания.
+     * @return False - если чтение не завершилось за отведённое время.
+     * @throws InterruptedException Если поток был прерван во время ожидания.
+     */
+    boolean awaitRead(Duration timeout) throws InterruptedException {
+        try {
+            this.readCompletion.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException exception) {
+            return false;
+        } catch (ExecutionException exception) {
+            return true;
+        }
+    }
+
+    L2WarmUpProgress progress() {
+        return new L2WarmUpProgress(this.loaded, this.total, !this.active);
+    }
+}
@@ -0,0 +1,16 @@
+package org.buldakov.model.cache;
+
+/**
+ * Ход прогрева L1 кэша из L2 кэша (см. {@link CacheStorage#getWarmUpProgress()}).
+ *
+ * @param loaded Количество кэш-элементов, поднятых в L1 кэш.
+ * @param total  Количество кэш-элементов, отобранных для прогрева.
+ * @param done   True - если прогрев завершён или прерван.
+ */
+public record L2WarmUpProgress(int loaded, int total, boolean done) {
+
+    /**
+     * Ход прогрева хранилища, которому прогрев не нужен.
+     */
+    public static final L2WarmUpProgress COMPLETED = new L2WarmUpProgress(0, 0, true);
+}
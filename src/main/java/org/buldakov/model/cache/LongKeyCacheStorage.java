@@ -0,0 +1,343 @@
+package org.buldakov.model.cache;
+
+import org.buldakov.model.cache.enums.DeleteStrategyType;
+import org.buldakov.model.cache.event.CacheEventListener;
+import org.buldakov.model.cache.primitive.LongIntHashMap;
+import org.buldakov.model.cache.stats.CacheStats;
+import org.buldakov.model.cache.stats.StatsCounter;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кэш-хранилище с ключами типа long.
+ * <p>
+ * Предназначено для кэшей по числовым идентификаторам: ключ не превращается в {@link String},
+ * а L1 кэш и мета-данные стратегии хранятся в примитивных массивах. Кэш-элементы лежат в ячейках кольца
+ * (ключ, значение, бит обращения), индекс ключей - {@link LongIntHashMap таблица с открытой адресацией}.
+ * Поиск, добавление и вытеснение не упаковывают ключ и не создают объектов.
+ * <p>
+ * Вытеснение - {@link DeleteStrategyType#CLOCK CLOCK}: обращение устанавливает бит кэш-элемента,
+ * при добавлении в заполненное хранилище стрелка обходит кольцо и вытесняет первый кэш-элемент
+ * со сброшенным битом, сбрасывая биты по пути.
+ * <p>
+ * Поддерживаются вместимость, конкурентный режим (все операции выполняются под одной блокировкой),
+ * слушатель событий и статистика. Слушатель получает ключ в десятичной записи, строка создаётся,
+ * только если слушатель задан. L2 кэш, хранение вне кучи, функция веса, сроки жизни, снимки и секции
+ * опираются на строковые ключи и в этом хранилище не поддерживаются.
+ * <p>
+ * Это отдельное хранилище, а не специализация обобщённого: {@link CacheStorage} пока не параметризован
+ * типами ключа и значения, а индекса ключей L2 кэша по ключам long нет (см. TODOLIST.md).
+ * <p>
+ * Создаётся через {@link CacheStorageBuilder#buildLongKeyed()}.
+ *
+ * @param <V> Тип значений кэша.
+ */
+public class LongKeyCacheStorage<V> implements Closeable {
+
+    /**
+     * Ключи кэш-элементов в ячейках кольца.
+     */
+    private final long[] ring;
+
+    /**
+     * Значения кэш-элементов в ячейках кольца. null - свободная ячейка.
+     */
+    private final Object[] values;
+
+    /**
+     * Биты обращения ячеек кольца.
+     */
+    private final boolean[] referenced;
+
+    /**
+     * Индекс ключа кэша в кольце.
+     */
+    private final LongIntHashMap slots;
+
+    /**
+     * Освобождённые ячейки внутри используемой части кольца.
+     */
+    private final int[] freeSlots;
+
+    private int freeCount;
+
+    /**
+     * Количество используемых ячеек кольца, занятых и освобождённых.
+     */
+    private int used;
+
+    /**
+     * Позиция стрелки.
+     */
+    private int hand;
+
+    /**
+     * Вместимость L1 кэша в кэш-элементах.
+     */
+    private final int capacity;
+
+    /**
+     * Переключатель "работает ли хранилище в конкурентном режиме".
+     */
+    private final boolean isConcurrent;
+
+    /**
+     * Блокировка хранилища. Используется только в конкурентном режиме.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Слушатель событий кэш-хранилища.
+     */
+    private final CacheEventListener eventListener;
+
+    /**
+     * Накопитель статистики или null, если сбор статистики отключен.
+     */
+    private final StatsCounter stats;
+
+    LongKeyCacheStorage(CacheStorageBuilder builder) {
+        checkSupported(builder);
+        this.capacity = builder.getCapacity();
+        this.isConcurrent = builder.isConcurrencyEnabled();
+        this.eventListener = builder.getEventListener();
+        this.stats = builder.getStatsCounter();
+        this.ring = new long[this.capacity];
+        this.values = new Object[this.capacity];
+        this.referenced = new boolean[this.capacity];
+        this.freeSlots = new int[this.capacity];
+        this.slots = new LongIntHashMap(this.capacity);
+    }
+
+    /**
+     * Метод получения данных из кэш-хранилища.
+     * Обращение только устанавливает бит обращения кэш-элемента.
+     *
+     * @param cacheKey Ключ кэша.
+     * @return Данные по ключу кэша или null, если их нет.
+     */
+    public V getData(long cacheKey) {
+        if (this.stats == null) {
+            return this.readData(cacheKey);
+        }
+        long start = System.nanoTime();
+        try {
+            return this.readData(cacheKey);
+        } finally {
+            this.stats.recordGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Метод добавления данных в кэш-хранилище.
+     * Если ключ уже есть, значение заменяется. Если хранилище заполнено, кэш-элемент вытесняется по CLOCK.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param value    Значение кэша.
+     */
+    public void addData(long cacheKey, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Значение кэша не может быть null");
+        }
+        if (this.stats == null) {
+            this.writeData(cacheKey, value);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            this.writeData(cacheKey, value);
+        } finally {
+            this.stats.recordAdd(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Метод удаления кэш-элемента.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    public void removeData(long cacheKey) {
+        if (this.isConcurrent) this.lock.lock();
+        try {
+            int slot = this.slots.remove(cacheKey);
+            if (slot != LongIntHashMap.MISSING) this.release(slot);
+        } finally {
+            if (this.isConcurrent) this.lock.unlock();
+        }
+    }
+
+    /**
+     * @param cacheKey Ключ кэша.
+     * @return True - если кэш-элемент есть в хранилище. Бит обращения не устанавливается.
+     */
+    public boolean contains(long cacheKey) {
+        if (this.isConcurrent) this.lock.lock();
+        try {
+            return this.slots.containsKey(cacheKey);
+        } finally {
+            if (this.isConcurrent) this.lock.unlock();
+        }
+    }
+
+    /**
+     * Метод отчистки кэш-хранилища.
+     */
+    public void clear() {
+        if (this.isConcurrent) this.lock.lock();
+        try {
+            Arrays.fill(this.values, 0, this.used, null);
+            Arrays.fill(this.referenced, 0, this.used, false);
+            this.slots.clear();
+            this.used = 0;
+            this.freeCount = 0;
+            this.hand = 0;
+        } finally {
+            if (this.isConcurrent) this.lock.unlock();
+        }
+    }
+
+    public int size() {
+        if (this.isConcurrent) this.lock.lock();
+        try {
+            return this.slots.size();
+        } finally {
+            if (this.isConcurrent) this.lock.unlock();
+        }
+    }
+
+    /**
+     * Метод получения снимка статистики.
+     *
+     * @return Снимок статистики или {@link CacheStats#EMPTY}, если сбор статистики отключен.
+     */
+    public CacheStats stats() {
+        return this.stats == null ? CacheStats.EMPTY : this.stats.snapshot();
+    }
+
+    public boolean isConcurrent() {
+        return this.isConcurrent;
+    }
+
+    /**
+     * Метод закрытия кэш-хранилища. Снимает регистрацию MBean статистики.
+     */
+    @Override
+    public void close() {
+        if (this.stats != null) this.stats.unregister();
+    }
+
+    @SuppressWarnings("unchecked")
+    private V readData(long cacheKey) {
+        Object cacheValue = null;
+        if (this.isConcurrent) this.lock.lock();
+        try {
+            int slot = this.slots.get(cacheKey);
+            if (slot != LongIntHashMap.MISSING) {
+                this.referenced[slot] = true;
+                cacheValue = this.values[slot];
+            }
+        } finally {
+            if (this.isConcurrent) this.lock.unlock();
+        }
+        if (cacheValue != null) {
+            if (this.eventListener != CacheEventListener.NO_OP) this.eventListener.onHit(Long.toString(cacheKey));
+            if (this.stats != null) this.stats.recordHit();
+        } else {
+            if (this.eventListener != CacheEventListener.NO_OP) this.eventListener.onMiss(Long.toString(cacheKey));
+            if (this.stats != null) this.stats.recordMiss();
+        }
+        return (V) cacheValue;
+    }
+
+    private void writeData(long cacheKey, V value) {
+        boolean evicted = false;
+        long evictedKey = 0;
+        if (this.isConcurrent) this.lock.lock();
+        try {
+            int slot = this.slots.get(cacheKey);
+            if (slot != LongIntHashMap.MISSING) {
+                this.values[slot] = value;
+            } else {
+                if (this.slots.size() == this.capacity) {
+                    evictedKey = this.evictEntry();
+                    evicted = true;
+                }
+                this.insert(cacheKey, value);
+            }
+        } finally {
+            if (this.isConcurrent) this.lock.unlock();
+        }
+        if (evicted) {
+            if (this.eventListener != CacheEventListener.NO_OP) this.eventListener.onEvict(Long.toString(evictedKey), false);
+            if (this.stats != null) this.stats.recordEviction();
+        }
+        if (this.eventListener != CacheEventListener.NO_OP) this.eventListener.onPut(Long.toString(cacheKey));
+        if (this.stats != null) this.stats.recordPut();
+    }
+
+    /**
+     * Метод добавления кэш-элемента в кольцо. Новый кэш-элемент занимает последнюю освобождённую ячейку,
+     * то есть ячейку только что вытесненного кэш-элемента позади стрелки, и будет проверен последним.
+     */
+    private void insert(long cacheKey, Object value) {
+        int slot = this.freeCount > 0 ? this.freeSlots[--this.freeCount] : this.used++;
+        this.ring[slot] = cacheKey;
+        this.values[slot] = value;
+        this.referenced[slot] = false;
+        this.slots.put(cacheKey, slot);
+    }
+
+    /**
+     * Метод вытеснения кэш-элемента обходом кольца стрелкой.
+     *
+     * @return Ключ вытесненного кэш-элемента.
+     */
+    private long evictEntry() {
+        while (true) {
+            if (this.hand >= this.used) {
+                this.hand = 0;
+            }
+            int slot = this.hand++;
+            if (this.values[slot] == null) {
+                continue;
+            }
+            if (this.referenced[slot]) {
+                this.referenced[slot] = false;
+            } else {
+                long cacheKey = this.ring[slot];
+                this.slots.remove(cacheKey);
+                this.release(slot);
+                return cacheKey;
+            }
+        }
+    }
+
+    private void release(int slot) {
+        this.values[slot] = null;
+        this.referenced[slot] = false;
+        this.freeSlots[this.freeCount++] = slot;
+    }
+
+    /**
+     * Метод проверки, что билдер не требует возможностей, которые опираются на строковые ключи.
+     *
+     * @param builder Билдер кэш-хранилища.
+     */
+    private static void checkSupported(CacheStorageBuilder builder) {
+        if (builder.getCacheStrategyType() != DeleteStrategyType.CLOCK) {
+            throw new IllegalStateException("Хранилище с ключами long поддерживает только стратегию CLOCK");
+        }
+        if (builder.getCapacity() <= 0) {
+            throw new IllegalStateException("Хранилище с ключами long требует положительной вместимости");
+        }
+        if (builder.isL2CacheEnabled() || builder.isOffHeapEnabled() || builder.getWeigher() != null
+                || builder.getExpireAfterWrite() != null || builder.getExpireAfterAccess() != null
+                || builder.getSnapshotPath() != null || builder.getShardCount() > 1
+                || !builder.getKeyValueStorage().isEmpty()) {
+            throw new IllegalStateException("Хранилище с ключами long не поддерживает L2 кэш, хранение вне кучи, "
+                    + "функцию веса, сроки жизни, снимки, секции и начальные данные со строковыми ключами");
+        }
+    }
+}
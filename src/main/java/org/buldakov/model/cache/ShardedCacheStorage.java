@@ -0,0 +1,360 @@
+package org.buldakov.model.cache;
+
+import org.buldakov.model.cache.stats.CacheStats;
+import org.buldakov.model.cache.stats.StatsCounter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Секционированное кэш-хранилище.
+ * Распределяет ключи по хэшу между независимыми {@link CacheStorage секциями}: у каждой секции
+ * свой L1 кэш, своя стратегия вытеснения, своя блокировка и свой L2 кэш в поддиректории
+ * {@code shard-<index>} общей директории L2 кэша. Операции над разными секциями не конкурируют
+ * за одну блокировку вытеснения, а восстановление L2 кэша секций при создании выполняется параллельно.
+ * <p>
+ * Вместимость, ограничения веса, off-heap памяти и размера L2 кэша делятся между секциями поровну,
+ * поэтому вытеснение выполняется внутри секции и не учитывает приоритеты кэш-элементов других секций.
+ * <p>
+ * Создаётся через {@link CacheStorageBuilder#buildSharded()}.
+ */
+public class ShardedCacheStorage implements Closeable {
+
+    /**
+     * Имя файла в директории L2 кэша с количеством секций, под которое разложены данные.
+     */
+    private static final String SHARD_COUNT_FILE = "shards";
+
+    /**
+     * Секции хранилища.
+     */
+    private final CacheStorage[] shards;
+
+    /**
+     * Общий накопитель статистики секций или null, если сбор статистики отключен.
+     * Его MBean регистрируется один раз билдером и снимается с регистрации при закрытии хранилища.
+     */
+    private final StatsCounter stats;
+
+    ShardedCacheStorage(CacheStorageBuilder builder) throws IOException {
+        this.stats = builder.getStatsCounter();
+        int shardCount = builder.getShardCount();
+        if (builder.isL2CacheEnabled()) {
+            checkShardCount(builder.getL2CacheSettings().getDirectory(), shardCount);
+        }
+        this.shards = new CacheStorage[shardCount];
+        if (builder.isL2CacheEnabled() && shardCount > 1) {
+            this.buildInParallel(builder);
+        } else {
+            for (int i = 0; i < shardCount; i++) {
+                this.shards[i] = builder.forShard(i).build();
+            }
+        }
+    }
+
+    /**
+     * Метод выбора секции для ключа кэша.
+     *
+     * @param cacheKey   Ключ кэша.
+     * @param shardCount Количество секций.
+     * @return Номер секции.
+     */
+    static int shardOf(String cacheKey, int shardCount) {
+        int hash = cacheKey.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    /**
+     * @see CacheStorage#addData(String, Object)
+     */
+    public void addData(String cacheKey, Object value) {
+        this.shardFor(cacheKey).addData(cacheKey, value);
+    }
+
+    /**
+     * @see CacheStorage#addData(String, Object, Duration)
+     */
+    public void addData(String cacheKey, Object value, Duration ttl) {
+        this.shardFor(cacheKey).addData(cacheKey, value, ttl);
+    }
+
+    /**
+     * Метод пакетного добавления данных. Пачка делится по секциям,
+     * каждая часть добавляется через {@link CacheStorage#addAll(Map)} своей секции.
+     *
+     * @param data Кэш-элементы.
+     */
+    public void addAll(Map<String, ?> data) {
+        List<Map<String, Object>> parts = new ArrayList<>(this.shards.length);
+        for (int i = 0; i < this.shards.length; i++) parts.add(null);
+        for (Map.Entry<String, ?> entry : data.entrySet()) {
+            int index = shardOf(entry.getKey(), this.shards.length);
+            Map<String, Object> part = parts.get(index);
+            if (part == null) {
+                part = new HashMap<>();
+                parts.set(index, part);
+            }
+            part.put(entry.getKey(), entry.getValue());
+        }
+        for (int i = 0; i < this.shards.length; i++) {
+            if (parts.get(i) != null) this.shards[i].addAll(parts.get(i));
+        }
+    }
+
+    /**
+     * @see CacheStorage#getData(String)
+     */
+    public Object getData(String cacheKey) throws IOException, ClassNotFoundException {
+        return this.shardFor(cacheKey).getData(cacheKey);
+    }
+
+    /**
+     * @see CacheStorage#get(String, CacheLoader)
+     */
+    public Object get(String cacheKey, CacheLoader loader) throws IOException, ClassNotFoundException {
+        return this.shardFor(cacheKey).get(cacheKey, loader);
+    }
+
+    /**
+     * @see CacheStorage#getAsync(String, CacheLoader)
+     */
+    public CompletableFuture<Object> getAsync(String cacheKey, CacheLoader loader) {
+        return this.shardFor(cacheKey).getAsync(cacheKey, loader);
+    }
+
+    /**
+     * Метод пакетного получения данных. Ключи делятся по секциям,
+     * каждая часть читается через {@link CacheStorage#getAll(Collection)} своей секции.
+     *
+     * @param cacheKeys Ключи кэша.
+     * @return Найденные кэш-элементы.
+     * @throws IOException            Exception.
+     * @throws ClassNotFoundException Exception.
+     */
+    public Map<String, Object> getAll(Collection<String> cacheKeys) throws IOException, ClassNotFoundException {
+        List<List<String>> parts = new ArrayList<>(this.shards.length);
+        for (int i = 0; i < this.shards.length; i++) parts.add(null);
+        for (String cacheKey : cacheKeys) {
+            int index = shardOf(cacheKey, this.shards.length);
+            List<String> part = parts.get(index);
+            if (part == null) {
+                part = new ArrayList<>();
+                parts.set(index, part);
+            }
+            part.add(cacheKey);
+        }
+        Map<String, Object> result = new HashMap<>((int) (cacheKeys.size() / 0.75f) + 1);
+        for (int i = 0; i < this.shards.length; i++) {
+            if (parts.get(i) != null) result.putAll(this.shards[i].getAll(parts.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * @see CacheStorage#removeData(String)
+     */
+    public void removeData(String cacheKey) {
+        this.shardFor(cacheKey).removeData(cacheKey);
+    }
+
+    /**
+     * Метод отчистки L1 и L2 кэша всех секций.
+     */
+    public void clearAll() {
+        for (CacheStorage shard : this.shards) shard.clearAll();
+    }
+
+    /**
+     * Метод отчистки L1 кэша всех секций.
+     */
+    public void clear() {
+        for (CacheStorage shard : this.shards) shard.clear();
+    }
+
+    /**
+     * Метод удаления истёкших кэш-элементов всех секций.
+     */
+    public void cleanUp() {
+        for (CacheStorage shard : this.shards) shard.cleanUp();
+    }
+
+    /**
+     * Метод получения снимка статистики. Секции пишут в общий накопитель статистики.
+     *
+     * @return Снимок статистики или {@link CacheStats#EMPTY}, если сбор статистики отключен.
+     */
+    public CacheStats stats() {
+        return this.stats == null ? CacheStats.EMPTY : this.stats.snapshot();
+    }
+
+    /**
+     * @return Суммарный вес кэш-элементов L1 кэша всех секций.
+     */
+    public long getTotalWeight() {
+        long totalWeight = 0;
+        for (CacheStorage shard : this.shards) totalWeight += shard.getTotalWeight();
+        return totalWeight;
+    }
+
+    /**
+     * Метод получения суммарного хода прогрева L1 кэша всех секций.
+     *
+     * @return Ход прогрева.
+     */
+    public L2WarmUpProgress getWarmUpProgress() {
+        int loaded = 0;
+        int total = 0;
+        boolean done = true;
+        for (CacheStorage shard : this.shards) {
+            L2WarmUpProgress progress = shard.getWarmUpProgress();
+            loaded += progress.loaded();
+            total += progress.total();
+            done &= progress.done();
+        }
+        return new L2WarmUpProgress(loaded, total, done);
+    }
+
+    /**
+     * Метод ожидания завершения прогрева L1 кэша всех секций.
+     *
+     * @param timeout Наибольшее время ожидания.
+     * @return True - если прогрев всех секций завершён.
+     * @throws InterruptedException Если поток был прерван во время ожидания.
+     * @see CacheStorage#awaitWarmUp(Duration)
+     */
+    public boolean awaitWarmUp(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        boolean done = true;
+        for (CacheStorage shard : this.shards) {
+            done &= shard.awaitWarmUp(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+        }
+        return done;
+    }
+
+    /**
+     * Метод записи снимков L1 кэша всех секций. У каждой секции свой файл снимка.
+     *
+     * @return Суммарное количество кэш-элементов в снимках.
+     * @throws IOException В случае неудачной записи снимка.
+     * @see CacheStorage#checkpoint()
+     */
+    public int checkpoint() throws IOException {
+        int written = 0;
+        for (CacheStorage shard : this.shards) written += shard.checkpoint();
+        return written;
+    }
+
+    public int getShardCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * Метод закрытия всех секций.
+     * Закрывает каждую секцию, даже если закрытие предыдущей завершилось ошибкой,
+     * и снимает MBean статистики с регистрации.
+     *
+     * @throws IOException В случае неудачного закрытия L2 кэша одной из секций.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            closeAll(this.shards);
+        } finally {
+            if (this.stats != null) this.stats.unregister();
+        }
+    }
+
+    private CacheStorage shardFor(String cacheKey) {
+        return this.shards[shardOf(cacheKey, this.shards.length)];
+    }
+
+    /**
+     * Метод параллельного создания секций с L2 кэшем. Каждая секция восстанавливает
+     * свой L2 кэш в отдельном потоке. Если создание одной из секций завершилось ошибкой,
+     * созданные секции закрываются, MBean статистики снимается с регистрации.
+     *
+     * @param builder Билдер хранилища.
+     * @throws IOException В случае неудачной активации L2 кэша одной из секций.
+     */
+    private void buildInParallel(CacheStorageBuilder builder) throws IOException {
+        int threads = Math.min(this.shards.length, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(this.shards.length);
+            for (int i = 0; i < this.shards.length; i++) {
+                int index = i;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        this.shards[index] = builder.forShard(index).build();
+                    } catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException exception) {
+            Throwable cause = exception.getCause();
+            try {
+                this.close();
+            } catch (IOException closeException) {
+                cause.addSuppressed(closeException);
+            }
+            if (cause instanceof UncheckedIOException io) throw io.getCause();
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw exception;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Метод проверки количества секций, под которое разложен L2 кэш.
+     * Данные секций не переносятся между секциями, поэтому открытие L2 кэша
+     * с другим количеством секций запрещено.
+     *
+     * @param directory  Директория L2 кэша.
+     * @param shardCount Количество секций.
+     * @throws IOException В случае неудачного чтения или записи файла количества секций.
+     */
+    private static void checkShardCount(Path directory, int shardCount) throws IOException {
+        Path file = directory.resolve(SHARD_COUNT_FILE);
+        if (Files.exists(file)) {
+            int stored = Integer.parseInt(Files.readString(file).trim());
+            if (stored != shardCount) {
+                throw new IllegalStateException("L2 кэш " + directory + " разложен на " + stored
+                        + " секций, запрошено " + shardCount);
+            }
+            return;
+        }
+        Files.createDirectories(directory);
+        Files.writeString(file, Integer.toString(shardCount));
+    }
+
+    private static void closeAll(CacheStorage[] shards) throws IOException {
+        IOException failure = null;
+        for (CacheStorage shard : shards) {
+            if (shard == null) continue;
+            try {
+                shard.close();
+            } catch (IOException exception) {
+                if (failure == null) failure = exception;
+                else failure.addSuppressed(exception);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}
@@ -0,0 +1,19 @@
+package org.buldakov.model.cache;
+
+/**
+ * Функция веса кэш-элемента.
+ * Используется, если вместимость кэш-хранилища ограничена суммарным весом
+ * (см. {@link CacheStorageBuilder#setMaximumWeight(long, Weigher)}), например размером значения в байтах.
+ */
+@FunctionalInterface
+public interface Weigher {
+
+    /**
+     * Метод вычисления веса кэш-элемента.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param value    Значение кэша.
+     * @return Неотрицательный вес.
+     */
+    int weigh(String cacheKey, Object value);
+}
@@ -0,0 +1,64 @@
+package org.buldakov.model.cache.admission;
+
+/**
+ * Политика допуска кэш-элементов, приоритет которых не ниже среднего приоритета в очереди.
+ * Политика по умолчанию.
+ * <p>
+ * Поддерживает сумму и количество приоритетов. Сумма хранится в виде отклонений
+ * от первого учтённого приоритета, чтобы не переполняться на больших значениях
+ * (например, времени в миллисекундах для LRU).
+ */
+public class AverageAdmissionPolicy implements L2AdmissionPolicy {
+
+    /**
+     * Первый учтённый приоритет - точка отсчёта суммы.
+     */
+    private long origin;
+
+    /**
+     * Сумма отклонений приоритетов от точки отсчёта.
+     */
+    private long deltaSum;
+
+    private long count;
+
+    @Override
+    public void onInsert(long priority) {
+        if (this.count == 0) {
+            this.origin = priority;
+            this.deltaSum = 0;
+        }
+        this.deltaSum += priority - this.origin;
+        this.count++;
+    }
+
+    @Override
+    public void onUpdate(long oldPriority, long newPriority) {
+        this.deltaSum += newPriority - oldPriority;
+    }
+
+    @Override
+    public void onRemove(long priority) {
+        this.deltaSum -= priority - this.origin;
+        this.count--;
+    }
+
+    @Override
+    public void clear() {
+        this.deltaSum = 0;
+        this.count = 0;
+    }
+
+    @Override
+    public boolean admit(long priority) {
+        if (this.count == 0) {
+            return priority >= 0;
+        }
+        return priority >= this.origin + Math.floorDiv(this.deltaSum, this.count);
+    }
+
+    @Override
+    public L2AdmissionPolicy forShard(int shardCount) {
+        return new AverageAdmissionPolicy();
+    }
+}
@@ -0,0 +1,60 @@
+package org.buldakov.model.cache.admission;
+
+/**
+ * Политика допуска кэш-элементов в L2 кэш.
+ * <p>
+ * Стратегия кэширования сообщает политике о каждом изменении своей очереди (добавление,
+ * изменение приоритета, удаление), а политика поддерживает по ним агрегаты, позволяющие
+ * принять решение о допуске за O(1) без обхода очереди.
+ * <p>
+ * Приоритеты передаются в виде, в котором они хранятся в L2 кэше
+ * (см. {@link org.buldakov.model.cache.strategy.AbstractCacheStrategy#toStoredPriority(Comparable)}):
+ * большее значение - более ценный кэш-элемент для LFU (частота) и LRU (время последнего обращения).
+ */
+public interface L2AdmissionPolicy {
+
+    /**
+     * Метод учёта добавления кэш-элемента в очередь стратегии.
+     *
+     * @param priority Приоритет кэш-элемента.
+     */
+    void onInsert(long priority);
+
+    /**
+     * Метод учёта изменения приоритета кэш-элемента.
+     *
+     * @param oldPriority Прежний приоритет.
+     * @param newPriority Новый приоритет.
+     */
+    void onUpdate(long oldPriority, long newPriority);
+
+    /**
+     * Метод учёта удаления кэш-элемента из очереди стратегии.
+     *
+     * @param priority Приоритет кэш-элемента.
+     */
+    void onRemove(long priority);
+
+    /**
+     * Метод сброса агрегатов.
+     */
+    void clear();
+
+    /**
+     * Метод принятия решения о допуске кэш-элемента в L2 кэш.
+     *
+     * @param priority Приоритет кэш-элемента.
+     * @return True - если кэш-элемент нужно записать в L2 кэш.
+     */
+    boolean admit(long priority);
+
+    /**
+     * Метод создания политики для одной секции {@link org.buldakov.model.cache.ShardedCacheStorage
+     * секционированного хранилища}. У каждой секции своя очередь стратегии, поэтому
+     * политика создаётся с пустыми агрегатами.
+     *
+     * @param shardCount Количество секций.
+     * @return Политика с теми же параметрами, пересчитанными на одну секцию.
+     */
+    L2AdmissionPolicy forShard(int shardCount);
+}
@@ -0,0 +1,58 @@
+package org.buldakov.model.cache.admission;
+
+/**
+ * Политика допуска кэш-элементов, приоритет которых не ниже заданного перцентиля
+ * приоритетов в очереди. Перцентиль оценивается по {@link PriorityHistogram гистограмме}
+ * с логарифмическими корзинами (относительная погрешность не более 1/16).
+ */
+public class PercentileAdmissionPolicy implements L2AdmissionPolicy {
+
+    private final PriorityHistogram histogram = new PriorityHistogram();
+
+    /**
+     * Перцентиль в долях единицы.
+     */
+    private final double percentile;
+
+    /**
+     * @param percentile Перцентиль в долях единицы, например 0.9 - в L2 кэш попадают
+     *                   кэш-элементы из 10% самых приоритетных.
+     */
+    public PercentileAdmissionPolicy(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("Перцентиль должен быть в диапазоне [0, 1]");
+        }
+        this.percentile = percentile;
+    }
+
+    @Override
+    public void onInsert(long priority) {
+        this.histogram.add(priority, 1);
+    }
+
+    @Override
+    public void onUpdate(long oldPriority, long newPriority) {
+        this.histogram.add(oldPriority, -1);
+        this.histogram.add(newPriority, 1);
+    }
+
+    @Override
+    public void onRemove(long priority) {
+        this.histogram.add(priority, -1);
+    }
+
+    @Override
+    public void clear() {
+        this.histogram.clear();
+    }
+
+    @Override
+    public boolean admit(long priority) {
+        return this.histogram.countAtMost(priority) >= this.percentile * this.histogram.getTotal();
+    }
+
+    @Override
+    public L2AdmissionPolicy forShard(int shardCount) {
+        return new PercentileAdmissionPolicy(this.percentile);
+    }
+}
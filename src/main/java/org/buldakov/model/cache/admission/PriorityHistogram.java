@@ -0,0 +1,76 @@
+package org.buldakov.model.cache.admission;
+
+import java.util.Arrays;
+
+/**
+ * Гистограмма приоритетов с логарифмическими корзинами.
+ * <p>
+ * Приоритет отсчитывается от первого учтённого значения (значения ниже точки отсчёта попадают
+ * в нулевую корзину). Отклонения до 16 имеют собственные корзины, далее каждая степень двойки
+ * делится на 16 корзин, поэтому относительная погрешность не превышает 1/16.
+ * Счётчики корзин хранятся в дереве Фенвика: учёт значения и подсчёт количества значений
+ * не выше заданного выполняются за O(log B), где B - постоянное число корзин.
+ */
+class PriorityHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Количество корзин: линейные корзины и по 16 корзин на каждую степень двойки от 2^4 до 2^62.
+     */
+    private static final int BUCKETS = SUB_BUCKETS * (Long.SIZE - SUB_BUCKET_BITS);
+
+    /**
+     * Дерево Фенвика счётчиков корзин (индексация с 1).
+     */
+    private final long[] tree = new long[BUCKETS + 1];
+
+    private long origin;
+
+    private long total;
+
+    void add(long priority, long delta) {
+        if (this.total == 0 && delta > 0) {
+            this.origin = priority;
+        }
+        for (int i = this.bucketOf(priority) + 1; i <= BUCKETS; i += i & -i) {
+            this.tree[i] += delta;
+        }
+        this.total += delta;
+    }
+
+    /**
+     * Метод подсчёта количества учтённых значений, попадающих в корзины не выше корзины приоритета.
+     *
+     * @param priority Приоритет.
+     * @return Количество значений.
+     */
+    long countAtMost(long priority) {
+        long count = 0;
+        for (int i = this.bucketOf(priority) + 1; i > 0; i -= i & -i) {
+            count += this.tree[i];
+        }
+        return count;
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    void clear() {
+        Arrays.fill(this.tree, 0);
+        this.total = 0;
+    }
+
+    private int bucketOf(long priority) {
+        long value = priority - this.origin;
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(value, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+}
@@ -0,0 +1,57 @@
+package org.buldakov.model.cache.admission;
+
+/**
+ * Политика допуска в L2 кэш только k самых приоритетных кэш-элементов очереди.
+ * Ранг оценивается по {@link PriorityHistogram гистограмме} с логарифмическими корзинами,
+ * поэтому кэш-элементы с близкими приоритетами на границе top-k допускаются вместе.
+ */
+public class TopKAdmissionPolicy implements L2AdmissionPolicy {
+
+    private final PriorityHistogram histogram = new PriorityHistogram();
+
+    private final int k;
+
+    /**
+     * @param k Количество самых приоритетных кэш-элементов, допускаемых в L2 кэш.
+     */
+    public TopKAdmissionPolicy(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k должно быть положительным");
+        }
+        this.k = k;
+    }
+
+    @Override
+    public void onInsert(long priority) {
+        this.histogram.add(priority, 1);
+    }
+
+    @Override
+    public void onUpdate(long oldPriority, long newPriority) {
+        this.histogram.add(oldPriority, -1);
+        this.histogram.add(newPriority, 1);
+    }
+
+    @Override
+    public void onRemove(long priority) {
+        this.histogram.add(priority, -1);
+    }
+
+    @Override
+    public void clear() {
+        this.histogram.clear();
+    }
+
+    @Override
+    public boolean admit(long priority) {
+        return this.histogram.getTotal() - this.histogram.countAtMost(priority) < this.k;
+    }
+
+    /**
+     * В каждой секции допускается её доля из k кэш-элементов.
+     */
+    @Override
+    public L2AdmissionPolicy forShard(int shardCount) {
+        return new TopKAdmissionPolicy((this.k + shardCount - 1) / shardCount);
+    }
+}
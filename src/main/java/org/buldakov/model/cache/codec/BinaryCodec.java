@@ -0,0 +1,201 @@
+package org.buldakov.model.cache.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Бинарный кодек без схемы - кодек L2 кэша по умолчанию.
+ * <p>
+ * Значение записывается с однобайтовым тегом типа, поэтому при чтении восстанавливается
+ * исходный тип. Примитивы (в обёртках), строки и массивы байт пишутся напрямую в буфер,
+ * списки и отображения - рекурсивно поэлементно. Прочие {@link Serializable} объекты
+ * пишутся стандартной сериализацией Java.
+ */
+public class BinaryCodec implements ValueCodec<Object> {
+
+    public static final BinaryCodec INSTANCE = new BinaryCodec();
+
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte BYTE = 2;
+    private static final byte SHORT = 3;
+    private static final byte CHARACTER = 4;
+    private static final byte INTEGER = 5;
+    private static final byte LONG = 6;
+    private static final byte FLOAT = 7;
+    private static final byte DOUBLE = 8;
+    private static final byte STRING = 9;
+    private static final byte BYTES = 10;
+    private static final byte LIST = 11;
+    private static final byte MAP = 12;
+    private static final byte SERIALIZABLE = 13;
+
+    @Override
+    public void serialize(Object value, ByteBuffer buffer) {
+        if (value == null) {
+            buffer.put(NULL);
+        } else if (value instanceof Boolean booleanValue) {
+            buffer.put(BOOLEAN).put((byte) (booleanValue ? 1 : 0));
+        } else if (value instanceof Byte byteValue) {
+            buffer.put(BYTE).put(byteValue);
+        } else if (value instanceof Short shortValue) {
+            buffer.put(SHORT).putShort(shortValue);
+        } else if (value instanceof Character charValue) {
+            buffer.put(CHARACTER).putChar(charValue);
+        } else if (value instanceof Integer intValue) {
+            buffer.put(INTEGER).putInt(intValue);
+        } else if (value instanceof Long longValue) {
+            buffer.put(LONG).putLong(longValue);
+        } else if (value instanceof Float floatValue) {
+            buffer.put(FLOAT).putFloat(floatValue);
+        } else if (value instanceof Double doubleValue) {
+            buffer.put(DOUBLE).putDouble(doubleValue);
+        } else if (value instanceof String stringValue) {
+            buffer.put(STRING);
+            int lengthPosition = buffer.position();
+            buffer.putInt(0);
+            StringCodec.putUtf8(stringValue, buffer);
+            buffer.putInt(lengthPosition, buffer.position() - lengthPosition - Integer.BYTES);
+        } else if (value instanceof byte[] bytes) {
+            buffer.put(BYTES).putInt(bytes.length).put(bytes);
+        } else if (value instanceof List<?> list) {
+            buffer.put(LIST).putInt(list.size());
+            for (Object element : list) {
+                this.serialize(element, buffer);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            buffer.put(MAP).putInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                this.serialize(entry.getKey(), buffer);
+                this.serialize(entry.getValue(), buffer);
+            }
+        } else if (value instanceof Serializable) {
+            buffer.put(SERIALIZABLE);
+            int lengthPosition = buffer.position();
+            buffer.putInt(0);
+            try (ObjectOutputStream output = new ObjectOutputStream(new BufferOutputStream(buffer))) {
+                output.writeObject(value);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+            buffer.putInt(lengthPosition, buffer.position() - lengthPosition - Integer.BYTES);
+        } else {
+            throw new IllegalArgumentException("Тип " + value.getClass().getName() + " не поддерживается кодеком");
+        }
+    }
+
+    @Override
+    public Object deserialize(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        return switch (tag) {
+            case NULL -> null;
+            case BOOLEAN -> buffer.get() != 0;
+            case BYTE -> buffer.get();
+            case SHORT -> buffer.getShort();
+            case CHARACTER -> buffer.getChar();
+            case INTEGER -> buffer.getInt();
+            case LONG -> buffer.getLong();
+            case FLOAT -> buffer.getFloat();
+            case DOUBLE -> buffer.getDouble();
+            case STRING -> StringCodec.getUtf8(buffer, buffer.getInt());
+            case BYTES -> {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                yield bytes;
+            }
+            case LIST -> {
+                int size = buffer.getInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(this.deserialize(buffer));
+                }
+                yield list;
+            }
+            case MAP -> {
+                int size = buffer.getInt();
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(this.deserialize(buffer), this.deserialize(buffer));
+                }
+                yield map;
+            }
+            case SERIALIZABLE -> {
+                int length = buffer.getInt();
+                ByteBuffer serialized = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                try (ObjectInputStream input = new ObjectInputStream(new BufferInputStream(serialized))) {
+                    yield input.readObject();
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                } catch (ClassNotFoundException exception) {
+                    throw new IllegalArgumentException("Класс значения не найден: " + exception.getMessage(), exception);
+                }
+            }
+            default -> throw new IllegalArgumentException("Неизвестный тег типа: " + tag);
+        };
+    }
+
+    /**
+     * Поток записи напрямую в буфер.
+     */
+    private static class BufferOutputStream extends OutputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            this.buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            this.buffer.put(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Поток чтения напрямую из буфера.
+     */
+    private static class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+    }
+}
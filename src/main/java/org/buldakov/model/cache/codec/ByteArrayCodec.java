@@ -0,0 +1,23 @@
+package org.buldakov.model.cache.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Кодек массивов байт. Массив хранится как есть.
+ */
+public class ByteArrayCodec implements ValueCodec<byte[]> {
+
+    public static final ByteArrayCodec INSTANCE = new ByteArrayCodec();
+
+    @Override
+    public void serialize(byte[] value, ByteBuffer buffer) {
+        buffer.put(value);
+    }
+
+    @Override
+    public byte[] deserialize(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.remaining()];
+        buffer.get(value);
+        return value;
+    }
+}
@@ -0,0 +1,57 @@
+package org.buldakov.model.cache.codec;
+
+import java.nio.ByteBuffer;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Кодеки примитивных типов (в обёртках). Значение хранится в фиксированном
+ * количестве байт в порядке байт буфера.
+ *
+ * @param <T> Тип-обёртка примитива.
+ */
+public class PrimitiveCodec<T> implements ValueCodec<T> {
+
+    public static final PrimitiveCodec<Boolean> BOOLEAN
+            = new PrimitiveCodec<>((value, buffer) -> buffer.put((byte) (value ? 1 : 0)), buffer -> buffer.get() != 0);
+
+    public static final PrimitiveCodec<Byte> BYTE
+            = new PrimitiveCodec<>((value, buffer) -> buffer.put(value), ByteBuffer::get);
+
+    public static final PrimitiveCodec<Short> SHORT
+            = new PrimitiveCodec<>((value, buffer) -> buffer.putShort(value), ByteBuffer::getShort);
+
+    public static final PrimitiveCodec<Character> CHARACTER
+            = new PrimitiveCodec<>((value, buffer) -> buffer.putChar(value), ByteBuffer::getChar);
+
+    public static final PrimitiveCodec<Integer> INTEGER
+            = new PrimitiveCodec<>((value, buffer) -> buffer.putInt(value), ByteBuffer::getInt);
+
+    public static final PrimitiveCodec<Long> LONG
+            = new PrimitiveCodec<>((value, buffer) -> buffer.putLong(value), ByteBuffer::getLong);
+
+    public static final PrimitiveCodec<Float> FLOAT
+            = new PrimitiveCodec<>((value, buffer) -> buffer.putFloat(value), ByteBuffer::getFloat);
+
+    public static final PrimitiveCodec<Double> DOUBLE
+            = new PrimitiveCodec<>((value, buffer) -> buffer.putDouble(value), ByteBuffer::getDouble);
+
+    private final BiConsumer<T, ByteBuffer> writer;
+
+    private final Function<ByteBuffer, T> reader;
+
+    private PrimitiveCodec(BiConsumer<T, ByteBuffer> writer, Function<ByteBuffer, T> reader) {
+        this.writer = writer;
+        this.reader = reader;
+    }
+
+    @Override
+    public void serialize(T value, ByteBuffer buffer) {
+        this.writer.accept(value, buffer);
+    }
+
+    @Override
+    public T deserialize(ByteBuffer buffer) {
+        return this.reader.apply(buffer);
+    }
+}
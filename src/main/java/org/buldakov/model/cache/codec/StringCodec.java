@@ -0,0 +1,74 @@
+package org.buldakov.model.cache.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Кодек строк в UTF-8.
+ * Строка пишется в буфер посимвольно, без промежуточного массива байт.
+ */
+public class StringCodec implements ValueCodec<String> {
+
+    public static final StringCodec INSTANCE = new StringCodec();
+
+    @Override
+    public void serialize(String value, ByteBuffer buffer) {
+        putUtf8(value, buffer);
+    }
+
+    @Override
+    public String deserialize(ByteBuffer buffer) {
+        return getUtf8(buffer, buffer.remaining());
+    }
+
+    /**
+     * Метод записи строки в буфер в UTF-8.
+     * Непарные суррогаты заменяются символом '?', как это делает {@link String#getBytes(java.nio.charset.Charset)}.
+     *
+     * @param value  Строка.
+     * @param buffer Буфер.
+     */
+    public static void putUtf8(CharSequence value, ByteBuffer buffer) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18))
+                        .put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3F))
+                        .put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12))
+                        .put((byte) (0x80 | c >> 6 & 0x3F))
+                        .put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Метод чтения строки в UTF-8 из буфера.
+     *
+     * @param buffer Буфер. Его позиция сдвигается на длину строки.
+     * @param length Длина строки в байтах.
+     * @return Строка.
+     */
+    public static String getUtf8(ByteBuffer buffer, int length) {
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,36 @@
+package org.buldakov.model.cache.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Кодек значений кэша для хранения в L2 кэше.
+ * <p>
+ * Кодек записывает значение в переданный буфер начиная с его текущей позиции и читает значение
+ * из буфера, содержащего ровно одно закодированное значение. Буфер может быть как
+ * в куче, так и прямым ({@link ByteBuffer#allocateDirect(int)}), поэтому кодек не должен
+ * рассчитывать на {@link ByteBuffer#array()}.
+ * <p>
+ * Если места в буфере не хватает, кодек просто выбрасывает {@link java.nio.BufferOverflowException}
+ * (это делают методы put самого буфера): вызывающая сторона увеличит буфер и повторит запись.
+ * Значения, которые кодек не поддерживает, отвергаются {@link IllegalArgumentException}.
+ *
+ * @param <T> Тип значений кэша.
+ */
+public interface ValueCodec<T> {
+
+    /**
+     * Метод записи значения в буфер.
+     *
+     * @param value  Значение кэша.
+     * @param buffer Буфер, в который записывается значение, начиная с его текущей позиции.
+     */
+    void serialize(T value, ByteBuffer buffer);
+
+    /**
+     * Метод чтения значения из буфера.
+     *
+     * @param buffer Буфер, оставшиеся байты которого содержат закодированное значение.
+     * @return Значение кэша.
+     */
+    T deserialize(ByteBuffer buffer);
+}
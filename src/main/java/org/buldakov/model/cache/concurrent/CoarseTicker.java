@@ -0,0 +1,78 @@
+package org.buldakov.model.cache.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Грубые часы для мест, которым нужна метка времени, но не нужна её точность.
+ * <p>
+ * Текущее время в миллисекундах эпохи обновляет фоновый поток раз в {@link #RESOLUTION_MILLIS} мс,
+ * поэтому чтение времени - это чтение volatile поля без системного вызова и без создания объектов.
+ * Поток работает, пока часы кем-то {@link #acquire() захвачены}: он запускается первым захватом
+ * и останавливается последним {@link #release() освобождением}. Без захвата часы читают системное время.
+ * Поток не мешает завершению JVM.
+ */
+public final class CoarseTicker {
+
+    /**
+     * Период обновления времени в миллисекундах.
+     */
+    public static final int RESOLUTION_MILLIS = 20;
+
+    private static volatile long currentTimeMillis = System.currentTimeMillis();
+
+    /**
+     * Поток обновления времени или null, если часы никем не захвачены.
+     */
+    private static volatile Thread ticker;
+
+    /**
+     * Количество захватов часов.
+     */
+    private static int users;
+
+    private CoarseTicker() {
+    }
+
+    /**
+     * @return Текущее время в миллисекундах эпохи с точностью до {@link #RESOLUTION_MILLIS} мс.
+     */
+    public static long currentTimeMillis() {
+        return ticker == null ? System.currentTimeMillis() : currentTimeMillis;
+    }
+
+    /**
+     * Метод захвата часов. Первый захват запускает поток обновления времени.
+     * Каждому захвату должно соответствовать одно {@link #release() освобождение}.
+     */
+    public static synchronized void acquire() {
+        if (users++ > 0) {
+            return;
+        }
+        currentTimeMillis = System.currentTimeMillis();
+        Thread thread = new Thread(CoarseTicker::tick, "ardecs-coarse-ticker");
+        thread.setDaemon(true);
+        thread.start();
+        ticker = thread;
+    }
+
+    /**
+     * Метод освобождения часов. Последнее освобождение останавливает поток обновления времени.
+     */
+    public static synchronized void release() {
+        if (users == 0) {
+            throw new IllegalStateException("Часы не захвачены");
+        }
+        if (--users == 0) {
+            ticker.interrupt();
+            ticker = null;
+        }
+    }
+
+    private static void tick() {
+        while (!Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RESOLUTION_MILLIS));
+            currentTimeMillis = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.buldakov.model.cache.concurrent;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Буфер обращений к кэш-элементам для конкурентного режима.
+ * <p>
+ * Читающие потоки не трогают структуру стратегии напрямую, а записывают ключ
+ * в один из lock-free страйпов буфера. Накопленные обращения применяются к стратегии
+ * пакетно тем потоком, который захватил блокировку вытеснения.
+ */
+public class ReadBuffer {
+
+    /**
+     * Количество ожидающих обращений, после которого читающий поток
+     * пытается (без ожидания) применить буфер.
+     */
+    public static final int DRAIN_THRESHOLD = 64;
+
+    /**
+     * Количество ожидающих обращений, после которого читающий поток
+     * обязан дождаться блокировки и применить буфер.
+     * Ограничивает потребление памяти буфером - обращения не теряются.
+     */
+    public static final int MAX_PENDING = 4096;
+
+    /**
+     * Страйпы буфера. Поток пишет в страйп, выбранный по его идентификатору.
+     */
+    private final ConcurrentLinkedQueue<String>[] stripes;
+
+    /**
+     * Маска для выбора страйпа.
+     */
+    private final int stripeMask;
+
+    /**
+     * Количество ожидающих применения обращений.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Страйп, с которого начнётся следующее чтение.
+     */
+    private int drainStripe;
+
+    public ReadBuffer() {
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        this.stripes = newStripes(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Метод создания массива страйпов. Массив параметризованного типа создать нельзя,
+     * поэтому создаётся массив с подстановочным типом и приводится.
+     *
+     * @param stripeCount Количество страйпов.
+     * @return Массив страйпов.
+     */
+    @SuppressWarnings("unchecked")
+    private static ConcurrentLinkedQueue<String>[] newStripes(int stripeCount) {
+        return (ConcurrentLinkedQueue<String>[]) new ConcurrentLinkedQueue<?>[stripeCount];
+    }
+
+    /**
+     * Метод записи обращения к кэш-элементу.
+     *
+     * @param cacheKey Ключ кэша.
+     * @return Количество ожидающих применения обращений с учётом добавленного.
+     */
+    public int record(String cacheKey) {
+        int stripe = (int) Thread.currentThread().getId() & this.stripeMask;
+        this.stripes[stripe].offer(cacheKey);
+        return this.pending.incrementAndGet();
+    }
+
+    /**
+     * Метод извлечения очередного обращения.
+     * Должен вызываться только потоком, удерживающим блокировку вытеснения.
+     *
+     * @return Ключ кэша или null, если буфер пуст.
+     */
+    public String poll() {
+        for (int i = 0; i < this.stripes.length; i++) {
+            String cacheKey = this.stripes[this.drainStripe].poll();
+            if (cacheKey != null) {
+                this.pending.decrementAndGet();
+                return cacheKey;
+            }
+            this.drainStripe = (this.drainStripe + 1) & this.stripeMask;
+        }
+        return null;
+    }
+
+    /**
+     * Метод отчистки буфера без применения обращений.
+     */
+    public void clear() {
+        while (this.poll() != null) {
+            // Обращения к удалённым кэш-элементам не нужны.
+        }
+    }
+}
@@ -17,5 +17,23 @@ public enum DeleteStrategyType {
     /**
      * Least Recently Used.
      */
-    LRU
+    LRU,
+
+    /**
+     * Window TinyLFU: небольшое LRU окно для новых кэш-элементов и основная сегментированная
+     * LRU область, допуск в которую решается по частоте обращений из count-min sketch'а.
+     */
+    W_TINY_LFU,
+
+    /**
+     * CLOCK (второй шанс): приближение LRU кольцом бит обращения. Обращение только устанавливает бит,
+     * вытеснение обходит кольцо при добавлении.
+     */
+    CLOCK,
+
+    /**
+     * Adaptive Replacement Cache: списки однократно и повторно запрошенных кэш-элементов и призрачные
+     * списки вытесненных из них ключей, по промахам в которых подстраивается соотношение списков.
+     */
+    ARC
 }
@@ -0,0 +1,16 @@
+package org.buldakov.model.cache.enums;
+
+/**
+ * Перечисление политик поведения при переполнении очереди записи в L2 кэш.
+ */
+public enum L2BackpressurePolicy {
+    /**
+     * Вызывающий поток ждёт освобождения места в очереди.
+     */
+    BLOCK,
+
+    /**
+     * Запись отбрасывается, кэш-элемент не попадает в L2 кэш.
+     */
+    DROP
+}
@@ -0,0 +1,23 @@
+package org.buldakov.model.cache.enums;
+
+/**
+ * Перечисление режимов сжатия записей L2 кэша.
+ * Записи сжимаются блоками алгоритмом Deflate, в том числе с предустановленным словарём.
+ */
+public enum L2Compression {
+    /**
+     * Записи хранятся без сжатия.
+     */
+    NONE,
+
+    /**
+     * Быстрое сжатие (Deflate, уровень 1): немного больше файлы, меньше работы фонового писателя.
+     */
+    FAST,
+
+    /**
+     * Сильное сжатие (Deflate, уровень 9): меньше файлы и чтение при открытии, дороже запись.
+     * Скорость распаковки при чтении почти не отличается от {@link #FAST}.
+     */
+    HIGH_RATIO
+}
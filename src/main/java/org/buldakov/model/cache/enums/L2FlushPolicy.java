@@ -0,0 +1,21 @@
+package org.buldakov.model.cache.enums;
+
+/**
+ * Перечисление политик сброса (fsync) L2 кэш-файла на диск.
+ */
+public enum L2FlushPolicy {
+    /**
+     * Сброс после каждой записанной пачки.
+     */
+    PER_BATCH,
+
+    /**
+     * Сброс не чаще заданного интервала.
+     */
+    TIMED,
+
+    /**
+     * Сброс только при закрытии хранилища.
+     */
+    ON_CLOSE
+}
@@ -0,0 +1,17 @@
+package org.buldakov.model.cache.enums;
+
+/**
+ * Перечисление режимов наполнения L2 кэша.
+ */
+public enum L2TieringMode {
+    /**
+     * Кэш-элемент записывается в L2 при обращении, если его приоритет
+     * не ниже среднего приоритета в очереди стратегии.
+     */
+    ADMISSION,
+
+    /**
+     * Кэш-элемент записывается в L2 при вытеснении из L1 вместе со своим приоритетом.
+     */
+    SPILL_ON_EVICT
+}
@@ -0,0 +1,21 @@
+package org.buldakov.model.cache.enums;
+
+/**
+ * Перечисление режимов прогрева L1 кэша из L2 кэша при создании хранилища.
+ */
+public enum L2WarmUpMode {
+    /**
+     * Прогрев в фоновом потоке: хранилище доступно сразу после построения индекса L2 кэша.
+     */
+    BACKGROUND,
+
+    /**
+     * Прогрев до завершения создания хранилища.
+     */
+    SYNC,
+
+    /**
+     * Без прогрева: кэш-элементы поднимаются из L2 кэша только при промахах.
+     */
+    NONE
+}
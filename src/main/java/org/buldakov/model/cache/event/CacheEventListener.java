@@ -0,0 +1,191 @@
+package org.buldakov.model.cache.event;
+
+import java.nio.file.Path;
+
+/**
+ * Слушатель событий кэш-хранилища.
+ * <p>
+ * Методы вызываются синхронно в потоке, выполняющем операцию (события L2 записи - в потоке
+ * {@link org.buldakov.model.cache.filesystem.L2CacheResolver фонового писателя}), поэтому реализация
+ * не должна блокироваться. Все методы по умолчанию ничего не делают: пока в приложении
+ * используется только {@link #NO_OP}, вызовы встраиваются JIT-компилятором и исчезают.
+ */
+public interface CacheEventListener {
+
+    /**
+     * Слушатель, игнорирующий все события. Используется по умолчанию.
+     */
+    CacheEventListener NO_OP = new CacheEventListener() {
+    };
+
+    /**
+     * Событие попадания в L1 кэш.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    default void onHit(String cacheKey) {
+    }
+
+    /**
+     * Событие промаха по L1 кэшу.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    default void onMiss(String cacheKey) {
+    }
+
+    /**
+     * Событие добавления кэш-элемента в L1 кэш.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    default void onPut(String cacheKey) {
+    }
+
+    /**
+     * Событие вытеснения кэш-элемента из L1 кэша.
+     *
+     * @param cacheKey    Ключ кэша.
+     * @param spilledToL2 True - если кэш-элемент записан в L2 кэш.
+     */
+    default void onEvict(String cacheKey, boolean spilledToL2) {
+    }
+
+    /**
+     * Событие истечения срока жизни кэш-элемента.
+     * Кэш-элемент удалён из L1 и L2 кэша.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    default void onExpire(String cacheKey) {
+    }
+
+    /**
+     * Событие записи пачки в L2 кэш.
+     *
+     * @param count Количество записанных записей.
+     */
+    default void onL2Write(int count) {
+    }
+
+    /**
+     * Событие подъёма кэш-элемента из L2 кэша в L1.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    default void onL2Load(String cacheKey) {
+    }
+
+    /**
+     * Событие хода прогрева L1 кэша из L2 кэша. Вызывается после каждой поднятой пачки
+     * (в конкурентном режиме - в потоке прогрева).
+     *
+     * @param loaded Количество кэш-элементов, поднятых в L1 кэш.
+     * @param total  Количество кэш-элементов, отобранных для прогрева.
+     */
+    default void onL2WarmUp(int loaded, int total) {
+    }
+
+    /**
+     * Событие прерывания прогрева L1 кэша из-за ошибки чтения L2 кэша.
+     * Поднятые до ошибки кэш-элементы остаются в L1 кэше.
+     *
+     * @param exception Причина.
+     */
+    default void onL2WarmUpError(Exception exception) {
+    }
+
+    /**
+     * Событие уплотнения L2 кэша (в потоке фонового писателя).
+     *
+     * @param segments Количество уплотнённых сегментов.
+     * @param kept     Количество перенесённых в новый сегмент записей.
+     * @param dropped  Количество отброшенных записей сверх ограничения размера L2 кэша.
+     */
+    default void onL2Compact(int segments, int kept, int dropped) {
+    }
+
+    /**
+     * Событие очистки L2 кэша (в потоке фонового писателя).
+     */
+    default void onL2Clear() {
+    }
+
+    /**
+     * Событие ошибки записи L2 кэша: запись повреждена или её значение не прочитано либо не записано кодеком.
+     * Вызывается один раз на сегмент, для первой такой записи; все записи с ошибками
+     * учитываются в {@link org.buldakov.model.cache.stats.CacheStats#l2ErrorCount() статистике}.
+     *
+     * @param segment Путь к файлу сегмента.
+     * @param message Описание первой ошибки.
+     */
+    default void onL2RecordError(Path segment, String message) {
+    }
+
+    /**
+     * Событие ошибки сегмента L2 кэша: сегмент неподдерживаемого формата или сжатый другим словарём удалён,
+     * повреждённый хвост сегмента обрезан или подсказка сегмента не записана.
+     *
+     * @param segment Путь к файлу сегмента.
+     * @param message Описание ошибки.
+     */
+    default void onL2SegmentError(Path segment, String message) {
+    }
+
+    /**
+     * Событие неудачной записи пачки в L2 кэш или сброса L2 кэша на диск (в потоке фонового писателя).
+     * Записи пачки теряются, фоновый писатель продолжает работу.
+     *
+     * @param exception Причина.
+     */
+    default void onL2WriteError(Exception exception) {
+    }
+
+    /**
+     * Событие отбрасывания записей при переполненной очереди фонового писателя
+     * (см. {@link org.buldakov.model.cache.filesystem.L2BackpressurePolicy#DROP}).
+     *
+     * @param count Количество отброшенных записей.
+     */
+    default void onL2WriteDropped(int count) {
+    }
+
+    /**
+     * Событие восстановления L1 кэша из снимка при создании хранилища.
+     *
+     * @param restored Количество восстановленных кэш-элементов.
+     * @param total    Количество кэш-элементов в снимке.
+     */
+    default void onSnapshotRestore(int restored, int total) {
+    }
+
+    /**
+     * Событие отказа от снимка L1 кэша при создании хранилища: снимок неподдерживаемого формата,
+     * снят с хранилища с другой стратегией, повреждён или не прочитан кодеком. Хранилище создаётся пустым.
+     *
+     * @param snapshot Путь к файлу снимка.
+     * @param reason   Причина.
+     */
+    default void onSnapshotRejected(Path snapshot, String reason) {
+    }
+
+    /**
+     * Событие пропуска кэш-элементов, значения которых кодек не записал в снимок.
+     * Вызывается один раз на снимок.
+     *
+     * @param snapshot Путь к файлу снимка.
+     * @param skipped  Количество пропущенных кэш-элементов.
+     * @param message  Описание первой ошибки.
+     */
+    default void onSnapshotRecordError(Path snapshot, int skipped, String message) {
+    }
+
+    /**
+     * Событие неудачной записи снимка L1 кэша по расписанию (в потоке планировщика).
+     * Ошибка записи снимка, вызванной напрямую, передаётся вызывающему.
+     *
+     * @param exception Причина.
+     */
+    default void onSnapshotError(Exception exception) {
+    }
+}
@@ -0,0 +1,287 @@
+package org.buldakov.model.cache.event;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Слушатель, асинхронно записывающий события кэш-хранилища в журнал.
+ * <p>
+ * Поток, выполняющий операцию с кэшем, только помещает событие в ограниченную очередь,
+ * а форматирование и вывод выполняет фоновый поток. Количество событий ограничено
+ * в секунду: события сверх ограничения и при переполненной очереди отбрасываются,
+ * а их количество периодически выводится в журнал.
+ */
+public class LoggingCacheEventListener implements CacheEventListener, Closeable {
+
+    /**
+     * Тип события и шаблон сообщения о нём.
+     */
+    private enum EventType {
+        HIT("Cache log: используется элемент %s"),
+        MISS("Cache log: промах по элементу %s"),
+        PUT("Cache log: добавлен новый элемент %s"),
+        EVICT("Cache log: элемент %s удален"),
+        SPILL("Cache log: элемент %s вытеснен в L2 кэш"),
+        EXPIRE("Cache log: срок элемента %s истёк"),
+        L2_WRITE("L2 Cache log: в L2 cache была записана пачка из %s элементов"),
+        L2_LOAD("L2 to L1 fetch: элемент %s поднят из L2 кэша"),
+        L2_WARM_UP("L2 to L1 fetch: L1 хранилище прогревается, элементов: %s из %s"),
+        L2_WARM_UP_ERROR("L2 to L1 fetch: прогрев L1 кэша прерван: %s"),
+        L2_COMPACT("L2 Cache log: уплотнено сегментов: %s, сохранено записей: %s, отброшено: %s"),
+        L2_CLEAR("L2 Cache log: L2 cache отчищен"),
+        L2_RECORD_ERROR("L2 Cache log: ошибка записи сегмента %s: %s"),
+        L2_SEGMENT_ERROR("L2 Cache log: ошибка сегмента %s: %s"),
+        L2_WRITE_ERROR("L2 Cache log: ошибка записи в L2 cache: %s"),
+        L2_WRITE_DROPPED("L2 Cache log: очередь записи переполнена, элементов не записано в L2 cache: %s"),
+        SNAPSHOT_RESTORE("L1 Snapshot log: L1 хранилище восстановлено из снимка, элементов: %s из %s"),
+        SNAPSHOT_REJECTED("L1 Snapshot log: снимок %s не используется: %s"),
+        SNAPSHOT_RECORD_ERROR("L1 Snapshot log: в снимок %s не записано элементов: %s, первая ошибка: %s"),
+        SNAPSHOT_ERROR("L1 Snapshot log: снимок L1 кэша не записан: %s");
+
+        private final String template;
+
+        EventType(String template) {
+            this.template = template;
+        }
+    }
+
+    /**
+     * Событие в очереди журнала.
+     *
+     * @param type Тип события.
+     * @param args Аргументы шаблона: ключ кэша, количества записей. null - служебный сигнал.
+     */
+    private record Event(EventType type, Object... args) {
+    }
+
+    /**
+     * Сигнал закрытия журнала.
+     */
+    private static final Event CLOSE_SIGNAL = new Event(null, (Object[]) null);
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final PrintStream output;
+
+    private final int maxEventsPerSecond;
+
+    private final BlockingQueue<Event> queue;
+
+    /**
+     * Начало текущего секундного окна ограничения.
+     */
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+    /**
+     * Количество событий в текущем окне.
+     */
+    private final AtomicInteger windowCount = new AtomicInteger();
+
+    /**
+     * Количество отброшенных событий, ещё не выведенное в журнал.
+     */
+    private final LongAdder dropped = new LongAdder();
+
+    private final Thread thread;
+
+    private volatile boolean closed;
+
+    /**
+     * Журнал в {@link System#out}, не более 1000 событий в секунду.
+     */
+    public LoggingCacheEventListener() {
+        this(System.out, 1000, 8192);
+    }
+
+    /**
+     * @param output             Поток вывода журнала.
+     * @param maxEventsPerSecond Ограничение количества событий в секунду.
+     * @param queueCapacity      Вместимость очереди событий.
+     */
+    public LoggingCacheEventListener(PrintStream output, int maxEventsPerSecond, int queueCapacity) {
+        if (maxEventsPerSecond <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Ограничения журнала должны быть положительными");
+        }
+        this.output = output;
+        this.maxEventsPerSecond = maxEventsPerSecond;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::run, "ardecs-event-log");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void onHit(String cacheKey) {
+        this.publish(EventType.HIT, cacheKey);
+    }
+
+    @Override
+    public void onMiss(String cacheKey) {
+        this.publish(EventType.MISS, cacheKey);
+    }
+
+    @Override
+    public void onPut(String cacheKey) {
+        this.publish(EventType.PUT, cacheKey);
+    }
+
+    @Override
+    public void onEvict(String cacheKey, boolean spilledToL2) {
+        this.publish(spilledToL2 ? EventType.SPILL : EventType.EVICT, cacheKey);
+    }
+
+    @Override
+    public void onExpire(String cacheKey) {
+        this.publish(EventType.EXPIRE, cacheKey);
+    }
+
+    @Override
+    public void onL2Write(int count) {
+        this.publish(EventType.L2_WRITE, count);
+    }
+
+    @Override
+    public void onL2Load(String cacheKey) {
+        this.publish(EventType.L2_LOAD, cacheKey);
+    }
+
+    @Override
+    public void onL2WarmUp(int loaded, int total) {
+        this.publish(EventType.L2_WARM_UP, loaded, total);
+    }
+
+    @Override
+    public void onL2WarmUpError(Exception exception) {
+        this.publish(EventType.L2_WARM_UP_ERROR, exception.getMessage());
+    }
+
+    @Override
+    public void onL2Compact(int segments, int kept, int dropped) {
+        this.publish(EventType.L2_COMPACT, segments, kept, dropped);
+    }
+
+    @Override
+    public void onL2Clear() {
+        this.publish(EventType.L2_CLEAR);
+    }
+
+    @Override
+    public void onL2RecordError(Path segment, String message) {
+        this.publish(EventType.L2_RECORD_ERROR, segment, message);
+    }
+
+    @Override
+    public void onL2SegmentError(Path segment, String message) {
+        this.publish(EventType.L2_SEGMENT_ERROR, segment, message);
+    }
+
+    @Override
+    public void onL2WriteError(Exception exception) {
+        this.publish(EventType.L2_WRITE_ERROR, exception);
+    }
+
+    @Override
+    public void onL2WriteDropped(int count) {
+        this.publish(EventType.L2_WRITE_DROPPED, count);
+    }
+
+    @Override
+    public void onSnapshotRestore(int restored, int total) {
+        this.publish(EventType.SNAPSHOT_RESTORE, restored, total);
+    }
+
+    @Override
+    public void onSnapshotRejected(Path snapshot, String reason) {
+        this.publish(EventType.SNAPSHOT_REJECTED, snapshot, reason);
+    }
+
+    @Override
+    public void onSnapshotRecordError(Path snapshot, int skipped, String message) {
+        this.publish(EventType.SNAPSHOT_RECORD_ERROR, snapshot, skipped, message);
+    }
+
+    @Override
+    public void onSnapshotError(Exception exception) {
+        this.publish(EventType.SNAPSHOT_ERROR, exception.getMessage());
+    }
+
+    /**
+     * Метод закрытия журнала. Дожидается вывода всех принятых событий.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.queue.put(CLOSE_SIGNAL);
+            this.thread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Метод постановки события в очередь с учётом ограничения.
+     *
+     * @param type Тип события.
+     * @param args Аргументы шаблона сообщения.
+     */
+    private void publish(EventType type, Object... args) {
+        if (this.closed || !this.tryAcquire() || !this.queue.offer(new Event(type, args))) {
+            this.dropped.increment();
+        }
+    }
+
+    /**
+     * Метод проверки ограничения количества событий в текущем секундном окне.
+     *
+     * @return True - если событие укладывается в ограничение.
+     */
+    private boolean tryAcquire() {
+        long now = System.nanoTime();
+        long start = this.windowStart.get();
+        if (now - start >= WINDOW_NANOS && this.windowStart.compareAndSet(start, now)) {
+            this.windowCount.set(0);
+        }
+        return this.windowCount.incrementAndGet() <= this.maxEventsPerSecond;
+    }
+
+    private void run() {
+        List<Event> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                Event first = this.queue.poll(WINDOW_NANOS, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    this.queue.drainTo(batch);
+                }
+            } catch (InterruptedException exception) {
+                running = false;
+            }
+            for (Event event : batch) {
+                if (event == CLOSE_SIGNAL) {
+                    running = false;
+                } else {
+                    this.output.println(String.format(event.type().template, event.args()));
+                }
+            }
+            batch.clear();
+            long droppedCount = this.dropped.sumThenReset();
+            if (droppedCount > 0) {
+                this.output.println("Cache log: пропущено событий: " + droppedCount);
+            }
+        }
+    }
+}
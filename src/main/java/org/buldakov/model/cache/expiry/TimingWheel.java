@@ -0,0 +1,302 @@
+package org.buldakov.model.cache.expiry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо времени для истечения срока жизни кэш-элементов.
+ * <p>
+ * Колесо состоит из {@link #LEVELS} уровней по {@link #BUCKETS} корзин. Корзина нулевого уровня
+ * охватывает около миллисекунды, корзина каждого следующего уровня - в {@link #BUCKETS} раз больше,
+ * поэтому верхний уровень охватывает около двух недель. Кэш-элемент помещается в корзину
+ * того уровня, до конца которого он истечёт. При продвижении колеса пройденные корзины
+ * разбираются: истёкшие кэш-элементы удаляются, остальные переносятся на нижний уровень.
+ * Каждый кэш-элемент переносится не более {@link #LEVELS} раз, поэтому удаление истёкших
+ * кэш-элементов выполняется за амортизированное O(1).
+ * <p>
+ * Продление срока при обращении (см. {@link #touch(String, long)}) только обновляет срок узла
+ * без перестановки: узел будет перенесён, когда колесо дойдёт до его прежней корзины.
+ * Изменение колеса выполняется под блокировкой вызывающего кода, {@link #touch(String, long)}
+ * и {@link #isExpired(String)} допускают конкурентный вызов, если колесо создано конкурентным.
+ */
+public class TimingWheel {
+
+    private static final int LEVELS = 5;
+
+    private static final int BUCKET_BITS = 6;
+
+    private static final int BUCKETS = 1 << BUCKET_BITS;
+
+    /**
+     * Длительность тика нулевого уровня: 2^20 нс, около 1 мс.
+     */
+    private static final int TICK_SHIFT = 20;
+
+    /**
+     * Узел кэш-элемента в корзине колеса.
+     */
+    private static final class Node {
+
+        private final String key;
+
+        /**
+         * Срок, установленный при записи. Long.MAX_VALUE - без ограничения.
+         */
+        private long writeDeadline;
+
+        /**
+         * Момент истечения с учётом продления при обращении.
+         */
+        private volatile long expirationTime;
+
+        private Node previous;
+
+        private Node next;
+
+        private Node(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Корзины колеса. Каждая корзина - кольцевой список с узлом-заглушкой.
+     */
+    private final Node[][] wheel = new Node[LEVELS][BUCKETS];
+
+    private final Map<String, Node> nodes;
+
+    /**
+     * Точка отсчёта времени колеса в терминах {@link System#nanoTime()}.
+     */
+    private final long origin = System.nanoTime();
+
+    /**
+     * Время, до которого колесо продвинуто.
+     */
+    private long currentTime;
+
+    /**
+     * @param concurrent True - если {@link #touch(String, long)} и {@link #isExpired(String)}
+     *                   будут вызываться конкурентно с изменением колеса.
+     */
+    public TimingWheel(boolean concurrent) {
+        this.nodes = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        for (Node[] level : this.wheel) {
+            for (int i = 0; i < BUCKETS; i++) {
+                Node sentinel = new Node(null);
+                sentinel.previous = sentinel;
+                sentinel.next = sentinel;
+                level[i] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * @return Текущее время колеса в наносекундах.
+     */
+    public long now() {
+        return System.nanoTime() - this.origin;
+    }
+
+    /**
+     * Метод установки срока жизни кэш-элемента. Заменяет прежний срок, если он был.
+     *
+     * @param key       Ключ кэша.
+     * @param ttlNanos  Время жизни после записи или 0, если оно не ограничено.
+     * @param idleNanos Время жизни без обращений или 0, если оно не ограничено.
+     */
+    public void schedule(String key, long ttlNanos, long idleNanos) {
+        long now = this.now();
+        Node node = this.nodes.get(key);
+        if (node == null) {
+            node = new Node(key);
+            this.nodes.put(key, node);
+        } else {
+            unlink(node);
+        }
+        node.writeDeadline = ttlNanos > 0 ? now + ttlNanos : Long.MAX_VALUE;
+        node.expirationTime = idleNanos > 0 ? Math.min(node.writeDeadline, now + idleNanos) : node.writeDeadline;
+        this.link(node);
+    }
+
+    /**
+     * Метод учёта обращения к кэш-элементу.
+     * Если задано время жизни без обращений, продлевает срок кэш-элемента.
+     *
+     * @param key       Ключ кэша.
+     * @param idleNanos Время жизни без обращений или 0, если оно не ограничено.
+     * @return False - если срок кэш-элемента истёк.
+     */
+    public boolean touch(String key, long idleNanos) {
+        Node node = this.nodes.get(key);
+        if (node == null) {
+            return true;
+        }
+        long now = this.now();
+        if (node.expirationTime <= now) {
+            return false;
+        }
+        if (idleNanos > 0) {
+            node.expirationTime = Math.min(node.writeDeadline, now + idleNanos);
+        }
+        return true;
+    }
+
+    /**
+     * @param key Ключ кэша.
+     * @return True - если срок кэш-элемента истёк, но он ещё не удалён колесом.
+     */
+    public boolean isExpired(String key) {
+        Node node = this.nodes.get(key);
+        return node != null && node.expirationTime <= this.now();
+    }
+
+    /**
+     * @param key Ключ кэша.
+     * @return Оставшееся время жизни после записи в наносекундах или 0, если оно не ограничено.
+     */
+    public long remainingWriteNanos(String key) {
+        Node node = this.nodes.get(key);
+        if (node == null || node.writeDeadline == Long.MAX_VALUE) {
+            return 0;
+        }
+        return Math.max(1, node.writeDeadline - this.now());
+    }
+
+    public boolean contains(String key) {
+        return this.nodes.containsKey(key);
+    }
+
+    /**
+     * Метод удаления срока жизни кэш-элемента.
+     *
+     * @param key Ключ кэша.
+     */
+    public void remove(String key) {
+        Node node = this.nodes.remove(key);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.nodes.isEmpty();
+    }
+
+    public int size() {
+        return this.nodes.size();
+    }
+
+    /**
+     * @return True - если с момента последнего продвижения прошёл хотя бы один тик.
+     */
+    public boolean isAdvanceDue() {
+        return (this.now() >>> TICK_SHIFT) != (this.currentTime >>> TICK_SHIFT);
+    }
+
+    /**
+     * Метод продвижения колеса до текущего момента.
+     * Истёкшие кэш-элементы удаляются из колеса и передаются обработчику.
+     *
+     * @param onExpire Обработчик истёкших кэш-элементов.
+     */
+    public void advance(Consumer<String> onExpire) {
+        long previousTime = this.currentTime;
+        long now = this.now();
+        this.currentTime = now;
+        for (int level = 0; level < LEVELS; level++) {
+            long previousTicks = previousTime >>> shift(level);
+            long delta = (now >>> shift(level)) - previousTicks;
+            if (delta <= 0) {
+                break;
+            }
+            this.expireLevel(level, previousTicks, delta, now, onExpire);
+        }
+    }
+
+    /**
+     * Метод отчистки колеса.
+     */
+    public void clear() {
+        for (Node[] level : this.wheel) {
+            for (Node sentinel : level) {
+                sentinel.previous = sentinel;
+                sentinel.next = sentinel;
+            }
+        }
+        this.nodes.clear();
+    }
+
+    /**
+     * Метод разбора пройденных корзин уровня.
+     *
+     * @param level         Уровень колеса.
+     * @param previousTicks Тик уровня, на котором колесо стояло.
+     * @param delta         Количество пройденных тиков уровня.
+     * @param now           Текущее время колеса.
+     * @param onExpire      Обработчик истёкших кэш-элементов.
+     */
+    private void expireLevel(int level, long previousTicks, long delta, long now, Consumer<String> onExpire) {
+        int count = (int) Math.min(delta, BUCKETS);
+        for (int i = 0; i < count; i++) {
+            Node sentinel = this.wheel[level][(int) ((previousTicks + i) & (BUCKETS - 1))];
+            Node node = sentinel.next;
+            sentinel.previous = sentinel;
+            sentinel.next = sentinel;
+            while (node != sentinel) {
+                Node next = node.next;
+                node.previous = null;
+                node.next = null;
+                if (node.expirationTime <= now) {
+                    this.nodes.remove(node.key, node);
+                    onExpire.accept(node.key);
+                } else {
+                    this.link(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * Метод помещения узла в корзину по его сроку.
+     *
+     * @param node Узел кэш-элемента.
+     */
+    private void link(Node node) {
+        long expirationTime = node.expirationTime;
+        long delay = expirationTime - this.currentTime;
+        Node sentinel;
+        if (delay < 0) {
+            sentinel = this.wheel[0][(int) ((this.currentTime >>> TICK_SHIFT) & (BUCKETS - 1))];
+        } else {
+            int level = 0;
+            while (level < LEVELS - 1 && delay >= 1L << shift(level + 1)) {
+                level++;
+            }
+            long ticks = delay >= 1L << shift(LEVELS)
+                    ? (this.currentTime >>> shift(level)) + BUCKETS - 1
+                    : expirationTime >>> shift(level);
+            sentinel = this.wheel[level][(int) (ticks & (BUCKETS - 1))];
+        }
+        node.next = sentinel;
+        node.previous = sentinel.previous;
+        sentinel.previous.next = node;
+        sentinel.previous = node;
+    }
+
+    private static void unlink(Node node) {
+        if (node.next != null) {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous = null;
+            node.next = null;
+        }
+    }
+
+    private static int shift(int level) {
+        return TICK_SHIFT + level * BUCKET_BITS;
+    }
+}
@@ -0,0 +1,263 @@
+package org.buldakov.model.cache.filesystem;
+
+import org.buldakov.model.cache.enums.L2Compression;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие блоков записей L2 кэша.
+ * <p>
+ * В сжатом {@link L2Segment сегменте} записи лежат не подряд, а блоками: несколько соседних записей
+ * сжимаются алгоритмом Deflate вместе, что даёт сжатию общий контекст. Блок имеет вид
+ * <pre>
+ * | длина сжатых данных (int) | длина записей до сжатия (int) | CRC32 сжатых данных (int) | сжатые данные |
+ * </pre>
+ * Смещение записи в сжатом сегменте - "виртуальное": старшие биты - смещение блока в файле,
+ * младшие {@link #RECORD_OFFSET_BITS} - смещение записи внутри блока до сжатия. Поэтому индекс L2 кэша
+ * и {@link L2SegmentHint подсказки} не меняются, а чтение одной записи распаковывает только её блок.
+ * Запись начинается внутри блока не дальше {@link #MAX_BLOCK_SIZE}, более длинная запись занимает блок одна.
+ * <p>
+ * Для небольших значений можно задать предустановленный словарь (см. {@link L2CompressionDictionary}):
+ * он заменяет сжатию отсутствующий в коротком блоке контекст. Сегмент помнит контрольную сумму словаря,
+ * которым он сжат.
+ * <p>
+ * Сжатием пользуется только фоновый писатель, распаковкой - любые потоки.
+ */
+final class L2BlockCompressor implements Closeable {
+
+    /**
+     * Размер заголовка блока в байтах.
+     */
+    static final int BLOCK_HEADER_SIZE = Integer.BYTES * 3;
+
+    /**
+     * Количество младших бит виртуального смещения, занятых смещением записи внутри блока.
+     */
+    static final int RECORD_OFFSET_BITS = 16;
+
+    /**
+     * Наибольший размер блока до сжатия, в пределах которого начинаются его записи.
+     */
+    static final int MAX_BLOCK_SIZE = 1 << RECORD_OFFSET_BITS;
+
+    /**
+     * Буферы сжатых данных блока при чтении, по одному на поток.
+     */
+    private static final ThreadLocal<ByteBuffer> COMPRESSED_BUFFERS
+            = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(MAX_BLOCK_SIZE));
+
+    /**
+     * Буферы распакованного блока, по одному на поток.
+     */
+    private static final ThreadLocal<ByteBuffer> BLOCK_BUFFERS
+            = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(MAX_BLOCK_SIZE));
+
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    private final L2Compression compression;
+
+    /**
+     * Предустановленный словарь или null.
+     */
+    private final byte[] dictionary;
+
+    private final int dictionaryChecksum;
+
+    /**
+     * Компрессор фонового писателя. Создаётся при первом сжатии.
+     */
+    private Deflater deflater;
+
+    L2BlockCompressor(L2Compression compression, byte[] dictionary) {
+        this.compression = compression;
+        this.dictionary = dictionary;
+        this.dictionaryChecksum = checksumOf(dictionary);
+    }
+
+    /**
+     * Метод получения контрольной суммы словаря - той же, которую Deflate записывает в сжатые данные.
+     *
+     * @param dictionary Словарь или null.
+     * @return Контрольная сумма Adler-32 или 0, если словаря нет.
+     */
+    static int checksumOf(byte[] dictionary) {
+        if (dictionary == null) {
+            return 0;
+        }
+        Adler32 checksum = new Adler32();
+        checksum.update(dictionary);
+        return (int) checksum.getValue();
+    }
+
+    static long pointerOffset(long blockOffset, int recordOffset) {
+        return blockOffset << RECORD_OFFSET_BITS | recordOffset;
+    }
+
+    static long blockOffsetOf(long pointerOffset) {
+        return pointerOffset >>> RECORD_OFFSET_BITS;
+    }
+
+    static int recordOffsetOf(long pointerOffset) {
+        return (int) (pointerOffset & (MAX_BLOCK_SIZE - 1));
+    }
+
+    /**
+     * Наибольший размер сжатого блока с заголовком для блока заданного размера.
+     *
+     * @param length Размер блока до сжатия.
+     * @return Размер в байтах.
+     */
+    static int maxCompressedSize(int length) {
+        return BLOCK_HEADER_SIZE + length + (length >>> 8) + 64;
+    }
+
+    L2Compression getCompression() {
+        return this.compression;
+    }
+
+    boolean isEnabled() {
+        return this.compression != L2Compression.NONE;
+    }
+
+    int getDictionaryChecksum() {
+        return this.dictionaryChecksum;
+    }
+
+    /**
+     * Метод сжатия блока. Блок с заголовком записывается в буфер начиная с его текущей позиции.
+     *
+     * @param block  Записи блока (оставшиеся байты буфера).
+     * @param output Буфер сжатых блоков.
+     * @throws BufferOverflowException Если сжатый блок не поместился в буфер.
+     */
+    void compress(ByteBuffer block, ByteBuffer output) {
+        int blockStart = output.position();
+        if (output.remaining() < BLOCK_HEADER_SIZE) {
+            throw new BufferOverflowException();
+        }
+        int length = block.remaining();
+        Deflater deflater = this.deflater();
+        deflater.setInput(block.duplicate());
+        deflater.finish();
+        output.position(blockStart + BLOCK_HEADER_SIZE);
+        while (!deflater.finished()) {
+            if (!output.hasRemaining()) {
+                output.position(blockStart);
+                throw new BufferOverflowException();
+            }
+            deflater.deflate(output);
+        }
+        int compressedLength = output.position() - blockStart - BLOCK_HEADER_SIZE;
+        CRC32 checksum = new CRC32();
+        checksum.update(output.slice(blockStart + BLOCK_HEADER_SIZE, compressedLength));
+        output.putInt(blockStart, compressedLength)
+                .putInt(blockStart + Integer.BYTES, length)
+                .putInt(blockStart + Integer.BYTES * 2, (int) checksum.getValue());
+    }
+
+    /**
+     * Метод чтения и распаковки блока сегмента двумя позиционными чтениями: заголовка и сжатых данных.
+     *
+     * @param segment     Сжатый сегмент.
+     * @param blockOffset Смещение блока в файле сегмента.
+     * @return Распакованный блок или null, если блок повреждён. Буфер закреплён за потоком
+     * и действителен до следующей распаковки в нём.
+     * @throws IOException В случае неудачного чтения.
+     */
+    ByteBuffer readBlock(L2Segment segment, long blockOffset) throws IOException {
+        ByteBuffer header = COMPRESSED_BUFFERS.get().clear().limit(BLOCK_HEADER_SIZE);
+        if (!segment.read(header, blockOffset)) {
+            return null;
+        }
+        int compressedLength = header.getInt(0);
+        int length = header.getInt(Integer.BYTES);
+        int checksum = header.getInt(Integer.BYTES * 2);
+        if (compressedLength < 0 || length < 0
+                || blockOffset + BLOCK_HEADER_SIZE + compressedLength > segment.getSize()) {
+            return null;
+        }
+        ByteBuffer compressed = buffer(COMPRESSED_BUFFERS, compressedLength);
+        if (!segment.read(compressed, blockOffset + BLOCK_HEADER_SIZE)) {
+            return null;
+        }
+        return this.decompress(compressed.flip(), length, checksum);
+    }
+
+    /**
+     * Метод проверки и распаковки сжатых данных блока.
+     *
+     * @param compressed Сжатые данные (оставшиеся байты буфера).
+     * @param length     Длина записей блока до сжатия.
+     * @param checksum   Контрольная сумма сжатых данных из заголовка блока.
+     * @return Распакованный блок или null, если блок повреждён или сжат другим словарём.
+     * Буфер закреплён за потоком и действителен до следующей распаковки в нём.
+     */
+    ByteBuffer decompress(ByteBuffer compressed, int length, int checksum) {
+        CRC32 crc = new CRC32();
+        crc.update(compressed.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        ByteBuffer block = buffer(BLOCK_BUFFERS, length);
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            while (!inflater.finished()) {
+                if (inflater.needsDictionary()) {
+                    if (this.dictionary == null || inflater.getAdler() != this.dictionaryChecksum) {
+                        return null;
+                    }
+                    inflater.setDictionary(this.dictionary);
+                }
+                if (inflater.inflate(block) == 0 && !inflater.finished() && !inflater.needsDictionary()) {
+                    return null;
+                }
+            }
+        } catch (DataFormatException exception) {
+            return null;
+        }
+        return block.position() == length ? block.flip() : null;
+    }
+
+    @Override
+    public void close() {
+        if (this.deflater != null) {
+            this.deflater.end();
+        }
+    }
+
+    private Deflater deflater() {
+        if (this.deflater == null) {
+            this.deflater = new Deflater(this.compression == L2Compression.HIGH_RATIO
+                    ? Deflater.BEST_COMPRESSION
+                    : Deflater.BEST_SPEED);
+        } else {
+            this.deflater.reset();
+        }
+        if (this.dictionary != null) {
+            this.deflater.setDictionary(this.dictionary);
+        }
+        return this.deflater;
+    }
+
+    /**
+     * Метод получения закреплённого за потоком буфера не меньше заданного размера.
+     * Буферы больше {@link #MAX_BLOCK_SIZE} за потоком не закрепляются.
+     */
+    private static ByteBuffer buffer(ThreadLocal<ByteBuffer> buffers, int length) {
+        ByteBuffer buffer = buffers.get();
+        if (buffer.capacity() < length) {
+            return ByteBuffer.allocateDirect(length);
+        }
+        return buffer.clear().limit(length);
+    }
+}
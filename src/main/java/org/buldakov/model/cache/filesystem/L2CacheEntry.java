@@ -0,0 +1,11 @@
+package org.buldakov.model.cache.filesystem;
+
+/**
+ * Кэш-элемент, прочитанный из L2 кэша или ожидающий записи в него.
+ *
+ * @param value    Значение кэша.
+ * @param priority Приоритет кэш-элемента в стратегии на момент записи
+ *                 (см. {@link org.buldakov.model.cache.strategy.AbstractCacheStrategy#toStoredPriority(Comparable)}).
+ */
+public record L2CacheEntry(Object value, long priority) {
+}
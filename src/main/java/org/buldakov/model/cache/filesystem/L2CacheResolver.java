@@ -1,68 +1,1106 @@
 package org.buldakov.model.cache.filesystem;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import org.buldakov.model.cache.codec.StringCodec;
+import org.buldakov.model.cache.codec.ValueCodec;
+import org.buldakov.model.cache.enums.L2Compression;
+import org.buldakov.model.cache.stats.StatsCounter;
+
+import java.io.Closeable;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 /**
  * Класс, отвечающий за работу L2 кэша (работа с файловой системой).
+ * <p>
+ * L2 кэш хранится в директории в виде набора {@link L2Segment сегментов}. Записи добавляются
+ * в конец активного сегмента, заполненный сегмент закрывается для записи и создаётся новый.
+ * Каждая запись имеет вид
+ * <pre>
+ * | длина ключа (int) | длина значения (int) | приоритет (long) | ключ (UTF-8) | значение | CRC32 (int) |
+ * </pre>
+ * Значение записывается {@link ValueCodec кодеком} из настроек L2 кэша.
+ * Приоритет - метаданные стратегии кэширования на момент записи (частота обращений,
+ * время последнего обращения), что позволяет восстановить их при возврате элемента в L1 кэш.
+ * Контрольная сумма считается по длинам, приоритету, ключу и значению. Удаление ключа записывается
+ * "надгробием" - записью с длиной значения {@link #TOMBSTONE_LENGTH}. Запись и позиционное чтение
+ * выполняются через прямые буферы, без промежуточных копий значений.
+ * <p>
+ * Резолвер ведёт индекс "ключ - {@link L2RecordPointer позиция записи}", что позволяет
+ * читать значение одного ключа позиционным чтением без повторного чтения всего файла.
+ * При активации значения не читаются: индекс закрытых сегментов строится по их
+ * {@link L2SegmentHint подсказкам}, а сегменты без подсказки и активный сегмент просматриваются
+ * через отображение файла в память с проверкой контрольных сумм, но без декодирования значений.
+ * <p>
+ * Если включено сжатие (см. {@link L2CacheSettings#setCompression(L2Compression)}), новые сегменты хранят записи
+ * {@link L2BlockCompressor сжатыми блоками}, а позиция записи указывает на её блок и смещение внутри него.
+ * Чтение одного ключа распаковывает один блок, чтение нескольких ключей - каждый нужный блок один раз.
+ * Сегменты с другим режимом сжатия остаются читаемыми, уплотнение переписывает их в текущем режиме.
+ * <p>
+ * Запись выполняется асинхронно через {@link L2WriteBehindWriter фонового писателя},
+ * поэтому поток, обратившийся к кэшу, не ждёт диска. Тот же поток уплотняет закрытые сегменты,
+ * оставляя только последнюю запись каждого ключа, и ограничивает общий размер L2 кэша,
+ * отбрасывая самые старые записи.
  */
-public class L2CacheResolver {
+public class L2CacheResolver implements Closeable {
+
+    /**
+     * Значение-маркер удаления ключа из L2 кэша.
+     */
+    static final Object TOMBSTONE = new Object();
+
+    /**
+     * Длина значения, обозначающая запись-надгробие.
+     */
+    private static final int TOMBSTONE_LENGTH = -1;
+
+    /**
+     * Размер заголовка записи (длины ключа и значения, приоритет) в байтах.
+     */
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES;
+
+    /**
+     * Размер служебной части записи (заголовок записи и контрольная сумма) в байтах.
+     */
+    private static final int RECORD_OVERHEAD = RECORD_HEADER_SIZE + Integer.BYTES;
+
+    /**
+     * Размер буфера копирования записей при уплотнении.
+     */
+    private static final int COMPACTION_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Начальный размер буфера записи пачки.
+     */
+    private static final int WRITE_BUFFER_SIZE = 64 << 10;
+
+    /**
+     * Размер буфера позиционного чтения записи, закреплённого за потоком.
+     * Записи большего размера читаются во временный буфер.
+     */
+    private static final int READ_BUFFER_SIZE = 8 << 10;
+
+    /**
+     * Наибольший размер одного позиционного чтения, объединяющего соседние записи
+     * при чтении нескольких ключей.
+     */
+    private static final int MAX_BATCH_READ_SIZE = 1 << 20;
+
+    /**
+     * Порядок записей по их расположению: по сегменту, затем по смещению в нём.
+     */
+    private static final Comparator<Map.Entry<String, L2RecordPointer>> POINTER_ORDER
+            = Comparator.<Map.Entry<String, L2RecordPointer>>comparingLong(entry -> entry.getValue().segmentId())
+            .thenComparingLong(entry -> entry.getValue().offset());
+
+    /**
+     * Буферы позиционного чтения записей, по одному на поток.
+     */
+    private static final ThreadLocal<ByteBuffer> READ_BUFFERS
+            = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER_SIZE));
+
+    private final L2CacheSettings settings;
+
+    /**
+     * Директория L2 кэша.
+     */
+    private final Path directory;
+
+    /**
+     * Сегменты L2 кэша в порядке их создания.
+     */
+    private final NavigableMap<Long, L2Segment> segments = new ConcurrentSkipListMap<>();
 
-    private static final String CACHE_FILE_PATH = "cache_file.txt";
+    /**
+     * Индекс L2 кэша: ключ кэша - позиция его последней записи.
+     */
+    private final Map<String, L2RecordPointer> index;
 
-    private static final String CACHE_ELEMENTS_SEPARATOR = ";";
+    /**
+     * Блокировка набора сегментов. Чтение значений выполняется под блокировкой чтения,
+     * подмена сегментов при уплотнении и отчистке - под блокировкой записи.
+     */
+    private final ReentrantReadWriteLock segmentsLock = new ReentrantReadWriteLock();
 
-    private static final String CACHE_FORMAT = "%s:%s" + CACHE_ELEMENTS_SEPARATOR;
+    /**
+     * Активный сегмент, в который добавляются записи.
+     */
+    private volatile L2Segment activeSegment;
 
-    private final FileOutputStream outputStream = new FileOutputStream(CACHE_FILE_PATH, true);
+    /**
+     * Фоновый писатель L2 кэша.
+     */
+    private final L2WriteBehindWriter writer;
 
-    public L2CacheResolver() throws IOException {
-        this.initializeCacheFile();
+    /**
+     * Кодек значений L2 кэша.
+     */
+    private final ValueCodec<Object> codec;
+
+    /**
+     * Сжатие блоков записей.
+     */
+    private final L2BlockCompressor compressor;
+
+    /**
+     * Буфер записи пачки. Используется только фоновым писателем и растёт по необходимости.
+     */
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+    /**
+     * Буфер сжатых блоков пачки. Используется только фоновым писателем и растёт по необходимости.
+     */
+    private ByteBuffer blockBuffer;
+
+    @SuppressWarnings("unchecked")
+    public L2CacheResolver(L2CacheSettings settings) throws IOException {
+        this.settings = settings;
+        this.codec = (ValueCodec<Object>) settings.getValueCodec();
+        this.directory = settings.getDirectory();
+        this.compressor = new L2BlockCompressor(settings.getCompression(), settings.getCompressionDictionary());
+        Files.createDirectories(this.directory);
+        this.openSegments();
+        this.index = new ConcurrentHashMap<>(this.estimateKeyCount());
+        this.writer = new L2WriteBehindWriter(this, settings);
+    }
+
+    /**
+     * Метод открытия сегментов L2 кэша.
+     * Удаляет незавершённые файлы уплотнения и подсказок, подсказки без сегментов, сегменты
+     * неподдерживаемого формата, сегменты, сжатые другим словарём, и сегменты, вытесненные
+     * уплотнением или отчисткой.
+     *
+     * @throws IOException В случае неудачного открытия директории.
+     */
+    private void openSegments() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(this.directory)) {
+            files = list.toList();
+        }
+        long supersedesBelow = 0;
+        for (Path file : files) {
+            if (L2Segment.isCompactionFile(file) || L2SegmentHint.isTemporaryFile(file)) {
+                Files.deleteIfExists(file);
+            } else if (L2SegmentHint.isHintFile(file)) {
+                if (!Files.exists(L2SegmentHint.segmentPathOf(file))) Files.deleteIfExists(file);
+            } else if (L2Segment.isSegmentFile(file)) {
+                L2Segment segment = L2Segment.open(file);
+                if (segment == null) {
+                    this.settings.getEventListener().onL2SegmentError(file, "неподдерживаемый формат, сегмент удалён");
+                    L2SegmentHint.delete(file);
+                    Files.deleteIfExists(file);
+                } else if (segment.isCompressed() && segment.getDictionaryChecksum() != 0
+                        && segment.getDictionaryChecksum() != this.compressor.getDictionaryChecksum()) {
+                    this.settings.getEventListener().onL2SegmentError(file, "сжат другим словарём, сегмент удалён");
+                    segment.delete();
+                } else {
+                    this.segments.put(segment.getId(), segment);
+                    supersedesBelow = Math.max(supersedesBelow, segment.getSupersedesBelow());
+                }
+            }
+        }
+        while (!this.segments.isEmpty() && this.segments.firstKey() < supersedesBelow) {
+            this.segments.pollFirstEntry().getValue().delete();
+        }
+        if (this.segments.isEmpty()) {
+            L2Segment segment = L2Segment.create(L2Segment.pathOf(this.directory, 1), 1, 0, this.compressor);
+            this.segments.put(segment.getId(), segment);
+        }
+        this.activeSegment = this.segments.lastEntry().getValue();
+    }
+
+    /**
+     * Метод оценки количества ключей L2 кэша по {@link L2SegmentHint подсказкам} закрытых сегментов.
+     * Позволяет построить индекс без перестроений хэш-таблицы.
+     *
+     * @return Количество записей в подсказках.
+     * @throws IOException В случае неудачного чтения подсказок.
+     */
+    private int estimateKeyCount() throws IOException {
+        long count = 0;
+        for (L2Segment segment : this.segments.headMap(this.activeSegment.getId()).values()) {
+            count += L2SegmentHint.peekCount(segment);
+        }
+        return (int) Math.min(count, 1 << 30);
     }
 
     /**
-     * Метод инициализации кэш файла.
+     * Метод записи данных в L2 кэш.
+     * Ставит запись в очередь фонового писателя и сразу возвращает управление.
      *
-     * @throws IOException В случае неудачного создания файла.
+     * @param key      Ключ кэша.
+     * @param data     Значение кэша.
+     * @param priority Приоритет кэш-элемента в стратегии кэширования.
+     * @return True - если запись принята, false - если она отброшена из-за переполнения очереди.
      */
-    private void initializeCacheFile() throws IOException {
-        Path cacheFilePath = Path.of(CACHE_FILE_PATH);
-        if (Files.notExists(cacheFilePath)) Files.createFile(cacheFilePath);
+    public boolean writeData(String key, Object data, long priority) {
+        return this.writer.submit(key, new L2CacheEntry(data, priority));
     }
 
     /**
-     * Метод записи данных в кэш файл.
+     * Метод записи нескольких кэш-элементов в L2 кэш.
+     * Ставит записи в очередь фонового писателя одной операцией, поэтому они попадают в одну пачку.
+     *
+     * @param entries Ключи и записи кэша.
+     * @return True - если записи приняты, false - если они отброшены из-за переполнения очереди.
+     */
+    public boolean writeAll(Map<String, L2CacheEntry> entries) {
+        return this.writer.submitAll(entries);
+    }
+
+    /**
+     * Метод удаления ключа из L2 кэша.
+     * Ставит запись-надгробие в очередь фонового писателя.
      *
      * @param key Ключ кэша.
-     * @param data Значение кэша.
+     * @return True - если удаление принято, false - если оно отброшено из-за переполнения очереди.
+     */
+    public boolean deleteData(String key) {
+        return this.writer.submit(key, new L2CacheEntry(TOMBSTONE, 0));
+    }
+
+    /**
+     * Метод отчистки L2 кэша.
+     * Все существующие сегменты будут удалены фоновым писателем.
+     */
+    public void clear() {
+        this.writer.submitClear();
+    }
+
+    /**
+     * Метод записи пачки данных в активный сегмент одной операцией.
+     * Вызывается фоновым писателем.
+     *
+     * @param batch Ключи и записи кэша. Значение {@link #TOMBSTONE} обозначает удаление ключа.
+     * @throws IOException В случае неудачной записи.
+     */
+    void writeBatch(Map<String, L2CacheEntry> batch) throws IOException {
+        StatsCounter stats = this.settings.getStatsCounter();
+        long start = stats != null ? System.nanoTime() : 0;
+        ByteBuffer buffer = this.writeBuffer.clear();
+        int[] recordOffsets = new int[batch.size()];
+        int[] recordLengths = new int[batch.size()];
+        int i = 0;
+        for (Map.Entry<String, L2CacheEntry> entry : batch.entrySet()) {
+            recordOffsets[i] = -1;
+            int recordStart = buffer.position();
+            while (recordOffsets[i] < 0) {
+                try {
+                    this.encodeRecord(entry.getKey(), entry.getValue(), buffer);
+                    recordOffsets[i] = recordStart;
+                    recordLengths[i] = buffer.position() - recordStart;
+                } catch (BufferOverflowException exception) {
+                    buffer = this.growWriteBuffer(recordStart);
+                } catch (RuntimeException exception) {
+                    buffer.position(recordStart);
+                    this.reportRecordError(this.activeSegment,
+                            "элемент " + entry.getKey() + " не записан кодеком: " + exception.getMessage());
+                    break;
+                }
+            }
+            i++;
+        }
+        buffer.flip();
+        L2Segment segment = this.activeSegment;
+        segment.addRecordBytes(buffer.remaining());
+        long[] pointerOffsets = this.appendRecords(segment, buffer, recordOffsets, recordLengths, batch.size());
+        i = 0;
+        int written = 0;
+        for (Map.Entry<String, L2CacheEntry> entry : batch.entrySet()) {
+            if (recordOffsets[i] >= 0) {
+                written++;
+                if (entry.getValue().value() == TOMBSTONE) {
+                    this.replacePointer(entry.getKey(), null);
+                } else {
+                    this.replacePointer(entry.getKey(), new L2RecordPointer(segment.getId(), pointerOffsets[i], recordLengths[i]));
+                }
+            }
+            i++;
+        }
+        this.settings.getEventListener().onL2Write(written);
+        if (stats != null) stats.recordL2Write(written, System.nanoTime() - start);
+    }
+
+    /**
+     * Метод добавления закодированных записей в конец сегмента одной операцией.
+     * В сжатом сегменте соседние записи объединяются в блоки: запись попадает в текущий блок,
+     * если начинается не дальше {@link L2CacheSettings#getCompressionBlockSize() размера блока} от его начала.
+     *
+     * @param segment       Сегмент.
+     * @param records       Записи подряд (оставшиеся байты буфера).
+     * @param recordOffsets Смещения записей в буфере, -1 - запись не закодирована.
+     * @param recordLengths Длины записей.
+     * @param count         Количество записей.
+     * @return Смещения записей в сегменте для {@link L2RecordPointer указателей}, -1 для незакодированных записей.
+     * @throws IOException В случае неудачной записи.
+     */
+    private long[] appendRecords(L2Segment segment, ByteBuffer records, int[] recordOffsets, int[] recordLengths,
+                                 int count) throws IOException {
+        long[] pointerOffsets = new long[count];
+        if (!segment.isCompressed()) {
+            long batchOffset = segment.append(records);
+            for (int i = 0; i < count; i++) {
+                pointerOffsets[i] = recordOffsets[i] < 0 ? -1 : batchOffset + recordOffsets[i];
+            }
+            return pointerOffsets;
+        }
+        int blockSize = this.settings.getCompressionBlockSize();
+        // Каждый блок, кроме последнего, не короче размера блока, отсюда наибольшее количество блоков.
+        int maxBlocks = records.remaining() / blockSize + 1;
+        ByteBuffer output = this.blockBuffer(L2BlockCompressor.maxCompressedSize(records.remaining())
+                + maxBlocks * L2BlockCompressor.maxCompressedSize(0));
+        long base = segment.getSize();
+        int i = 0;
+        while (i < count) {
+            if (recordOffsets[i] < 0) {
+                pointerOffsets[i++] = -1;
+                continue;
+            }
+            int first = i;
+            int blockStart = recordOffsets[i];
+            int blockEnd = blockStart;
+            while (i < count && (recordOffsets[i] < 0 || recordOffsets[i] - blockStart < blockSize)) {
+                if (recordOffsets[i] >= 0) blockEnd = recordOffsets[i] + recordLengths[i];
+                i++;
+            }
+            long blockOffset = base + output.position();
+            this.compressor.compress(records.slice(blockStart, blockEnd - blockStart), output);
+            for (int j = first; j < i; j++) {
+                pointerOffsets[j] = recordOffsets[j] < 0
+                        ? -1
+                        : L2BlockCompressor.pointerOffset(blockOffset, recordOffsets[j] - blockStart);
+            }
+        }
+        segment.append(output.flip());
+        return pointerOffsets;
+    }
+
+    /**
+     * Метод получения буфера сжатых блоков не меньше заданного размера.
+     *
+     * @param capacity Наибольший размер сжатых блоков.
+     * @return Отчищенный буфер.
+     */
+    private ByteBuffer blockBuffer(int capacity) {
+        if (this.blockBuffer == null || this.blockBuffer.capacity() < capacity) {
+            this.blockBuffer = ByteBuffer.allocateDirect(Math.max(capacity, WRITE_BUFFER_SIZE));
+        }
+        return this.blockBuffer.clear();
+    }
+
+    /**
+     * Метод кодирования записи в буфер начиная с его текущей позиции.
+     *
+     * @param key    Ключ кэша.
+     * @param entry  Запись кэша.
+     * @param buffer Буфер записи пачки.
+     * @throws BufferOverflowException Если запись не поместилась в буфер.
+     */
+    private void encodeRecord(String key, L2CacheEntry entry, ByteBuffer buffer) {
+        int recordStart = buffer.position();
+        if (buffer.remaining() < RECORD_HEADER_SIZE) {
+            throw new BufferOverflowException();
+        }
+        buffer.position(recordStart + RECORD_HEADER_SIZE);
+        StringCodec.putUtf8(key, buffer);
+        int keyLength = buffer.position() - recordStart - RECORD_HEADER_SIZE;
+        int valueLength = TOMBSTONE_LENGTH;
+        if (entry.value() != TOMBSTONE) {
+            int valueStart = buffer.position();
+            this.codec.serialize(entry.value(), buffer);
+            valueLength = buffer.position() - valueStart;
+        }
+        buffer.putInt(recordStart, keyLength)
+                .putInt(recordStart + Integer.BYTES, valueLength)
+                .putLong(recordStart + Integer.BYTES * 2, entry.priority());
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.slice(recordStart, buffer.position() - recordStart));
+        buffer.putInt((int) checksum.getValue());
+    }
+
+    /**
+     * Метод увеличения буфера записи пачки вдвое.
+     * Уже закодированные записи (до позиции {@code length}) переносятся в новый буфер.
+     *
+     * @param length Количество байт, которые нужно сохранить.
+     * @return Новый буфер записи, позиция которого равна {@code length}.
+     */
+    private ByteBuffer growWriteBuffer(int length) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.multiplyExact(this.writeBuffer.capacity(), 2));
+        buffer.put(this.writeBuffer.clear().limit(length));
+        this.writeBuffer = buffer;
+        return buffer;
+    }
+
+    /**
+     * Метод обслуживания сегментов после записи пачки.
+     * Закрывает заполненный активный сегмент и запускает уплотнение, если доля устаревших
+     * записей в закрытых сегментах превысила порог или общий размер L2 кэша превысил ограничение.
+     * Вызывается фоновым писателем.
+     *
+     * @throws IOException В случае неудачной работы с файлами сегментов.
+     */
+    void maintain() throws IOException {
+        if (this.activeSegment.getSize() >= this.getSegmentSize()) {
+            this.rollActiveSegment();
+        }
+        boolean overLimit = this.getSize() > this.settings.getMaxSize();
+        if (overLimit && this.segments.size() == 1) {
+            this.rollActiveSegment();
+        }
+        long sealedSize = 0;
+        long sealedLiveBytes = 0;
+        for (L2Segment segment : this.segments.headMap(this.activeSegment.getId()).values()) {
+            sealedSize += segment.getRecordBytes();
+            sealedLiveBytes += segment.getLiveBytes();
+        }
+        if (sealedSize == 0) {
+            return;
+        }
+        double deadRatio = (double) (sealedSize - sealedLiveBytes) / sealedSize;
+        if (overLimit || deadRatio >= this.settings.getCompactionThreshold()) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Метод уплотнения закрытых сегментов.
+     * Актуальные записи всех закрытых сегментов копируются в один новый сегмент, который
+     * атомарно замещает их. Если они вместе с активным сегментом и запасом в один сегмент
+     * не помещаются в ограничение размера L2 кэша, самые старые записи отбрасываются.
+     * Объём записей оценивается до сжатия, то есть с запасом. Новый сегмент создаётся в текущем
+     * режиме сжатия, записи сжатых сегментов распаковываются по одному разу на блок.
+     *
+     * @throws IOException В случае неудачной работы с файлами сегментов.
+     */
+    private void compact() throws IOException {
+        L2Segment active = this.activeSegment;
+        NavigableMap<Long, L2Segment> sealed = this.segments.headMap(active.getId(), false);
+        long targetId = sealed.lastKey();
+        List<Map.Entry<String, L2RecordPointer>> live = new ArrayList<>();
+        for (Map.Entry<String, L2RecordPointer> entry : this.index.entrySet()) {
+            if (entry.getValue().segmentId() <= targetId) {
+                live.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        live.sort(Comparator.comparingLong((Map.Entry<String, L2RecordPointer> entry) -> entry.getValue().segmentId())
+                .thenComparingLong(entry -> entry.getValue().offset()));
+        // Оставляем место под ещё один сегмент, чтобы не уплотнять L2 кэш после каждой пачки.
+        long budget = this.settings.getMaxSize() - this.getSegmentSize() - active.getSize() - L2Segment.HEADER_SIZE;
+        long keptBytes = 0;
+        int firstKept = live.size();
+        while (firstKept > 0 && keptBytes + live.get(firstKept - 1).getValue().length() <= budget) {
+            keptBytes += live.get(--firstKept).getValue().length();
+        }
+
+        Path compactionPath = L2Segment.compactionPathOf(this.directory, targetId);
+        Map<String, L2RecordPointer> moved = new HashMap<>();
+        try (L2Segment compacted = L2Segment.create(compactionPath, targetId, targetId, this.compressor)) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(COMPACTION_BUFFER_SIZE);
+            List<String> chunkKeys = new ArrayList<>();
+            int[] chunkOffsets = new int[64];
+            int[] chunkLengths = new int[64];
+            BlockReader blockReader = new BlockReader();
+            for (Map.Entry<String, L2RecordPointer> entry : live.subList(firstKept, live.size())) {
+                L2RecordPointer pointer = entry.getValue();
+                if (chunk.remaining() < pointer.length()) {
+                    this.appendChunk(compacted, chunk.flip(), chunkKeys, chunkOffsets, chunkLengths, moved);
+                    chunk.clear();
+                    chunkKeys.clear();
+                    if (chunk.capacity() < pointer.length()) {
+                        chunk = ByteBuffer.allocateDirect(pointer.length());
+                    }
+                }
+                int count = chunkKeys.size();
+                if (count == chunkOffsets.length) {
+                    chunkOffsets = Arrays.copyOf(chunkOffsets, count * 2);
+                    chunkLengths = Arrays.copyOf(chunkLengths, count * 2);
+                }
+                L2Segment source = sealed.get(pointer.segmentId());
+                ByteBuffer record = chunk.slice(chunk.position(), pointer.length());
+                boolean copied;
+                if (source.isCompressed()) {
+                    ByteBuffer sourceRecord = blockReader.read(source, pointer);
+                    copied = sourceRecord != null;
+                    if (copied) record.put(sourceRecord);
+                } else {
+                    copied = source.read(record, pointer.offset());
+                }
+                if (!copied) {
+                    throw new IOException("Запись с ключом " + entry.getKey() + " не найдена в сегменте");
+                }
+                chunkKeys.add(entry.getKey());
+                chunkOffsets[count] = chunk.position();
+                chunkLengths[count] = pointer.length();
+                chunk.position(chunk.position() + pointer.length());
+            }
+            this.appendChunk(compacted, chunk.flip(), chunkKeys, chunkOffsets, chunkLengths, moved);
+            compacted.force();
+        }
+        Path targetPath = L2Segment.pathOf(this.directory, targetId);
+        L2SegmentHint.delete(targetPath);
+        Files.move(compactionPath, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        L2Segment compacted = L2Segment.open(targetPath);
+        this.writeHint(compacted);
+
+        List<L2Segment> obsolete = new ArrayList<>(sealed.values());
+        this.segmentsLock.writeLock().lock();
+        try {
+            for (L2Segment segment : obsolete) {
+                this.segments.remove(segment.getId());
+                segment.close();
+            }
+            this.segments.put(targetId, compacted);
+            for (Map.Entry<String, L2RecordPointer> entry : live.subList(0, firstKept)) {
+                this.index.remove(entry.getKey());
+            }
+            this.index.putAll(moved);
+            compacted.addLiveBytes(keptBytes);
+            compacted.addRecordBytes(keptBytes);
+        } finally {
+            this.segmentsLock.writeLock().unlock();
+        }
+        for (L2Segment segment : obsolete) {
+            if (segment.getId() != targetId) {
+                Files.deleteIfExists(segment.getPath());
+            }
+        }
+        this.settings.getEventListener().onL2Compact(obsolete.size(), moved.size(), firstKept);
+    }
+
+    /**
+     * Метод добавления участка записей уплотнения в новый сегмент.
+     *
+     * @param compacted Новый сегмент.
+     * @param chunk     Записи участка подряд (оставшиеся байты буфера).
+     * @param keys      Ключи записей участка.
+     * @param offsets   Смещения записей в участке.
+     * @param lengths   Длины записей.
+     * @param moved     Ключи и новые позиции их записей.
      * @throws IOException В случае неудачной записи.
      */
-    public void writeData(String key, Object data) throws IOException {
-        this.outputStream.write(CACHE_FORMAT.formatted(key, data).getBytes(StandardCharsets.UTF_8));
-        this.outputStream.flush();
-        System.out.println("L2 Cache log: в L2 cache был записан элемент с ключом " + key);
+    private void appendChunk(L2Segment compacted, ByteBuffer chunk, List<String> keys, int[] offsets, int[] lengths,
+                             Map<String, L2RecordPointer> moved) throws IOException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        long[] pointerOffsets = this.appendRecords(compacted, chunk, offsets, lengths, keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            moved.put(keys.get(i), new L2RecordPointer(compacted.getId(), pointerOffsets[i], lengths[i]));
+        }
+    }
+
+    /**
+     * Метод закрытия активного сегмента для записи и создания нового.
+     *
+     * @throws IOException В случае неудачного создания файла сегмента.
+     */
+    private void rollActiveSegment() throws IOException {
+        L2Segment sealed = this.activeSegment;
+        long id = sealed.getId() + 1;
+        L2Segment segment = L2Segment.create(L2Segment.pathOf(this.directory, id), id, 0, this.compressor);
+        this.segments.put(id, segment);
+        this.activeSegment = segment;
+        this.writeHint(sealed);
+    }
+
+    /**
+     * Метод записи {@link L2SegmentHint подсказки} закрытого сегмента.
+     * Подсказка только ускоряет следующую активацию, поэтому ошибка её записи не прерывает работу.
+     *
+     * @param segment Закрытый сегмент.
+     */
+    private void writeHint(L2Segment segment) {
+        try {
+            L2SegmentHint hint = new L2SegmentHint();
+            this.scanSegment(segment, hint::add);
+            hint.write(segment);
+        } catch (IOException exception) {
+            this.settings.getEventListener().onL2SegmentError(segment.getPath(), "подсказка не записана: " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Метод отчистки сегментов. Создаёт новый сегмент, вытесняющий все существующие.
+     * Вызывается фоновым писателем.
+     *
+     * @throws IOException В случае неудачной работы с файлами сегментов.
+     */
+    void clearSegments() throws IOException {
+        long id = this.activeSegment.getId() + 1;
+        L2Segment segment = L2Segment.create(L2Segment.pathOf(this.directory, id), id, id, this.compressor);
+        segment.force();
+        List<L2Segment> obsolete;
+        this.segmentsLock.writeLock().lock();
+        try {
+            obsolete = new ArrayList<>(this.segments.values());
+            this.segments.clear();
+            this.segments.put(id, segment);
+            this.activeSegment = segment;
+            this.index.clear();
+        } finally {
+            this.segmentsLock.writeLock().unlock();
+        }
+        for (L2Segment old : obsolete) {
+            old.delete();
+        }
+        this.settings.getEventListener().onL2Clear();
+    }
+
+    /**
+     * Метод замены указателя на запись ключа с учётом объёма актуальных записей сегментов.
+     *
+     * @param key     Ключ кэша.
+     * @param pointer Новый указатель или null, если ключ удалён.
+     */
+    private void replacePointer(String key, L2RecordPointer pointer) {
+        L2RecordPointer old = pointer == null ? this.index.remove(key) : this.index.put(key, pointer);
+        if (old != null) {
+            L2Segment oldSegment = this.segments.get(old.segmentId());
+            if (oldSegment != null) oldSegment.addLiveBytes(-old.length());
+        }
+        if (pointer != null) {
+            this.segments.get(pointer.segmentId()).addLiveBytes(pointer.length());
+        }
+    }
+
+    /**
+     * Метод сброса активного сегмента на диск.
+     *
+     * @throws IOException В случае неудачного сброса.
+     */
+    void force() throws IOException {
+        this.activeSegment.force();
     }
 
     /**
-     * Метод чтения данных из кэш файла.
+     * Метод закрытия L2 кэша. Дожидается записи всех отложенных данных.
      *
-     * @return Массив строк, где строка - пара ключа и значения, отформатированная
-     * согласно константе формата.
+     * @throws IOException В случае неудачного закрытия файлов сегментов.
+     */
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+        this.compressor.close();
+        for (L2Segment segment : this.segments.values()) {
+            segment.close();
+        }
+    }
+
+    /**
+     * Метод построения индекса L2 кэша без чтения значений.
+     * Сегменты читаются в порядке создания, последняя запись ключа побеждает, надгробие удаляет ключ.
+     * Закрытый сегмент читается по {@link L2SegmentHint подсказке}; если её нет или она не соответствует
+     * сегменту, сегмент просматривается целиком и подсказка записывается заново. Активный сегмент
+     * просматривается всегда: просмотр останавливается на первой повреждённой или недописанной записи,
+     * а файл обрезается до последней корректной записи.
+     * <p>
+     * Значения при построении индекса не декодируются: значение, которое кодек не сможет прочитать,
+     * обнаруживается при чтении ключа и считается промахом.
      *
+     * @return Ключи L2 кэша и приоритеты их последних записей.
      * @throws IOException В случае неудачного чтения.
      */
-    public String[] readData() throws IOException {
-        try (FileInputStream fis = new FileInputStream(CACHE_FILE_PATH)) {
-            int data;
-            StringBuilder sb = new StringBuilder();
-            while ((data = fis.read()) != -1) {
-                sb.append((char) data);
+    public Map<String, Long> openIndex() throws IOException {
+        Map<String, Long> priorities = new HashMap<>((int) (this.estimateKeyCount() / 0.75f) + 1);
+        this.index.clear();
+        long activeId = this.activeSegment.getId();
+        for (L2Segment segment : this.segments.values()) {
+            long segmentId = segment.getId();
+            L2SegmentHint.RecordVisitor visitor = (key, valueLength, priority, offset, length) -> {
+                segment.addRecordBytes(length);
+                L2RecordPointer old;
+                if (valueLength == TOMBSTONE_LENGTH) {
+                    priorities.remove(key);
+                    old = this.index.remove(key);
+                } else {
+                    priorities.put(key, priority);
+                    old = this.index.put(key, new L2RecordPointer(segmentId, offset, length));
+                    segment.addLiveBytes(length);
+                }
+                if (old != null) {
+                    L2Segment oldSegment = old.segmentId() == segmentId ? segment : this.segments.get(old.segmentId());
+                    if (oldSegment != null) oldSegment.addLiveBytes(-old.length());
+                }
+            };
+            if (segmentId == activeId || !L2SegmentHint.read(segment, visitor)) {
+                this.scanSegment(segment, visitor);
+                if (segmentId != activeId) this.writeHint(segment);
+            }
+        }
+        return priorities;
+    }
+
+    /**
+     * Метод просмотра записей одного сегмента с проверкой контрольных сумм.
+     * Просмотр останавливается на первой повреждённой или недописанной записи (в сжатом сегменте - блоке),
+     * а файл обрезается до последней корректной записи или блока.
+     *
+     * @param segment Сегмент.
+     * @param visitor Получатель записей сегмента в порядке их расположения.
+     * @throws IOException В случае неудачного чтения.
+     */
+    private void scanSegment(L2Segment segment, L2SegmentHint.RecordVisitor visitor) throws IOException {
+        long segmentSize = segment.getSize();
+        if (segmentSize <= segment.getHeaderSize()) {
+            return;
+        }
+        MappedByteBuffer buffer = segment.map();
+        buffer.position(segment.getHeaderSize());
+        CRC32 checksum = new CRC32();
+        if (segment.isCompressed()) {
+            this.scanBlocks(buffer, checksum, visitor);
+        } else {
+            scanRecords(buffer, checksum, visitor);
+        }
+        if (buffer.position() != segmentSize) {
+            this.settings.getEventListener().onL2SegmentError(segment.getPath(), "сегмент повреждён, обрезан до позиции " + buffer.position());
+            segment.truncate(buffer.position());
+        }
+    }
+
+    /**
+     * Метод просмотра блоков сжатого сегмента. Записи получают смещения блока и записи внутри блока.
+     * Буфер остаётся в позиции первого повреждённого или недописанного блока.
+     *
+     * @param buffer   Отображение сегмента в позиции первого блока.
+     * @param checksum Контрольная сумма записей для повторного использования.
+     * @param visitor  Получатель записей.
+     */
+    private void scanBlocks(ByteBuffer buffer, CRC32 checksum, L2SegmentHint.RecordVisitor visitor) {
+        while (buffer.remaining() >= L2BlockCompressor.BLOCK_HEADER_SIZE) {
+            int blockStart = buffer.position();
+            int compressedLength = buffer.getInt();
+            int length = buffer.getInt();
+            int blockChecksum = buffer.getInt();
+            if (compressedLength < 0 || compressedLength > buffer.remaining()) {
+                buffer.position(blockStart);
+                break;
+            }
+            ByteBuffer block = this.compressor.decompress(buffer.slice(buffer.position(), compressedLength), length, blockChecksum);
+            if (block == null) {
+                buffer.position(blockStart);
+                break;
+            }
+            scanRecords(block, checksum, (key, valueLength, priority, offset, recordLength) -> visitor.visit(key,
+                    valueLength, priority, L2BlockCompressor.pointerOffset(blockStart, (int) offset), recordLength));
+            buffer.position(blockStart + L2BlockCompressor.BLOCK_HEADER_SIZE + compressedLength);
+        }
+    }
+
+    /**
+     * Метод просмотра записей, лежащих подряд, с проверкой контрольных сумм.
+     * Буфер остаётся в позиции первой повреждённой или недописанной записи.
+     *
+     * @param buffer   Записи начиная с текущей позиции. Смещение записи - её позиция в буфере.
+     * @param checksum Контрольная сумма записей для повторного использования.
+     * @param visitor  Получатель записей.
+     */
+    private static void scanRecords(ByteBuffer buffer, CRC32 checksum, L2SegmentHint.RecordVisitor visitor) {
+        while (buffer.remaining() >= RECORD_OVERHEAD) {
+            int recordStart = buffer.position();
+            int keyLength = buffer.getInt();
+            int valueLength = buffer.getInt();
+            long priority = buffer.getLong();
+            int storedValueLength = valueLength == TOMBSTONE_LENGTH ? 0 : valueLength;
+            if (keyLength < 0 || storedValueLength < 0
+                    || (long) keyLength + storedValueLength + Integer.BYTES > buffer.remaining()) {
+                buffer.position(recordStart);
+                break;
+            }
+            int payloadLength = RECORD_HEADER_SIZE + keyLength + storedValueLength;
+            checksum.reset();
+            checksum.update(buffer.slice(recordStart, payloadLength));
+            if (buffer.getInt(recordStart + payloadLength) != (int) checksum.getValue()) {
+                buffer.position(recordStart);
+                break;
+            }
+            String key = StringCodec.getUtf8(buffer, keyLength);
+            visitor.visit(key, valueLength, priority, recordStart, payloadLength + Integer.BYTES);
+            buffer.position(recordStart + payloadLength + Integer.BYTES);
+        }
+    }
+
+    /**
+     * Метод чтения записи одного ключа из L2 кэша по индексу.
+     * Выполняет одно позиционное чтение записи, в сжатом сегменте - чтение и распаковку одного блока.
+     * Запись, ещё не записанная
+     * фоновым писателем, возвращается из его очереди.
+     *
+     * @param key Ключ кэша.
+     * @return Запись кэша или null, если ключа нет в L2 кэше или запись повреждена.
+     * @throws IOException В случае неудачного чтения.
+     */
+    public L2CacheEntry readEntry(String key) throws IOException {
+        L2CacheEntry pending = this.writer.getPending(key);
+        if (pending != null) {
+            return pending.value() == TOMBSTONE ? null : pending;
+        }
+        ByteBuffer record;
+        L2Segment segment;
+        this.segmentsLock.readLock().lock();
+        try {
+            L2RecordPointer pointer = this.index.get(key);
+            segment = pointer == null ? null : this.segments.get(pointer.segmentId());
+            if (segment == null) {
+                return null;
+            }
+            if (segment.isCompressed()) {
+                record = new BlockReader().read(segment, pointer);
+                if (record == null) {
+                    this.reportRecordError(segment, "блок записи с ключом " + key + " повреждён");
+                    return null;
+                }
+                return this.decodeRecord(segment, key, record);
+            }
+            record = pointer.length() <= READ_BUFFER_SIZE
+                    ? READ_BUFFERS.get().clear().limit(pointer.length())
+                    : ByteBuffer.allocateDirect(pointer.length());
+            if (!segment.read(record, pointer.offset())) {
+                return null;
+            }
+        } finally {
+            this.segmentsLock.readLock().unlock();
+        }
+        return this.decodeRecord(segment, key, record.flip());
+    }
+
+    /**
+     * Метод чтения записей нескольких ключей из L2 кэша.
+     * Записи читаются в порядке их расположения в сегментах, а соседние записи одного сегмента
+     * объединяются в одно позиционное чтение. Блок сжатого сегмента распаковывается один раз для всех
+     * его записей. Записи, ещё не записанные фоновым писателем,
+     * возвращаются из его очереди.
+     *
+     * @param keys Ключи кэша.
+     * @return Ключи и записи кэша. Ключи, которых нет в L2 кэше, и повреждённые записи не включаются.
+     * @throws IOException В случае неудачного чтения.
+     */
+    public Map<String, L2CacheEntry> readEntries(Collection<String> keys) throws IOException {
+        Map<String, L2CacheEntry> result = new HashMap<>();
+        List<Map.Entry<String, L2RecordPointer>> located = new ArrayList<>(keys.size());
+        this.segmentsLock.readLock().lock();
+        try {
+            for (String key : keys) {
+                L2CacheEntry pending = this.writer.getPending(key);
+                if (pending != null) {
+                    if (pending.value() != TOMBSTONE) result.put(key, pending);
+                    continue;
+                }
+                L2RecordPointer pointer = this.index.get(key);
+                if (pointer != null && this.segments.containsKey(pointer.segmentId())) {
+                    located.add(Map.entry(key, pointer));
+                }
+            }
+            located.sort(POINTER_ORDER);
+            BlockReader blockReader = new BlockReader();
+            int from = 0;
+            while (from < located.size()) {
+                L2RecordPointer first = located.get(from).getValue();
+                L2Segment segment = this.segments.get(first.segmentId());
+                if (segment.isCompressed()) {
+                    String key = located.get(from++).getKey();
+                    ByteBuffer record = blockReader.read(segment, first);
+                    if (record == null) {
+                        this.reportRecordError(segment, "блок записи с ключом " + key + " повреждён");
+                        continue;
+                    }
+                    L2CacheEntry l2Entry = this.decodeRecord(segment, key, record);
+                    if (l2Entry != null) {
+                        result.put(key, l2Entry);
+                    }
+                    continue;
+                }
+                long end = first.offset() + first.length();
+                int to = from + 1;
+                while (to < located.size()) {
+                    L2RecordPointer next = located.get(to).getValue();
+                    long nextEnd = next.offset() + next.length();
+                    if (next.segmentId() != first.segmentId() || next.offset() - end > READ_BUFFER_SIZE
+                            || nextEnd - first.offset() > MAX_BATCH_READ_SIZE) {
+                        break;
+                    }
+                    end = Math.max(end, nextEnd);
+                    to++;
+                }
+                this.readRun(located.subList(from, to), first, end, result);
+                from = to;
+            }
+        } finally {
+            this.segmentsLock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Метод чтения участка сегмента, содержащего несколько записей, одним позиционным чтением.
+     * Вызывается под блокировкой чтения набора сегментов.
+     *
+     * @param run    Ключи и позиции записей участка в порядке смещения.
+     * @param first  Позиция первой записи участка.
+     * @param end    Смещение конца участка.
+     * @param result Ключи и прочитанные записи кэша.
+     * @throws IOException В случае неудачного чтения.
+     */
+    private void readRun(List<Map.Entry<String, L2RecordPointer>> run, L2RecordPointer first, long end,
+                         Map<String, L2CacheEntry> result) throws IOException {
+        int length = (int) (end - first.offset());
+        ByteBuffer buffer = length <= READ_BUFFER_SIZE
+                ? READ_BUFFERS.get().clear().limit(length)
+                : ByteBuffer.allocateDirect(length);
+        L2Segment segment = this.segments.get(first.segmentId());
+        if (!segment.read(buffer, first.offset())) {
+            return;
+        }
+        for (Map.Entry<String, L2RecordPointer> entry : run) {
+            L2RecordPointer pointer = entry.getValue();
+            ByteBuffer record = buffer.slice((int) (pointer.offset() - first.offset()), pointer.length());
+            L2CacheEntry l2Entry = this.decodeRecord(segment, entry.getKey(), record);
+            if (l2Entry != null) {
+                result.put(entry.getKey(), l2Entry);
+            }
+        }
+    }
+
+    /**
+     * Метод разбора записи с проверкой контрольной суммы.
+     *
+     * @param segment Сегмент, из которого прочитана запись.
+     * @param key     Ключ кэша.
+     * @param record  Буфер, содержащий ровно одну запись.
+     * @return Запись кэша или null, если запись повреждена или значение не прочитано кодеком.
+     */
+    private L2CacheEntry decodeRecord(L2Segment segment, String key, ByteBuffer record) {
+        int keyLength = record.getInt();
+        int valueLength = record.getInt();
+        long priority = record.getLong();
+        int payloadLength = RECORD_HEADER_SIZE + keyLength + valueLength;
+        CRC32 checksum = new CRC32();
+        checksum.update(record.slice(0, payloadLength));
+        if (record.getInt(payloadLength) != (int) checksum.getValue()) {
+            this.reportRecordError(segment, "запись с ключом " + key + " повреждена");
+            return null;
+        }
+        Object value = this.decodeValue(segment, key, record.slice(RECORD_HEADER_SIZE + keyLength, valueLength));
+        return value == null ? null : new L2CacheEntry(value, priority);
+    }
+
+    /**
+     * Метод декодирования значения записи кодеком L2 кэша.
+     *
+     * @param segment Сегмент, из которого прочитана запись.
+     * @param key     Ключ кэша.
+     * @param buffer  Буфер, содержащий ровно закодированное значение.
+     * @return Значение кэша или null, если кодек не смог его прочитать.
+     */
+    private Object decodeValue(L2Segment segment, String key, ByteBuffer buffer) {
+        try {
+            return this.codec.deserialize(buffer);
+        } catch (RuntimeException exception) {
+            this.reportRecordError(segment, "значение с ключом " + key + " не прочитано кодеком: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Метод учёта записи сегмента с ошибкой. Слушатель получает событие только о первой такой записи сегмента,
+     * чтобы повреждённый сегмент не порождал событие на каждое чтение.
+     *
+     * @param segment Сегмент.
+     * @param message Описание ошибки.
+     */
+    private void reportRecordError(L2Segment segment, String message) {
+        StatsCounter stats = this.settings.getStatsCounter();
+        if (stats != null) stats.recordL2Error();
+        if (segment.markErrorReported()) {
+            this.settings.getEventListener().onL2RecordError(segment.getPath(), message);
+        }
+    }
+
+    /**
+     * Метод проверки на факт того, содержит ли L2 кэш элемент по ключу.
+     *
+     * @param key Ключ кэша.
+     * @return True/false.
+     */
+    public boolean containsKey(String key) {
+        L2CacheEntry pending = this.writer.getPending(key);
+        if (pending != null) {
+            return pending.value() != TOMBSTONE;
+        }
+        return this.index.containsKey(key);
+    }
+
+    /**
+     * Метод получения общего размера файлов L2 кэша.
+     *
+     * @return Размер в байтах.
+     */
+    public long getSize() {
+        long size = 0;
+        for (L2Segment segment : this.segments.values()) {
+            size += segment.getSize();
+        }
+        return size;
+    }
+
+    /**
+     * Метод получения размера сегмента, при достижении которого он закрывается для записи.
+     * Не превышает четверти ограничения общего размера, чтобы уплотнению было куда поместить записи.
+     *
+     * @return Размер сегмента в байтах.
+     */
+    private long getSegmentSize() {
+        return Math.max(L2Segment.HEADER_SIZE + 1, Math.min(this.settings.getSegmentSize(), this.settings.getMaxSize() / 4));
+    }
+
+    /**
+     * Чтение записей сжатых сегментов с распаковкой блока только при переходе к другому блоку.
+     * Используется одним потоком; прочитанная запись действительна до следующего чтения.
+     */
+    private final class BlockReader {
+
+        private long segmentId = -1;
+
+        private long blockOffset = -1;
+
+        private ByteBuffer block;
+
+        /**
+         * @param segment Сжатый сегмент.
+         * @param pointer Позиция записи.
+         * @return Запись или null, если блок повреждён.
+         * @throws IOException В случае неудачного чтения.
+         */
+        ByteBuffer read(L2Segment segment, L2RecordPointer pointer) throws IOException {
+            long blockOffset = L2BlockCompressor.blockOffsetOf(pointer.offset());
+            if (segment.getId() != this.segmentId || blockOffset != this.blockOffset) {
+                this.block = compressor.readBlock(segment, blockOffset);
+                this.segmentId = segment.getId();
+                this.blockOffset = blockOffset;
+            }
+            int recordOffset = L2BlockCompressor.recordOffsetOf(pointer.offset());
+            if (this.block == null || recordOffset + pointer.length() > this.block.limit()) {
+                return null;
             }
-            return sb.toString().split(CACHE_ELEMENTS_SEPARATOR);
+            return this.block.slice(recordOffset, pointer.length());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,329 @@
+package org.buldakov.model.cache.filesystem;
+
+import org.buldakov.model.cache.admission.AverageAdmissionPolicy;
+import org.buldakov.model.cache.admission.L2AdmissionPolicy;
+import org.buldakov.model.cache.codec.BinaryCodec;
+import org.buldakov.model.cache.codec.ValueCodec;
+import org.buldakov.model.cache.enums.L2BackpressurePolicy;
+import org.buldakov.model.cache.enums.L2Compression;
+import org.buldakov.model.cache.enums.L2FlushPolicy;
+import org.buldakov.model.cache.enums.L2TieringMode;
+import org.buldakov.model.cache.enums.L2WarmUpMode;
+import org.buldakov.model.cache.event.CacheEventListener;
+import org.buldakov.model.cache.stats.StatsCounter;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Настройки L2 кэша.
+ * Заполняются через {@link org.buldakov.model.cache.CacheStorageBuilder билдер} кэш-хранилища.
+ */
+public class L2CacheSettings {
+
+    /**
+     * Директория L2 кэша.
+     */
+    private Path directory = Path.of("cache_l2");
+
+    /**
+     * Размер сегмента, при достижении которого он закрывается для записи.
+     */
+    private long segmentSize = 64L << 20;
+
+    /**
+     * Ограничение общего размера L2 кэша в байтах.
+     */
+    private long maxSize = 1L << 30;
+
+    /**
+     * Доля устаревших записей в закрытых сегментах, при которой запускается уплотнение.
+     */
+    private double compactionThreshold = 0.5;
+
+    /**
+     * Вместимость очереди отложенной записи в L2 кэш.
+     */
+    private int writeQueueCapacity = 1024;
+
+    /**
+     * Максимальное количество записей в одной пачке.
+     */
+    private int writeBatchSize = 256;
+
+    /**
+     * Политика сброса кэш-файла на диск.
+     */
+    private L2FlushPolicy flushPolicy = L2FlushPolicy.PER_BATCH;
+
+    /**
+     * Интервал сброса кэш-файла на диск для {@link L2FlushPolicy#TIMED}.
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    /**
+     * Политика поведения при переполнении очереди записи.
+     */
+    private L2BackpressurePolicy backpressurePolicy = L2BackpressurePolicy.BLOCK;
+
+    /**
+     * Режим наполнения L2 кэша.
+     */
+    private L2TieringMode tieringMode = L2TieringMode.ADMISSION;
+
+    /**
+     * Кодек значений L2 кэша.
+     */
+    private ValueCodec<?> valueCodec = BinaryCodec.INSTANCE;
+
+    /**
+     * Режим сжатия записей L2 кэша.
+     */
+    private L2Compression compression = L2Compression.NONE;
+
+    /**
+     * Предустановленный словарь сжатия или null.
+     */
+    private byte[] compressionDictionary;
+
+    /**
+     * Размер блока записей до сжатия в байтах.
+     */
+    private int compressionBlockSize = 16 << 10;
+
+    /**
+     * Политика допуска кэш-элементов в L2 кэш для {@link L2TieringMode#ADMISSION}.
+     */
+    private L2AdmissionPolicy admissionPolicy = new AverageAdmissionPolicy();
+
+    /**
+     * Режим прогрева L1 кэша из L2 кэша при создании хранилища.
+     */
+    private L2WarmUpMode warmUpMode = L2WarmUpMode.BACKGROUND;
+
+    /**
+     * Слушатель событий записи в L2 кэш.
+     */
+    private CacheEventListener eventListener = CacheEventListener.NO_OP;
+
+    /**
+     * Накопитель статистики записи в L2 кэш или null, если сбор статистики отключен.
+     */
+    private StatsCounter statsCounter;
+
+    /**
+     * Метод создания настроек L2 кэша для одной секции
+     * {@link org.buldakov.model.cache.ShardedCacheStorage секционированного хранилища}.
+     * Секция хранит L2 кэш в поддиректории {@code shard-<index>} и получает свою долю ограничения размера
+     * и свою {@link L2AdmissionPolicy политику допуска}. Остальные настройки общие.
+     *
+     * @param index      Номер секции.
+     * @param shardCount Количество секций.
+     * @return Настройки секции.
+     */
+    public L2CacheSettings forShard(int index, int shardCount) {
+        L2CacheSettings settings = new L2CacheSettings();
+        settings.directory = this.directory.resolve("shard-" + index);
+        settings.segmentSize = this.segmentSize;
+        settings.maxSize = Math.max(1, this.maxSize / shardCount);
+        settings.compactionThreshold = this.compactionThreshold;
+        settings.writeQueueCapacity = this.writeQueueCapacity;
+        settings.writeBatchSize = this.writeBatchSize;
+        settings.flushPolicy = this.flushPolicy;
+        settings.flushInterval = this.flushInterval;
+        settings.backpressurePolicy = this.backpressurePolicy;
+        settings.tieringMode = this.tieringMode;
+        settings.valueCodec = this.valueCodec;
+        settings.compression = this.compression;
+        settings.compressionDictionary = this.compressionDictionary;
+        settings.compressionBlockSize = this.compressionBlockSize;
+        settings.admissionPolicy = this.admissionPolicy.forShard(shardCount);
+        settings.warmUpMode = this.warmUpMode;
+        settings.eventListener = this.eventListener;
+        settings.statsCounter = this.statsCounter;
+        return settings;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public L2CacheSettings setDirectory(Path directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public L2CacheSettings setSegmentSize(long segmentSize) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Размер сегмента должен быть положительным");
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public L2CacheSettings setMaxSize(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Ограничение размера L2 кэша должно быть положительным");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public L2CacheSettings setCompactionThreshold(double compactionThreshold) {
+        if (compactionThreshold <= 0 || compactionThreshold > 1) {
+            throw new IllegalArgumentException("Порог уплотнения должен быть в диапазоне (0, 1]");
+        }
+        this.compactionThreshold = compactionThreshold;
+        return this;
+    }
+
+    public int getWriteQueueCapacity() {
+        return writeQueueCapacity;
+    }
+
+    public L2CacheSettings setWriteQueueCapacity(int writeQueueCapacity) {
+        if (writeQueueCapacity <= 0) {
+            throw new IllegalArgumentException("Вместимость очереди записи должна быть положительной");
+        }
+        this.writeQueueCapacity = writeQueueCapacity;
+        return this;
+    }
+
+    public int getWriteBatchSize() {
+        return writeBatchSize;
+    }
+
+    public L2CacheSettings setWriteBatchSize(int writeBatchSize) {
+        if (writeBatchSize <= 0) {
+            throw new IllegalArgumentException("Размер пачки записи должен быть положительным");
+        }
+        this.writeBatchSize = writeBatchSize;
+        return this;
+    }
+
+    public L2FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    public L2CacheSettings setFlushPolicy(L2FlushPolicy flushPolicy) {
+        this.flushPolicy = flushPolicy;
+        return this;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public L2CacheSettings setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    public L2BackpressurePolicy getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    public L2CacheSettings setBackpressurePolicy(L2BackpressurePolicy backpressurePolicy) {
+        this.backpressurePolicy = backpressurePolicy;
+        return this;
+    }
+
+    public L2TieringMode getTieringMode() {
+        return tieringMode;
+    }
+
+    public L2CacheSettings setTieringMode(L2TieringMode tieringMode) {
+        this.tieringMode = tieringMode;
+        return this;
+    }
+
+    public ValueCodec<?> getValueCodec() {
+        return valueCodec;
+    }
+
+    public L2CacheSettings setValueCodec(ValueCodec<?> valueCodec) {
+        this.valueCodec = valueCodec;
+        return this;
+    }
+
+    public L2Compression getCompression() {
+        return compression;
+    }
+
+    public L2CacheSettings setCompression(L2Compression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public byte[] getCompressionDictionary() {
+        return compressionDictionary;
+    }
+
+    public L2CacheSettings setCompressionDictionary(byte[] compressionDictionary) {
+        this.compressionDictionary = compressionDictionary == null || compressionDictionary.length == 0
+                ? null
+                : compressionDictionary.clone();
+        return this;
+    }
+
+    public int getCompressionBlockSize() {
+        return compressionBlockSize;
+    }
+
+    public L2CacheSettings setCompressionBlockSize(int compressionBlockSize) {
+        if (compressionBlockSize <= 0 || compressionBlockSize > L2BlockCompressor.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Размер блока сжатия должен быть в диапазоне (0, "
+                    + L2BlockCompressor.MAX_BLOCK_SIZE + "]");
+        }
+        this.compressionBlockSize = compressionBlockSize;
+        return this;
+    }
+
+    public L2AdmissionPolicy getAdmissionPolicy() {
+        return admissionPolicy;
+    }
+
+    public L2CacheSettings setAdmissionPolicy(L2AdmissionPolicy admissionPolicy) {
+        this.admissionPolicy = admissionPolicy;
+        return this;
+    }
+
+    public L2WarmUpMode getWarmUpMode() {
+        return warmUpMode;
+    }
+
+    public L2CacheSettings setWarmUpMode(L2WarmUpMode warmUpMode) {
+        this.warmUpMode = warmUpMode;
+        return this;
+    }
+
+    public CacheEventListener getEventListener() {
+        return eventListener;
+    }
+
+    public L2CacheSettings setEventListener(CacheEventListener eventListener) {
+        this.eventListener = eventListener;
+        return this;
+    }
+
+    public StatsCounter getStatsCounter() {
+        return statsCounter;
+    }
+
+    public L2CacheSettings setStatsCounter(StatsCounter statsCounter) {
+        this.statsCounter = statsCounter;
+        return this;
+    }
+}
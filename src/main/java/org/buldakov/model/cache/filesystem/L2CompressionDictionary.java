@@ -0,0 +1,216 @@
+package org.buldakov.model.cache.filesystem;
+
+import org.buldakov.model.cache.codec.ValueCodec;
+import org.buldakov.model.cache.primitive.LongIntHashMap;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Обучение предустановленного словаря сжатия L2 кэша по образцам значений.
+ * <p>
+ * Небольшие значения сжимаются плохо: в блоке мало повторов, и сжатию не на что ссылаться.
+ * Словарь - это байты, которые Deflate считает уже прочитанными перед каждым блоком,
+ * поэтому общие для многих значений фрагменты (имена полей, префиксы, типовые строки) кодируются
+ * ссылкой в словарь.
+ * <p>
+ * Словарь собирается из фрагментов образцов по {@link #SEGMENT_LENGTH} байт. Ценность фрагмента -
+ * сумма по его подстрокам длины {@link #GRAM_LENGTH} количества образцов, в которых подстрока встречается
+ * (подстроки из одного образца не учитываются). Фрагменты выбираются жадно по убыванию ценности,
+ * подстроки выбранного фрагмента перестают учитываться в остальных. Самые ценные фрагменты ставятся
+ * в конец словаря, ближе к сжимаемым данным.
+ * <p>
+ * Словарь, которым сжат сегмент, нужен для его чтения: при смене словаря сегменты, сжатые прежним,
+ * удаляются при активации L2 кэша.
+ */
+public final class L2CompressionDictionary {
+
+    /**
+     * Наибольший размер словаря, который может использовать Deflate (размер его окна).
+     */
+    public static final int MAX_SIZE = 32 << 10;
+
+    /**
+     * Длина подстрок, по которым оценивается общность образцов.
+     */
+    static final int GRAM_LENGTH = Long.BYTES;
+
+    /**
+     * Длина фрагмента словаря.
+     */
+    static final int SEGMENT_LENGTH = 64;
+
+    private L2CompressionDictionary() {
+    }
+
+    /**
+     * Метод обучения словаря по образцам значений, закодированных кодеком L2 кэша.
+     *
+     * @param samples Образцы значений.
+     * @param codec   Кодек значений L2 кэша.
+     * @param maxSize Наибольший размер словаря в байтах, не больше {@link #MAX_SIZE}.
+     * @param <T>     Тип значений кэша.
+     * @return Словарь; пустой, если у образцов нет общих фрагментов.
+     */
+    public static <T> byte[] train(Collection<? extends T> samples, ValueCodec<T> codec, int maxSize) {
+        List<byte[]> encoded = new ArrayList<>(samples.size());
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        for (T sample : samples) {
+            while (true) {
+                try {
+                    codec.serialize(sample, buffer.clear());
+                    break;
+                } catch (BufferOverflowException exception) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                }
+            }
+            byte[] bytes = new byte[buffer.flip().remaining()];
+            buffer.get(bytes);
+            encoded.add(bytes);
+        }
+        return train(encoded, maxSize);
+    }
+
+    /**
+     * Метод обучения словаря по образцам закодированных значений.
+     *
+     * @param samples Образцы закодированных значений.
+     * @param maxSize Наибольший размер словаря в байтах, не больше {@link #MAX_SIZE}.
+     * @return Словарь; пустой, если у образцов нет общих фрагментов.
+     */
+    public static byte[] train(Collection<byte[]> samples, int maxSize) {
+        if (maxSize <= 0 || maxSize > MAX_SIZE) {
+            throw new IllegalArgumentException("Размер словаря должен быть в диапазоне (0, " + MAX_SIZE + "]");
+        }
+        List<byte[]> sampleList = new ArrayList<>(samples);
+        LongIntHashMap frequencies = countFrequencies(sampleList);
+
+        PriorityQueue<Segment> candidates = new PriorityQueue<>();
+        for (int i = 0; i < sampleList.size(); i++) {
+            Segment segment = bestSegment(sampleList.get(i), frequencies);
+            if (segment != null) candidates.add(segment);
+        }
+
+        List<Segment> selected = new ArrayList<>();
+        int size = 0;
+        while (size < maxSize && !candidates.isEmpty()) {
+            Segment segment = candidates.poll();
+            // Ценность могла упасть после выбора других фрагментов: пересчитываем и сравниваем со следующим.
+            long score = score(segment.sample, segment.start, segment.length, frequencies);
+            if (score == 0) {
+                continue;
+            }
+            if (score < segment.score && !candidates.isEmpty() && score < candidates.peek().score) {
+                candidates.add(new Segment(segment.sample, segment.start, segment.length, score));
+                continue;
+            }
+            int length = Math.min(segment.length, maxSize - size);
+            selected.add(new Segment(segment.sample, segment.start, length, score));
+            size += length;
+            cover(segment.sample, segment.start, segment.length, frequencies);
+        }
+
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(size);
+        for (int i = selected.size() - 1; i >= 0; i--) {
+            Segment segment = selected.get(i);
+            dictionary.write(segment.sample, segment.start, segment.length);
+        }
+        return dictionary.toByteArray();
+    }
+
+    /**
+     * Метод подсчёта количества образцов, в которых встречается каждая подстрока.
+     */
+    private static LongIntHashMap countFrequencies(List<byte[]> samples) {
+        LongIntHashMap frequencies = new LongIntHashMap(1024);
+        LongIntHashMap lastSample = new LongIntHashMap(1024);
+        for (int i = 0; i < samples.size(); i++) {
+            byte[] sample = samples.get(i);
+            for (int position = 0; position + GRAM_LENGTH <= sample.length; position++) {
+                long gram = gramAt(sample, position);
+                if (lastSample.put(gram, i) == i) {
+                    continue;
+                }
+                int frequency = frequencies.get(gram);
+                frequencies.put(gram, frequency == LongIntHashMap.MISSING ? 1 : frequency + 1);
+            }
+        }
+        return frequencies;
+    }
+
+    /**
+     * Метод поиска самого ценного фрагмента образца скользящим окном.
+     *
+     * @return Фрагмент или null, если в образце нет общих подстрок.
+     */
+    private static Segment bestSegment(byte[] sample, LongIntHashMap frequencies) {
+        if (sample.length < GRAM_LENGTH) {
+            return null;
+        }
+        int length = Math.min(SEGMENT_LENGTH, sample.length);
+        int grams = length - GRAM_LENGTH + 1;
+        long score = 0;
+        for (int position = 0; position < grams; position++) {
+            score += weight(sample, position, frequencies);
+        }
+        long bestScore = score;
+        int bestStart = 0;
+        for (int start = 1; start + length <= sample.length; start++) {
+            score += weight(sample, start + grams - 1, frequencies) - weight(sample, start - 1, frequencies);
+            if (score > bestScore) {
+                bestScore = score;
+                bestStart = start;
+            }
+        }
+        return bestScore == 0 ? null : new Segment(sample, bestStart, length, bestScore);
+    }
+
+    private static long score(byte[] sample, int start, int length, LongIntHashMap frequencies) {
+        long score = 0;
+        for (int position = start; position + GRAM_LENGTH <= start + length; position++) {
+            score += weight(sample, position, frequencies);
+        }
+        return score;
+    }
+
+    /**
+     * Метод исключения подстрок выбранного фрагмента из оценки остальных.
+     */
+    private static void cover(byte[] sample, int start, int length, LongIntHashMap frequencies) {
+        for (int position = start; position + GRAM_LENGTH <= start + length; position++) {
+            frequencies.put(gramAt(sample, position), 0);
+        }
+    }
+
+    /**
+     * Ценность подстроки - количество образцов с ней, если их больше одного.
+     */
+    private static int weight(byte[] sample, int position, LongIntHashMap frequencies) {
+        int frequency = frequencies.get(gramAt(sample, position));
+        return frequency > 1 ? frequency : 0;
+    }
+
+    private static long gramAt(byte[] sample, int position) {
+        long gram = 0;
+        for (int i = 0; i < GRAM_LENGTH; i++) {
+            gram = gram << 8 | (sample[position + i] & 0xFF);
+        }
+        return gram;
+    }
+
+    /**
+     * Фрагмент образца - кандидат в словарь. Упорядочивается по убыванию ценности.
+     */
+    private record Segment(byte[] sample, int start, int length, long score) implements Comparable<Segment> {
+
+        @Override
+        public int compareTo(Segment other) {
+            return Long.compare(other.score, this.score);
+        }
+    }
+}
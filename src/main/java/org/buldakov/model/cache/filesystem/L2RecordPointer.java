@@ -0,0 +1,12 @@
+package org.buldakov.model.cache.filesystem;
+
+/**
+ * Указатель на запись в L2 кэше.
+ *
+ * @param segmentId Идентификатор {@link L2Segment сегмента}, содержащего запись.
+ * @param offset    Смещение начала записи от начала файла сегмента; в сжатом сегменте -
+ *                  {@link L2BlockCompressor#pointerOffset(long, int) смещение блока и записи внутри него}.
+ * @param length    Полная длина записи в байтах (с учётом служебной части) до сжатия.
+ */
+public record L2RecordPointer(long segmentId, long offset, int length) {
+}
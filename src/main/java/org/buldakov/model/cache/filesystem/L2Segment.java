@@ -0,0 +1,365 @@
+package org.buldakov.model.cache.filesystem;
+
+import org.buldakov.model.cache.enums.L2Compression;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Сегмент L2 кэша - отдельный файл, в который записи только добавляются.
+ * <p>
+ * Файл сегмента начинается с заголовка:
+ * <pre>
+ * | магическое число (int) | версия формата (int) | граница вытеснения (long) |
+ * </pre>
+ * Граница вытеснения - идентификатор, все сегменты с меньшим идентификатором устарели
+ * и при открытии L2 кэша удаляются. У обычного сегмента граница равна 0, у сегмента,
+ * полученного уплотнением или отчисткой L2 кэша, - его собственному идентификатору.
+ * <p>
+ * Сегмент со {@link L2BlockCompressor сжатыми блоками} записей имеет версию формата
+ * {@link #COMPRESSED_FORMAT_VERSION} и расширенный заголовок:
+ * <pre>
+ * | магическое число (int) | версия формата (int) | граница вытеснения (long) | режим сжатия (int) | контрольная сумма словаря (int) |
+ * </pre>
+ */
+class L2Segment implements Closeable {
+
+    /**
+     * Магическое число файла сегмента ("ARDC").
+     */
+    static final int MAGIC = 0x41524443;
+
+    /**
+     * Версия формата файла сегмента.
+     */
+    static final int FORMAT_VERSION = 4;
+
+    /**
+     * Версия формата файла сегмента со сжатыми блоками записей.
+     */
+    static final int COMPRESSED_FORMAT_VERSION = 5;
+
+    /**
+     * Размер заголовка файла сегмента в байтах.
+     */
+    static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES;
+
+    /**
+     * Размер заголовка файла сегмента со сжатыми блоками в байтах.
+     */
+    static final int COMPRESSED_HEADER_SIZE = HEADER_SIZE + Integer.BYTES * 2;
+
+    /**
+     * Расширение файла сегмента.
+     */
+    static final String SEGMENT_EXTENSION = ".bin";
+
+    /**
+     * Расширение временного файла уплотнённого сегмента.
+     */
+    private static final String COMPACTION_EXTENSION = ".compact";
+
+    private final long id;
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    /**
+     * Граница вытеснения, записанная в заголовке.
+     */
+    private final long supersedesBelow;
+
+    /**
+     * Режим сжатия, которым записаны блоки сегмента.
+     */
+    private final L2Compression compression;
+
+    /**
+     * Контрольная сумма словаря, которым сжаты блоки сегмента.
+     */
+    private final int dictionaryChecksum;
+
+    /**
+     * Размер файла сегмента в байтах.
+     */
+    private volatile long size;
+
+    /**
+     * Суммарный размер всех записей сегмента до сжатия в байтах.
+     * Изменяется только фоновым писателем.
+     */
+    private long recordBytes;
+
+    /**
+     * Суммарный размер актуальных записей сегмента до сжатия в байтах.
+     * Изменяется только фоновым писателем.
+     */
+    private long liveBytes;
+
+    /**
+     * Переключатель "о записи с ошибкой в сегменте уже сообщено слушателю".
+     */
+    private final AtomicBoolean isErrorReported = new AtomicBoolean();
+
+    private L2Segment(long id, Path path, FileChannel channel, long supersedesBelow,
+                      L2Compression compression, int dictionaryChecksum, long size) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.supersedesBelow = supersedesBelow;
+        this.compression = compression;
+        this.dictionaryChecksum = dictionaryChecksum;
+        this.size = size;
+    }
+
+    /**
+     * Метод создания нового файла сегмента.
+     *
+     * @param path            Путь к файлу сегмента.
+     * @param id              Идентификатор сегмента.
+     * @param supersedesBelow Граница вытеснения.
+     * @param compressor      Сжатие блоков записей сегмента.
+     * @return Сегмент.
+     * @throws IOException В случае неудачного создания файла.
+     */
+    static L2Segment create(Path path, long id, long supersedesBelow, L2BlockCompressor compressor) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header;
+        if (compressor.isEnabled()) {
+            header = ByteBuffer.allocate(COMPRESSED_HEADER_SIZE)
+                    .putInt(MAGIC).putInt(COMPRESSED_FORMAT_VERSION).putLong(supersedesBelow)
+                    .putInt(compressor.getCompression().ordinal()).putInt(compressor.getDictionaryChecksum()).flip();
+        } else {
+            header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC).putInt(FORMAT_VERSION).putLong(supersedesBelow).flip();
+        }
+        int headerSize = header.limit();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        return new L2Segment(id, path, channel, supersedesBelow, compressor.getCompression(),
+                compressor.getDictionaryChecksum(), headerSize);
+    }
+
+    /**
+     * Метод открытия существующего файла сегмента.
+     *
+     * @param path Путь к файлу сегмента.
+     * @return Сегмент или null, если файл имеет неподдерживаемый формат.
+     * @throws IOException В случае неудачного открытия файла.
+     */
+    static L2Segment open(Path path) throws IOException {
+        long id = parseId(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(COMPRESSED_HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // Читаем заголовок целиком.
+        }
+        header.flip();
+        int version = header.remaining() < HEADER_SIZE || header.getInt() != MAGIC ? -1 : header.getInt();
+        if (version == FORMAT_VERSION) {
+            return new L2Segment(id, path, channel, header.getLong(), L2Compression.NONE, 0, channel.size());
+        }
+        if (version == COMPRESSED_FORMAT_VERSION && header.remaining() == COMPRESSED_HEADER_SIZE - Integer.BYTES * 2) {
+            long supersedesBelow = header.getLong();
+            int compression = header.getInt();
+            if (compression > 0 && compression < L2Compression.values().length) {
+                return new L2Segment(id, path, channel, supersedesBelow, L2Compression.values()[compression],
+                        header.getInt(), channel.size());
+            }
+        }
+        channel.close();
+        return null;
+    }
+
+    /**
+     * Метод получения пути к файлу сегмента.
+     *
+     * @param directory Директория L2 кэша.
+     * @param id        Идентификатор сегмента.
+     * @return Путь к файлу сегмента.
+     */
+    static Path pathOf(Path directory, long id) {
+        return directory.resolve("segment-%016d%s".formatted(id, SEGMENT_EXTENSION));
+    }
+
+    /**
+     * Метод получения пути к временному файлу уплотнённого сегмента.
+     *
+     * @param directory Директория L2 кэша.
+     * @param id        Идентификатор сегмента.
+     * @return Путь к временному файлу.
+     */
+    static Path compactionPathOf(Path directory, long id) {
+        return directory.resolve("segment-%016d%s".formatted(id, COMPACTION_EXTENSION));
+    }
+
+    /**
+     * Метод проверки, является ли файл файлом сегмента.
+     *
+     * @param path Путь к файлу.
+     * @return True/false.
+     */
+    static boolean isSegmentFile(Path path) {
+        String fileName = path.getFileName().toString();
+        return fileName.startsWith("segment-") && fileName.endsWith(SEGMENT_EXTENSION);
+    }
+
+    /**
+     * Метод проверки, является ли файл временным файлом уплотнения.
+     *
+     * @param path Путь к файлу.
+     * @return True/false.
+     */
+    static boolean isCompactionFile(Path path) {
+        return path.getFileName().toString().endsWith(COMPACTION_EXTENSION);
+    }
+
+    private static long parseId(Path path) {
+        String fileName = path.getFileName().toString();
+        return Long.parseLong(fileName.substring("segment-".length(), fileName.length() - SEGMENT_EXTENSION.length()));
+    }
+
+    /**
+     * Метод добавления данных в конец сегмента.
+     *
+     * @param buffer Данные.
+     * @return Смещение, с которого записаны данные.
+     * @throws IOException В случае неудачной записи.
+     */
+    long append(ByteBuffer buffer) throws IOException {
+        long offset = this.size;
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += this.channel.write(buffer, position);
+        }
+        this.size = position;
+        return offset;
+    }
+
+    /**
+     * Метод позиционного чтения из сегмента.
+     *
+     * @param buffer Буфер, который будет заполнен целиком.
+     * @param offset Смещение начала чтения.
+     * @return False - если файл закончился раньше, чем заполнился буфер.
+     * @throws IOException В случае неудачного чтения.
+     */
+    boolean read(ByteBuffer buffer, long offset) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            int read = this.channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    /**
+     * Метод отображения файла сегмента в память.
+     *
+     * @return Буфер, отображённый на файл сегмента.
+     * @throws IOException В случае неудачного отображения.
+     */
+    MappedByteBuffer map() throws IOException {
+        return this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.size);
+    }
+
+    /**
+     * Метод обрезки сегмента до заданного размера.
+     *
+     * @param newSize Новый размер файла.
+     * @throws IOException В случае неудачной обрезки.
+     */
+    void truncate(long newSize) throws IOException {
+        this.channel.truncate(newSize);
+        this.size = newSize;
+    }
+
+    void force() throws IOException {
+        this.channel.force(false);
+    }
+
+    /**
+     * Метод удаления файла сегмента вместе с его {@link L2SegmentHint подсказкой}.
+     *
+     * @throws IOException В случае неудачного удаления.
+     */
+    void delete() throws IOException {
+        this.close();
+        L2SegmentHint.delete(this.path);
+        Files.deleteIfExists(this.path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    long getId() {
+        return id;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Метод отметки записи с ошибкой в сегменте.
+     *
+     * @return True - если это первая такая запись сегмента.
+     */
+    boolean markErrorReported() {
+        return this.isErrorReported.compareAndSet(false, true);
+    }
+
+    long getSupersedesBelow() {
+        return supersedesBelow;
+    }
+
+    /**
+     * @return True - если записи сегмента хранятся {@link L2BlockCompressor сжатыми блоками}.
+     */
+    boolean isCompressed() {
+        return compression != L2Compression.NONE;
+    }
+
+    int getDictionaryChecksum() {
+        return dictionaryChecksum;
+    }
+
+    int getHeaderSize() {
+        return this.isCompressed() ? COMPRESSED_HEADER_SIZE : HEADER_SIZE;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getLiveBytes() {
+        return liveBytes;
+    }
+
+    void addLiveBytes(long delta) {
+        this.liveBytes += delta;
+    }
+
+    long getRecordBytes() {
+        return recordBytes;
+    }
+
+    void addRecordBytes(long delta) {
+        this.recordBytes += delta;
+    }
+}
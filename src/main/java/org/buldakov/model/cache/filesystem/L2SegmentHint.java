@@ -0,0 +1,258 @@
+package org.buldakov.model.cache.filesystem;
+
+import org.buldakov.model.cache.codec.StringCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Файл-подсказка закрытого {@link L2Segment сегмента} L2 кэша.
+ * <p>
+ * Содержит ключи, приоритеты и позиции всех записей сегмента без значений, что позволяет
+ * построить индекс L2 кэша при открытии, не читая сам сегмент. Файл имеет вид
+ * <pre>
+ * | магическое число (int) | версия формата (int) | размер сегмента (long) | количество записей (int) |
+ * | длина записи (int) | длина значения (int) | приоритет (long) | смещение (long) | длина ключа (int) | ключ (UTF-8) | ...
+ * | CRC32 (int) |
+ * </pre>
+ * Подсказка пишется фоновым писателем, когда сегмент закрывается для записи или получается уплотнением.
+ * Подсказка, размер сегмента в которой не совпадает с размером файла сегмента, или с неверной
+ * контрольной суммой не используется - сегмент читается целиком.
+ */
+final class L2SegmentHint {
+
+    /**
+     * Магическое число файла-подсказки ("ARDH").
+     */
+    private static final int MAGIC = 0x41524448;
+
+    /**
+     * Версия формата файла-подсказки.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Размер заголовка файла-подсказки в байтах.
+     */
+    private static final int HEADER_SIZE = Integer.BYTES * 3 + Long.BYTES;
+
+    /**
+     * Размер служебной части записи подсказки (без ключа) в байтах.
+     */
+    private static final int ENTRY_HEADER_SIZE = Integer.BYTES * 3 + Long.BYTES * 2;
+
+    /**
+     * Расширение файла-подсказки.
+     */
+    private static final String HINT_EXTENSION = ".hint";
+
+    /**
+     * Расширение временного файла-подсказки, ещё не занявшего своё место.
+     */
+    private static final String TEMPORARY_EXTENSION = ".hint.tmp";
+
+    /**
+     * Получатель записей сегмента.
+     */
+    @FunctionalInterface
+    interface RecordVisitor {
+
+        /**
+         * @param key         Ключ кэша.
+         * @param valueLength Длина значения или длина, обозначающая надгробие.
+         * @param priority    Приоритет кэш-элемента.
+         * @param offset      Смещение записи в сегменте.
+         * @param length      Полная длина записи.
+         */
+        void visit(String key, int valueLength, long priority, long offset, int length);
+    }
+
+    /**
+     * Накопленные записи подсказки.
+     */
+    private ByteBuffer entries = ByteBuffer.allocate(64 << 10);
+
+    private int count;
+
+    /**
+     * Метод добавления записи сегмента в подсказку.
+     *
+     * @param key         Ключ кэша.
+     * @param valueLength Длина значения.
+     * @param priority    Приоритет кэш-элемента.
+     * @param offset      Смещение записи в сегменте.
+     * @param length      Полная длина записи.
+     */
+    void add(String key, int valueLength, long priority, long offset, int length) {
+        int required = ENTRY_HEADER_SIZE + key.length() * 3;
+        if (this.entries.remaining() < required) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(this.entries.capacity() * 2, this.entries.position() + required));
+            this.entries = grown.put(this.entries.flip());
+        }
+        int start = this.entries.position();
+        this.entries.position(start + ENTRY_HEADER_SIZE);
+        StringCodec.putUtf8(key, this.entries);
+        this.entries.putInt(start, length)
+                .putInt(start + Integer.BYTES, valueLength)
+                .putLong(start + Integer.BYTES * 2, priority)
+                .putLong(start + Integer.BYTES * 2 + Long.BYTES, offset)
+                .putInt(start + Integer.BYTES * 2 + Long.BYTES * 2, this.entries.position() - start - ENTRY_HEADER_SIZE);
+        this.count++;
+    }
+
+    /**
+     * Метод записи подсказки на диск. Файл сначала пишется во временный, а затем атомарно
+     * занимает своё место, поэтому недописанная подсказка никогда не будет прочитана.
+     *
+     * @param segment Сегмент, которому принадлежит подсказка.
+     * @throws IOException В случае неудачной записи.
+     */
+    void write(L2Segment segment) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC).putInt(FORMAT_VERSION).putLong(segment.getSize()).putInt(this.count).flip();
+        ByteBuffer body = this.entries.duplicate().flip();
+        CRC32 checksum = new CRC32();
+        checksum.update(header.duplicate());
+        checksum.update(body.duplicate());
+        ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES).putInt((int) checksum.getValue()).flip();
+        Path temporary = temporaryPathOf(segment.getPath());
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer[] buffers = {header, body, trailer};
+            while (trailer.hasRemaining()) {
+                channel.write(buffers);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, pathOf(segment.getPath()), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Метод чтения подсказки сегмента.
+     *
+     * @param segment Сегмент.
+     * @param visitor Получатель записей сегмента в порядке их расположения.
+     * @return False - если подсказки нет, она повреждена или не соответствует сегменту.
+     * В этом случае получатель не вызывается.
+     * @throws IOException В случае неудачного чтения.
+     */
+    static boolean read(L2Segment segment, RecordVisitor visitor) throws IOException {
+        Path path = pathOf(segment.getPath());
+        if (!Files.exists(path)) {
+            return false;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + Integer.BYTES || channel.size() > Integer.MAX_VALUE) {
+                return false;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int checksumPosition = buffer.limit() - Integer.BYTES;
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.slice(0, checksumPosition));
+        if (buffer.getInt(checksumPosition) != (int) checksum.getValue()
+                || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                || buffer.getLong() != segment.getSize()) {
+            return false;
+        }
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            int valueLength = buffer.getInt();
+            long priority = buffer.getLong();
+            long offset = buffer.getLong();
+            int keyLength = buffer.getInt();
+            visitor.visit(StringCodec.getUtf8(buffer, keyLength), valueLength, priority, offset, length);
+        }
+        return true;
+    }
+
+    /**
+     * Метод чтения количества записей из заголовка подсказки без её проверки.
+     * Используется для выбора начального размера индекса.
+     *
+     * @param segment Сегмент.
+     * @return Количество записей или 0, если подсказки нет или она не соответствует сегменту.
+     * @throws IOException В случае неудачного чтения.
+     */
+    static int peekCount(L2Segment segment) throws IOException {
+        Path path = pathOf(segment.getPath());
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // Читаем заголовок целиком.
+            }
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION
+                || header.getLong() != segment.getSize()) {
+            return 0;
+        }
+        return Math.max(0, header.getInt());
+    }
+
+    /**
+     * Метод удаления подсказки сегмента.
+     *
+     * @param segmentPath Путь к файлу сегмента.
+     * @throws IOException В случае неудачного удаления.
+     */
+    static void delete(Path segmentPath) throws IOException {
+        Files.deleteIfExists(pathOf(segmentPath));
+    }
+
+    /**
+     * Метод проверки, является ли файл подсказкой.
+     *
+     * @param path Путь к файлу.
+     * @return True/false.
+     */
+    static boolean isHintFile(Path path) {
+        return path.getFileName().toString().endsWith(HINT_EXTENSION);
+    }
+
+    /**
+     * Метод проверки, является ли файл временным файлом подсказки.
+     *
+     * @param path Путь к файлу.
+     * @return True/false.
+     */
+    static boolean isTemporaryFile(Path path) {
+        return path.getFileName().toString().endsWith(TEMPORARY_EXTENSION);
+    }
+
+    /**
+     * Метод получения пути к файлу сегмента по пути к его подсказке.
+     *
+     * @param hintPath Путь к файлу-подсказке.
+     * @return Путь к файлу сегмента.
+     */
+    static Path segmentPathOf(Path hintPath) {
+        String fileName = hintPath.getFileName().toString();
+        return hintPath.resolveSibling(fileName.substring(0, fileName.length() - HINT_EXTENSION.length()) + L2Segment.SEGMENT_EXTENSION);
+    }
+
+    private static Path pathOf(Path segmentPath) {
+        return segmentPath.resolveSibling(baseNameOf(segmentPath) + HINT_EXTENSION);
+    }
+
+    private static Path temporaryPathOf(Path segmentPath) {
+        return segmentPath.resolveSibling(baseNameOf(segmentPath) + TEMPORARY_EXTENSION);
+    }
+
+    private static String baseNameOf(Path segmentPath) {
+        String fileName = segmentPath.getFileName().toString();
+        return fileName.substring(0, fileName.lastIndexOf('.'));
+    }
+}
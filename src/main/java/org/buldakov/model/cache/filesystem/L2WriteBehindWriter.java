@@ -0,0 +1,292 @@
+package org.buldakov.model.cache.filesystem;
+
+import org.buldakov.model.cache.enums.L2BackpressurePolicy;
+import org.buldakov.model.cache.enums.L2FlushPolicy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновый писатель L2 кэша (write-behind).
+ * <p>
+ * Запись в L2 кэш помещается в ограниченную очередь и возвращает управление сразу.
+ * Фоновый поток забирает записи пачками, схлопывает повторяющиеся ключи
+ * (остаётся последнее значение) и записывает пачку в кэш-файл одной операцией.
+ * Пока запись не попала в файл, её значение доступно через {@link #getPending(String)}.
+ * После каждой пачки писатель обслуживает сегменты L2 кэша (см. {@link L2CacheResolver#maintain()}).
+ */
+class L2WriteBehindWriter implements Runnable {
+
+    /**
+     * Отложенная запись в L2 кэш.
+     *
+     * @param key     Ключ кэша. null - служебный сигнал или несколько записей.
+     * @param entry   Запись кэша, значение которой может быть {@link L2CacheResolver#TOMBSTONE}.
+     * @param entries Записи, поставленные в очередь одной операцией, или null.
+     */
+    private record PendingWrite(String key, L2CacheEntry entry, Map<String, L2CacheEntry> entries) {
+    }
+
+    /**
+     * Сигнал закрытия писателя.
+     */
+    private static final PendingWrite CLOSE_SIGNAL = new PendingWrite(null, null, null);
+
+    /**
+     * Сигнал отчистки L2 кэша.
+     */
+    private static final PendingWrite CLEAR_SIGNAL = new PendingWrite(null, null, null);
+
+    private final L2CacheResolver resolver;
+
+    private final L2CacheSettings settings;
+
+    /**
+     * Очередь отложенных записей.
+     */
+    private final BlockingQueue<PendingWrite> queue;
+
+    /**
+     * Записи, которые ещё не записаны в кэш-файл.
+     */
+    private final Map<String, L2CacheEntry> pendingWrites = new ConcurrentHashMap<>();
+
+    private final Thread thread;
+
+    /**
+     * Переключатель "закрыт ли писатель".
+     */
+    private volatile boolean closed;
+
+    /**
+     * Есть ли записанные, но не сброшенные на диск данные.
+     */
+    private boolean dirty;
+
+    /**
+     * Время последнего сброса кэш-файла на диск.
+     */
+    private long lastFlushNanos = System.nanoTime();
+
+    L2WriteBehindWriter(L2CacheResolver resolver, L2CacheSettings settings) {
+        this.resolver = resolver;
+        this.settings = settings;
+        this.queue = new ArrayBlockingQueue<>(settings.getWriteQueueCapacity());
+        this.thread = new Thread(this, "ardecs-l2-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Метод постановки записи в очередь.
+     * При переполнении очереди поведение определяется {@link L2BackpressurePolicy}.
+     *
+     * @param key   Ключ кэша.
+     * @param entry Запись кэша.
+     * @return True - если запись принята, false - если она отброшена.
+     */
+    boolean submit(String key, L2CacheEntry entry) {
+        if (this.closed) {
+            return false;
+        }
+        this.pendingWrites.put(key, entry);
+        boolean accepted = this.enqueue(new PendingWrite(key, entry, null));
+        if (!accepted) {
+            this.pendingWrites.remove(key, entry);
+            this.settings.getEventListener().onL2WriteDropped(1);
+        }
+        return accepted;
+    }
+
+    /**
+     * Метод постановки нескольких записей в очередь одним элементом.
+     * Такие записи всегда попадают в одну пачку.
+     *
+     * @param entries Ключи и записи кэша.
+     * @return True - если записи приняты, false - если они отброшены.
+     */
+    boolean submitAll(Map<String, L2CacheEntry> entries) {
+        if (this.closed) {
+            return false;
+        }
+        Map<String, L2CacheEntry> copy = new LinkedHashMap<>(entries);
+        this.pendingWrites.putAll(copy);
+        boolean accepted = this.enqueue(new PendingWrite(null, null, copy));
+        if (!accepted) {
+            copy.forEach((key, entry) -> this.pendingWrites.remove(key, entry));
+            this.settings.getEventListener().onL2WriteDropped(copy.size());
+        }
+        return accepted;
+    }
+
+    /**
+     * Метод постановки в очередь с учётом {@link L2BackpressurePolicy}.
+     *
+     * @param write Отложенная запись.
+     * @return True - если запись принята.
+     */
+    private boolean enqueue(PendingWrite write) {
+        if (this.settings.getBackpressurePolicy() == L2BackpressurePolicy.BLOCK) {
+            try {
+                this.queue.put(write);
+                return true;
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return this.queue.offer(write);
+    }
+
+    /**
+     * Метод постановки отчистки L2 кэша в очередь.
+     * Отложенные до этого момента записи будут отброшены.
+     */
+    void submitClear() {
+        if (this.closed) {
+            return;
+        }
+        this.pendingWrites.clear();
+        try {
+            this.queue.put(CLEAR_SIGNAL);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Метод получения записи, ещё не записанной в кэш-файл.
+     *
+     * @param key Ключ кэша.
+     * @return Запись кэша или null, если для ключа нет отложенной записи.
+     */
+    L2CacheEntry getPending(String key) {
+        return this.pendingWrites.get(key);
+    }
+
+    /**
+     * Метод закрытия писателя. Дожидается записи всей очереди и сбрасывает кэш-файл на диск.
+     */
+    void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.queue.put(CLOSE_SIGNAL);
+            this.thread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<PendingWrite> batch = new ArrayList<>(this.settings.getWriteBatchSize());
+        boolean running = true;
+        while (running) {
+            try {
+                PendingWrite first = this.awaitFirst();
+                if (first != null) {
+                    batch.add(first);
+                    this.queue.drainTo(batch, this.settings.getWriteBatchSize() - 1);
+                    for (PendingWrite write : batch) {
+                        if (write == CLOSE_SIGNAL) running = false;
+                    }
+                    try {
+                        this.writeBatch(batch);
+                    } finally {
+                        batch.clear();
+                    }
+                }
+                if (running) {
+                    this.flushIfDue();
+                }
+            } catch (InterruptedException exception) {
+                running = false;
+            } catch (IOException | RuntimeException exception) {
+                // Пачка потеряна, но поток продолжает работу: иначе BLOCK и close() ждали бы его вечно.
+                this.settings.getEventListener().onL2WriteError(exception);
+            }
+        }
+        try {
+            this.resolver.force();
+        } catch (IOException | RuntimeException exception) {
+            this.settings.getEventListener().onL2WriteError(exception);
+        }
+    }
+
+    /**
+     * Метод ожидания первой записи пачки.
+     * Для {@link L2FlushPolicy#TIMED} ожидание ограничено интервалом сброса.
+     *
+     * @return Запись или null, если интервал сброса истёк.
+     * @throws InterruptedException В случае прерывания потока.
+     */
+    private PendingWrite awaitFirst() throws InterruptedException {
+        if (this.settings.getFlushPolicy() == L2FlushPolicy.TIMED) {
+            return this.queue.poll(this.settings.getFlushInterval().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        return this.queue.take();
+    }
+
+    /**
+     * Метод записи пачки с предварительным схлопыванием повторяющихся ключей.
+     * Записи, предшествующие сигналу отчистки, отбрасываются.
+     * Из отложенных записей удаляются только записанные пачкой: более новая запись того же ключа,
+     * поставленная в очередь во время записи пачки, остаётся доступной до своей пачки.
+     *
+     * @param batch Пачка отложенных записей.
+     * @throws IOException В случае неудачной записи.
+     */
+    private void writeBatch(List<PendingWrite> batch) throws IOException {
+        Map<String, L2CacheEntry> coalesced = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            if (write == CLEAR_SIGNAL) {
+                coalesced.clear();
+                this.resolver.clearSegments();
+            } else if (write.entries() != null) {
+                coalesced.putAll(write.entries());
+            } else if (write != CLOSE_SIGNAL) {
+                coalesced.put(write.key(), write.entry());
+            }
+        }
+        if (!coalesced.isEmpty()) {
+            try {
+                this.resolver.writeBatch(coalesced);
+            } finally {
+                coalesced.forEach((key, entry) -> this.pendingWrites.remove(key, entry));
+            }
+            this.dirty = true;
+            if (this.settings.getFlushPolicy() == L2FlushPolicy.PER_BATCH) {
+                this.flush();
+            }
+            this.resolver.maintain();
+        }
+    }
+
+    /**
+     * Метод сброса кэш-файла на диск по истечении интервала для {@link L2FlushPolicy#TIMED}.
+     *
+     * @throws IOException В случае неудачного сброса.
+     */
+    private void flushIfDue() throws IOException {
+        if (this.dirty && this.settings.getFlushPolicy() == L2FlushPolicy.TIMED
+                && System.nanoTime() - this.lastFlushNanos >= this.settings.getFlushInterval().toNanos()) {
+            this.flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        this.resolver.force();
+        this.dirty = false;
+        this.lastFlushNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,412 @@
+package org.buldakov.model.cache.offheap;
+
+import org.buldakov.model.cache.codec.StringCodec;
+import org.buldakov.model.cache.codec.ValueCodec;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * L1 кэш-хранилище вне кучи (off-heap).
+ * <p>
+ * Ключ и значение кэш-элемента кодируются в один блок прямой памяти, выделенный
+ * {@link SlabAllocator распределителем слэбов}:
+ * <pre>
+ * | длина ключа (int) | длина значения (int) | ключ (UTF-8) | значение |
+ * </pre>
+ * Значение записывается {@link ValueCodec кодеком} хранилища. Индекс - хэш-таблица с открытой
+ * адресацией (линейное пробирование) из двух массивов: адреса блоков и хэши ключей.
+ * Таким образом на куче остаются только два массива, сколько бы элементов ни хранилось.
+ * <p>
+ * Чтение выполняется под блокировкой чтения, изменение - под блокировкой записи,
+ * поэтому хранилище можно использовать в конкурентном режиме.
+ */
+public class OffHeapStorage extends AbstractMap<String, Object> {
+
+    private static final int ENTRY_HEADER_SIZE = Integer.BYTES * 2;
+
+    private static final int INITIAL_TABLE_SIZE = 64;
+
+    /**
+     * Начальный размер буфера кодирования, закреплённого за потоком.
+     */
+    private static final int SCRATCH_BUFFER_SIZE = 8 << 10;
+
+    /**
+     * Буферы кодирования кэш-элементов, по одному на поток.
+     */
+    private static final ThreadLocal<ByteBuffer> SCRATCH_BUFFERS
+            = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(SCRATCH_BUFFER_SIZE));
+
+    private final ValueCodec<Object> codec;
+
+    private final SlabAllocator allocator;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Адреса блоков кэш-элементов. 0 - пустая ячейка.
+     */
+    private long[] addresses = new long[INITIAL_TABLE_SIZE];
+
+    /**
+     * Хэши ключей кэш-элементов.
+     */
+    private int[] hashes = new int[INITIAL_TABLE_SIZE];
+
+    private int size;
+
+    /**
+     * @param maxMemory Ограничение прямой памяти в байтах.
+     * @param codec     Кодек значений кэша.
+     */
+    @SuppressWarnings("unchecked")
+    public OffHeapStorage(long maxMemory, ValueCodec<?> codec) {
+        this.allocator = new SlabAllocator(maxMemory);
+        this.codec = (ValueCodec<Object>) codec;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String cacheKey)) {
+            return null;
+        }
+        ByteBuffer keyBuffer = encodeKey(cacheKey);
+        this.lock.readLock().lock();
+        try {
+            int slot = this.findSlot(cacheKey.hashCode(), keyBuffer);
+            return slot < 0 ? null : this.readValue(this.addresses[slot]);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof String cacheKey)) {
+            return false;
+        }
+        ByteBuffer keyBuffer = encodeKey(cacheKey);
+        this.lock.readLock().lock();
+        try {
+            return this.findSlot(cacheKey.hashCode(), keyBuffer) >= 0;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Метод добавления кэш-элемента.
+     *
+     * @param key   Ключ кэша.
+     * @param value Значение кэша.
+     * @return Всегда null: прежнее значение не декодируется.
+     * @throws IllegalStateException Если ограничение off-heap памяти исчерпано.
+     */
+    @Override
+    public Object put(String key, Object value) {
+        if (!this.tryPut(key, value)) {
+            throw new IllegalStateException("Ограничение off-heap памяти исчерпано, элемент " + key + " не добавлен");
+        }
+        return null;
+    }
+
+    /**
+     * Метод добавления кэш-элемента без исключения при нехватке памяти.
+     * Прежнее значение ключа заменяется, только если новое удалось разместить.
+     *
+     * @param key   Ключ кэша.
+     * @param value Значение кэша.
+     * @return False - если ограничение off-heap памяти исчерпано.
+     * @throws IllegalArgumentException Если кодек не поддерживает значение или элемент больше слэба.
+     */
+    public boolean tryPut(String key, Object value) {
+        ByteBuffer entry = this.encodeEntry(key, value);
+        int hash = key.hashCode();
+        this.lock.writeLock().lock();
+        try {
+            long address = this.allocator.allocate(entry.remaining());
+            if (address == 0) {
+                return false;
+            }
+            this.allocator.slab(address).put(SlabAllocator.offset(address), entry, 0, entry.remaining());
+            int slot = this.findSlot(hash, entry.slice(ENTRY_HEADER_SIZE, entry.getInt(0)));
+            if (slot >= 0) {
+                this.freeBlock(this.addresses[slot]);
+            } else {
+                if (this.size + 1 > this.addresses.length * 3 / 4) {
+                    this.resize();
+                    slot = this.findSlot(hash, entry.slice(ENTRY_HEADER_SIZE, entry.getInt(0)));
+                }
+                slot = ~slot;
+                this.size++;
+            }
+            this.addresses[slot] = address;
+            this.hashes[slot] = hash;
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Метод удаления кэш-элемента.
+     *
+     * @param key Ключ кэша.
+     * @return Всегда null: удаляемое значение не декодируется.
+     */
+    @Override
+    public Object remove(Object key) {
+        if (!(key instanceof String cacheKey)) {
+            return null;
+        }
+        ByteBuffer keyBuffer = encodeKey(cacheKey);
+        this.lock.writeLock().lock();
+        try {
+            int slot = this.findSlot(cacheKey.hashCode(), keyBuffer);
+            if (slot >= 0) {
+                this.freeBlock(this.addresses[slot]);
+                this.deleteSlot(slot);
+                this.size--;
+            }
+            return null;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Метод отчистки хранилища. Освобождает всю прямую память.
+     */
+    @Override
+    public void clear() {
+        this.lock.writeLock().lock();
+        try {
+            this.allocator.clear();
+            this.addresses = new long[INITIAL_TABLE_SIZE];
+            this.hashes = new int[INITIAL_TABLE_SIZE];
+            this.size = 0;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Метод получения снимка кэш-элементов. Декодирует все значения,
+     * поэтому предназначен для отладки и логирования.
+     *
+     * @return Снимок кэш-элементов.
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        List<Entry<String, Object>> entries = new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            for (long address : this.addresses) {
+                if (address != 0) {
+                    entries.add(new SimpleImmutableEntry<>(this.readKey(address), this.readValue(address)));
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return entries.iterator();
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
+    /**
+     * Метод получения объёма занятой кэш-элементами прямой памяти.
+     *
+     * @return Размер в байтах.
+     */
+    public long getUsedMemory() {
+        this.lock.readLock().lock();
+        try {
+            return this.allocator.getUsedBytes();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Метод получения объёма выделенной под слэбы прямой памяти.
+     *
+     * @return Размер в байтах.
+     */
+    public long getReservedMemory() {
+        this.lock.readLock().lock();
+        try {
+            return this.allocator.getReservedBytes();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Метод поиска ячейки индекса по ключу.
+     *
+     * @param hash      Хэш ключа.
+     * @param keyBuffer Ключ в UTF-8.
+     * @return Номер ячейки с ключом или ~номер пустой ячейки, в которую его можно добавить.
+     */
+    private int findSlot(int hash, ByteBuffer keyBuffer) {
+        int mask = this.addresses.length - 1;
+        int slot = spread(hash) & mask;
+        while (this.addresses[slot] != 0) {
+            if (this.hashes[slot] == hash && this.keyEquals(this.addresses[slot], keyBuffer)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    private boolean keyEquals(long address, ByteBuffer keyBuffer) {
+        ByteBuffer slab = this.allocator.slab(address);
+        int offset = SlabAllocator.offset(address);
+        int keyLength = slab.getInt(offset);
+        return keyLength == keyBuffer.remaining()
+                && slab.slice(offset + ENTRY_HEADER_SIZE, keyLength).mismatch(keyBuffer) < 0;
+    }
+
+    /**
+     * Метод удаления ячейки индекса со сдвигом следующих за ней ячеек
+     * той же цепочки пробирования, чтобы не оставлять в индексе "дыр".
+     *
+     * @param slot Номер ячейки.
+     */
+    private void deleteSlot(int slot) {
+        int mask = this.addresses.length - 1;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (this.addresses[next] == 0) {
+                break;
+            }
+            int home = spread(this.hashes[next]) & mask;
+            boolean movable = hole <= next ? home <= hole || home > next : home <= hole && home > next;
+            if (movable) {
+                this.addresses[hole] = this.addresses[next];
+                this.hashes[hole] = this.hashes[next];
+                hole = next;
+            }
+        }
+        this.addresses[hole] = 0;
+        this.hashes[hole] = 0;
+    }
+
+    /**
+     * Метод увеличения индекса вдвое.
+     */
+    private void resize() {
+        long[] oldAddresses = this.addresses;
+        int[] oldHashes = this.hashes;
+        this.addresses = new long[oldAddresses.length * 2];
+        this.hashes = new int[oldHashes.length * 2];
+        int mask = this.addresses.length - 1;
+        for (int i = 0; i < oldAddresses.length; i++) {
+            if (oldAddresses[i] != 0) {
+                int slot = spread(oldHashes[i]) & mask;
+                while (this.addresses[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                this.addresses[slot] = oldAddresses[i];
+                this.hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private void freeBlock(long address) {
+        ByteBuffer slab = this.allocator.slab(address);
+        int offset = SlabAllocator.offset(address);
+        this.allocator.free(address, ENTRY_HEADER_SIZE + slab.getInt(offset) + slab.getInt(offset + Integer.BYTES));
+    }
+
+    private String readKey(long address) {
+        ByteBuffer slab = this.allocator.slab(address);
+        int offset = SlabAllocator.offset(address);
+        return StringCodec.getUtf8(slab.slice(offset + ENTRY_HEADER_SIZE, slab.getInt(offset)), slab.getInt(offset));
+    }
+
+    private Object readValue(long address) {
+        ByteBuffer slab = this.allocator.slab(address);
+        int offset = SlabAllocator.offset(address);
+        int keyLength = slab.getInt(offset);
+        int valueLength = slab.getInt(offset + Integer.BYTES);
+        return this.codec.deserialize(slab.slice(offset + ENTRY_HEADER_SIZE + keyLength, valueLength));
+    }
+
+    /**
+     * Метод кодирования кэш-элемента в буфер потока.
+     *
+     * @param key   Ключ кэша.
+     * @param value Значение кэша.
+     * @return Буфер, оставшиеся байты которого - блок кэш-элемента.
+     */
+    private ByteBuffer encodeEntry(String key, Object value) {
+        ByteBuffer buffer = SCRATCH_BUFFERS.get();
+        while (true) {
+            try {
+                buffer.clear().position(ENTRY_HEADER_SIZE);
+                StringCodec.putUtf8(key, buffer);
+                int keyLength = buffer.position() - ENTRY_HEADER_SIZE;
+                this.codec.serialize(value, buffer);
+                buffer.putInt(0, keyLength).putInt(Integer.BYTES, buffer.position() - ENTRY_HEADER_SIZE - keyLength);
+                return buffer.flip();
+            } catch (BufferOverflowException exception) {
+                buffer = ByteBuffer.allocateDirect(Math.multiplyExact(buffer.capacity(), 2));
+                SCRATCH_BUFFERS.set(buffer);
+            }
+        }
+    }
+
+    /**
+     * Метод кодирования ключа в буфер потока.
+     *
+     * @param key Ключ кэша.
+     * @return Буфер, оставшиеся байты которого - ключ в UTF-8.
+     */
+    private static ByteBuffer encodeKey(String key) {
+        ByteBuffer buffer = SCRATCH_BUFFERS.get();
+        while (true) {
+            try {
+                StringCodec.putUtf8(key, buffer.clear());
+                return buffer.flip();
+            } catch (BufferOverflowException exception) {
+                buffer = ByteBuffer.allocateDirect(Math.multiplyExact(buffer.capacity(), 2));
+                SCRATCH_BUFFERS.set(buffer);
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,187 @@
+package org.buldakov.model.cache.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Распределитель блоков прямой памяти.
+ * <p>
+ * Память выделяется слэбами - прямыми буферами фиксированного размера, из которых блоки
+ * нарезаются последовательно. Размер блока округляется вверх до ближайшего класса размеров:
+ * между соседними степенями двойки есть четыре класса, поэтому потери на округление
+ * не превышают четверти блока. Освобождённый блок попадает в список свободных блоков своего класса,
+ * который хранится в самих блоках (первые 8 байт свободного блока - адрес следующего),
+ * и переиспользуется при следующем выделении блока того же класса.
+ * <p>
+ * Адрес блока - номер слэба (начиная с 1) в старших 32 битах и смещение в младших.
+ * Адрес 0 означает отсутствие блока. Класс не потокобезопасен.
+ */
+class SlabAllocator {
+
+    /**
+     * Минимальный размер блока (вмещает адрес следующего свободного блока).
+     */
+    static final int MIN_BLOCK_SIZE = 16;
+
+    /**
+     * Максимальный размер слэба.
+     */
+    static final int MAX_SLAB_SIZE = 16 << 20;
+
+    private static final int MIN_BLOCK_SHIFT = Integer.numberOfTrailingZeros(MIN_BLOCK_SIZE);
+
+    /**
+     * Количество классов размеров между соседними степенями двойки.
+     */
+    private static final int SUB_CLASSES = 4;
+
+    private final int slabSize;
+
+    /**
+     * Максимальное количество слэбов.
+     */
+    private final int maxSlabs;
+
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+
+    /**
+     * Адреса первых свободных блоков по классам размеров.
+     */
+    private final long[] freeLists;
+
+    /**
+     * Смещение первого свободного байта последнего слэба.
+     */
+    private int bumpOffset;
+
+    /**
+     * Суммарный размер выделенных блоков в байтах.
+     */
+    private long usedBytes;
+
+    /**
+     * @param maxMemory Ограничение прямой памяти в байтах.
+     */
+    SlabAllocator(long maxMemory) {
+        if (maxMemory < MIN_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Ограничение off-heap памяти должно быть не меньше " + MIN_BLOCK_SIZE + " байт");
+        }
+        this.slabSize = (int) Math.min(MAX_SLAB_SIZE, Long.highestOneBit(maxMemory));
+        this.maxSlabs = (int) Math.min(Integer.MAX_VALUE - 1, maxMemory / this.slabSize);
+        this.freeLists = new long[sizeClass(this.slabSize) + 1];
+        this.bumpOffset = this.slabSize;
+    }
+
+    /**
+     * Метод выделения блока.
+     *
+     * @param size Требуемый размер блока в байтах.
+     * @return Адрес блока или 0, если ограничение памяти исчерпано.
+     * @throws IllegalArgumentException Если блок больше слэба.
+     */
+    long allocate(int size) {
+        if (size > this.slabSize) {
+            throw new IllegalArgumentException("Размер элемента " + size + " байт превышает размер слэба " + this.slabSize + " байт");
+        }
+        int sizeClass = sizeClass(size);
+        int blockSize = blockSize(sizeClass);
+        long address = this.freeLists[sizeClass];
+        if (address != 0) {
+            this.freeLists[sizeClass] = this.slab(address).getLong(offset(address));
+        } else {
+            if (this.bumpOffset + blockSize > this.slabSize) {
+                if (this.slabs.size() == this.maxSlabs) {
+                    return 0;
+                }
+                this.slabs.add(ByteBuffer.allocateDirect(this.slabSize));
+                this.bumpOffset = 0;
+            }
+            address = (long) this.slabs.size() << 32 | this.bumpOffset;
+            this.bumpOffset += blockSize;
+        }
+        this.usedBytes += blockSize;
+        return address;
+    }
+
+    /**
+     * Метод освобождения блока.
+     *
+     * @param address Адрес блока.
+     * @param size    Размер, с которым блок был выделен.
+     */
+    void free(long address, int size) {
+        int sizeClass = sizeClass(size);
+        this.slab(address).putLong(offset(address), this.freeLists[sizeClass]);
+        this.freeLists[sizeClass] = address;
+        this.usedBytes -= blockSize(sizeClass);
+    }
+
+    /**
+     * Метод освобождения всех слэбов.
+     */
+    void clear() {
+        this.slabs.clear();
+        Arrays.fill(this.freeLists, 0);
+        this.bumpOffset = this.slabSize;
+        this.usedBytes = 0;
+    }
+
+    /**
+     * Метод получения слэба, в котором находится блок.
+     *
+     * @param address Адрес блока.
+     * @return Слэб. Читать и писать его следует только абсолютными методами.
+     */
+    ByteBuffer slab(long address) {
+        return this.slabs.get((int) (address >>> 32) - 1);
+    }
+
+    static int offset(long address) {
+        return (int) address;
+    }
+
+    long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Метод получения размера выделенной прямой памяти.
+     *
+     * @return Суммарный размер слэбов в байтах.
+     */
+    long getReservedBytes() {
+        return (long) this.slabs.size() * this.slabSize;
+    }
+
+    /**
+     * Метод получения класса размера блока.
+     *
+     * @param size Размер в байтах.
+     * @return Класс размера.
+     */
+    static int sizeClass(int size) {
+        if (size <= MIN_BLOCK_SIZE) {
+            return 0;
+        }
+        int shift = 31 - Integer.numberOfLeadingZeros(size - 1);
+        int subClass = (size - 1 - (1 << shift)) >> (shift - 2);
+        return (shift - MIN_BLOCK_SHIFT) * SUB_CLASSES + subClass + 1;
+    }
+
+    /**
+     * Метод получения размера блока класса.
+     *
+     * @param sizeClass Класс размера.
+     * @return Размер блока в байтах.
+     */
+    static int blockSize(int sizeClass) {
+        if (sizeClass == 0) {
+            return MIN_BLOCK_SIZE;
+        }
+        int shift = (sizeClass - 1) / SUB_CLASSES + MIN_BLOCK_SHIFT;
+        int subClass = (sizeClass - 1) % SUB_CLASSES;
+        return (1 << shift) + ((subClass + 1) << (shift - 2));
+    }
+}
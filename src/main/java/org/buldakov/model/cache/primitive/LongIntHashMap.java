@@ -0,0 +1,158 @@
+package org.buldakov.model.cache.primitive;
+
+import java.util.Arrays;
+
+/**
+ * Хэш-таблица "long - неотрицательный int" с открытой адресацией.
+ * <p>
+ * Ключи и значения хранятся в примитивных массивах, поэтому поиск и добавление не создают объектов.
+ * Коллизии разрешаются линейным пробированием, удаление сдвигает следующие записи цепочки назад
+ * и не оставляет надгробий. Таблица увеличивается вдвое при заполнении на {@link #LOAD_FACTOR}.
+ * <p>
+ * Не потокобезопасна.
+ */
+public final class LongIntHashMap {
+
+    /**
+     * Значение, которое возвращается для отсутствующего ключа.
+     */
+    public static final int MISSING = -1;
+
+    /**
+     * Наибольшая доля занятых ячеек таблицы.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    private long[] keys;
+
+    /**
+     * Значения, увеличенные на единицу. 0 - свободная ячейка.
+     */
+    private int[] values;
+
+    private int mask;
+
+    private int size;
+
+    private int resizeThreshold;
+
+    /**
+     * @param expectedSize Ожидаемое количество записей.
+     */
+    public LongIntHashMap(int expectedSize) {
+        this.allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * @param key Ключ.
+     * @return Значение или {@link #MISSING}, если ключа нет.
+     */
+    public int get(long key) {
+        for (int index = this.indexOf(key); ; index = (index + 1) & this.mask) {
+            int value = this.values[index];
+            if (value == 0) return MISSING;
+            if (this.keys[index] == key) return value - 1;
+        }
+    }
+
+    /**
+     * @param key   Ключ.
+     * @param value Неотрицательное значение.
+     * @return Прежнее значение или {@link #MISSING}, если ключа не было.
+     */
+    public int put(long key, int value) {
+        int index = this.indexOf(key);
+        for (; this.values[index] != 0; index = (index + 1) & this.mask) {
+            if (this.keys[index] == key) {
+                int previous = this.values[index] - 1;
+                this.values[index] = value + 1;
+                return previous;
+            }
+        }
+        this.keys[index] = key;
+        this.values[index] = value + 1;
+        if (++this.size > this.resizeThreshold) {
+            this.rehash(this.keys.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * @param key Ключ.
+     * @return Удалённое значение или {@link #MISSING}, если ключа не было.
+     */
+    public int remove(long key) {
+        for (int index = this.indexOf(key); ; index = (index + 1) & this.mask) {
+            int value = this.values[index];
+            if (value == 0) return MISSING;
+            if (this.keys[index] == key) {
+                this.shiftBack(index);
+                this.size--;
+                return value - 1;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return this.get(key) != MISSING;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        Arrays.fill(this.values, 0);
+        this.size = 0;
+    }
+
+    /**
+     * Метод освобождения ячейки со сдвигом назад записей, которые попали дальше своей ячейки из-за коллизий.
+     *
+     * @param hole Освобождаемая ячейка.
+     */
+    private void shiftBack(int hole) {
+        for (int index = (hole + 1) & this.mask; this.values[index] != 0; index = (index + 1) & this.mask) {
+            int home = this.indexOf(this.keys[index]);
+            if (((index - home) & this.mask) >= ((index - hole) & this.mask)) {
+                this.keys[hole] = this.keys[index];
+                this.values[hole] = this.values[index];
+                hole = index;
+            }
+        }
+        this.values[hole] = 0;
+    }
+
+    private void rehash(int tableSize) {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.allocate(tableSize);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == 0) continue;
+            int index = this.indexOf(oldKeys[i]);
+            while (this.values[index] != 0) index = (index + 1) & this.mask;
+            this.keys[index] = oldKeys[i];
+            this.values[index] = oldValues[i];
+        }
+    }
+
+    private void allocate(int tableSize) {
+        this.keys = new long[tableSize];
+        this.values = new int[tableSize];
+        this.mask = tableSize - 1;
+        this.resizeThreshold = (int) (tableSize * LOAD_FACTOR);
+    }
+
+    /**
+     * Перемешивание битов ключа, чтобы последовательные идентификаторы не занимали соседние ячейки.
+     */
+    private int indexOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & this.mask;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long required = (long) Math.ceil(Math.max(expectedSize, 2) / LOAD_FACTOR);
+        return (int) Math.min(1L << 30, Long.highestOneBit(required - 1) << 1);
+    }
+}
@@ -0,0 +1,50 @@
+package org.buldakov.model.cache.stats;
+
+/**
+ * Снимок статистики кэш-хранилища.
+ *
+ * @param hitCount        Количество попаданий в L1 кэш.
+ * @param missCount       Количество промахов по L1 кэшу.
+ * @param putCount        Количество добавлений в L1 кэш.
+ * @param evictionCount   Количество вытеснений из L1 кэша.
+ * @param expirationCount Количество кэш-элементов, удалённых по истечении срока жизни.
+ * @param l2ReadCount     Количество чтений из L2 кэша.
+ * @param l2HitCount      Количество чтений, нашедших кэш-элемент в L2 кэше.
+ * @param l2WriteCount    Количество записей в L2 кэш.
+ * @param l2ErrorCount    Количество записей L2 кэша, которые оказались повреждены или не прочитаны
+ *                        либо не записаны кодеком.
+ * @param getLatency      Длительность {@link org.buldakov.model.cache.CacheStorage#getData(String)}.
+ * @param addLatency      Длительность {@link org.buldakov.model.cache.CacheStorage#addData(String, Object)}.
+ * @param l2ReadLatency   Длительность чтения из L2 кэша.
+ * @param l2WriteLatency  Длительность записи пачки в L2 кэш.
+ */
+public record CacheStats(long hitCount, long missCount, long putCount, long evictionCount, long expirationCount,
+                         long l2ReadCount, long l2HitCount, long l2WriteCount, long l2ErrorCount,
+                         LatencySnapshot getLatency, LatencySnapshot addLatency,
+                         LatencySnapshot l2ReadLatency, LatencySnapshot l2WriteLatency) {
+
+    /**
+     * Статистика хранилища, в котором сбор статистики отключен.
+     */
+    public static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, 0, 0, 0,
+            LatencySnapshot.EMPTY, LatencySnapshot.EMPTY, LatencySnapshot.EMPTY, LatencySnapshot.EMPTY);
+
+    public long requestCount() {
+        return this.hitCount + this.missCount;
+    }
+
+    /**
+     * @return Доля попаданий в L1 кэш или 1, если обращений не было.
+     */
+    public double hitRatio() {
+        long requestCount = this.requestCount();
+        return requestCount == 0 ? 1.0 : (double) this.hitCount / requestCount;
+    }
+
+    /**
+     * @return Доля промахов по L1 кэшу, обслуженных L2 кэшем, или 0, если чтений из L2 не было.
+     */
+    public double l2HitRatio() {
+        return this.l2ReadCount == 0 ? 0.0 : (double) this.l2HitCount / this.l2ReadCount;
+    }
+}
@@ -0,0 +1,45 @@
+package org.buldakov.model.cache.stats;
+
+/**
+ * Интерфейс управления статистикой кэш-хранилища через JMX.
+ * Длительности - в наносекундах.
+ */
+public interface CacheStatsMXBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRatio();
+
+    long getPutCount();
+
+    long getEvictionCount();
+
+    long getExpirationCount();
+
+    long getL2ReadCount();
+
+    long getL2HitCount();
+
+    long getL2WriteCount();
+
+    long getL2ErrorCount();
+
+    long getGetLatencyP50();
+
+    long getGetLatencyP99();
+
+    long getAddLatencyP50();
+
+    long getAddLatencyP99();
+
+    long getL2ReadLatencyP99();
+
+    long getL2WriteLatencyP99();
+
+    /**
+     * Метод сброса статистики.
+     */
+    void reset();
+}
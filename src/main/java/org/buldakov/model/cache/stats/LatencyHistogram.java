@@ -0,0 +1,104 @@
+package org.buldakov.model.cache.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Неблокирующая гистограмма длительностей.
+ * <p>
+ * Значения раскладываются по логарифмически-линейным корзинам: каждая степень двойки
+ * делится на {@link #SUB_BUCKETS} равных корзин, поэтому относительная погрешность
+ * не превышает 1 / {@link #SUB_BUCKETS}. Запись - один атомарный инкремент счётчика корзины.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Количество корзин, покрывающее все неотрицательные значения long.
+     */
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Метод записи длительности операции.
+     *
+     * @param nanos Длительность в наносекундах.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        this.buckets.incrementAndGet(bucketIndex(value));
+        this.sum.add(value);
+        this.max.accumulate(value);
+    }
+
+    /**
+     * Метод получения снимка распределения.
+     * Выполняется без блокировки записи, поэтому при конкурентной записи снимок приблизителен.
+     *
+     * @return Снимок распределения.
+     */
+    public LatencySnapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = this.buckets.get(i);
+            count += counts[i];
+        }
+        if (count == 0) {
+            return LatencySnapshot.EMPTY;
+        }
+        return new LatencySnapshot(count, (double) this.sum.sum() / count,
+                percentile(counts, count, 0.5), percentile(counts, count, 0.99), this.max.get());
+    }
+
+    /**
+     * Метод сброса гистограммы.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.sum.reset();
+        this.max.reset();
+    }
+
+    private static long percentile(long[] counts, long count, double quantile) {
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(counts.length - 1);
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,16 @@
+package org.buldakov.model.cache.stats;
+
+/**
+ * Снимок распределения длительности операции.
+ * Перцентили - верхние границы корзин {@link LatencyHistogram гистограммы}, погрешность не более 12.5%.
+ *
+ * @param count     Количество операций.
+ * @param meanNanos Средняя длительность в наносекундах.
+ * @param p50Nanos  Медиана в наносекундах.
+ * @param p99Nanos  99-й перцентиль в наносекундах.
+ * @param maxNanos  Максимальная длительность в наносекундах.
+ */
+public record LatencySnapshot(long count, double meanNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+
+    public static final LatencySnapshot EMPTY = new LatencySnapshot(0, 0, 0, 0, 0);
+}
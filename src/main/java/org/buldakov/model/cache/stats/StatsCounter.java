@@ -0,0 +1,253 @@
+package org.buldakov.model.cache.stats;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Накопитель статистики кэш-хранилища.
+ * <p>
+ * Счётчики - {@link LongAdder}, поэтому потоки не конкурируют за одну ячейку памяти,
+ * длительности копятся в {@link LatencyHistogram неблокирующих гистограммах}.
+ * Создаётся, только если сбор статистики включен
+ * (см. {@link org.buldakov.model.cache.CacheStorageBuilder#enableStats()}),
+ * иначе хранилище не вызывает ни его, ни {@link System#nanoTime()}.
+ */
+public class StatsCounter implements CacheStatsMXBean {
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder putCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+    private final LongAdder l2ReadCount = new LongAdder();
+    private final LongAdder l2HitCount = new LongAdder();
+    private final LongAdder l2WriteCount = new LongAdder();
+    private final LongAdder l2ErrorCount = new LongAdder();
+
+    private final LatencyHistogram getLatency = new LatencyHistogram();
+    private final LatencyHistogram addLatency = new LatencyHistogram();
+    private final LatencyHistogram l2ReadLatency = new LatencyHistogram();
+    private final LatencyHistogram l2WriteLatency = new LatencyHistogram();
+
+    /**
+     * Имя, под которым статистика зарегистрирована в JMX, или null.
+     */
+    private ObjectName objectName;
+
+    public void recordHit() {
+        this.hitCount.increment();
+    }
+
+    public void recordMiss() {
+        this.missCount.increment();
+    }
+
+    public void recordPut() {
+        this.putCount.increment();
+    }
+
+    public void recordEviction() {
+        this.evictionCount.increment();
+    }
+
+    public void recordExpiration() {
+        this.expirationCount.increment();
+    }
+
+    public void recordGet(long nanos) {
+        this.getLatency.record(nanos);
+    }
+
+    public void recordAdd(long nanos) {
+        this.addLatency.record(nanos);
+    }
+
+    /**
+     * @param hit   Найден ли кэш-элемент в L2 кэше.
+     * @param nanos Длительность чтения.
+     */
+    public void recordL2Read(boolean hit, long nanos) {
+        this.l2ReadCount.increment();
+        if (hit) this.l2HitCount.increment();
+        this.l2ReadLatency.record(nanos);
+    }
+
+    /**
+     * @param reads Количество ключей, прочитанных одной пачкой.
+     * @param hits  Количество ключей, найденных в L2 кэше.
+     * @param nanos Длительность чтения пачки.
+     */
+    public void recordL2Reads(int reads, int hits, long nanos) {
+        this.l2ReadCount.add(reads);
+        this.l2HitCount.add(hits);
+        this.l2ReadLatency.record(nanos);
+    }
+
+    /**
+     * @param count Количество записанных записей.
+     * @param nanos Длительность записи пачки.
+     */
+    public void recordL2Write(int count, long nanos) {
+        this.l2WriteCount.add(count);
+        this.l2WriteLatency.record(nanos);
+    }
+
+    /**
+     * Учёт записи L2 кэша, которая повреждена или не прочитана либо не записана кодеком.
+     */
+    public void recordL2Error() {
+        this.l2ErrorCount.increment();
+    }
+
+    /**
+     * Метод получения снимка статистики.
+     *
+     * @return Снимок статистики.
+     */
+    public CacheStats snapshot() {
+        return new CacheStats(this.hitCount.sum(), this.missCount.sum(), this.putCount.sum(),
+                this.evictionCount.sum(), this.expirationCount.sum(), this.l2ReadCount.sum(), this.l2HitCount.sum(), this.l2WriteCount.sum(),
+                this.l2ErrorCount.sum(), this.getLatency.snapshot(), this.addLatency.snapshot(),
+                this.l2ReadLatency.snapshot(), this.l2WriteLatency.snapshot());
+    }
+
+    /**
+     * Метод регистрации статистики в платформенном MBean-сервере
+     * под именем {@code org.buldakov.ardecs:type=CacheStats,name=<name>}.
+     *
+     * @param name Имя кэш-хранилища.
+     */
+    public void register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("org.buldakov.ardecs:type=CacheStats,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException exception) {
+            throw new IllegalStateException("Не удалось зарегистрировать MBean статистики " + name, exception);
+        }
+    }
+
+    /**
+     * Метод снятия регистрации статистики в MBean-сервере.
+     * MBean, регистрацию которого уже сняли извне, пропускается.
+     */
+    public void unregister() {
+        if (this.objectName == null) {
+            return;
+        }
+        ObjectName objectName = this.objectName;
+        this.objectName = null;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (InstanceNotFoundException exception) {
+            // Регистрацию уже сняли извне.
+        } catch (MBeanRegistrationException exception) {
+            throw new IllegalStateException("Не удалось снять регистрацию MBean статистики " + objectName, exception);
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return this.hitCount.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return this.missCount.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hits = this.hitCount.sum();
+        long requests = hits + this.missCount.sum();
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    @Override
+    public long getPutCount() {
+        return this.putCount.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return this.evictionCount.sum();
+    }
+
+    @Override
+    public long getExpirationCount() {
+        return this.expirationCount.sum();
+    }
+
+    @Override
+    public long getL2ReadCount() {
+        return this.l2ReadCount.sum();
+    }
+
+    @Override
+    public long getL2HitCount() {
+        return this.l2HitCount.sum();
+    }
+
+    @Override
+    public long getL2WriteCount() {
+        return this.l2WriteCount.sum();
+    }
+
+    @Override
+    public long getL2ErrorCount() {
+        return this.l2ErrorCount.sum();
+    }
+
+    @Override
+    public long getGetLatencyP50() {
+        return this.getLatency.snapshot().p50Nanos();
+    }
+
+    @Override
+    public long getGetLatencyP99() {
+        return this.getLatency.snapshot().p99Nanos();
+    }
+
+    @Override
+    public long getAddLatencyP50() {
+        return this.addLatency.snapshot().p50Nanos();
+    }
+
+    @Override
+    public long getAddLatencyP99() {
+        return this.addLatency.snapshot().p99Nanos();
+    }
+
+    @Override
+    public long getL2ReadLatencyP99() {
+        return this.l2ReadLatency.snapshot().p99Nanos();
+    }
+
+    @Override
+    public long getL2WriteLatencyP99() {
+        return this.l2WriteLatency.snapshot().p99Nanos();
+    }
+
+    @Override
+    public void reset() {
+        this.hitCount.reset();
+        this.missCount.reset();
+        this.putCount.reset();
+        this.evictionCount.reset();
+        this.expirationCount.reset();
+        this.l2ReadCount.reset();
+        this.l2HitCount.reset();
+        this.l2WriteCount.reset();
+        this.l2ErrorCount.reset();
+        this.getLatency.reset();
+        this.addLatency.reset();
+        this.l2ReadLatency.reset();
+        this.l2WriteLatency.reset();
+    }
+}
@@ -1,7 +1,13 @@
 package org.buldakov.model.cache.strategy;
 
 import org.buldakov.model.cache.CacheMetaDataEntry;
+import org.buldakov.model.cache.IndexedPriorityQueue;
+import org.buldakov.model.cache.admission.AverageAdmissionPolicy;
+import org.buldakov.model.cache.admission.L2AdmissionPolicy;
+import org.buldakov.model.cache.enums.L2TieringMode;
+import org.buldakov.model.cache.filesystem.L2CacheEntry;
 import org.buldakov.model.cache.filesystem.L2CacheResolver;
+import org.buldakov.model.cache.filesystem.L2CacheSettings;
 
 import java.io.IOException;
 import java.util.*;
@@ -10,7 +16,7 @@ import java.util.*;
  * Абстрактный класс стратегии.
  * <p>
  * Стратегия решает как должен быть реализован кэш, сортирует его по нужному приоритету,
- * ведёт учёт (добавление/удаление) кэша в своей {@link PriorityQueue очереди}.
+ * ведёт учёт (добавление/удаление) кэша в своей {@link IndexedPriorityQueue очереди}.
  *
  * @param <PriorityType> Тип приоритета. Должен иметь возможность к сравнению для
  *                       распределения приоритета в очереди. Указывается в конкретной реализации стратегии.
@@ -18,19 +24,23 @@ import java.util.*;
 public abstract class AbstractCacheStrategy<PriorityType extends Comparable<PriorityType>> {
 
     /**
-     * Разделитель ключа и значения в паре данных из L2 кэша.
+     * Получатель кэш-элементов стратегии при создании снимка L1 кэша.
      */
-    private static final String KEY_VALUE_SEPARATOR = ":";
+    @FunctionalInterface
+    public interface SnapshotVisitor {
 
-    /**
-     * Приоритетная очередь кэша.
-     */
-    protected PriorityQueue<CacheMetaDataEntry<PriorityType>> cachePriorityQueue;
+        /**
+         * @param cacheKey       Ключ кэша.
+         * @param storedPriority Приоритет в виде, в котором он хранится в L2 кэше.
+         * @param segment        Номер сегмента стратегии, в котором находится кэш-элемент.
+         */
+        void visit(String cacheKey, long storedPriority, int segment);
+    }
 
     /**
-     * Множество ключей, полученных из L2 кэш файла.
+     * Приоритетная очередь кэша.
      */
-    protected HashSet<String> l2cacheKeysSet = new HashSet<>();
+    protected IndexedPriorityQueue<PriorityType> cachePriorityQueue;
 
     /**
      * Опиционально: обработчик L2 кэша.
@@ -40,6 +50,22 @@ public abstract class AbstractCacheStrategy<PriorityType extends Comparable<Prio
      */
     protected Optional<L2CacheResolver> l2CacheResolver = Optional.empty();
 
+    /**
+     * Режим наполнения L2 кэша.
+     */
+    private L2TieringMode l2TieringMode = L2TieringMode.ADMISSION;
+
+    /**
+     * Политика допуска кэш-элементов в L2 кэш. Получает от стратегии все изменения очереди.
+     */
+    protected L2AdmissionPolicy l2AdmissionPolicy = new AverageAdmissionPolicy();
+
+    /**
+     * Записи в L2 кэш, накопленные пакетной операцией хранилища, или null вне пакетной операции
+     * (см. {@link #beginL2Batch()}).
+     */
+    private Map<String, L2CacheEntry> l2Batch;
+
     /**
      * Вместимость главного кэш-хранилища.
      * Проецируется на приоритетную очередь.
@@ -48,12 +74,27 @@ public abstract class AbstractCacheStrategy<PriorityType extends Comparable<Prio
 
     protected AbstractCacheStrategy(int initialCapacity) {
         this.initialCapacity = initialCapacity;
-        this.cachePriorityQueue = new PriorityQueue<>();
+        this.cachePriorityQueue = new IndexedPriorityQueue<>(initialCapacity);
     }
 
     protected AbstractCacheStrategy(int initialCapacity, Comparator<CacheMetaDataEntry<PriorityType>> comparator) {
         this.initialCapacity = initialCapacity;
-        this.cachePriorityQueue = new PriorityQueue<>(comparator);
+        this.cachePriorityQueue = new IndexedPriorityQueue<>(initialCapacity, comparator);
+    }
+
+    /**
+     * Конструктор для стратегий, которые ведут учёт кэш-элементов в собственных структурах.
+     * Такие стратегии переопределяют все методы работы с очередью
+     * ({@link #addPriorityEntry(String, long)}, {@link #removeEntry()}, {@link #removeEntryByKey(String)},
+     * {@link #contains(String)}, {@link #size()}, {@link #clear()}, {@link #toString()},
+     * {@link #forEachEntry(SnapshotVisitor)}, {@link #restoreEntries(String[], long[], byte[], int)}).
+     *
+     * @param initialCapacity    Вместимость кэш-хранилища.
+     * @param cachePriorityQueue Приоритетная очередь кэша или null, если стратегия в ней не нуждается.
+     */
+    protected AbstractCacheStrategy(int initialCapacity, IndexedPriorityQueue<PriorityType> cachePriorityQueue) {
+        this.initialCapacity = initialCapacity;
+        this.cachePriorityQueue = cachePriorityQueue;
     }
 
     /**
@@ -70,58 +111,163 @@ public abstract class AbstractCacheStrategy<PriorityType extends Comparable<Prio
 
     /**
      * Метод включения L2 кэша.
-     * При включении из L2 кэш-файла вытягиваются данные и помещаются
-     * в L1 кэш-хранилище для быстрого доступа.
+     * При включении строится индекс L2 кэша, значения не читаются: L1 кэш-хранилище
+     * наполняется из L2 кэша прогревом (см. {@link org.buldakov.model.cache.CacheStorage}).
      *
-     * @return Кэш-элементы из L2 кэш-файла.
+     * @param settings Настройки L2 кэша.
+     * @return Ключи L2 кэша и сохранённые приоритеты кэш-элементов.
      * @throws IOException В случае неудачной инициализации кэш-файла.
      */
-    public String[] enableL2Cache() throws IOException {
-        this.l2CacheResolver = Optional.of(new L2CacheResolver());
-        System.out.println("L2 Cache log: второй уровень кэша активирован");
-        this.initL2CacheKeysSet();
-        String[] l2cacheData = this.getL2Cache();
-        if (l2cacheData.length != 0) {
-            this.fillPriorityQueueFromL2(l2cacheData);
-            return l2cacheData;
+    public Map<String, Long> enableL2Cache(L2CacheSettings settings) throws IOException {
+        L2CacheResolver resolver = new L2CacheResolver(settings);
+        this.l2CacheResolver = Optional.of(resolver);
+        this.l2TieringMode = settings.getTieringMode();
+        this.l2AdmissionPolicy = settings.getAdmissionPolicy();
+        this.l2AdmissionPolicy.clear();
+        return resolver.openIndex();
+    }
+
+    /**
+     * Метод преобразования приоритета, сохранённого в L2 кэше, в вес для порядка прогрева:
+     * большее значение - более ценный кэш-элемент.
+     *
+     * @param storedPriority Приоритет в виде, в котором он хранится в L2 кэше.
+     * @return Вес кэш-элемента для прогрева.
+     */
+    public long toWarmUpRank(long storedPriority) {
+        return storedPriority;
+    }
+
+    /**
+     * Метод чтения кэш-элемента из L2 кэша по его индексу.
+     * Используется при промахе по L1 кэшу.
+     *
+     * @param cacheKey Ключ кэша.
+     * @return Запись кэша или null, если L2 кэш отключен или не содержит ключ.
+     * @throws IOException В случае неудачного чтения кэш-файла.
+     */
+    public L2CacheEntry readFromL2(String cacheKey) throws IOException {
+        if (this.l2CacheResolver.isPresent()) {
+            return this.l2CacheResolver.get().readEntry(cacheKey);
         }
-        return new String[]{};
+        return null;
     }
 
     /**
-     * Метод получения данных из {@link L2CacheResolver}.
+     * Метод чтения нескольких кэш-элементов из L2 кэша одной пачкой.
      *
-     * @return Массив строк, где строка - пара ключа и значения, отформатированная
-     * согласно константе формата.
+     * @param cacheKeys Ключи кэша.
+     * @return Ключи и записи кэша, найденные в L2 кэше.
+     * @throws IOException В случае неудачного чтения кэш-файла.
      */
-    public String[] getL2Cache() {
+    public Map<String, L2CacheEntry> readAllFromL2(Collection<String> cacheKeys) throws IOException {
         if (this.l2CacheResolver.isPresent()) {
-            try {
-                String[] l2cacheData = this.l2CacheResolver.get().readData();
-                return l2cacheData.length == 0 ? new String[]{} : l2cacheData;
-            } catch (IOException exception) {
-                System.err.println(exception.getMessage());
-            }
+            return this.l2CacheResolver.get().readEntries(cacheKeys);
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Метод начала пакетной операции: записи в L2 кэш накапливаются
+     * и передаются фоновому писателю одной пачкой в {@link #endL2Batch()}.
+     */
+    public void beginL2Batch() {
+        if (this.l2CacheResolver.isPresent()) {
+            this.l2Batch = new LinkedHashMap<>();
         }
-        return new String[]{};
     }
 
     /**
-     * Метод заполнения очереди приоритетов из L2 кэша.
+     * Метод завершения пакетной операции. Передаёт накопленные записи фоновому писателю.
      *
-     * @param l2cacheData Массив строк, где строка - пара ключа и значения, отформатированная
-     *                    согласно константе формата.
+     * @return Количество записей, принятых к записи в L2 кэш.
      */
-    private void fillPriorityQueueFromL2(String[] l2cacheData) {
-        Arrays.stream(l2cacheData)
-                .forEach((keyValueString)
-                        -> {
-                    if (this.cachePriorityQueue.size() != this.initialCapacity) {
-                        String[] keyValueSplit = keyValueString.split(KEY_VALUE_SEPARATOR);
-                        if (keyValueSplit.length == 2) this.addPriorityEntry(keyValueSplit[0]);
-                    }
-                });
-        System.out.println("L2 Cache log: в приоритетную очередь кэша были добавлены элементы. Хранилище: " + this.cachePriorityQueue);
+    public int endL2Batch() {
+        Map<String, L2CacheEntry> batch = this.l2Batch;
+        this.l2Batch = null;
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        return this.l2CacheResolver.get().writeAll(batch) ? batch.size() : 0;
+    }
+
+    /**
+     * Метод записи кэш-элемента в L2 кэш или в пачку пакетной операции.
+     *
+     * @param cacheKey   Ключ кэша.
+     * @param cacheValue Значение кэша.
+     * @param priority   Приоритет в виде, в котором он хранится в L2 кэше.
+     * @return True - если кэш-элемент принят к записи в L2 кэш.
+     */
+    private boolean writeToL2(String cacheKey, Object cacheValue, long priority) {
+        if (this.l2Batch != null) {
+            this.l2Batch.put(cacheKey, new L2CacheEntry(cacheValue, priority));
+            return true;
+        }
+        return this.l2CacheResolver.get().writeData(cacheKey, cacheValue, priority);
+    }
+
+    /**
+     * Метод проверки, записываются ли вытесненные из L1 кэш-элементы в L2 кэш.
+     *
+     * @return True - если L2 кэш включен в режиме {@link L2TieringMode#SPILL_ON_EVICT}.
+     */
+    public boolean isSpillOnEvict() {
+        return this.l2CacheResolver.isPresent() && this.l2TieringMode == L2TieringMode.SPILL_ON_EVICT;
+    }
+
+    /**
+     * Метод записи вытесненного из L1 кэш-элемента в L2 кэш вместе с его приоритетом.
+     * Работает только в режиме {@link L2TieringMode#SPILL_ON_EVICT}.
+     *
+     * @param entry      Entry с мета-данными вытесненного кэш-элемента
+     *                   (результат {@link AbstractCacheStrategy#removeEntry()}).
+     * @param cacheValue Значение кэша.
+     * @return True - если кэш-элемент принят к записи в L2 кэш.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean spillToL2(CacheMetaDataEntry<?> entry, Object cacheValue) {
+        if (!this.isSpillOnEvict()) {
+            return false;
+        }
+        long priority = this.toStoredPriority((PriorityType) entry.getPriority());
+        return this.writeToL2(entry.getKey(), cacheValue, priority);
+    }
+
+    /**
+     * Метод удаления кэш-элемента из L2 кэша.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    public void removeFromL2(String cacheKey) {
+        if (this.l2Batch != null) {
+            this.l2Batch.remove(cacheKey);
+        }
+        this.l2CacheResolver.ifPresent(resolver -> resolver.deleteData(cacheKey));
+    }
+
+    /**
+     * Метод удаления устаревшей копии кэш-элемента из L2 кэша при перезаписи его значения.
+     * Без этого после вытеснения из L1 кэша из L2 кэша читалось бы прежнее значение.
+     * Надгробие пишется, только если в L2 кэше есть запись по ключу.
+     *
+     * @param cacheKey Ключ кэша.
+     */
+    public void invalidateL2(String cacheKey) {
+        if (this.l2CacheResolver.isEmpty()) {
+            return;
+        }
+        if (this.l2Batch != null && this.l2Batch.containsKey(cacheKey)
+                || this.l2CacheResolver.get().containsKey(cacheKey)) {
+            this.removeFromL2(cacheKey);
+        }
+    }
+
+    /**
+     * Метод отчистки L2 кэша.
+     */
+    public void clearL2() {
+        this.l2CacheResolver.ifPresent(L2CacheResolver::clear);
     }
 
     /**
@@ -130,19 +276,22 @@ public abstract class AbstractCacheStrategy<PriorityType extends Comparable<Prio
      * @return Entry с мета-данными кэша.
      */
     public CacheMetaDataEntry<PriorityType> removeEntry() {
-        return this.cachePriorityQueue.remove();
+        CacheMetaDataEntry<PriorityType> entry = this.cachePriorityQueue.remove();
+        this.l2AdmissionPolicy.onRemove(this.toStoredPriority(entry.getPriority()));
+        return entry;
     }
 
     /**
      * Метод удаления кэш-элемента из приоритетной очереди по кэш-ключу.
      *
-     * @return Entry с мета-данными кэша.
+     * @return Entry с мета-данными кэша или null, если ключа нет в очереди.
      */
     public CacheMetaDataEntry<PriorityType> removeEntryByKey(String cacheKey) {
-        CacheMetaDataEntry<PriorityType> entryToRemove
-                = this.cachePriorityQueue.stream().filter((entry) -> entry.getKey().equals(cacheKey)).toList().get(0);
-        this.cachePriorityQueue.remove(entryToRemove);
-        return entryToRemove;
+        CacheMetaDataEntry<PriorityType> entry = this.cachePriorityQueue.remove(cacheKey);
+        if (entry != null) {
+            this.l2AdmissionPolicy.onRemove(this.toStoredPriority(entry.getPriority()));
+        }
+        return entry;
     }
 
     /**
@@ -150,6 +299,18 @@ public abstract class AbstractCacheStrategy<PriorityType extends Comparable<Prio
      */
     public void clear() {
         this.cachePriorityQueue.clear();
+        this.l2AdmissionPolicy.clear();
+    }
+
+    /**
+     * Метод закрытия стратегии. Дожидается записи отложенных данных в L2 кэш.
+     *
+     * @throws IOException В случае неудачного закрытия L2 кэша.
+     */
+    public void close() throws IOException {
+        if (this.l2CacheResolver.isPresent()) {
+            this.l2CacheResolver.get().close();
+        }
     }
 
     /**
@@ -159,61 +320,164 @@ public abstract class AbstractCacheStrategy<PriorityType extends Comparable<Prio
      * @param cacheKey Ключ кэша.
      * @return True/false.
      */
-    public abstract boolean contains(String cacheKey);
+    public boolean contains(String cacheKey) {
+        return this.cachePriorityQueue.contains(cacheKey);
+    }
+
+    /**
+     * Метод получения количества кэш-элементов в приоритетной очереди.
+     *
+     * @return Количество кэш-элементов.
+     */
+    public int size() {
+        return this.cachePriorityQueue.size();
+    }
+
+    @Override
+    public String toString() {
+        return this.cachePriorityQueue.toString();
+    }
+
+    /**
+     * Метод обхода кэш-элементов стратегии для снимка L1 кэша.
+     *
+     * @param visitor Получатель кэш-элементов.
+     */
+    public void forEachEntry(SnapshotVisitor visitor) {
+        this.cachePriorityQueue.forEach(entry ->
+                visitor.visit(entry.getKey(), this.toStoredPriority(entry.getPriority()), 0));
+    }
+
+    /**
+     * Метод восстановления кэш-элементов из снимка L1 кэша.
+     * Очередь строится одним проходом, без добавления кэш-элементов по одному.
+     *
+     * @param cacheKeys        Ключи кэша.
+     * @param storedPriorities Приоритеты в виде, в котором они хранятся в L2 кэше.
+     * @param segments         Номера сегментов стратегии (см. {@link SnapshotVisitor}).
+     * @param count            Количество кэш-элементов.
+     */
+    public void restoreEntries(String[] cacheKeys, long[] storedPriorities, byte[] segments, int count) {
+        List<CacheMetaDataEntry<PriorityType>> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new CacheMetaDataEntry<>(cacheKeys[i], this.fromStoredPriority(storedPriorities[i])));
+        }
+        this.cachePriorityQueue.addAll(entries);
+        for (CacheMetaDataEntry<PriorityType> entry : entries) {
+            if (this.cachePriorityQueue.get(entry.getKey()) == entry) {
+                this.l2AdmissionPolicy.onInsert(this.toStoredPriority(entry.getPriority()));
+            }
+        }
+    }
+
+    /**
+     * Метод сохранения состояния стратегии, не связанного с отдельными кэш-элементами, для снимка L1 кэша.
+     *
+     * @return Состояние стратегии. Пустое, если стратегия его не имеет.
+     */
+    public byte[] saveState() {
+        return new byte[0];
+    }
+
+    /**
+     * Метод восстановления состояния стратегии, сохранённого {@link #saveState()}.
+     *
+     * @param state Состояние стратегии.
+     */
+    public void restoreState(byte[] state) {
+    }
 
     /**
      * Метод добавления в приоритетную очередь кэша.
+     * Повторное добавление уже имеющегося в очереди ключа ничего не делает.
      *
      * @param cacheKey Ключ кэша.
      */
     public abstract void addPriorityEntry(String cacheKey);
 
     /**
-     * Метод, который добавляет ключ кэша в множество ключей L2 кэша,
-     * если он проходит проверку среднего значения
-     * (см. {@link AbstractCacheStrategy#resolvePriorityByAvg(CacheMetaDataEntry, Object)}).
+     * Метод добавления в приоритетную очередь кэша с приоритетом, сохранённым в L2 кэше.
+     * Повторное добавление уже имеющегося в очереди ключа ничего не делает.
      *
-     * @param entry      Entry с мета-данными кэша.
-     * @param cacheValue Значение кэша для сохранения в L2 кэш-файл.
-     * @throws IOException            Exception.
-     * @throws ClassNotFoundException Exception.
+     * @param cacheKey       Ключ кэша.
+     * @param storedPriority Приоритет в виде, в котором он хранится в L2 кэше.
      */
-    protected void resolveInputDataToL2Cache(CacheMetaDataEntry<PriorityType> entry, Object cacheValue)
-            throws IOException, ClassNotFoundException {
-        String cacheKey = entry.getKey();
-        if (!this.l2cacheKeysSet.contains(cacheKey)) {
-            if (this.resolvePriorityByAvg(entry, cacheValue)) {
-                this.l2cacheKeysSet.add(entry.getKey());
-            }
+    public void addPriorityEntry(String cacheKey, long storedPriority) {
+        this.addEntry(new CacheMetaDataEntry<>(cacheKey, this.fromStoredPriority(storedPriority)));
+    }
+
+    /**
+     * Метод добавления контейнера мета-данных в приоритетную очередь с учётом в политике допуска.
+     * Повторное добавление уже имеющегося в очереди ключа ничего не делает.
+     *
+     * @param entry Entry с мета-данными кэша.
+     */
+    protected void addEntry(CacheMetaDataEntry<PriorityType> entry) {
+        if (this.cachePriorityQueue.add(entry)) {
+            this.l2AdmissionPolicy.onInsert(this.toStoredPriority(entry.getPriority()));
         }
     }
 
     /**
-     * Метод проверки среднего значения для решения - заносить кэш в L2 или нет.
-     * Если элемент >= среднего значения приоритета в очереди - заносим его в кэш.
+     * Метод изменения приоритета кэш-элемента в очереди с учётом в политике допуска.
+     *
+     * @param entry    Entry с мета-данными кэша.
+     * @param priority Новый приоритет.
+     */
+    protected void updatePriority(CacheMetaDataEntry<PriorityType> entry, PriorityType priority) {
+        long oldPriority = this.toStoredPriority(entry.getPriority());
+        this.cachePriorityQueue.updatePriority(entry, priority);
+        this.l2AdmissionPolicy.onUpdate(oldPriority, this.toStoredPriority(priority));
+    }
+
+
+    /**
+     * Метод преобразования приоритета в вид, в котором он хранится в L2 кэше.
+     *
+     * @param priority Приоритет.
+     * @return Приоритет в виде числа.
+     */
+    protected abstract long toStoredPriority(PriorityType priority);
+
+    /**
+     * Метод восстановления приоритета из вида, в котором он хранится в L2 кэше.
+     *
+     * @param storedPriority Приоритет в виде числа.
+     * @return Приоритет.
+     */
+    protected abstract PriorityType fromStoredPriority(long storedPriority);
+
+    /**
+     * Метод, который записывает кэш-элемент в L2 кэш в режиме {@link L2TieringMode#ADMISSION},
+     * если его там ещё нет и его допускает {@link L2AdmissionPolicy политика допуска}.
+     * Решение принимается за O(1) по агрегатам политики, без обхода очереди.
      *
      * @param entry      Entry с мета-данными кэша.
-     * @param cacheValue Значение кэша.
-     * @return True/false. True - если приоритет {@link CacheMetaDataEntry} на входе больше
-     * среднего значения в приоритетной очереди.
-     * @throws IOException            Exception.
-     * @throws ClassNotFoundException Exception.
+     * @param cacheValue Значение кэша для сохранения в L2 кэш-файл.
+     * @return True - если кэш-элемент принят к записи в L2 кэш.
      */
-    protected abstract boolean resolvePriorityByAvg(CacheMetaDataEntry<PriorityType> entry, Object cacheValue)
-            throws IOException, ClassNotFoundException;
+    protected boolean resolveInputDataToL2Cache(CacheMetaDataEntry<PriorityType> entry, Object cacheValue) {
+        return this.resolveInputDataToL2Cache(entry.getKey(), this.toStoredPriority(entry.getPriority()), cacheValue);
+    }
 
     /**
-     * Метод инициализации множества ключей кэша, хранящихся в L2 кэш-файле.
+     * Вариант {@link #resolveInputDataToL2Cache(CacheMetaDataEntry, Object)} для стратегий,
+     * которые не хранят {@link CacheMetaDataEntry} для каждого кэш-элемента.
+     *
+     * @param cacheKey   Ключ кэша.
+     * @param priority   Приоритет в виде, в котором он хранится в L2 кэше.
+     * @param cacheValue Значение кэша для сохранения в L2 кэш-файл.
+     * @return True - если кэш-элемент принят к записи в L2 кэш.
      */
-    private void initL2CacheKeysSet() {
-        if (this.l2CacheResolver.isPresent()) {
-            String[] l2cacheData = this.getL2Cache();
-            Arrays.stream(l2cacheData).forEach((keyValuePair) -> {
-                String[] keyValueSplit = keyValuePair.split(KEY_VALUE_SEPARATOR);
-                if (keyValueSplit.length == 2) {
-                    this.l2cacheKeysSet.add(keyValueSplit[0]);
-                }
-            });
+    protected boolean resolveInputDataToL2Cache(String cacheKey, long priority, Object cacheValue) {
+        if (this.l2CacheResolver.isEmpty() || this.l2TieringMode != L2TieringMode.ADMISSION
+                || this.l2CacheResolver.get().containsKey(cacheKey)
+                || this.l2Batch != null && this.l2Batch.containsKey(cacheKey)) {
+            return false;
+        }
+        if (this.l2AdmissionPolicy.admit(priority)) {
+            return this.writeToL2(cacheKey, cacheValue, priority);
         }
+        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,327 @@
+package org.buldakov.model.cache.strategy;
+
+import org.buldakov.model.cache.CacheMetaDataEntry;
+import org.buldakov.model.cache.IndexedPriorityQueue;
+import org.buldakov.model.cache.codec.StringCodec;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.StringJoiner;
+
+/**
+ * Реализация стратегии ARC (Adaptive Replacement Cache).
+ * <p>
+ * Кэш-элементы делятся на два LRU списка: T1 - кэш-элементы, к которым обращались один раз,
+ * и T2 - кэш-элементы, к которым обращались повторно. Вытесненные ключи (без значений) запоминаются
+ * в призрачных списках B1 и B2 соответственно. Промах по ключу из B1 означает, что T1 был слишком мал,
+ * и увеличивает целевой размер T1; промах по ключу из B2 - уменьшает его. Так стратегия сама подстраивает
+ * соотношение давности и частоты под поток обращений, а однократные обращения (например, сканирование)
+ * проходят через T1 и не вытесняют кэш-элементы T2.
+ * <p>
+ * Кэш-хранилище вытесняет кэш-элемент до добавления нового, поэтому выбор жертвы не учитывает,
+ * находится ли новый ключ в B2: это отличает стратегию от исходного алгоритма только при равенстве
+ * размера T1 целевому.
+ * <p>
+ * Приоритет кэш-элемента - количество обращений к нему. Призрачные списки помнят его для вытесненных ключей.
+ * По нему {@link org.buldakov.model.cache.admission.L2AdmissionPolicy политика допуска} решает,
+ * записывать ли кэш-элемент в L2 кэш.
+ * Очередь {@link AbstractCacheStrategy#cachePriorityQueue} стратегией не используется.
+ */
+public class ArcCacheStrategy extends AbstractCacheStrategy<Integer> {
+
+    /**
+     * Номера сегментов в снимке L1 кэша.
+     */
+    private static final int RECENT = 0;
+
+    private static final int FREQUENT = 1;
+
+    /**
+     * T1: кэш-элементы, к которым обращались один раз. Порядок обхода - от самого давнего к самому недавнему.
+     */
+    private final LinkedHashMap<String, CacheMetaDataEntry<Integer>> recent = new LinkedHashMap<>();
+
+    /**
+     * T2: кэш-элементы, к которым обращались повторно.
+     */
+    private final LinkedHashMap<String, CacheMetaDataEntry<Integer>> frequent = new LinkedHashMap<>();
+
+    /**
+     * B1: ключи, вытесненные из T1, и их количество обращений.
+     */
+    private final LinkedHashMap<String, Integer> recentGhosts = new LinkedHashMap<>();
+
+    /**
+     * B2: ключи, вытесненные из T2, и их количество обращений.
+     */
+    private final LinkedHashMap<String, Integer> frequentGhosts = new LinkedHashMap<>();
+
+    private final int capacity;
+
+    /**
+     * Целевой размер T1, от 0 до вместимости.
+     */
+    private int targetRecent;
+
+    public ArcCacheStrategy(int initialCapacity) {
+        super(initialCapacity, (IndexedPriorityQueue<Integer>) null);
+        this.capacity = initialCapacity;
+    }
+
+    /**
+     * Повторное обращение переводит кэш-элемент из T1 в T2, обращение к кэш-элементу T2
+     * делает его самым недавним в T2.
+     */
+    @Override
+    public void increaseCachePriority(String cacheKey, Object cacheValue) {
+        CacheMetaDataEntry<Integer> entry = this.recent.remove(cacheKey);
+        if (entry == null) {
+            entry = this.frequent.remove(cacheKey);
+        }
+        if (entry == null) {
+            return;
+        }
+        this.frequent.put(cacheKey, entry);
+        int priority = entry.getPriority() + 1;
+        this.l2AdmissionPolicy.onUpdate(entry.getPriority(), priority);
+        entry.setPriority(priority);
+        this.resolveInputDataToL2Cache(entry, cacheValue);
+    }
+
+    @Override
+    public void addPriorityEntry(String cacheKey) {
+        this.admit(cacheKey, 1);
+    }
+
+    @Override
+    public void addPriorityEntry(String cacheKey, long storedPriority) {
+        this.admit(cacheKey, this.fromStoredPriority(storedPriority));
+    }
+
+    /**
+     * Метод выбора кэш-элемента для вытеснения.
+     * Вытесняется самый давний кэш-элемент T1, если T1 больше целевого размера или T2 пуст,
+     * иначе - самый давний кэш-элемент T2. Ключ вытесненного кэш-элемента попадает в призрачный список.
+     *
+     * @return Entry с мета-данными вытесненного кэш-элемента.
+     */
+    @Override
+    public CacheMetaDataEntry<Integer> removeEntry() {
+        CacheMetaDataEntry<Integer> evicted;
+        if (!this.recent.isEmpty() && (this.recent.size() > this.targetRecent || this.frequent.isEmpty())) {
+            evicted = pollFirst(this.recent);
+            this.recentGhosts.put(evicted.getKey(), evicted.getPriority());
+        } else {
+            evicted = pollFirst(this.frequent);
+            this.frequentGhosts.put(evicted.getKey(), evicted.getPriority());
+        }
+        this.l2AdmissionPolicy.onRemove(evicted.getPriority());
+        this.trimGhosts();
+        return evicted;
+    }
+
+    /**
+     * Удалённый явно кэш-элемент не попадает в призрачный список.
+     */
+    @Override
+    public CacheMetaDataEntry<Integer> removeEntryByKey(String cacheKey) {
+        CacheMetaDataEntry<Integer> entry = this.recent.remove(cacheKey);
+        if (entry == null) entry = this.frequent.remove(cacheKey);
+        if (entry != null) this.l2AdmissionPolicy.onRemove(entry.getPriority());
+        return entry;
+    }
+
+    @Override
+    public boolean contains(String cacheKey) {
+        return this.recent.containsKey(cacheKey) || this.frequent.containsKey(cacheKey);
+    }
+
+    @Override
+    public int size() {
+        return this.recent.size() + this.frequent.size();
+    }
+
+    /**
+     * Метод отчистки T1 и T2. Призрачные списки и целевой размер T1 сохраняются.
+     */
+    @Override
+    public void clear() {
+        this.recent.clear();
+        this.frequent.clear();
+        this.l2AdmissionPolicy.clear();
+    }
+
+    /**
+     * Кэш-элементы обходятся от самого давнего обращения к самому недавнему: 0 - T1, 1 - T2.
+     */
+    @Override
+    public void forEachEntry(SnapshotVisitor visitor) {
+        this.recent.values().forEach(entry -> visitor.visit(entry.getKey(), entry.getPriority(), RECENT));
+        this.frequent.values().forEach(entry -> visitor.visit(entry.getKey(), entry.getPriority(), FREQUENT));
+    }
+
+    /**
+     * Кэш-элементы возвращаются в свои списки в порядке обращений.
+     */
+    @Override
+    public void restoreEntries(String[] cacheKeys, long[] storedPriorities, byte[] segments, int count) {
+        for (int i = 0; i < count; i++) {
+            if (this.contains(cacheKeys[i])) {
+                continue;
+            }
+            CacheMetaDataEntry<Integer> entry = new CacheMetaDataEntry<>(cacheKeys[i], this.fromStoredPriority(storedPriorities[i]));
+            (segments[i] == FREQUENT ? this.frequent : this.recent).put(entry.getKey(), entry);
+            this.l2AdmissionPolicy.onInsert(entry.getPriority());
+        }
+    }
+
+    /**
+     * Состояние стратегии - целевой размер T1 и призрачные списки:
+     * <pre>
+     * | целевой размер T1 (int) | размер B1 (int) | размер B2 (int) |
+     * | длина ключа (int) | количество обращений (int) | ключ (UTF-8) | ...
+     * </pre>
+     */
+    @Override
+    public byte[] saveState() {
+        int size = Integer.BYTES * 3;
+        for (String cacheKey : this.recentGhosts.keySet()) size += Integer.BYTES * 2 + cacheKey.length() * 3;
+        for (String cacheKey : this.frequentGhosts.keySet()) size += Integer.BYTES * 2 + cacheKey.length() * 3;
+        ByteBuffer buffer = ByteBuffer.allocate(size)
+                .putInt(this.targetRecent)
+                .putInt(this.recentGhosts.size())
+                .putInt(this.frequentGhosts.size());
+        putGhosts(this.recentGhosts, buffer);
+        putGhosts(this.frequentGhosts, buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Ключи, которые уже есть в L1 кэше, в призрачные списки не попадают.
+     * Если вместимость уменьшилась, призрачные списки укорачиваются под неё.
+     */
+    @Override
+    public void restoreState(byte[] state) {
+        if (state.length == 0) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(state);
+            int targetRecent = buffer.getInt();
+            int recentCount = buffer.getInt();
+            int frequentCount = buffer.getInt();
+            this.getGhosts(buffer, recentCount, this.recentGhosts);
+            this.getGhosts(buffer, frequentCount, this.frequentGhosts);
+            this.targetRecent = Math.max(0, Math.min(targetRecent, this.capacity));
+        } catch (BufferUnderflowException | IllegalArgumentException exception) {
+            this.recentGhosts.clear();
+            this.frequentGhosts.clear();
+        }
+        this.trimGhosts();
+    }
+
+    @Override
+    protected long toStoredPriority(Integer priority) {
+        return priority;
+    }
+
+    @Override
+    protected Integer fromStoredPriority(long storedPriority) {
+        return (int) Math.max(1, Math.min(storedPriority, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        this.recent.keySet().forEach(joiner::add);
+        this.frequent.keySet().forEach(joiner::add);
+        return joiner.toString();
+    }
+
+    /**
+     * Метод добавления кэш-элемента.
+     * Новый ключ попадает в T1. Ключ из призрачного списка попадает сразу в T2 и сдвигает целевой размер T1:
+     * в сторону увеличения для B1, в сторону уменьшения для B2, тем сильнее, чем меньше этот призрачный список.
+     * Повторное добавление уже имеющегося ключа ничего не делает.
+     *
+     * @param cacheKey Ключ кэша.
+     * @param priority Количество обращений.
+     */
+    private void admit(String cacheKey, int priority) {
+        if (this.contains(cacheKey)) {
+            return;
+        }
+        LinkedHashMap<String, CacheMetaDataEntry<Integer>> segment = this.frequent;
+        int recentGhostCount = this.recentGhosts.size();
+        int frequentGhostCount = this.frequentGhosts.size();
+        Integer ghost;
+        if ((ghost = this.recentGhosts.remove(cacheKey)) != null) {
+            int delta = Math.max(1, frequentGhostCount / recentGhostCount);
+            this.targetRecent = Math.min(this.capacity, this.targetRecent + delta);
+        } else if ((ghost = this.frequentGhosts.remove(cacheKey)) != null) {
+            int delta = Math.max(1, recentGhostCount / frequentGhostCount);
+            this.targetRecent = Math.max(0, this.targetRecent - delta);
+        } else {
+            segment = this.recent;
+        }
+        if (ghost != null) {
+            priority = Math.max(priority, ghost + 1);
+        }
+        segment.put(cacheKey, new CacheMetaDataEntry<>(cacheKey, priority));
+        this.l2AdmissionPolicy.onInsert(priority);
+        this.trimGhosts();
+    }
+
+    /**
+     * Метод ограничения призрачных списков: T1 вместе с B1 не больше вместимости,
+     * все четыре списка вместе - не больше двух вместимостей.
+     */
+    private void trimGhosts() {
+        while (!this.recentGhosts.isEmpty() && this.recent.size() + this.recentGhosts.size() > this.capacity) {
+            pollFirst(this.recentGhosts);
+        }
+        int limit = this.capacity * 2 - this.size();
+        while (!this.frequentGhosts.isEmpty() && this.recentGhosts.size() + this.frequentGhosts.size() > limit) {
+            pollFirst(this.frequentGhosts);
+        }
+        while (!this.recentGhosts.isEmpty() && this.recentGhosts.size() > limit) {
+            pollFirst(this.recentGhosts);
+        }
+    }
+
+    private void getGhosts(ByteBuffer buffer, int count, LinkedHashMap<String, Integer> ghosts) {
+        for (int i = 0; i < count; i++) {
+            int keyLength = buffer.getInt();
+            int priority = buffer.getInt();
+            String cacheKey = StringCodec.getUtf8(buffer, keyLength);
+            if (!this.contains(cacheKey)) {
+                ghosts.put(cacheKey, priority);
+            }
+        }
+    }
+
+    private static void putGhosts(LinkedHashMap<String, Integer> ghosts, ByteBuffer buffer) {
+        for (Map.Entry<String, Integer> ghost : ghosts.entrySet()) {
+            int start = buffer.position();
+            buffer.position(start + Integer.BYTES * 2);
+            StringCodec.putUtf8(ghost.getKey(), buffer);
+            buffer.putInt(start, buffer.position() - start - Integer.BYTES * 2)
+                    .putInt(start + Integer.BYTES, ghost.getValue());
+        }
+    }
+
+    private static <V> V pollFirst(LinkedHashMap<String, V> segment) {
+        Iterator<V> iterator = segment.values().iterator();
+        if (!iterator.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        V value = iterator.next();
+        iterator.remove();
+        return value;
+    }
+}
@@ -0,0 +1,288 @@
+package org.buldakov.model.cache.strategy;
+
+import org.buldakov.model.cache.CacheMetaDataEntry;
+import org.buldakov.model.cache.IndexedPriorityQueue;
+import org.buldakov.model.cache.concurrent.CoarseTicker;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.StringJoiner;
+
+/**
+ * Реализация стратегии CLOCK (второй шанс) - приближения LRU.
+ * <p>
+ * Кэш-элементы лежат в ячейках кольца, у каждой ячейки есть бит обращения. Обращение к кэш-элементу
+ * только устанавливает его бит: без системного вызова часов, без создания объектов и без перестановок.
+ * При вытеснении стрелка обходит кольцо: кэш-элемент с установленным битом получает второй шанс
+ * (бит сбрасывается), первый кэш-элемент со сброшенным битом вытесняется. Новый кэш-элемент занимает
+ * освободившуюся ячейку позади стрелки, поэтому будет проверен последним.
+ * <p>
+ * Приоритет кэш-элемента - время добавления или последнего второго шанса по {@link CoarseTicker грубым часам}
+ * в миллисекундах эпохи. По нему {@link org.buldakov.model.cache.admission.L2AdmissionPolicy политика допуска}
+ * решает, записывать ли кэш-элемент в L2 кэш, а прогрев выбирает кэш-элементы для подъёма в L1 кэш.
+ * Очередь {@link AbstractCacheStrategy#cachePriorityQueue} стратегией не используется.
+ */
+public class ClockCacheStrategy extends AbstractCacheStrategy<Long> {
+
+    /**
+     * Номер сегмента в снимке L1 кэша для кэш-элемента с установленным битом обращения.
+     */
+    private static final int REFERENCED = 1;
+
+    /**
+     * Ключи кэш-элементов в ячейках кольца. null - свободная ячейка.
+     */
+    private String[] ring;
+
+    /**
+     * Биты обращения ячеек кольца.
+     */
+    private boolean[] referenced;
+
+    /**
+     * Приоритеты кэш-элементов в ячейках кольца.
+     */
+    private long[] stamps;
+
+    /**
+     * Индекс ключа кэша в кольце.
+     */
+    private final HashMap<String, Integer> slots;
+
+    /**
+     * Освобождённые ячейки внутри используемой части кольца.
+     * Последней занимается ячейка, освобождённая последней.
+     */
+    private int[] freeSlots = new int[16];
+
+    private int freeCount;
+
+    /**
+     * Количество используемых ячеек кольца, занятых и освобождённых.
+     */
+    private int used;
+
+    /**
+     * Позиция стрелки.
+     */
+    private int hand;
+
+    /**
+     * Переключатель "грубые часы освобождены закрытием стратегии".
+     */
+    private boolean isTickerReleased;
+
+    public ClockCacheStrategy(int initialCapacity) {
+        super(initialCapacity, (IndexedPriorityQueue<Long>) null);
+        int ringCapacity = Math.max(initialCapacity, 16);
+        this.ring = new String[ringCapacity];
+        this.referenced = new boolean[ringCapacity];
+        this.stamps = new long[ringCapacity];
+        this.slots = new HashMap<>(ringCapacity * 4 / 3 + 1);
+        CoarseTicker.acquire();
+    }
+
+    /**
+     * Обращение устанавливает бит обращения. В режиме допуска в L2 кэш кэш-элемент
+     * предлагается политике допуска только при первом обращении после сброса бита.
+     */
+    @Override
+    public void increaseCachePriority(String cacheKey, Object cacheValue) {
+        Integer slot = this.slots.get(cacheKey);
+        if (slot == null || this.referenced[slot]) {
+            return;
+        }
+        this.referenced[slot] = true;
+        if (this.l2CacheResolver.isPresent()) {
+            this.resolveInputDataToL2Cache(new CacheMetaDataEntry<>(cacheKey, this.stamps[slot]), cacheValue);
+        }
+    }
+
+    @Override
+    public void addPriorityEntry(String cacheKey) {
+        this.insert(cacheKey, CoarseTicker.currentTimeMillis(), false);
+    }
+
+    @Override
+    public void addPriorityEntry(String cacheKey, long storedPriority) {
+        this.insert(cacheKey, storedPriority, false);
+    }
+
+    /**
+     * Метод выбора кэш-элемента для вытеснения обходом кольца стрелкой.
+     * Обход завершается не более чем за два оборота.
+     *
+     * @return Entry с мета-данными вытесненного кэш-элемента.
+     */
+    @Override
+    public CacheMetaDataEntry<Long> removeEntry() {
+        if (this.slots.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        while (true) {
+            if (this.hand >= this.used) {
+                this.hand = 0;
+            }
+            int slot = this.hand++;
+            if (this.ring[slot] == null) {
+                continue;
+            }
+            if (this.referenced[slot]) {
+                this.referenced[slot] = false;
+                long stamp = CoarseTicker.currentTimeMillis();
+                this.l2AdmissionPolicy.onUpdate(this.stamps[slot], stamp);
+                this.stamps[slot] = stamp;
+            } else {
+                CacheMetaDataEntry<Long> evicted = new CacheMetaDataEntry<>(this.ring[slot], this.stamps[slot]);
+                this.release(slot);
+                return evicted;
+            }
+        }
+    }
+
+    @Override
+    public CacheMetaDataEntry<Long> removeEntryByKey(String cacheKey) {
+        Integer slot = this.slots.get(cacheKey);
+        if (slot == null) {
+            return null;
+        }
+        CacheMetaDataEntry<Long> entry = new CacheMetaDataEntry<>(cacheKey, this.stamps[slot]);
+        this.release(slot);
+        return entry;
+    }
+
+    @Override
+    public boolean contains(String cacheKey) {
+        return this.slots.containsKey(cacheKey);
+    }
+
+    @Override
+    public int size() {
+        return this.slots.size();
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(this.ring, 0, this.used, null);
+        Arrays.fill(this.referenced, 0, this.used, false);
+        this.slots.clear();
+        this.used = 0;
+        this.freeCount = 0;
+        this.hand = 0;
+        this.l2AdmissionPolicy.clear();
+    }
+
+    /**
+     * Освобождает {@link CoarseTicker грубые часы}, захваченные при создании стратегии.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (!this.isTickerReleased) {
+                this.isTickerReleased = true;
+                CoarseTicker.release();
+            }
+        }
+    }
+
+    /**
+     * Кэш-элементы обходятся по кольцу начиная со стрелки. Номер сегмента - бит обращения.
+     */
+    @Override
+    public void forEachEntry(SnapshotVisitor visitor) {
+        for (int i = 0; i < this.used; i++) {
+            int slot = (this.hand + i) % this.used;
+            if (this.ring[slot] != null) {
+                visitor.visit(this.ring[slot], this.stamps[slot], this.referenced[slot] ? REFERENCED : 0);
+            }
+        }
+    }
+
+    /**
+     * Кэш-элементы занимают кольцо в порядке снимка, стрелка встаёт на первый из них.
+     */
+    @Override
+    public void restoreEntries(String[] cacheKeys, long[] storedPriorities, byte[] segments, int count) {
+        for (int i = 0; i < count; i++) {
+            this.insert(cacheKeys[i], storedPriorities[i], segments[i] == REFERENCED);
+        }
+    }
+
+    @Override
+    protected long toStoredPriority(Long priority) {
+        return priority;
+    }
+
+    @Override
+    protected Long fromStoredPriority(long storedPriority) {
+        return storedPriority;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (int slot = 0; slot < this.used; slot++) {
+            if (this.ring[slot] != null) joiner.add(this.ring[slot]);
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * Метод добавления кэш-элемента в кольцо.
+     * Повторное добавление уже имеющегося в кольце ключа ничего не делает.
+     *
+     * @param cacheKey     Ключ кэша.
+     * @param stamp        Приоритет кэш-элемента.
+     * @param isReferenced Бит обращения.
+     */
+    private void insert(String cacheKey, long stamp, boolean isReferenced) {
+        if (this.slots.containsKey(cacheKey)) {
+            return;
+        }
+        int slot;
+        if (this.freeCount > 0) {
+            slot = this.freeSlots[--this.freeCount];
+        } else {
+            if (this.used == this.ring.length) {
+                this.grow();
+            }
+            slot = this.used++;
+        }
+        this.ring[slot] = cacheKey;
+        this.referenced[slot] = isReferenced;
+        this.stamps[slot] = stamp;
+        this.slots.put(cacheKey, slot);
+        this.l2AdmissionPolicy.onInsert(stamp);
+    }
+
+    /**
+     * Метод освобождения ячейки кольца.
+     *
+     * @param slot Ячейка кольца.
+     */
+    private void release(int slot) {
+        this.slots.remove(this.ring[slot]);
+        this.l2AdmissionPolicy.onRemove(this.stamps[slot]);
+        this.ring[slot] = null;
+        this.referenced[slot] = false;
+        if (this.freeCount == this.freeSlots.length) {
+            this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeCount * 2);
+        }
+        this.freeSlots[this.freeCount++] = slot;
+    }
+
+    /**
+     * Метод увеличения кольца вдвое. Используется, если кэш-элементов больше вместимости
+     * (при ограничении L1 кэша суммарным весом).
+     */
+    private void grow() {
+        int ringCapacity = this.ring.length * 2;
+        this.ring = Arrays.copyOf(this.ring, ringCapacity);
+        this.referenced = Arrays.copyOf(this.referenced, ringCapacity);
+        this.stamps = Arrays.copyOf(this.stamps, ringCapacity);
+    }
+}
@@ -1,11 +1,9 @@
 package org.buldakov.model.cache.strategy;
 
 import org.buldakov.model.cache.CacheMetaDataEntry;
-import org.buldakov.model.cache.filesystem.L2CacheResolver;
 
 import java.io.IOException;
 import java.util.Comparator;
-import java.util.Optional;
 
 /**
  * Реализация стратегии с числовым приоритетом {@link Integer}.
@@ -29,37 +27,28 @@ public class IntegerPriorityCacheStrategy extends AbstractCacheStrategy<Integer>
 
     @Override
     public void increaseCachePriority(String cacheKey, Object cacheValue) throws IOException, ClassNotFoundException {
-        CacheMetaDataEntry<Integer> entry = this.removeEntryByKey(cacheKey);
+        CacheMetaDataEntry<Integer> entry = this.cachePriorityQueue.get(cacheKey);
+        if (entry == null) return;
         Integer oldPriorityValue = entry.getPriority();
         if (oldPriorityValue == null) oldPriorityValue = 0;
-        entry.setPriority(++oldPriorityValue);
-        this.cachePriorityQueue.add(entry);
+        this.updatePriority(entry, ++oldPriorityValue);
         this.resolveInputDataToL2Cache(entry, cacheValue);
     }
 
     @Override
-    public boolean contains(String cacheKey) {
-        return this.cachePriorityQueue.contains(new CacheMetaDataEntry<>(cacheKey, 0));
+    public void addPriorityEntry(String key) {
+        CacheMetaDataEntry<Integer> cacheMetaDataEntry = new CacheMetaDataEntry<>(key, 1);
+        this.addEntry(cacheMetaDataEntry);
     }
 
     @Override
-    protected boolean resolvePriorityByAvg(CacheMetaDataEntry<Integer> entry, Object cacheValue) throws IOException {
-        if (this.l2CacheResolver.isPresent()) {
-            Optional<Integer> sum = this.cachePriorityQueue.stream().map(CacheMetaDataEntry::getPriority).reduce(Integer::sum);
-            int avg = sum.map(integer -> integer / this.cachePriorityQueue.size()).orElse(0);
-            if (entry.getPriority() >= avg) {
-                L2CacheResolver l2CacheResolver = this.l2CacheResolver.get();
-                l2CacheResolver.writeData(entry.getKey(), cacheValue);
-                return true;
-            }
-        }
-        return false;
+    protected long toStoredPriority(Integer priority) {
+        return priority;
     }
 
     @Override
-    public void addPriorityEntry(String key) {
-        CacheMetaDataEntry<Integer> cacheMetaDataEntry = new CacheMetaDataEntry<>(key, 1);
-        this.cachePriorityQueue.add(cacheMetaDataEntry);
+    protected Integer fromStoredPriority(long storedPriority) {
+        return (int) Math.min(storedPriority, Integer.MAX_VALUE);
     }
 
 }
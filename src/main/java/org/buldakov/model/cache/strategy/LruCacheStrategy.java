@@ -1,13 +1,10 @@
 package org.buldakov.model.cache.strategy;
 
 import org.buldakov.model.cache.CacheMetaDataEntry;
-import org.buldakov.model.cache.filesystem.L2CacheResolver;
 
 import java.io.IOException;
-import java.math.BigInteger;
 import java.time.Instant;
 import java.util.Comparator;
-import java.util.List;
 
 /**
  * Реализация стратегии LRU с временным приоритетом {@link Instant}.
@@ -23,38 +20,25 @@ public class LruCacheStrategy extends AbstractCacheStrategy<Instant> {
 
     @Override
     public void increaseCachePriority(String cacheKey, Object cacheValue) throws IOException, ClassNotFoundException {
-        CacheMetaDataEntry<Instant> entry = this.removeEntryByKey(cacheKey);
-        entry.setPriority(Instant.now());
-        this.cachePriorityQueue.add(entry);
+        CacheMetaDataEntry<Instant> entry = this.cachePriorityQueue.get(cacheKey);
+        if (entry == null) return;
+        this.updatePriority(entry, Instant.now());
         this.resolveInputDataToL2Cache(entry, cacheValue);
     }
 
     @Override
-    public boolean contains(String cacheKey) {
-        return this.cachePriorityQueue.contains(new CacheMetaDataEntry<>(cacheKey, Instant.now()));
+    public void addPriorityEntry(String key) {
+        CacheMetaDataEntry<Instant> cacheMetaDataEntry = new CacheMetaDataEntry<>(key, Instant.now());
+        this.addEntry(cacheMetaDataEntry);
     }
 
     @Override
-    protected boolean resolvePriorityByAvg(CacheMetaDataEntry<Instant> entry, Object cacheValue) throws IOException {
-        if (this.l2CacheResolver.isPresent()) {
-            BigInteger sum = BigInteger.ZERO;
-            List<Long> listOfMillis = this.cachePriorityQueue.stream().map((elem) -> elem.getPriority().toEpochMilli()).toList();
-            for (Long millis : listOfMillis) {
-                sum = sum.add(BigInteger.valueOf(millis));
-            }
-            BigInteger avg = sum.divide(BigInteger.valueOf(this.cachePriorityQueue.size()));
-            if (entry.getPriority().toEpochMilli() >= avg.longValue()) {
-                L2CacheResolver l2CacheResolver = this.l2CacheResolver.get();
-                l2CacheResolver.writeData(entry.getKey(), cacheValue);
-                return true;
-            }
-        }
-        return false;
+    protected long toStoredPriority(Instant priority) {
+        return priority.toEpochMilli();
     }
 
     @Override
-    public void addPriorityEntry(String key) {
-        CacheMetaDataEntry<Instant> cacheMetaDataEntry = new CacheMetaDataEntry<>(key, Instant.now());
-        this.cachePriorityQueue.add(cacheMetaDataEntry);
+    protected Instant fromStoredPriority(long storedPriority) {
+        return Instant.ofEpochMilli(storedPriority);
     }
 }
@@ -18,4 +18,12 @@ public class MfuCacheStrategy extends IntegerPriorityCacheStrategy {
     public MfuCacheStrategy(int initialCapacity) {
         super(initialCapacity, MFU_COMPARATOR);
     }
+
+    /**
+     * MFU дольше хранит редко используемые кэш-элементы, поэтому они прогреваются первыми.
+     */
+    @Override
+    public long toWarmUpRank(long storedPriority) {
+        return -storedPriority;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,393 @@
+package org.buldakov.model.cache.strategy;
+
+import org.buldakov.model.cache.CacheMetaDataEntry;
+import org.buldakov.model.cache.FrequencySketch;
+import org.buldakov.model.cache.IndexedPriorityQueue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.StringJoiner;
+
+/**
+ * Реализация стратегии Window TinyLFU.
+ * <p>
+ * Новые кэш-элементы попадают в небольшое LRU окно (1% вместимости). Вытесненный из окна
+ * кэш-элемент становится кандидатом в основную область и соревнуется с её жертвой - самым
+ * давним кэш-элементом испытательного сегмента: остаётся тот, чья частота обращений
+ * по {@link FrequencySketch count-min sketch'у} выше. Sketch помнит обращения и к уже
+ * вытесненным ключам, поэтому однократно запрошенные кэш-элементы (например, при сканировании)
+ * не вытесняют популярные.
+ * <p>
+ * Основная область - сегментированный LRU: испытательный сегмент и защищённый сегмент (80% области),
+ * в который кэш-элемент переходит при повторном обращении.
+ * <p>
+ * Сегменты - интрузивные двусвязные списки узлов, общих для всех сегментов: узел хранит ключ,
+ * номер сегмента и приоритет без упаковки, а один индекс по ключу заменяет поиск по трём сегментам.
+ * {@link CacheMetaDataEntry} создаётся только для вытесненного или удалённого кэш-элемента.
+ * <p>
+ * Приоритет кэш-элемента - оценка частоты обращений к нему на момент последнего обращения.
+ * По нему же {@link org.buldakov.model.cache.admission.L2AdmissionPolicy политика допуска} решает,
+ * записывать ли кэш-элемент в L2 кэш.
+ * Очередь {@link AbstractCacheStrategy#cachePriorityQueue} стратегией не используется.
+ */
+public class WTinyLfuCacheStrategy extends AbstractCacheStrategy<Integer> {
+
+    /**
+     * Доля окна во вместимости кэш-хранилища.
+     */
+    private static final double WINDOW_RATIO = 0.01;
+
+    /**
+     * Доля защищённого сегмента в основной области.
+     */
+    private static final double PROTECTED_RATIO = 0.8;
+
+    /**
+     * Номера сегментов в снимке L1 кэша.
+     */
+    private static final byte WINDOW = 0;
+
+    private static final byte PROBATION = 1;
+
+    private static final byte PROTECTED = 2;
+
+    private final FrequencySketch sketch;
+
+    /**
+     * Узлы всех сегментов по ключу кэша.
+     */
+    private final HashMap<String, Node> nodes;
+
+    /**
+     * LRU окно. Порядок обхода - от самого давнего обращения к самому недавнему.
+     */
+    private final AccessOrderList window = new AccessOrderList();
+
+    /**
+     * Испытательный сегмент основной области.
+     */
+    private final AccessOrderList probation = new AccessOrderList();
+
+    /**
+     * Защищённый сегмент основной области.
+     */
+    private final AccessOrderList protectedSegment = new AccessOrderList();
+
+    private final int maxWindow;
+
+    private final int maxProtected;
+
+    public WTinyLfuCacheStrategy(int initialCapacity) {
+        super(initialCapacity, (IndexedPriorityQueue<Integer>) null);
+        this.sketch = new FrequencySketch(initialCapacity);
+        this.nodes = new HashMap<>((int) (initialCapacity / 0.75f) + 1);
+        this.maxWindow = Math.max(1, (int) (initialCapacity * WINDOW_RATIO));
+        this.maxProtected = (int) ((initialCapacity - this.maxWindow) * PROTECTED_RATIO);
+    }
+
+    @Override
+    public void increaseCachePriority(String cacheKey, Object cacheValue) throws IOException, ClassNotFoundException {
+        this.sketch.increment(cacheKey);
+        Node node = this.nodes.get(cacheKey);
+        if (node == null) {
+            return;
+        }
+        switch (node.segment) {
+            case WINDOW -> this.window.moveToLast(node);
+            case PROBATION -> {
+                this.probation.remove(node);
+                node.segment = PROTECTED;
+                this.protectedSegment.addLast(node);
+                this.demoteProtected();
+            }
+            default -> this.protectedSegment.moveToLast(node);
+        }
+        int frequency = this.sketch.frequency(cacheKey);
+        this.l2AdmissionPolicy.onUpdate(node.priority, frequency);
+        node.priority = frequency;
+        this.resolveInputDataToL2Cache(cacheKey, frequency, cacheValue);
+    }
+
+    @Override
+    public void addPriorityEntry(String cacheKey) {
+        if (this.nodes.containsKey(cacheKey)) {
+            return;
+        }
+        this.sketch.increment(cacheKey);
+        int frequency = this.sketch.frequency(cacheKey);
+        Node node = new Node(cacheKey, frequency, WINDOW);
+        this.nodes.put(cacheKey, node);
+        this.window.addLast(node);
+        this.l2AdmissionPolicy.onInsert(frequency);
+        this.shrinkWindow();
+    }
+
+    /**
+     * Частота кэш-элемента, поднятого из L2 кэша, уже учтена sketch'ем,
+     * поэтому сохранённый приоритет не используется.
+     */
+    @Override
+    public void addPriorityEntry(String cacheKey, long storedPriority) {
+        this.addPriorityEntry(cacheKey);
+    }
+
+    /**
+     * Метод выбора кэш-элемента для вытеснения.
+     * Если окно заполнено, его самый давний кэш-элемент соревнуется по частоте
+     * с жертвой основной области, и вытесняется проигравший. Иначе вытесняется жертва основной области.
+     *
+     * @return Entry с мета-данными вытесненного кэш-элемента.
+     */
+    @Override
+    public CacheMetaDataEntry<Integer> removeEntry() {
+        AccessOrderList victimSegment = !this.probation.isEmpty() ? this.probation : this.protectedSegment;
+        Node evicted;
+        if (victimSegment.isEmpty()) {
+            evicted = this.window.pollFirst();
+        } else if (this.window.size < this.maxWindow) {
+            evicted = victimSegment.pollFirst();
+        } else {
+            Node candidate = this.window.pollFirst();
+            Node victim = victimSegment.first();
+            if (this.sketch.frequency(candidate.key) > this.sketch.frequency(victim.key)) {
+                victimSegment.remove(victim);
+                candidate.segment = PROBATION;
+                this.probation.addLast(candidate);
+                evicted = victim;
+            } else {
+                evicted = candidate;
+            }
+        }
+        this.nodes.remove(evicted.key);
+        this.l2AdmissionPolicy.onRemove(evicted.priority);
+        return new CacheMetaDataEntry<>(evicted.key, this.sketch.frequency(evicted.key));
+    }
+
+    @Override
+    public CacheMetaDataEntry<Integer> removeEntryByKey(String cacheKey) {
+        Node node = this.nodes.remove(cacheKey);
+        if (node == null) {
+            return null;
+        }
+        this.segmentOf(node).remove(node);
+        this.l2AdmissionPolicy.onRemove(node.priority);
+        return new CacheMetaDataEntry<>(cacheKey, node.priority);
+    }
+
+    @Override
+    public boolean contains(String cacheKey) {
+        return this.nodes.containsKey(cacheKey);
+    }
+
+    @Override
+    public int size() {
+        return this.nodes.size();
+    }
+
+    /**
+     * Метод отчистки сегментов. История частот в sketch'е сохраняется.
+     */
+    @Override
+    public void clear() {
+        this.nodes.clear();
+        this.window.clear();
+        this.probation.clear();
+        this.protectedSegment.clear();
+        this.l2AdmissionPolicy.clear();
+    }
+
+    /**
+     * Кэш-элементы обходятся по сегментам от самого давнего обращения к самому недавнему:
+     * 0 - окно, 1 - испытательный сегмент, 2 - защищённый сегмент.
+     */
+    @Override
+    public void forEachEntry(SnapshotVisitor visitor) {
+        for (AccessOrderList segment : new AccessOrderList[]{this.window, this.probation, this.protectedSegment}) {
+            for (Node node = segment.head; node != null; node = node.next) {
+                visitor.visit(node.key, node.priority, node.segment);
+            }
+        }
+    }
+
+    /**
+     * Кэш-элементы возвращаются в свои сегменты в порядке обращений.
+     * Если вместимость уменьшилась, лишние кэш-элементы окна и защищённого сегмента переходят в испытательный.
+     */
+    @Override
+    public void restoreEntries(String[] cacheKeys, long[] storedPriorities, byte[] segments, int count) {
+        for (int i = 0; i < count; i++) {
+            if (this.nodes.containsKey(cacheKeys[i])) {
+                continue;
+            }
+            byte segment = segments[i] == WINDOW || segments[i] == PROTECTED ? segments[i] : PROBATION;
+            Node node = new Node(cacheKeys[i], this.fromStoredPriority(storedPriorities[i]), segment);
+            this.nodes.put(node.key, node);
+            this.segmentOf(node).addLast(node);
+            this.l2AdmissionPolicy.onInsert(node.priority);
+        }
+        this.shrinkWindow();
+        this.demoteProtected();
+    }
+
+    /**
+     * Состояние стратегии - счётчики {@link FrequencySketch sketch'а}.
+     */
+    @Override
+    public byte[] saveState() {
+        return this.sketch.toByteArray();
+    }
+
+    /**
+     * Счётчики sketch'а другого размера (при изменении вместимости) не восстанавливаются.
+     */
+    @Override
+    public void restoreState(byte[] state) {
+        this.sketch.restore(state);
+    }
+
+    @Override
+    protected long toStoredPriority(Integer priority) {
+        return priority;
+    }
+
+    @Override
+    protected Integer fromStoredPriority(long storedPriority) {
+        return (int) Math.min(storedPriority, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        this.forEachEntry((cacheKey, storedPriority, segment) -> joiner.add(cacheKey));
+        return joiner.toString();
+    }
+
+    /**
+     * Метод перевода самых давних кэш-элементов переполненного окна в испытательный сегмент.
+     */
+    private void shrinkWindow() {
+        while (this.window.size > this.maxWindow) {
+            Node candidate = this.window.pollFirst();
+            candidate.segment = PROBATION;
+            this.probation.addLast(candidate);
+        }
+    }
+
+    /**
+     * Метод перевода самых давних кэш-элементов переполненного защищённого сегмента в испытательный.
+     */
+    private void demoteProtected() {
+        while (this.protectedSegment.size > this.maxProtected) {
+            Node demoted = this.protectedSegment.pollFirst();
+            demoted.segment = PROBATION;
+            this.probation.addLast(demoted);
+        }
+    }
+
+    private AccessOrderList segmentOf(Node node) {
+        return switch (node.segment) {
+            case WINDOW -> this.window;
+            case PROBATION -> this.probation;
+            default -> this.protectedSegment;
+        };
+    }
+
+    /**
+     * Узел сегмента.
+     */
+    private static final class Node {
+
+        private final String key;
+
+        /**
+         * Приоритет, учтённый {@link org.buldakov.model.cache.admission.L2AdmissionPolicy политикой допуска}.
+         */
+        private int priority;
+
+        /**
+         * Номер сегмента, в списке которого находится узел.
+         */
+        private byte segment;
+
+        private Node previous;
+
+        private Node next;
+
+        private Node(String key, int priority, byte segment) {
+            this.key = key;
+            this.priority = priority;
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * Сегмент в порядке обращений: от самого давнего к самому недавнему.
+     */
+    private static final class AccessOrderList {
+
+        private Node head;
+
+        private Node tail;
+
+        private int size;
+
+        private boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        private Node first() {
+            if (this.head == null) {
+                throw new NoSuchElementException();
+            }
+            return this.head;
+        }
+
+        private Node pollFirst() {
+            Node node = this.first();
+            this.remove(node);
+            return node;
+        }
+
+        private void addLast(Node node) {
+            node.previous = this.tail;
+            node.next = null;
+            if (this.tail == null) {
+                this.head = node;
+            } else {
+                this.tail.next = node;
+            }
+            this.tail = node;
+            this.size++;
+        }
+
+        private void remove(Node node) {
+            if (node.previous == null) {
+                this.head = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                this.tail = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+            this.size--;
+        }
+
+        private void moveToLast(Node node) {
+            if (node != this.tail) {
+                this.remove(node);
+                this.addLast(node);
+            }
+        }
+
+        private void clear() {
+            this.head = null;
+            this.tail = null;
+            this.size = 0;
+        }
+    }
+}
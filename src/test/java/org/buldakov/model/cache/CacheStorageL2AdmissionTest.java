@@ -0,0 +1,104 @@
+package org.buldakov.model.cache;
+
+import org.buldakov.model.cache.admission.L2AdmissionPolicy;
+import org.buldakov.model.cache.enums.DeleteStrategyType;
+import org.buldakov.model.cache.enums.L2TieringMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Проверки L2 кэша в режиме {@link L2TieringMode#ADMISSION}.
+ */
+class CacheStorageL2AdmissionTest {
+
+    @TempDir
+    Path l2Directory;
+
+    @Test
+    void overwriteDropsAdmittedCopy() throws IOException, ClassNotFoundException {
+        try (CacheStorage storage = this.newStorage()) {
+            storage.addData("k", "v1");
+            storage.getData("k");
+            storage.addData("k", "v2");
+
+            this.evictByFrequentEntry(storage);
+
+            assertNull(storage.getData("k"));
+        }
+    }
+
+    @Test
+    void overwriteIsAdmittedAgainOnAccess() throws IOException, ClassNotFoundException {
+        try (CacheStorage storage = this.newStorage()) {
+            storage.addData("k", "v1");
+            storage.getData("k");
+            storage.addData("k", "v2");
+            storage.getData("k");
+
+            this.evictByFrequentEntry(storage);
+
+            assertEquals("v2", storage.getData("k"));
+        }
+    }
+
+    /**
+     * Вытесняет из L1 кэша ключ "k": добавляет часто используемый кэш-элемент и ещё один,
+     * которому не хватает места.
+     */
+    private void evictByFrequentEntry(CacheStorage storage) throws IOException, ClassNotFoundException {
+        storage.addData("a", "a");
+        for (int i = 0; i < 5; i++) {
+            storage.getData("a");
+        }
+        storage.addData("b", "b");
+    }
+
+    private CacheStorage newStorage() throws IOException {
+        return new CacheStorageBuilder()
+                .setCapacity(2)
+                .setCacheStrategy(DeleteStrategyType.LFU)
+                .enableL2Cache()
+                .setL2Directory(this.l2Directory)
+                .setL2TieringMode(L2TieringMode.ADMISSION)
+                .setL2AdmissionPolicy(new AdmitAllPolicy())
+                .build();
+    }
+
+    /**
+     * Политика, допускающая в L2 кэш каждый кэш-элемент.
+     */
+    private static final class AdmitAllPolicy implements L2AdmissionPolicy {
+
+        @Override
+        public void onInsert(long priority) {
+        }
+
+        @Override
+        public void onUpdate(long oldPriority, long newPriority) {
+        }
+
+        @Override
+        public void onRemove(long priority) {
+        }
+
+        @Override
+        public void clear() {
+        }
+
+        @Override
+        public boolean admit(long priority) {
+            return true;
+        }
+
+        @Override
+        public L2AdmissionPolicy forShard(int shardCount) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.buldakov.model.cache;
+
+import org.buldakov.model.cache.enums.DeleteStrategyType;
+import org.buldakov.model.cache.enums.L2TieringMode;
+import org.buldakov.model.cache.enums.L2WarmUpMode;
+import org.buldakov.model.cache.event.CacheEventListener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки уплотнения сегментов L2 кэша.
+ */
+class CacheStorageL2CompactionTest {
+
+    private static final String PADDING = "x".repeat(200);
+
+    @TempDir
+    Path l2Directory;
+
+    @Test
+    void compactionKeepsLatestVersionsAndDropsTombstones() throws IOException, ClassNotFoundException {
+        CompactionListener listener = new CompactionListener();
+        try (CacheStorage storage = this.newStorage(listener)) {
+            for (int i = 0; i < 300; i++) {
+                storage.addData("k" + i % 4, "v" + i + PADDING);
+            }
+            storage.removeData("k3");
+            for (int i = 300; i < 600; i++) {
+                storage.addData("k" + i % 3, "v" + i + PADDING);
+            }
+            storage.addData("last", "last");
+        }
+
+        assertTrue(listener.compactions.get() > 0);
+        assertTrue(listener.lastKept.get() <= 3, "kept: " + listener.lastKept.get());
+        assertEquals(0, listener.dropped.get());
+        try (CacheStorage storage = this.newStorage(CacheEventListener.NO_OP)) {
+            assertEquals("v597" + PADDING, storage.getData("k0"));
+            assertEquals("v598" + PADDING, storage.getData("k1"));
+            assertEquals("v599" + PADDING, storage.getData("k2"));
+            assertNull(storage.getData("k3"));
+        }
+    }
+
+    private CacheStorage newStorage(CacheEventListener listener) throws IOException {
+        return new CacheStorageBuilder()
+                .setCapacity(1)
+                .setCacheStrategy(DeleteStrategyType.LFU)
+                .enableL2Cache()
+                .setL2Directory(this.l2Directory)
+                .setL2TieringMode(L2TieringMode.SPILL_ON_EVICT)
+                .setL2MaxSize(1 << 20, 4096)
+                .setL2CompactionThreshold(0.3)
+                .setL2WriteBatchSize(1)
+                .setL2WarmUpMode(L2WarmUpMode.NONE)
+                .setEventListener(listener)
+                .build();
+    }
+
+    /**
+     * Слушатель, запоминающий итоги уплотнений (вызывается в потоке фонового писателя).
+     */
+    private static final class CompactionListener implements CacheEventListener {
+
+        private final AtomicInteger compactions = new AtomicInteger();
+
+        private final AtomicInteger lastKept = new AtomicInteger();
+
+        private final AtomicInteger dropped = new AtomicInteger();
+
+        @Override
+        public void onL2Compact(int segments, int kept, int dropped) {
+            this.compactions.incrementAndGet();
+            this.lastKept.set(kept);
+            this.dropped.addAndGet(dropped);
+        }
+    }
+}
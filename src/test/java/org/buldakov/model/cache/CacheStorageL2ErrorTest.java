@@ -0,0 +1,82 @@
+package org.buldakov.model.cache;
+
+import org.buldakov.model.cache.codec.StringCodec;
+import org.buldakov.model.cache.codec.ValueCodec;
+import org.buldakov.model.cache.enums.L2TieringMode;
+import org.buldakov.model.cache.enums.L2WarmUpMode;
+import org.buldakov.model.cache.event.CacheEventListener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Проверки учёта записей L2 кэша с ошибками.
+ */
+class CacheStorageL2ErrorTest {
+
+    @TempDir
+    Path l2Directory;
+
+    @Test
+    void unreadableRecordsAreCountedAndReportedOncePerSegment() throws IOException, ClassNotFoundException {
+        List<String> errors = new ArrayList<>();
+        CacheEventListener listener = new CacheEventListener() {
+            @Override
+            public void onL2RecordError(Path segment, String message) {
+                errors.add(message);
+            }
+        };
+        try (CacheStorage storage = this.newStorage(CacheEventListener.NO_OP)) {
+            for (int i = 0; i < 4; i++) {
+                storage.addData("key" + i, "value" + i);
+            }
+            storage.addData("last", "last");
+        }
+
+        try (CacheStorage storage = this.newStorage(listener)) {
+            long errorsAfterWarmUp = storage.stats().l2ErrorCount();
+            for (int i = 0; i < 4; i++) {
+                assertNull(storage.getData("key" + i));
+            }
+            assertEquals(4, storage.stats().l2ErrorCount() - errorsAfterWarmUp);
+            assertEquals(1, errors.size());
+        }
+    }
+
+    private CacheStorage newStorage(CacheEventListener listener) throws IOException {
+        return new CacheStorageBuilder()
+                .setCapacity(1)
+                .enableL2Cache()
+                .setL2Directory(this.l2Directory)
+                .setL2TieringMode(L2TieringMode.SPILL_ON_EVICT)
+                .setL2WarmUpMode(L2WarmUpMode.SYNC)
+                .setValueCodec(new UnreadableCodec())
+                .setEventListener(listener)
+                .enableStats()
+                .build();
+    }
+
+    /**
+     * Кодек, который записывает строки, но не может их прочитать.
+     */
+    private static final class UnreadableCodec implements ValueCodec<String> {
+
+        @Override
+        public void serialize(String value, ByteBuffer buffer) {
+            StringCodec.INSTANCE.serialize(value, buffer);
+        }
+
+        @Override
+        public String deserialize(ByteBuffer buffer) {
+            throw new IllegalStateException("значение не читается");
+        }
+    }
+}
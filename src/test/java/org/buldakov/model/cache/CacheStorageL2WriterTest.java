@@ -0,0 +1,60 @@
+package org.buldakov.model.cache;
+
+import org.buldakov.model.cache.enums.L2TieringMode;
+import org.buldakov.model.cache.event.CacheEventListener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Проверки фонового писателя L2 кэша.
+ */
+class CacheStorageL2WriterTest {
+
+    @TempDir
+    Path l2Directory;
+
+    @Test
+    void writerSurvivesRuntimeExceptionInBatch() {
+        AtomicInteger failures = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+        CacheEventListener listener = new CacheEventListener() {
+            @Override
+            public void onL2Write(int count) {
+                if (failures.get() == 0) {
+                    throw new IllegalStateException("сбой записи пачки");
+                }
+                written.addAndGet(count);
+            }
+
+            @Override
+            public void onL2WriteError(Exception exception) {
+                failures.incrementAndGet();
+            }
+        };
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            try (CacheStorage storage = new CacheStorageBuilder()
+                    .setCapacity(1)
+                    .enableL2Cache()
+                    .setL2Directory(this.l2Directory)
+                    .setL2TieringMode(L2TieringMode.SPILL_ON_EVICT)
+                    .setEventListener(listener)
+                    .build()) {
+                storage.addData("a", "a");
+                storage.addData("b", "b");
+                while (failures.get() == 0) {
+                    Thread.sleep(1);
+                }
+                storage.addData("c", "c");
+            }
+        });
+        assertEquals(1, failures.get());
+        assertEquals(1, written.get());
+    }
+}
@@ -0,0 +1,85 @@
+package org.buldakov.model.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки загрузки значений при промахе.
+ */
+class CacheStorageLoaderTest {
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CacheLoader loader = cacheKey -> {
+            loads.incrementAndGet();
+            started.countDown();
+            release.await();
+            return "value";
+        };
+        try (CacheStorage storage = new CacheStorageBuilder().enableConcurrency().build()) {
+            CompletableFuture<Object> first = storage.getAsync("k", loader);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Object> second = storage.getAsync("k", loader);
+            release.countDown();
+
+            assertEquals("value", first.get(5, TimeUnit.SECONDS));
+            assertEquals("value", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+            assertEquals("value", storage.getData("k"));
+        }
+    }
+
+    @Test
+    void loaderFailureReachesCallerAndIsNotCached() throws IOException, ClassNotFoundException {
+        IOException failure = new IOException("источник недоступен");
+        try (CacheStorage storage = new CacheStorageBuilder().enableConcurrency().build()) {
+            CacheLoaderException exception = assertThrows(CacheLoaderException.class,
+                    () -> storage.get("k", cacheKey -> {
+                        throw failure;
+                    }));
+            assertSame(failure, exception.getCause());
+
+            ExecutionException asyncException = assertThrows(ExecutionException.class,
+                    () -> storage.getAsync("k", cacheKey -> {
+                        throw failure;
+                    }).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(CacheLoaderException.class, asyncException.getCause());
+
+            assertEquals("value", storage.get("k", cacheKey -> "value"));
+        }
+    }
+
+    @Test
+    void recursiveLoadOfSameKeyFailsInsteadOfDeadlocking() {
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            try (CacheStorage storage = new CacheStorageBuilder().build()) {
+                CacheLoader loader = new CacheLoader() {
+                    @Override
+                    public Object load(String cacheKey) throws Exception {
+                        return storage.get(cacheKey, this);
+                    }
+                };
+                assertThrows(IllegalStateException.class, () -> storage.get("k", loader));
+
+                assertEquals("value", storage.get("k", cacheKey -> "value"));
+            }
+        });
+    }
+}
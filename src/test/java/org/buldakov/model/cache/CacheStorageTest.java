@@ -0,0 +1,74 @@
+package org.buldakov.model.cache;
+
+import org.buldakov.model.cache.enums.DeleteStrategyType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Проверки L1 кэша хранилища.
+ */
+class CacheStorageTest {
+
+    @Test
+    void overwriteAtCapacityKeepsOtherEntries() throws IOException, ClassNotFoundException {
+        for (DeleteStrategyType strategy : DeleteStrategyType.values()) {
+            try (CacheStorage storage = new CacheStorageBuilder()
+                    .setCapacity(2)
+                    .setCacheStrategy(strategy)
+                    .enableStats()
+                    .build()) {
+                storage.addData("a", "a1");
+                storage.addData("b", "b");
+                storage.addData("a", "a2");
+
+                assertEquals("a2", storage.getData("a"), strategy.name());
+                assertEquals("b", storage.getData("b"), strategy.name());
+                assertEquals(0, storage.stats().evictionCount(), strategy.name());
+            }
+        }
+    }
+
+    @Test
+    void misconfiguredBuildStartsNoThreads(@TempDir Path l2Directory) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            CacheStorageBuilder builder = new CacheStorageBuilder()
+                    .setCacheStrategy(DeleteStrategyType.CLOCK)
+                    .enableL2Cache()
+                    .setL2Directory(l2Directory)
+                    .setExpiryScheduler(scheduler, Duration.ofSeconds(1));
+
+            assertThrows(IllegalStateException.class, builder::build);
+            assertFalse(isThreadAlive("ardecs-coarse-ticker"));
+            assertFalse(isThreadAlive("ardecs-l2-writer"));
+
+            CacheStorageBuilder snapshotBuilder = new CacheStorageBuilder()
+                    .setCacheStrategy(DeleteStrategyType.CLOCK)
+                    .enableL2Cache()
+                    .setL2Directory(l2Directory)
+                    .enableSnapshots(l2Directory.resolve("l1.snapshot"))
+                    .setSnapshotScheduler(scheduler, Duration.ofSeconds(1));
+
+            assertThrows(IllegalStateException.class, snapshotBuilder::build);
+            assertFalse(isThreadAlive("ardecs-coarse-ticker"));
+            assertFalse(isThreadAlive("ardecs-l2-writer"));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static boolean isThreadAlive(String name) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().equals(name) && thread.isAlive());
+    }
+}
@@ -0,0 +1,104 @@
+package org.buldakov.model.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки порядка индексированной приоритетной очереди.
+ */
+class IndexedPriorityQueueTest {
+
+    @Test
+    void updatePriorityMovesEntryInBothDirections() {
+        IndexedPriorityQueue<Integer> queue = new IndexedPriorityQueue<>(4);
+        for (int i = 1; i <= 5; i++) {
+            queue.add(new CacheMetaDataEntry<>("k" + i, i * 10));
+        }
+
+        queue.updatePriority(queue.get("k5"), 1);
+        queue.updatePriority(queue.get("k1"), 100);
+
+        assertEquals(List.of("k5", "k2", "k3", "k4", "k1"), drain(queue));
+    }
+
+    @Test
+    void removeByKeyKeepsHeapOrder() {
+        IndexedPriorityQueue<Integer> queue = new IndexedPriorityQueue<>(16);
+        for (int i = 1; i <= 9; i++) {
+            queue.add(new CacheMetaDataEntry<>("k" + i, i));
+        }
+
+        assertEquals(Integer.valueOf(1), queue.remove("k1").getPriority());
+        assertEquals(Integer.valueOf(5), queue.remove("k5").getPriority());
+        assertEquals(Integer.valueOf(9), queue.remove("k9").getPriority());
+        assertNull(queue.remove("k5"));
+
+        assertFalse(queue.contains("k5"));
+        assertEquals(6, queue.size());
+        assertEquals(List.of("k2", "k3", "k4", "k6", "k7", "k8"), drain(queue));
+        assertThrows(NoSuchElementException.class, queue::remove);
+    }
+
+    @Test
+    void randomOperationsMatchSortedOrder() {
+        Random random = new Random(42);
+        IndexedPriorityQueue<Integer> queue = new IndexedPriorityQueue<>(8, Comparator.reverseOrder());
+        List<CacheMetaDataEntry<Integer>> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            CacheMetaDataEntry<Integer> entry = new CacheMetaDataEntry<>("k" + i, random.nextInt(1000));
+            assertTrue(queue.add(entry));
+            expected.add(entry);
+        }
+        assertFalse(queue.add(new CacheMetaDataEntry<>("k0", 0)));
+        for (int i = 0; i < 100; i++) {
+            CacheMetaDataEntry<Integer> entry = expected.get(random.nextInt(expected.size()));
+            if (random.nextBoolean()) {
+                queue.updatePriority(entry, random.nextInt(1000));
+            } else {
+                expected.remove(entry);
+                assertEquals(entry, queue.remove(entry.getKey()));
+            }
+        }
+
+        List<Integer> priorities = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            priorities.add(queue.remove().getPriority());
+        }
+        List<Integer> sorted = new ArrayList<>(expected.stream().map(CacheMetaDataEntry::getPriority).toList());
+        sorted.sort(Comparator.reverseOrder());
+        assertEquals(sorted, priorities);
+    }
+
+    @Test
+    void addAllIntoEmptyQueueBuildsHeap() {
+        IndexedPriorityQueue<Integer> queue = new IndexedPriorityQueue<>(2);
+        List<CacheMetaDataEntry<Integer>> entries = new ArrayList<>();
+        for (int i = 10; i >= 1; i--) {
+            entries.add(new CacheMetaDataEntry<>("k" + i, i));
+        }
+        entries.add(new CacheMetaDataEntry<>("k3", 0));
+
+        assertEquals(10, queue.addAll(entries));
+        assertEquals(Integer.valueOf(3), queue.get("k3").getPriority());
+        assertEquals(List.of("k1", "k2", "k3", "k4", "k5", "k6", "k7", "k8", "k9", "k10"), drain(queue));
+    }
+
+    private static List<String> drain(IndexedPriorityQueue<Integer> queue) {
+        List<String> keys = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            keys.add(queue.remove().getKey());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,98 @@
+package org.buldakov.model.cache;
+
+import org.buldakov.model.cache.enums.DeleteStrategyType;
+import org.buldakov.model.cache.event.CacheEventListener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки записи и восстановления снимка L1 кэша.
+ */
+class L1SnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void closeAndReopenRestoresEntriesAndPriorities() throws IOException, ClassNotFoundException {
+        Path snapshotPath = this.directory.resolve("l1.snapshot");
+        try (CacheStorage storage = newStorage(snapshotPath, DeleteStrategyType.LFU, CacheEventListener.NO_OP)) {
+            storage.addData("rare", "r");
+            storage.addData("often", "o");
+            storage.addData("sometimes", "s");
+            for (int i = 0; i < 5; i++) {
+                storage.getData("often");
+            }
+            for (int i = 0; i < 2; i++) {
+                storage.getData("sometimes");
+            }
+        }
+        assertTrue(Files.exists(snapshotPath));
+
+        RecordingListener listener = new RecordingListener();
+        try (CacheStorage storage = newStorage(snapshotPath, DeleteStrategyType.LFU, listener)) {
+            assertEquals(List.of("restore 3 3"), listener.events);
+            assertFalse(Files.exists(snapshotPath));
+
+            storage.addData("new", "n");
+
+            assertNull(storage.getData("rare"));
+            assertEquals("o", storage.getData("often"));
+            assertEquals("s", storage.getData("sometimes"));
+            assertEquals("n", storage.getData("new"));
+        }
+    }
+
+    @Test
+    void snapshotOfAnotherStrategyIsRejected() throws IOException, ClassNotFoundException {
+        Path snapshotPath = this.directory.resolve("l1.snapshot");
+        try (CacheStorage storage = newStorage(snapshotPath, DeleteStrategyType.LFU, CacheEventListener.NO_OP)) {
+            storage.addData("k", "v");
+        }
+
+        RecordingListener listener = new RecordingListener();
+        try (CacheStorage storage = newStorage(snapshotPath, DeleteStrategyType.CLOCK, listener)) {
+            assertEquals(List.of("rejected " + snapshotPath), listener.events);
+            assertNull(storage.getData("k"));
+        }
+    }
+
+    private static CacheStorage newStorage(Path snapshotPath, DeleteStrategyType strategy, CacheEventListener listener)
+            throws IOException {
+        return new CacheStorageBuilder()
+                .setCapacity(3)
+                .setCacheStrategy(strategy)
+                .setEventListener(listener)
+                .enableSnapshots(snapshotPath)
+                .build();
+    }
+
+    /**
+     * Слушатель, запоминающий события снимка.
+     */
+    private static final class RecordingListener implements CacheEventListener {
+
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onSnapshotRestore(int restored, int total) {
+            this.events.add("restore " + restored + " " + total);
+        }
+
+        @Override
+        public void onSnapshotRejected(Path snapshot, String reason) {
+            this.events.add("rejected " + snapshot);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.buldakov.model.cache;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки статистики секционированного хранилища.
+ */
+class ShardedCacheStorageStatsTest {
+
+    @Test
+    void sharesOneMBeanAcrossShards() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.buldakov.ardecs:type=CacheStats,name=" + ObjectName.quote("sharded"));
+        ShardedCacheStorage storage = new CacheStorageBuilder()
+                .setShardCount(4)
+                .enableStats("sharded")
+                .buildSharded();
+        try {
+            for (int i = 0; i < 16; i++) {
+                storage.addData("key" + i, i);
+            }
+            assertTrue(server.isRegistered(name));
+            assertEquals(16L, server.getAttribute(name, "PutCount"));
+            assertEquals(16L, storage.stats().putCount());
+        } finally {
+            storage.close();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
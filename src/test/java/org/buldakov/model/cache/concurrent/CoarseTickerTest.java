@@ -0,0 +1,38 @@
+package org.buldakov.model.cache.concurrent;
+
+import org.buldakov.model.cache.CacheStorage;
+import org.buldakov.model.cache.CacheStorageBuilder;
+import org.buldakov.model.cache.enums.DeleteStrategyType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки жизненного цикла грубых часов.
+ */
+class CoarseTickerTest {
+
+    @Test
+    void tickerStopsWhenLastClockStorageIsClosed() throws Exception {
+        CacheStorage first = new CacheStorageBuilder().setCacheStrategy(DeleteStrategyType.CLOCK).build();
+        CacheStorage second = new CacheStorageBuilder().setCacheStrategy(DeleteStrategyType.CLOCK).build();
+        assertTrue(isTickerAlive());
+
+        first.close();
+        first.close();
+        assertTrue(isTickerAlive());
+
+        second.close();
+        long deadline = System.currentTimeMillis() + 1000;
+        while (isTickerAlive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(CoarseTicker.RESOLUTION_MILLIS);
+        }
+        assertFalse(isTickerAlive());
+    }
+
+    private static boolean isTickerAlive() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().equals("ardecs-coarse-ticker") && thread.isAlive());
+    }
+}
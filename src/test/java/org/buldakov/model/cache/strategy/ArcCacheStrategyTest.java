@@ -0,0 +1,104 @@
+package org.buldakov.model.cache.strategy;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки подстройки целевого размера T1 стратегии ARC.
+ */
+class ArcCacheStrategyTest {
+
+    private static final int CAPACITY = 4;
+
+    private static final int RECENT = 0;
+
+    private static final int FREQUENT = 1;
+
+    @Test
+    void recentGhostHitGrowsTargetAndPromotes() {
+        ArcCacheStrategy strategy = fillWithTwoFrequent();
+        add(strategy, "e");
+        assertEquals(0, targetRecent(strategy));
+        assertFalse(strategy.contains("a"));
+
+        add(strategy, "a");
+
+        assertEquals(1, targetRecent(strategy));
+        assertEquals(Map.of("e", RECENT, "c", FREQUENT, "d", FREQUENT, "a", FREQUENT), segments(strategy));
+    }
+
+    @Test
+    void frequentGhostHitShrinksTarget() {
+        ArcCacheStrategy strategy = fillWithTwoFrequent();
+        add(strategy, "e");
+        add(strategy, "a");
+        add(strategy, "f");
+        assertEquals(1, targetRecent(strategy));
+        assertFalse(strategy.contains("c"));
+
+        add(strategy, "c");
+
+        assertEquals(0, targetRecent(strategy));
+        assertEquals(Map.of("f", RECENT, "d", FREQUENT, "a", FREQUENT, "c", FREQUENT), segments(strategy));
+    }
+
+    @Test
+    void scanDoesNotEvictFrequentEntries() {
+        ArcCacheStrategy strategy = new ArcCacheStrategy(CAPACITY);
+        add(strategy, "x");
+        add(strategy, "y");
+        strategy.increaseCachePriority("x", null);
+        strategy.increaseCachePriority("y", null);
+
+        for (int i = 0; i < 100; i++) {
+            add(strategy, "scan" + i);
+        }
+
+        assertTrue(strategy.contains("x"));
+        assertTrue(strategy.contains("y"));
+        assertEquals(CAPACITY, strategy.size());
+    }
+
+    /**
+     * Метод заполнения стратегии: "a" и "b" в T1, "c" и "d" в T2.
+     */
+    private static ArcCacheStrategy fillWithTwoFrequent() {
+        ArcCacheStrategy strategy = new ArcCacheStrategy(CAPACITY);
+        for (String cacheKey : new String[]{"a", "b", "c", "d"}) {
+            add(strategy, cacheKey);
+        }
+        strategy.increaseCachePriority("c", null);
+        strategy.increaseCachePriority("d", null);
+        return strategy;
+    }
+
+    /**
+     * Метод добавления кэш-элемента так, как это делает хранилище: с вытеснением при заполненном кэше.
+     */
+    private static void add(ArcCacheStrategy strategy, String cacheKey) {
+        if (strategy.size() >= CAPACITY) {
+            strategy.removeEntry();
+        }
+        strategy.addPriorityEntry(cacheKey);
+    }
+
+    /**
+     * Целевой размер T1 - первое поле {@link ArcCacheStrategy#saveState() состояния стратегии}.
+     */
+    private static int targetRecent(ArcCacheStrategy strategy) {
+        return ByteBuffer.wrap(strategy.saveState()).getInt();
+    }
+
+    private static Map<String, Integer> segments(ArcCacheStrategy strategy) {
+        Map<String, Integer> segments = new HashMap<>();
+        strategy.forEachEntry((cacheKey, storedPriority, segment) -> segments.put(cacheKey, segment));
+        return segments;
+    }
+}
@@ -0,0 +1,114 @@
+package org.buldakov.model.cache.strategy;
+
+import org.buldakov.model.cache.CacheMetaDataEntry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки сегментов стратегии Window TinyLFU.
+ */
+class WTinyLfuCacheStrategyTest {
+
+    private static final int CAPACITY = 100;
+
+    @Test
+    void scanDoesNotEvictFrequentEntries() throws IOException, ClassNotFoundException {
+        WTinyLfuCacheStrategy strategy = new WTinyLfuCacheStrategy(CAPACITY);
+        for (int i = 0; i < 50; i++) {
+            add(strategy, "hot" + i);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                strategy.increaseCachePriority("hot" + i, null);
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            add(strategy, "scan" + i);
+        }
+
+        assertEquals(CAPACITY, strategy.size());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(strategy.contains("hot" + i), "hot" + i);
+        }
+    }
+
+    @Test
+    void removeByKeyUnlinksEntryFromItsSegment() throws IOException, ClassNotFoundException {
+        WTinyLfuCacheStrategy strategy = new WTinyLfuCacheStrategy(CAPACITY);
+        for (int i = 0; i < 10; i++) {
+            add(strategy, "k" + i);
+        }
+        strategy.increaseCachePriority("k0", null);
+
+        CacheMetaDataEntry<Integer> removed = strategy.removeEntryByKey("k0");
+
+        assertEquals("k0", removed.getKey());
+        assertEquals(2, removed.getPriority());
+        assertNull(strategy.removeEntryByKey("k0"));
+        assertFalse(strategy.contains("k0"));
+        assertEquals(9, strategy.size());
+        List<String> keys = new ArrayList<>();
+        strategy.forEachEntry((cacheKey, storedPriority, segment) -> keys.add(cacheKey));
+        assertEquals(9, keys.size());
+        assertFalse(keys.contains("k0"));
+    }
+
+    @Test
+    void snapshotRestoresSegmentsAndOrder() throws IOException, ClassNotFoundException {
+        WTinyLfuCacheStrategy strategy = new WTinyLfuCacheStrategy(CAPACITY);
+        for (int i = 0; i < 20; i++) {
+            add(strategy, "k" + i);
+        }
+        for (int i = 0; i < 5; i++) {
+            strategy.increaseCachePriority("k" + i, null);
+        }
+        List<String> keys = new ArrayList<>();
+        List<Long> priorities = new ArrayList<>();
+        List<Integer> segments = new ArrayList<>();
+        strategy.forEachEntry((cacheKey, storedPriority, segment) -> {
+            keys.add(cacheKey);
+            priorities.add(storedPriority);
+            segments.add(segment);
+        });
+        assertTrue(segments.contains(0));
+        assertTrue(segments.contains(1));
+        assertTrue(segments.contains(2));
+
+        WTinyLfuCacheStrategy restored = new WTinyLfuCacheStrategy(CAPACITY);
+        byte[] segmentBytes = new byte[segments.size()];
+        long[] priorityArray = new long[priorities.size()];
+        for (int i = 0; i < segmentBytes.length; i++) {
+            segmentBytes[i] = segments.get(i).byteValue();
+            priorityArray[i] = priorities.get(i);
+        }
+        restored.restoreEntries(keys.toArray(String[]::new), priorityArray, segmentBytes, keys.size());
+
+        List<String> restoredKeys = new ArrayList<>();
+        List<Integer> restoredSegments = new ArrayList<>();
+        restored.forEachEntry((cacheKey, storedPriority, segment) -> {
+            restoredKeys.add(cacheKey);
+            restoredSegments.add(segment);
+        });
+        assertEquals(keys, restoredKeys);
+        assertEquals(segments, restoredSegments);
+        assertEquals(strategy.toString(), restored.toString());
+    }
+
+    /**
+     * Метод добавления кэш-элемента так, как это делает хранилище: с вытеснением при заполненном кэше.
+     */
+    private static void add(WTinyLfuCacheStrategy strategy, String cacheKey) {
+        if (strategy.size() >= CAPACITY) {
+            strategy.removeEntry();
+        }
+        strategy.addPriorityEntry(cacheKey);
+    }
+}